@@ -1,7 +1,9 @@
 package com.becky;
 
 import com.becky.networking.SimpleServer;
+import com.becky.util.ServerConfig;
 import com.becky.world.NewGameWorld;
+import com.becky.world.WorldWarmup;
 
 import java.net.InetSocketAddress;
 
@@ -13,10 +15,17 @@ public class Becky {
 
     public static void main(final String[] args) {
         final InetSocketAddress socketAddress = new InetSocketAddress(3000);
-        final NewGameWorld game = new NewGameWorld();
+        final ServerConfig config = ServerConfig.fromSystemProperties();
+        if(config.getWarmupTicks() > 0) {
+            final long warmupNanos = WorldWarmup.run(config, config.getWarmupTicks());
+            System.out.println("Warmed up with " + config.getWarmupTicks() + " ticks in "
+                + warmupNanos / 1_000_000L + " ms.");
+        }
+        final NewGameWorld game = new NewGameWorld(config);
         final SimpleServer simpleServer = new SimpleServer(socketAddress, game);
 
         simpleServer.start();
         game.start();
+        new ServerConsole(game).start();
     }
 }
@@ -0,0 +1,59 @@
+package com.becky;
+
+import com.becky.world.NewGameWorld;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * Reads operator commands from standard input while the server is running.
+ *
+ * Commands:
+ * trace [file]   writes the most recent ticks to a Chrome trace-event file (default tick-trace-&lt;time&gt;.json)
+ */
+public class ServerConsole implements Runnable {
+    private final NewGameWorld gameWorld;
+
+    public ServerConsole(final NewGameWorld gameWorld) {
+        this.gameWorld = gameWorld;
+    }
+
+    public void start() {
+        final Thread thread = new Thread(this, "server-console");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+        try {
+            String line;
+            while((line = in.readLine()) != null) {
+                handleCommand(line.trim());
+            }
+        }
+        catch(final IOException ex) {
+            System.out.println("Server console stopped: " + ex.getMessage());
+        }
+    }
+
+    private void handleCommand(final String line) {
+        if(line.isEmpty()) {
+            return;
+        }
+
+        final String[] parts = line.split("\\s+", 2);
+        if(parts[0].equals("trace")) {
+            final String fileName = parts.length > 1 ? parts[1] : "tick-trace-" + System.currentTimeMillis() + ".json";
+            if(!gameWorld.getProfiler().requestTraceCapture(new File(fileName))) {
+                System.out.println("The tick profiler is disabled, start the server with -Dbecky.profiler=true.");
+            }
+        }
+        else {
+            System.out.println("Unknown command '" + parts[0] + "'. Commands: trace [file]");
+        }
+    }
+}
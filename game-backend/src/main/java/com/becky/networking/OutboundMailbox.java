@@ -0,0 +1,313 @@
+package com.becky.networking;
+
+import com.becky.networking.protocol.BinaryCodec;
+import com.becky.networking.protocol.BinaryWriter;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The messages waiting to be written to one client, in the order they were sent.
+ *
+ * Messages are collected until the game loop flushes the mailboxes at the end of a tick, then everything collected is
+ * written as a single frame by one of the writer threads. Json clients get their messages in a text frame, one per
+ * line. A frame which includes a binary message is a TICK_BUNDLE, see {@link BinaryCodec}. Messages shared with other
+ * clients aren't copied into the frame, the frame is queued on the socket as the parts in between and views of the
+ * shared payloads, see {@link PlayerMessageTransmitter#writeGathered}.
+ *
+ * While the socket still has a few frames of its own queued the messages wait here instead, which is where a slow
+ * client falls behind. A state snapshot waiting here is replaced by the next one, since the client only needs the
+ * latest, but every other message is kept until it is written. A client which still falls behind by more than the byte
+ * limit is disconnected.
+ */
+public class OutboundMailbox implements Runnable {
+    /**
+     * Separates the messages in a text frame. Json never contains a raw line break.
+     */
+    public static final char TEXT_SEPARATOR = '\n';
+    //how many ticks may wait in the socket's own queue before messages are held back here
+    private static final int MAX_SOCKET_TICKS = 4;
+
+    private final PlayerMessageTransmitter transmitter;
+    private final WebSocket connection;
+    private final long limitBytes;
+
+    //guarded by this
+    private final ArrayDeque<Message> queue = new ArrayDeque<>();
+    private Message pendingSnapshot;
+    private long queuedBytes;
+    //whether the mailbox is waiting for a flush or being written, so it must not be flushed again
+    private boolean pending;
+    private boolean closed;
+    //only written by the thread writing the mailbox, one at a time
+    private volatile long sentBytes;
+    //how many buffers the last flush was queued on the socket as, only used by the thread writing the mailbox
+    private int buffersPerFlush = 1;
+    //held while a frame is queued on the socket, so nothing else sent on the connection lands in the middle of it
+    private final Object writeLock = new Object();
+
+    OutboundMailbox(final PlayerMessageTransmitter transmitter, final WebSocket connection, final long limitBytes) {
+        this.transmitter = transmitter;
+        this.connection = connection;
+        this.limitBytes = limitBytes;
+    }
+
+    /**
+     * Queues a message until the next flush.
+     * @param message
+     * @param snapshot Whether the message replaces any snapshot still waiting to be written.
+     */
+    void offer(final Message message, final boolean snapshot) {
+        final boolean flush;
+        final boolean overflowed;
+        synchronized (this) {
+            if(closed) {
+                return;
+            }
+            if(snapshot) {
+                if(pendingSnapshot != null && queue.remove(pendingSnapshot)) {
+                    queuedBytes -= pendingSnapshot.getLength();
+                }
+                pendingSnapshot = message;
+            }
+            queue.add(message);
+            queuedBytes += message.getLength();
+
+            overflowed = queuedBytes > limitBytes;
+            if(overflowed) {
+                closed = true;
+                queue.clear();
+                pendingSnapshot = null;
+                queuedBytes = 0;
+                flush = false;
+            }
+            else {
+                flush = !pending;
+                pending = true;
+            }
+        }
+
+        if(overflowed) {
+            System.out.println("Disconnecting " + connection.getRemoteSocketAddress()
+                + ", more than " + limitBytes + " bytes are waiting to be sent to it.");
+            connection.close(CloseFrame.POLICY_VALIDATION, "Too far behind.");
+        }
+        else if(flush) {
+            transmitter.flushLater(this);
+        }
+    }
+
+    /**
+     * Writes everything queued as one frame, unless the socket is backed up. Messages which were held back or which
+     * arrived while writing are written by the next flush.
+     */
+    @Override
+    public void run() {
+        final List<Message> batch;
+        synchronized (this) {
+            if(closed || !connection.isOpen()) {
+                queue.clear();
+                pendingSnapshot = null;
+                queuedBytes = 0;
+                pending = false;
+                return;
+            }
+            if(isSocketBackedUp()) {
+                batch = null;
+            }
+            else {
+                batch = new ArrayList<>(queue);
+                queue.clear();
+                pendingSnapshot = null;
+                queuedBytes = 0;
+            }
+        }
+
+        if(batch != null && !batch.isEmpty()) {
+            long length = 0;
+            for(final Message message: batch) {
+                length += message.getLength();
+            }
+            sentBytes += length;
+            try {
+                write(batch);
+            }
+            catch(final RuntimeException ex) {
+                //the connection closed while writing, the next flush clears the queue
+                System.out.println("Failed to send to " + connection.getRemoteSocketAddress() + ": " + ex.getMessage());
+            }
+        }
+
+        final boolean flush;
+        synchronized (this) {
+            flush = !queue.isEmpty();
+            pending = flush;
+        }
+        if(flush) {
+            transmitter.flushLater(this);
+        }
+    }
+
+    /**
+     * Gets how many bytes have been handed to the socket so far, counted like the byte limit.
+     * @return
+     */
+    long getSentBytes() {
+        return this.sentBytes;
+    }
+
+    /**
+     * Gets how many bytes are waiting to be sent, both in the mailbox and in the socket's own queue.
+     * @return
+     */
+    long getBacklogBytes() {
+        long backlog;
+        synchronized (this) {
+            backlog = queuedBytes;
+        }
+        if(connection instanceof WebSocketImpl) {
+            //the writer threads may be draining the buffers meanwhile, close enough for an estimate
+            for(final ByteBuffer buffer: ((WebSocketImpl)connection).outQueue) {
+                backlog += buffer.remaining();
+            }
+        }
+        return backlog;
+    }
+
+    /**
+     * Sends a frame of the connection's own, such as a ping, between two of the frames written by the mailbox.
+     * @param frame
+     */
+    void sendFrame(final Framedata frame) {
+        synchronized (writeLock) {
+            connection.sendFrame(frame);
+        }
+    }
+
+    private void write(final List<Message> batch) {
+        if(batch.size() == 1) {
+            synchronized (writeLock) {
+                batch.get(0).write(transmitter, connection);
+            }
+            buffersPerFlush = 1;
+            return;
+        }
+
+        boolean text = true;
+        for(final Message message: batch) {
+            text &= message.isText();
+        }
+
+        //the bytes between two shared payloads are collected into one part, the shared payloads are only viewed
+        final List<ByteBuffer> parts = new ArrayList<>();
+        final BinaryWriter between = new BinaryWriter(256);
+        if(!text) {
+            between.writeByte(BinaryCodec.TICK_BUNDLE);
+        }
+        for(int i = 0; i < batch.size(); i++) {
+            final Message message = batch.get(i);
+            final ByteBuffer payload = message.getPayload();
+            if(text) {
+                if(i > 0) {
+                    between.writeByte(TEXT_SEPARATOR);
+                }
+            }
+            else {
+                BinaryCodec.writeTickBundlePrefix(between, payload.remaining(), message.isText());
+            }
+
+            if(message.isShared()) {
+                if(between.size() > 0) {
+                    parts.add(between.toByteBuffer());
+                    between.clear();
+                }
+                parts.add(payload);
+            }
+            else {
+                between.writeBytes(payload);
+            }
+        }
+        if(between.size() > 0) {
+            parts.add(between.toByteBuffer());
+        }
+
+        synchronized (writeLock) {
+            buffersPerFlush = transmitter.writeGathered(connection, text, parts);
+        }
+    }
+
+    private boolean isSocketBackedUp() {
+        return connection instanceof WebSocketImpl
+            && ((WebSocketImpl)connection).outQueue.size() >= MAX_SOCKET_TICKS * buffersPerFlush;
+    }
+
+    /**
+     * A message in a mailbox: a text message, a binary message or a frame shared with other clients.
+     */
+    static class Message {
+        private final String text;
+        private final ByteBuffer binary;
+        private final SharedFrame frame;
+
+        Message(final String text, final ByteBuffer binary, final SharedFrame frame) {
+            this.text = text;
+            this.binary = binary;
+            this.frame = frame;
+        }
+
+        boolean isShared() {
+            return this.frame != null;
+        }
+
+        boolean isText() {
+            return text != null || (frame != null && frame.isText());
+        }
+
+        /**
+         * Gets roughly how many bytes the message takes on the wire. Json is counted one byte per character.
+         * @return
+         */
+        long getLength() {
+            if(text != null) {
+                return text.length();
+            }
+            else if(binary != null) {
+                return binary.remaining();
+            }
+            return frame.getFrameLength();
+        }
+
+        /**
+         * Gets the encoded message, the UTF-8 bytes of a text message.
+         * @return
+         */
+        ByteBuffer getPayload() {
+            if(text != null) {
+                return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+            }
+            else if(binary != null) {
+                return binary.duplicate();
+            }
+            return frame.getPayload();
+        }
+
+        void write(final PlayerMessageTransmitter transmitter, final WebSocket connection) {
+            if(text != null) {
+                connection.send(text);
+            }
+            else if(binary != null) {
+                connection.send(binary.duplicate());
+            }
+            else {
+                transmitter.writeFrame(connection, frame);
+            }
+        }
+    }
+}
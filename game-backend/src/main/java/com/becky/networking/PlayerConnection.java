@@ -0,0 +1,67 @@
+package com.becky.networking;
+
+import com.becky.world.entity.Player;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketAdapter;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.server.DefaultWebSocketServerFactory;
+
+import java.util.List;
+
+/**
+ * A server connection which knows the player playing on it.
+ *
+ * The player is attached when it is created for the connection, so every message arriving on the connection finds its
+ * player without looking it up by name or searching the players of the world. The connection is trusted to identify
+ * the player, messages don't need to carry credentials.
+ */
+public class PlayerConnection extends WebSocketImpl {
+    private volatile Player player;
+
+    public PlayerConnection(final WebSocketAdapter listener, final List<Draft> drafts) {
+        super(listener, drafts);
+    }
+
+    public PlayerConnection(final WebSocketAdapter listener, final Draft draft) {
+        super(listener, draft);
+    }
+
+    /**
+     * Gets the player attached to a connection.
+     * @param connection
+     * @return The player, or null if none is attached or the connection wasn't created by a {@link Factory}.
+     */
+    public static Player getPlayer(final WebSocket connection) {
+        if(connection instanceof PlayerConnection) {
+            return ((PlayerConnection)connection).player;
+        }
+        return null;
+    }
+
+    /**
+     * Attaches a player to a connection, or detaches it when the player is null.
+     * @param connection
+     * @param player
+     */
+    public static void setPlayer(final WebSocket connection, final Player player) {
+        if(connection instanceof PlayerConnection) {
+            ((PlayerConnection)connection).player = player;
+        }
+    }
+
+    /**
+     * Creates the connections of a server as player connections.
+     */
+    public static class Factory extends DefaultWebSocketServerFactory {
+        @Override
+        public WebSocketImpl createWebSocket(final WebSocketAdapter adapter, final Draft draft) {
+            return new PlayerConnection(adapter, draft);
+        }
+
+        @Override
+        public WebSocketImpl createWebSocket(final WebSocketAdapter adapter, final List<Draft> drafts) {
+            return new PlayerConnection(adapter, drafts);
+        }
+    }
+}
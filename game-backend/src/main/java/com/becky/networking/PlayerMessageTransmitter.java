@@ -1,22 +1,252 @@
 package com.becky.networking;
 
 import com.becky.world.entity.Player;
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.TextFrame;
+import org.java_websocket.server.WebSocketServer;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 /**
  * Message transmitter designed to transmit messages to players.
+ * Messages are queued in the {@link OutboundMailbox} of the player until the end of the tick, then written in order by
+ * a pool of writer threads.
  * Created by Clayton on 10/10/2017.
  */
 public class PlayerMessageTransmitter {
     private final ExecutorService threadPool = Executors.newFixedThreadPool(10);
+    private final long mailboxLimitBytes;
+    private final long tickNanos;
+    private final int maxSnapshotInterval;
+    private volatile WebSocketServer server;
+    //mailboxes with messages waiting for the next flush
+    private final List<OutboundMailbox> flushQueue = new ArrayList<>();
+
+    /**
+     * @param mailboxLimitBytes How many bytes may wait to be sent to a client before it is disconnected.
+     * @param tickNanos
+     * @param maxSnapshotInterval The most ticks between two snapshots sent to a client with a poor link.
+     */
+    public PlayerMessageTransmitter(final long mailboxLimitBytes, final long tickNanos, final int maxSnapshotInterval) {
+        this.mailboxLimitBytes = mailboxLimitBytes;
+        this.tickNanos = tickNanos;
+        this.maxSnapshotInterval = maxSnapshotInterval;
+    }
+
+    /**
+     * Sets the server whose connections messages are sent on. Until it is set shared frames are sent like any other
+     * message.
+     * @param server
+     */
+    public void setServer(final WebSocketServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Creates the mailbox for the messages sent to one connection.
+     * @param connection
+     * @return
+     */
+    public OutboundMailbox createMailbox(final WebSocket connection) {
+        return new OutboundMailbox(this, connection, mailboxLimitBytes);
+    }
+
+    /**
+     * Creates the controller which decides how often a connection is sent snapshots.
+     * @param mailbox The mailbox of the connection.
+     * @return
+     */
+    public SendRateController createSendRateController(final OutboundMailbox mailbox) {
+        return new SendRateController(mailbox, tickNanos, maxSnapshotInterval);
+    }
 
     public void transmitMessage(final Player client, final String message) {
-        threadPool.submit(() -> {
-            if(client.getConnection().isOpen()) {
-                client.getConnection().send(message);
+        client.getMailbox().offer(new OutboundMailbox.Message(message, null, null), false);
+    }
+
+    /**
+     * Transmits a binary message. The same buffer may be passed for several players, each send reads its own view of it.
+     * @param client
+     * @param message
+     */
+    public void transmitMessage(final Player client, final ByteBuffer message) {
+        client.getMailbox().offer(new OutboundMailbox.Message(null, message, null), false);
+    }
+
+    /**
+     * Transmits a message which was framed once for every player it is sent to.
+     * @param client
+     * @param message
+     */
+    public void transmitMessage(final Player client, final SharedFrame message) {
+        client.getMailbox().offer(new OutboundMailbox.Message(null, null, message), false);
+    }
+
+    /**
+     * Transmits the state of the world. A state which is still waiting to be sent when the next one is transmitted is
+     * dropped, so only use this for messages which fully replace the previous one.
+     * @param client
+     * @param message
+     */
+    public void transmitSnapshot(final Player client, final String message) {
+        client.getMailbox().offer(new OutboundMailbox.Message(message, null, null), true);
+    }
+
+    /**
+     * Transmits the state of the world as a binary message, see {@link #transmitSnapshot(Player, String)}.
+     * @param client
+     * @param message
+     */
+    public void transmitSnapshot(final Player client, final ByteBuffer message) {
+        client.getMailbox().offer(new OutboundMailbox.Message(null, message, null), true);
+    }
+
+    /**
+     * Transmits the state of the world as a shared frame, see {@link #transmitSnapshot(Player, String)}.
+     * @param client
+     * @param message
+     */
+    public void transmitSnapshot(final Player client, final SharedFrame message) {
+        client.getMailbox().offer(new OutboundMailbox.Message(null, null, message), true);
+    }
+
+    /**
+     * Writes out the messages sent since the last flush, one frame per client. Called by the game loop at the end of
+     * every tick.
+     */
+    public void flush() {
+        final List<OutboundMailbox> mailboxes;
+        synchronized (this.flushQueue) {
+            if(flushQueue.isEmpty()) {
+                return;
+            }
+            mailboxes = new ArrayList<>(flushQueue);
+            flushQueue.clear();
+        }
+        for(final OutboundMailbox mailbox: mailboxes) {
+            threadPool.execute(mailbox);
+        }
+    }
+
+    /**
+     * Stops the writer threads once the messages already flushed have been written. Nothing can be sent afterwards.
+     */
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    void flushLater(final OutboundMailbox mailbox) {
+        synchronized (this.flushQueue) {
+            flushQueue.add(mailbox);
+        }
+    }
+
+    /**
+     * Writes a shared frame to a connection. The frame is queued on the connection as it is, connections which can't
+     * take it are sent the message the usual way.
+     * @param connection
+     * @param message
+     */
+    void writeFrame(final WebSocket connection, final SharedFrame message) {
+        final WebSocketServer server = this.server;
+        if(server != null && connection instanceof WebSocketImpl && connection.getDraft() instanceof Draft_6455) {
+            //Java-WebSocket has no public way to write raw bytes, so the frame is put on the connection's outgoing
+            //queue and the server is told there is something to write, the same as its own send does
+            final WebSocketImpl socket = (WebSocketImpl)connection;
+            try {
+                socket.outQueue.put(message.getFrame());
             }
-        });
+            catch(final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            server.onWriteDemand(socket);
+        }
+        else if(message.isText()) {
+            connection.send(message.getText());
+        }
+        else {
+            connection.send(message.getPayload());
+        }
+    }
+
+    /**
+     * Writes one frame whose payload is the given parts one after another. The parts are queued on the connection as
+     * they are, behind a frame header for their total length, so views of shared payloads can go in without being
+     * copied. Connections which can't take raw bytes are sent the parts copied into one message. The caller makes sure
+     * nothing else is sent on the connection meanwhile.
+     * @param connection
+     * @param text Whether the frame is a text frame.
+     * @param parts
+     * @return How many buffers were queued on the connection.
+     */
+    int writeGathered(final WebSocket connection, final boolean text, final List<ByteBuffer> parts) {
+        long length = 0;
+        for(final ByteBuffer part: parts) {
+            length += part.remaining();
+        }
+
+        final WebSocketServer server = this.server;
+        if(server != null && connection instanceof WebSocketImpl && connection.getDraft() instanceof Draft_6455) {
+            final WebSocketImpl socket = (WebSocketImpl)connection;
+            try {
+                socket.outQueue.put(frameHeader(text, length));
+                for(final ByteBuffer part: parts) {
+                    socket.outQueue.put(part);
+                }
+            }
+            catch(final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return 1;
+            }
+            server.onWriteDemand(socket);
+            return parts.size() + 1;
+        }
+
+        final ByteBuffer payload = ByteBuffer.allocate((int)length);
+        for(final ByteBuffer part: parts) {
+            payload.put(part);
+        }
+        payload.flip();
+        if(text) {
+            final TextFrame frame = new TextFrame();
+            frame.setFin(true);
+            frame.setPayload(payload);
+            connection.sendFrame(frame);
+        }
+        else {
+            connection.send(payload);
+        }
+        return 1;
+    }
+
+    /**
+     * Gets the header of an unmasked, final websocket frame, see RFC 6455 section 5.2.
+     * @param text
+     * @param length The length of the payload.
+     * @return
+     */
+    private static ByteBuffer frameHeader(final boolean text, final long length) {
+        final ByteBuffer header = ByteBuffer.allocate(10);
+        header.put((byte)(0x80 | (text ? 0x1 : 0x2)));
+        if(length < 126) {
+            header.put((byte)length);
+        }
+        else if(length <= 0xFFFF) {
+            header.put((byte)126);
+            header.putShort((short)length);
+        }
+        else {
+            header.put((byte)127);
+            header.putLong(length);
+        }
+        header.flip();
+        return header;
     }
 }
@@ -0,0 +1,201 @@
+package com.becky.networking;
+
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.framing.PingFrame;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Decides how often one client is sent the state of the world, from how well its link keeps up.
+ *
+ * The server pings the client every half second with the time in the ping, and the client echoes it back in its pong.
+ * Since the ping is queued behind everything sent before it, each pong gives the round trip time including the time
+ * spent in the queues, and how many bytes were delivered since the previous pong. The smallest round trip time seen
+ * recently is taken as the time the link needs without any queueing.
+ *
+ * Every time a snapshot is due the link is checked. If the queues delay the snapshots by more than the time between
+ * two of them, or the bytes still waiting would take longer than that to deliver, the interval is doubled, up to the
+ * configured floor rate. After a second without either, the interval goes back down a tick at a time. Between
+ * snapshots the client is still told about bullets and npcs which spawned or died, just not where the others moved.
+ * Every other message is still sent each tick.
+ */
+public class SendRateController {
+    private static final long PING_INTERVAL_NANOS = 500_000_000L;
+    //a client which hasn't answered for this long is pinged again, the old ping still counts as outstanding
+    private static final long PING_TIMEOUT_NANOS = 5_000_000_000L;
+    private static final long MIN_RTT_WINDOW_NANOS = 10_000_000_000L;
+    private static final long RECOVERY_NANOS = 1_000_000_000L;
+    private static final int PING_PAYLOAD_LENGTH = 8;
+
+    private final OutboundMailbox mailbox;
+    private final long tickNanos;
+    private final int maxInterval;
+
+    //link estimates, guarded by this since pongs arrive on the network threads
+    private long pingSentNanos;
+    private long pingSentBytes;
+    private boolean pingAppLimited;
+    private boolean pingOutstanding;
+    private long smoothedRttNanos = -1;
+    private long minRttNanos = -1;
+    private long minRttSampledNanos;
+    private long deliveredBytes = -1;
+    private long deliveredNanos;
+    private double deliveryRate = -1;
+
+    //only used by the game loop
+    private int interval = 1;
+    private int ticksSinceSnapshot;
+    private long healthySinceNanos;
+
+    /**
+     * @param mailbox The mailbox of the connection, which knows how much is waiting to be sent.
+     * @param tickNanos
+     * @param maxInterval The most ticks between two snapshots. 1 sends a snapshot every tick whatever the link.
+     */
+    SendRateController(final OutboundMailbox mailbox, final long tickNanos, final int maxInterval) {
+        this.mailbox = mailbox;
+        this.tickNanos = tickNanos;
+        this.maxInterval = Math.max(1, maxInterval);
+    }
+
+    /**
+     * Called by the game loop once per tick for each client.
+     * @param now The time of the tick, from System.nanoTime.
+     * @return Whether the client is sent a snapshot this tick.
+     */
+    public boolean isSnapshotDue(final long now) {
+        if(maxInterval == 1) {
+            return true;
+        }
+        ping(now);
+        if(++ticksSinceSnapshot < interval) {
+            return false;
+        }
+        ticksSinceSnapshot = 0;
+        adapt(now);
+        return true;
+    }
+
+    /**
+     * Gets the number of ticks between two snapshots.
+     * @return
+     */
+    public int getInterval() {
+        return this.interval;
+    }
+
+    /**
+     * Gets the smoothed round trip time to the client.
+     * @return The time in nanoseconds, or -1 until the client first answered a ping.
+     */
+    public synchronized long getSmoothedRttNanos() {
+        return this.smoothedRttNanos;
+    }
+
+    /**
+     * Gets the rate the link has been seen to deliver.
+     * @return Bytes per second, or -1 until there were two pongs.
+     */
+    public synchronized double getDeliveryRate() {
+        return this.deliveryRate;
+    }
+
+    /**
+     * Takes the pong a client sent back for a ping. Pongs to pings sent by anything else are ignored.
+     * @param pong
+     */
+    public void onPong(final Framedata pong) {
+        final ByteBuffer payload = pong.getPayloadData();
+        if(payload == null || payload.remaining() != PING_PAYLOAD_LENGTH) {
+            return;
+        }
+        final long sentNanos = payload.getLong(payload.position());
+        final long now = System.nanoTime();
+
+        synchronized (this) {
+            if(!pingOutstanding || sentNanos != pingSentNanos) {
+                return;
+            }
+            pingOutstanding = false;
+
+            //the smoothing of TCP's round trip estimate, RFC 6298
+            final long rtt = now - sentNanos;
+            smoothedRttNanos = smoothedRttNanos < 0 ? rtt : smoothedRttNanos + (rtt - smoothedRttNanos) / 8;
+            if(minRttNanos < 0 || rtt <= minRttNanos || now - minRttSampledNanos > MIN_RTT_WINDOW_NANOS) {
+                minRttNanos = rtt;
+                minRttSampledNanos = now;
+            }
+
+            //everything handed to the socket before the ping has arrived by the time the pong is back
+            if(deliveredBytes >= 0 && now > deliveredNanos) {
+                final double sample = (pingSentBytes - deliveredBytes) * 1e9 / (now - deliveredNanos);
+                if(deliveryRate < 0) {
+                    deliveryRate = sample;
+                }
+                else if(pingAppLimited) {
+                    //with nothing waiting the link was idle part of the time, so the sample can only be too low
+                    deliveryRate = Math.max(deliveryRate, sample);
+                }
+                else {
+                    deliveryRate += (sample - deliveryRate) / 8;
+                }
+            }
+            deliveredBytes = pingSentBytes;
+            deliveredNanos = now;
+        }
+    }
+
+    private void ping(final long now) {
+        synchronized (this) {
+            final long sinceLastPing = now - pingSentNanos;
+            if(pingOutstanding ? sinceLastPing < PING_TIMEOUT_NANOS : sinceLastPing < PING_INTERVAL_NANOS) {
+                return;
+            }
+            pingSentNanos = now;
+            pingSentBytes = mailbox.getSentBytes();
+            pingAppLimited = mailbox.getBacklogBytes() == 0;
+            pingOutstanding = true;
+        }
+
+        final ByteBuffer payload = ByteBuffer.allocate(PING_PAYLOAD_LENGTH);
+        payload.putLong(0, now);
+        final PingFrame frame = new PingFrame();
+        frame.setPayload(payload);
+        try {
+            //through the mailbox, so the ping isn't written into the middle of a frame being queued
+            mailbox.sendFrame(frame);
+        }
+        catch(final WebsocketNotConnectedException ex) {
+            //the connection is closing, the player is removed once it has closed
+        }
+    }
+
+    private void adapt(final long now) {
+        final long budgetNanos = interval * tickNanos;
+        final long queueingNanos;
+        final long drainNanos;
+        final long backlog = mailbox.getBacklogBytes();
+        synchronized (this) {
+            if(smoothedRttNanos < 0) {
+                queueingNanos = 0;
+            }
+            else {
+                //a ping which is still out counts with the time it has taken so far
+                final long rtt = pingOutstanding ? Math.max(smoothedRttNanos, now - pingSentNanos) : smoothedRttNanos;
+                queueingNanos = rtt - minRttNanos;
+            }
+            drainNanos = deliveryRate > 0 ? (long)(backlog * 1e9 / deliveryRate) : 0;
+        }
+
+        if(queueingNanos > budgetNanos || drainNanos > budgetNanos) {
+            interval = Math.min(maxInterval, interval * 2);
+            healthySinceNanos = now;
+        }
+        else if(interval > 1 && now - healthySinceNanos >= RECOVERY_NANOS) {
+            interval--;
+            healthySinceNanos = now;
+        }
+    }
+}
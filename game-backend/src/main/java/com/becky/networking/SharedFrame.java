@@ -0,0 +1,88 @@
+package com.becky.networking;
+
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.framing.BinaryFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.TextFrame;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message which is sent to many clients, encoded and framed once.
+ *
+ * Frames sent by a server are never masked, so the bytes of a websocket frame are the same for every connection and
+ * can be written to each of them as they are. The encoded payload is kept as well, for connections which can't take
+ * the frame and for bundling the message with others.
+ */
+public class SharedFrame {
+    private static final Draft_6455 FRAMING = new Draft_6455();
+
+    private final String text;
+    private final ByteBuffer payload;
+    private final ByteBuffer frame;
+
+    private SharedFrame(final String text, final ByteBuffer payload, final DataFrame frameData) {
+        this.text = text;
+        this.payload = payload;
+
+        frameData.setFin(true);
+        frameData.setPayload(payload.duplicate());
+        final ByteBuffer frame;
+        synchronized (FRAMING) {
+            frame = FRAMING.createBinaryFrame(frameData);
+        }
+        this.frame = frame.asReadOnlyBuffer();
+    }
+
+    /**
+     * Frames a text message.
+     * @param message
+     * @return
+     */
+    public static SharedFrame text(final String message) {
+        final ByteBuffer utf8 = ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)).asReadOnlyBuffer();
+        return new SharedFrame(message, utf8, new TextFrame());
+    }
+
+    /**
+     * Frames a binary message. The buffer must not be changed afterwards.
+     * @param message
+     * @return
+     */
+    public static SharedFrame binary(final ByteBuffer message) {
+        return new SharedFrame(null, message.asReadOnlyBuffer(), new BinaryFrame());
+    }
+
+    public boolean isText() {
+        return this.text != null;
+    }
+
+    public String getText() {
+        return this.text;
+    }
+
+    /**
+     * Gets a view of the encoded message, the UTF-8 bytes of a text message.
+     * @return
+     */
+    public ByteBuffer getPayload() {
+        return this.payload.duplicate();
+    }
+
+    /**
+     * Gets a view of the framed bytes. Each connection needs its own view since writing it moves its position.
+     * @return
+     */
+    public ByteBuffer getFrame() {
+        return this.frame.duplicate();
+    }
+
+    /**
+     * Gets the number of bytes written to a connection for this message.
+     * @return
+     */
+    public int getFrameLength() {
+        return this.frame.remaining();
+    }
+}
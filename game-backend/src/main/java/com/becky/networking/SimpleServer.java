@@ -1,7 +1,6 @@
 package com.becky.networking;
 
 import com.becky.util.StringUtils;
-import com.becky.networking.message.BulletInfo;
 import com.becky.networking.message.ClientInputStateUpdate;
 import com.becky.networking.message.InitialPlayerList;
 import com.becky.networking.message.InitialServerJoinState;
@@ -9,52 +8,65 @@ import com.becky.networking.message.PlayerListChange;
 import com.becky.networking.message.ServerPlayerUpdate;
 import com.becky.networking.message.ServerUsernameRequestStatus;
 import com.becky.networking.message.UsernameChangeRequest;
+import com.becky.networking.protocol.BinaryCodec;
+import com.becky.networking.protocol.WireFormat;
 import com.becky.world.NewGameWorld;
-import com.becky.world.entity.Bullet;
-import com.becky.world.entity.GameEntity;
 import com.becky.world.entity.Player;
+import com.becky.world.entity.PlayerInput;
 import org.java_websocket.WebSocket;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
-import org.json.JSONArray;
 
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 
 public class SimpleServer extends WebSocketServer {
+    private static final String INPUT_PREFIX = ClientInputStateUpdate.class.getSimpleName() + ":";
+    private static final String USERNAME_CHANGE_PREFIX = UsernameChangeRequest.class.getSimpleName() + ":";
+    private static final String PING_PREFIX = "PING:";
+
     private final NewGameWorld gameInstance;
 
     public SimpleServer(final InetSocketAddress addr, final NewGameWorld gameInstance){
         super(addr);
         this.gameInstance = gameInstance;
+        //every connection carries its player, see PlayerConnection
+        setWebSocketFactory(new PlayerConnection.Factory());
     }
 
     @Override
     public void onError(final WebSocket webSocket, final Exception e) {
         System.out.println("It done fucked up. Here's your info:" + e.toString());
 
-        final Player player = gameInstance.getPlayerByConnection(webSocket);
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
         if(player != null) {
             sendUserJoinedGameMessage(player.getPlayerUsername(), false);
-            gameInstance.removePlayerByUsername(player.getPlayerUsername());
+            gameInstance.removePlayer(player);
         }
     }
 
     @Override
     public void onStart() {
+        //shared frames are written straight to the connections of this server
+        gameInstance.getMessageTransmitter().setServer(this);
         System.out.println("Yay it started..... \nHopefully you have no errors......\nHave fun....");
+        System.out.println("Listening on port " + getPort() + ", "
+            + ManagementFactory.getRuntimeMXBean().getUptime() + " ms after the JVM started.");
     }
 
     @Override
     public void onClose(final WebSocket webSocket, final int i, final String s, final boolean val) {
-        final Player player = gameInstance.getPlayerByConnection(webSocket);
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
         if(player == null) {
             System.out.println("Unknown player disconnected. Reason: " + s);
         }
         else {
-            gameInstance.removePlayerByUsername(player.getPlayerUsername());
+            gameInstance.removePlayer(player);
             sendUserJoinedGameMessage(player.getPlayerUsername(), false);
             System.out.println("Player " + player.getPlayerUsername() + " disconnected. Reason: " + s);
         }
@@ -68,20 +80,19 @@ public class SimpleServer extends WebSocketServer {
         final int port = remoteAddress.getPort();
         System.out.println(String.format("Connection received from: %s:%d", ip, port));
 
-        //Create and add the player to the game
-        String username = StringUtils.generateRandomUsername();
-        while(gameInstance.getPlayerByUsername(username) != null) {
-            //make sure the username is unique
-            username = StringUtils.generateRandomUsername();
-        }
-        final String auth = StringUtils.generateUniqueAuthenticationString();
-        final Player player = new Player(gameInstance, username, auth, webSocket);
-        gameInstance.addPlayer(player);
+        //Create and add the player to the game, the registry only takes it if its username and token are unique
+        final WireFormat wireFormat = WireFormat.fromResourceDescriptor(clientHandshake.getResourceDescriptor());
+        Player player;
+        do {
+            player = new Player(gameInstance, StringUtils.generateRandomUsername(),
+                StringUtils.generateAuthenticationString(), webSocket);
+            player.setWireFormat(wireFormat);
+        } while(!gameInstance.addPlayer(player));
 
         //Setup the initial join state of the player
         final InitialServerJoinState initialJoinState = new InitialServerJoinState();
-        initialJoinState.setAuthenticationString(auth);
-        initialJoinState.setInitialUsername(username);
+        initialJoinState.setAuthenticationString(player.getAuthenticationString());
+        initialJoinState.setInitialUsername(player.getPlayerUsername());
         initialJoinState.setInitialLocationX(player.getXPosition());
         initialJoinState.setInitialLocationY(player.getYPosition());
 
@@ -93,18 +104,55 @@ public class SimpleServer extends WebSocketServer {
     @Override
     public void onMessage(final WebSocket webSocket, final String message) {
         try {
-            //Player input state has changed
-            if (message.startsWith(ClientInputStateUpdate.class.getSimpleName())) {
-                handlePlayerInputStateMessage(message);
+            if(message.isEmpty()) {
+                return;
             }
-            //player has requested a username change
-            else if (message.startsWith(UsernameChangeRequest.class.getSimpleName())) {
-                handlePlayerUsernameChangeRequest(message, webSocket);
+            //the first character tells apart the messages a client sends, only the name it picks is checked
+            switch(message.charAt(0)) {
+                case 'C':
+                    //Player input state has changed
+                    if(message.startsWith(INPUT_PREFIX)) {
+                        handlePlayerInputStateMessage(message, webSocket);
+                    }
+                    break;
+                case 'U':
+                    //player has requested a username change
+                    if(message.startsWith(USERNAME_CHANGE_PREFIX)) {
+                        handlePlayerUsernameChangeRequest(message, webSocket);
+                    }
+                    break;
+                case 'P':
+                    if(message.startsWith(PING_PREFIX)) {
+                        //the echo waits for the end of the tick like every other message, so the ping includes it
+                        reply(webSocket, message);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        catch(final RuntimeException ex) {
+            System.out.println("OnMessage Error: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(final WebSocket webSocket, final ByteBuffer message) {
+        try {
+            //binary messages carry no credentials, the connection they arrive on identifies the player
+            final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
+            if(player == null) {
+                return;
             }
-            else if(message.startsWith("PING:")) {
-                if(webSocket.isOpen()){
-                    webSocket.send(message);
-                }
+            switch(BinaryCodec.peekMessageType(message)) {
+                case BinaryCodec.CLIENT_INPUT:
+                    player.publishInput(BinaryCodec.decodeClientInput(message));
+                    break;
+                case BinaryCodec.SNAPSHOT_ACK:
+                    player.acknowledgeSnapshot(BinaryCodec.decodeSnapshotAck(message));
+                    break;
+                default:
+                    break;
             }
         }
         catch(final RuntimeException ex) {
@@ -112,26 +160,36 @@ public class SimpleServer extends WebSocketServer {
         }
     }
 
+    /**
+     * Pongs answering the server's own pings measure the link to the client, see {@link SendRateController}.
+     * @param webSocket
+     * @param frame
+     */
+    @Override
+    public void onWebsocketPong(final WebSocket webSocket, final Framedata frame) {
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
+        if(player != null) {
+            player.getSendRateController().onPong(frame);
+        }
+    }
+
     private void handlePlayerUsernameChangeRequest(final String message, final WebSocket webSocket) {
         final UsernameChangeRequest request = new UsernameChangeRequest(message);
         final ServerUsernameRequestStatus status = new ServerUsernameRequestStatus();
 
         try {
-            final Player player = validatePlayerCredentials(request.getOldUsername(), request.getAuthenticationString());
+            final Player player = validatePlayerCredentials(webSocket, request.getAuthenticationString());
             if(player.isUsernameFinal()) {
                 status.setStatus("failed");
                 status.setMessage("You already set your username.");
             }
-            else if(gameInstance.getPlayerByUsername(request.getNewUsername()) == null) {
-                gameInstance.removePlayerByUsername(request.getOldUsername());
-                player.setPlayerUsername(request.getNewUsername());
+            else if(gameInstance.renamePlayer(player, request.getNewUsername())) {
                 player.setUsernameFinal();
-                gameInstance.addPlayer(player);
                 status.setStatus("success");
                 status.setMessage(request.getNewUsername());
                 sendUserJoinedGameMessage(request.getNewUsername(), true);
                 sendInitialPlayerList(player);
-                sendInitialBulletsList(player);
+                gameInstance.sendInitialBullets(player);
             }
             else {
                 status.setStatus("failed");
@@ -142,44 +200,44 @@ public class SimpleServer extends WebSocketServer {
             status.setStatus("failed");
             status.setMessage(ex.getMessage());
         }
-        webSocket.send(status.jsonSerialize());
+        reply(webSocket, status.jsonSerialize());
     }
 
-    private void handlePlayerInputStateMessage(final String message) {
-        final ClientInputStateUpdate update = new ClientInputStateUpdate(message);
-        final Player p = gameInstance.getPlayerByUsername(update.getUsername());
-        if(p == null) {
-            return;
+    /**
+     * Answers a message from a client. Players are answered through their mailbox, so the answer can't overtake the
+     * messages the game loop already sent them. Connections without a player are answered right away.
+     * @param webSocket
+     * @param message
+     */
+    private void reply(final WebSocket webSocket, final String message) {
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
+        if(player != null) {
+            gameInstance.getMessageTransmitter().transmitMessage(player, message);
         }
-        if(!p.getAuthenticationString().equals(update.getAuthString())) {
-            throw new RuntimeException("Bad authentication string.");
+        else if(webSocket.isOpen()) {
+            webSocket.send(message);
         }
-        updatePlayerState(p, update);
     }
 
-    private void updatePlayerState(final Player player, final ClientInputStateUpdate stateChange) {
-        player.setXAcceleration(0.0f);
-        player.setYAcceleration(0.0f);
-        if(stateChange.isMovingUp()) {
-            player.setYAcceleration(-Player.ACCELERATION);
-        }
-        if(stateChange.isMovingDown()) {
-            player.setYAcceleration(player.getYAcceleration() + Player.ACCELERATION);
-        }
-        if(stateChange.isMovingLeft()) {
-            player.setXAcceleration(-Player.ACCELERATION);
-        }
-        if(stateChange.isMovingRight()) {
-            player.setXAcceleration(player.getXAcceleration() + Player.ACCELERATION);
+    private void handlePlayerInputStateMessage(final String message, final WebSocket webSocket) {
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
+        if(player == null) {
+            return;
         }
+        updatePlayerState(player, new ClientInputStateUpdate(message));
+    }
 
-        player.setFiringWeapon(stateChange.isShooting());
-        player.setAngles(stateChange.getAngle());
+    private void updatePlayerState(final Player player, final ClientInputStateUpdate stateChange) {
+        //the game loop applies the input at the start of its next tick
+        player.publishInput(new PlayerInput(
+            stateChange.isMovingUp(), stateChange.isMovingDown(),
+            stateChange.isMovingLeft(), stateChange.isMovingRight(),
+            stateChange.isShooting(), stateChange.getAngle()));
     }
 
-    private Player validatePlayerCredentials(final String username, final String authToken) {
-        final Player player = gameInstance.getPlayerByUsername(username);
-        if(!player.getAuthenticationString().equals(authToken)) {
+    private Player validatePlayerCredentials(final WebSocket webSocket, final String authToken) {
+        final Player player = gameInstance.getPlayerRegistry().getByConnection(webSocket);
+        if(player == null || !player.getAuthenticationString().equals(authToken)) {
             throw new RuntimeException("Bad authentication string.");
         }
         return player;
@@ -210,6 +268,7 @@ public class SimpleServer extends WebSocketServer {
             }
 
             final ServerPlayerUpdate update = new ServerPlayerUpdate();
+            update.setPlayerId(player.getEntityId());
             update.setPlayerName(player.getPlayerUsername());
             update.setPosX(player.getXPosition());
             update.setPosY(player.getYPosition());
@@ -220,19 +279,4 @@ public class SimpleServer extends WebSocketServer {
         initialPlayerList.setPlayers(updates);
         gameInstance.getMessageTransmitter().transmitMessage(dest, initialPlayerList.jsonSerialize());
     }
-
-    private void sendInitialBulletsList(final Player dest) {
-        final List<GameEntity> entities = gameInstance.getAllGameEntities();
-        final List<BulletInfo> bulletInfosList = new ArrayList<>();
-        for(final GameEntity entity: entities) {
-            if(entity instanceof Bullet) {
-                final Bullet bullet = (Bullet)entity;
-                final BulletInfo info = new BulletInfo(bullet.getOwner().getPlayerUsername(), Bullet.STATE_NEW_BULLET,
-                    bullet.getEntityId(), bullet.getXVelocity(), bullet.getYVelocity(), bullet.getXPosition(), bullet.getYPosition());
-                bulletInfosList.add(info);
-            }
-        }
-
-        gameInstance.getMessageTransmitter().transmitMessage(dest, BulletInfo.jsonSerialize(bulletInfosList));
-    }
 }
@@ -0,0 +1,345 @@
+package com.becky.networking.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads json one token at a time, used by the serializers generated for every message class.
+ *
+ * Values are read straight into the message instead of building a JSONObject first. Any json which is not well formed
+ * or does not have the expected shape throws an IllegalArgumentException, the same as the message constructors
+ * always have.
+ */
+public class JsonReader {
+    private final String json;
+    private int position;
+    //whether the next value is the first one of its object or array
+    private boolean first;
+
+    public JsonReader(final String json, final int position) {
+        this.json = json;
+        this.position = position;
+    }
+
+    /**
+     * Creates a reader for the json of a message, after checking it is prefixed with the name of the message.
+     * @param message
+     * @param name The simple name of the message class.
+     * @return
+     */
+    public static JsonReader forMessage(final String message, final String name) {
+        final int jsonStartIndex = message.indexOf('{');
+        if(jsonStartIndex == -1) {
+            throw new IllegalArgumentException("Invalid JSON Object");
+        }
+        if(!message.startsWith(name)) {
+            throw new IllegalArgumentException("The given JSON object is not a valid " + name + " object.");
+        }
+        return new JsonReader(message, jsonStartIndex);
+    }
+
+    public void beginObject() {
+        expect('{');
+        first = true;
+    }
+
+    public void endObject() {
+        expect('}');
+        first = false;
+    }
+
+    public void beginArray() {
+        expect('[');
+        first = true;
+    }
+
+    public void endArray() {
+        expect(']');
+        first = false;
+    }
+
+    /**
+     * Checks whether the current object or array has another value, and moves past the comma before it.
+     * @return
+     */
+    public boolean hasNext() {
+        final char c = peek();
+        if(c == '}' || c == ']') {
+            return false;
+        }
+        if(first) {
+            first = false;
+        }
+        else {
+            expect(',');
+        }
+        return true;
+    }
+
+    public String nextName() {
+        final String name = readString();
+        expect(':');
+        return name;
+    }
+
+    /**
+     * Checks whether the next value is null, and moves past it if it is.
+     * @return
+     */
+    public boolean skipNull() {
+        if(peek() == 'n') {
+            expectWord("null");
+            first = false;
+            return true;
+        }
+        return false;
+    }
+
+    public String readString() {
+        expect('"');
+        final int start = position;
+        while(position < json.length()) {
+            final char c = json.charAt(position);
+            if(c == '"') {
+                position++;
+                first = false;
+                return json.substring(start, position - 1);
+            }
+            if(c == '\\') {
+                return readEscapedString(start);
+            }
+            position++;
+        }
+        throw error("Unterminated string");
+    }
+
+    public boolean readBoolean() {
+        first = false;
+        if(peek() == 't') {
+            expectWord("true");
+            return true;
+        }
+        expectWord("false");
+        return false;
+    }
+
+    public int readInt() {
+        final String number = readNumber();
+        try {
+            return Integer.parseInt(number);
+        }
+        catch(final NumberFormatException ex) {
+            final double value = Double.parseDouble(number);
+            if(value != Math.rint(value) || value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                throw error("Expected an int but found " + number);
+            }
+            return (int)value;
+        }
+    }
+
+    public long readLong() {
+        final String number = readNumber();
+        try {
+            return Long.parseLong(number);
+        }
+        catch(final NumberFormatException ex) {
+            final double value = Double.parseDouble(number);
+            if(value != Math.rint(value) || value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
+                throw error("Expected a long but found " + number);
+            }
+            return (long)value;
+        }
+    }
+
+    public float readFloat() {
+        return Float.parseFloat(readNumber());
+    }
+
+    public double readDouble() {
+        return Double.parseDouble(readNumber());
+    }
+
+    public List<String> readStringList() {
+        final List<String> values = new ArrayList<>();
+        beginArray();
+        while(hasNext()) {
+            values.add(skipNull() ? null : readString());
+        }
+        endArray();
+        return values;
+    }
+
+    public String[] readStringArray() {
+        final List<String> values = readStringList();
+        return values.toArray(new String[values.size()]);
+    }
+
+    public int[] readIntArray() {
+        int[] values = new int[8];
+        int count = 0;
+        beginArray();
+        while(hasNext()) {
+            if(count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = readInt();
+        }
+        endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    public float[] readFloatArray() {
+        float[] values = new float[8];
+        int count = 0;
+        beginArray();
+        while(hasNext()) {
+            if(count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = readFloat();
+        }
+        endArray();
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * Skips over the next value, whatever it is, for names the message doesn't know.
+     */
+    public void skipValue() {
+        final char c = peek();
+        if(c == '{') {
+            beginObject();
+            while(hasNext()) {
+                nextName();
+                skipValue();
+            }
+            endObject();
+        }
+        else if(c == '[') {
+            beginArray();
+            while(hasNext()) {
+                skipValue();
+            }
+            endArray();
+        }
+        else if(c == '"') {
+            readString();
+        }
+        else if(c == 't' || c == 'f') {
+            readBoolean();
+        }
+        else if(!skipNull()) {
+            readNumber();
+        }
+    }
+
+    private String readEscapedString(final int start) {
+        final StringBuilder builder = new StringBuilder(json.length() - start);
+        builder.append(json, start, position);
+        while(position < json.length()) {
+            final char c = json.charAt(position++);
+            if(c == '"') {
+                first = false;
+                return builder.toString();
+            }
+            if(c != '\\') {
+                builder.append(c);
+                continue;
+            }
+            if(position >= json.length()) {
+                break;
+            }
+            final char escaped = json.charAt(position++);
+            switch(escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 'u':
+                    if(position + 4 > json.length()) {
+                        throw error("Unterminated escape");
+                    }
+                    try {
+                        builder.append((char)Integer.parseInt(json.substring(position, position + 4), 16));
+                    }
+                    catch(final NumberFormatException ex) {
+                        throw error("Invalid escape");
+                    }
+                    position += 4;
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private String readNumber() {
+        skipWhitespace();
+        final int start = position;
+        while(position < json.length()) {
+            final char c = json.charAt(position);
+            if((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                position++;
+            }
+            else {
+                break;
+            }
+        }
+        if(start == position) {
+            throw error("Expected a number");
+        }
+        first = false;
+        return json.substring(start, position);
+    }
+
+    private void expectWord(final String word) {
+        skipWhitespace();
+        if(!json.startsWith(word, position)) {
+            throw error("Expected " + word);
+        }
+        position += word.length();
+    }
+
+    private void expect(final char expected) {
+        if(peek() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+        position++;
+    }
+
+    private char peek() {
+        skipWhitespace();
+        if(position >= json.length()) {
+            throw error("Unexpected end of json");
+        }
+        return json.charAt(position);
+    }
+
+    private void skipWhitespace() {
+        while(position < json.length() && json.charAt(position) <= ' ') {
+            position++;
+        }
+    }
+
+    private IllegalArgumentException error(final String message) {
+        return new IllegalArgumentException(message + " at character " + position + ".");
+    }
+}
@@ -0,0 +1,225 @@
+package com.becky.networking.json;
+
+/**
+ * Writes json into a growable buffer, used by the serializers generated for every message class.
+ *
+ * The output matches org.json: numbers are written the way JSONObject writes them, strings are escaped the same way
+ * and null values are left out by the generated code. Each thread has one writer whose buffer is reused for every
+ * message it serializes.
+ */
+public class JsonWriter {
+    private static final ThreadLocal<JsonWriter> THREAD_WRITER = ThreadLocal.withInitial(() -> new JsonWriter(256));
+
+    private final StringBuilder buffer;
+    //whether the next value is the first one of its object or array
+    private boolean first = true;
+    //whether a name was just written, so the next value belongs to it
+    private boolean afterName = false;
+
+    public JsonWriter(final int initialCapacity) {
+        this.buffer = new StringBuilder(initialCapacity);
+    }
+
+    /**
+     * Gets the writer of the current thread, emptied. It may only be used until the thread asks for it again.
+     * @return
+     */
+    public static JsonWriter reusable() {
+        final JsonWriter writer = THREAD_WRITER.get();
+        writer.reset();
+        return writer;
+    }
+
+    public void reset() {
+        buffer.setLength(0);
+        first = true;
+        afterName = false;
+    }
+
+    /**
+     * Appends text as it is, such as the name prefix of a message.
+     * @param text
+     * @return
+     */
+    public JsonWriter raw(final String text) {
+        buffer.append(text);
+        return this;
+    }
+
+    public JsonWriter beginObject() {
+        beforeValue();
+        buffer.append('{');
+        first = true;
+        return this;
+    }
+
+    public JsonWriter endObject() {
+        buffer.append('}');
+        first = false;
+        return this;
+    }
+
+    public JsonWriter beginArray() {
+        beforeValue();
+        buffer.append('[');
+        first = true;
+        return this;
+    }
+
+    public JsonWriter endArray() {
+        buffer.append(']');
+        first = false;
+        return this;
+    }
+
+    public JsonWriter name(final String name) {
+        if(!first) {
+            buffer.append(',');
+        }
+        first = false;
+        quote(name);
+        buffer.append(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonWriter nullValue() {
+        beforeValue();
+        buffer.append("null");
+        return this;
+    }
+
+    public JsonWriter value(final String value) {
+        if(value == null) {
+            return nullValue();
+        }
+        beforeValue();
+        quote(value);
+        return this;
+    }
+
+    public JsonWriter value(final boolean value) {
+        beforeValue();
+        buffer.append(value);
+        return this;
+    }
+
+    public JsonWriter value(final int value) {
+        beforeValue();
+        buffer.append(value);
+        return this;
+    }
+
+    public JsonWriter value(final long value) {
+        beforeValue();
+        buffer.append(value);
+        return this;
+    }
+
+    public JsonWriter value(final float value) {
+        if(Float.isNaN(value) || Float.isInfinite(value)) {
+            throw new IllegalArgumentException("Json does not allow non-finite numbers.");
+        }
+        beforeValue();
+        appendNumber(Float.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(final double value) {
+        if(Double.isNaN(value) || Double.isInfinite(value)) {
+            throw new IllegalArgumentException("Json does not allow non-finite numbers.");
+        }
+        beforeValue();
+        appendNumber(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return buffer.toString();
+    }
+
+    private void beforeValue() {
+        if(afterName) {
+            afterName = false;
+        }
+        else {
+            if(!first) {
+                buffer.append(',');
+            }
+            first = false;
+        }
+    }
+
+    /**
+     * Appends a decimal number without the trailing zeros of its fraction, like JSONObject.numberToString.
+     * @param number
+     */
+    private void appendNumber(final String number) {
+        int end = number.length();
+        if(number.indexOf('.') > 0 && number.indexOf('e') < 0 && number.indexOf('E') < 0) {
+            while(number.charAt(end - 1) == '0') {
+                end--;
+            }
+            if(number.charAt(end - 1) == '.') {
+                end--;
+            }
+        }
+        buffer.append(number, 0, end);
+    }
+
+    /**
+     * Appends a quoted string, escaped like JSONObject.quote.
+     * @param value
+     */
+    private void quote(final String value) {
+        buffer.append('"');
+        char previous;
+        char c = 0;
+        for(int i = 0; i < value.length(); i++) {
+            previous = c;
+            c = value.charAt(i);
+            switch(c) {
+                case '\\':
+                case '"':
+                    buffer.append('\\').append(c);
+                    break;
+                case '/':
+                    //keeps "</script>" out of json embedded in html
+                    if(previous == '<') {
+                        buffer.append('\\');
+                    }
+                    buffer.append(c);
+                    break;
+                case '\b':
+                    buffer.append("\\b");
+                    break;
+                case '\t':
+                    buffer.append("\\t");
+                    break;
+                case '\n':
+                    buffer.append("\\n");
+                    break;
+                case '\f':
+                    buffer.append("\\f");
+                    break;
+                case '\r':
+                    buffer.append("\\r");
+                    break;
+                default:
+                    if(c < ' ' || (c >= 0x80 && c < 0xa0) || (c >= 0x2000 && c < 0x2100)) {
+                        final String hex = Integer.toHexString(c);
+                        buffer.append("\\u");
+                        for(int pad = hex.length(); pad < 4; pad++) {
+                            buffer.append('0');
+                        }
+                        buffer.append(hex);
+                    }
+                    else {
+                        buffer.append(c);
+                    }
+            }
+        }
+        buffer.append('"');
+    }
+}
@@ -1,15 +1,16 @@
 package com.becky.networking.message;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 import java.util.List;
 
 /**
  * The class of data to be sent to clients
  */
+@JsonMessage
 public class BulletInfo implements NetworkedMessage {
     private final String owner;
+    private final long ownerId;
     private final int state;
     private final long bulletId;
     private final Float velocityX;
@@ -17,10 +18,11 @@ public class BulletInfo implements NetworkedMessage {
     private final Float positionX;
     private final Float positionY;
 
-    public BulletInfo(final String owner, final int state, final long bulletId,
+    public BulletInfo(final String owner, final long ownerId, final int state, final long bulletId,
                       final Float velocityX, final Float velocityY,
                       final Float positionX, final Float positionY) {
         this.owner = owner;
+        this.ownerId = ownerId;
         this.state = state;
         this.bulletId = bulletId;
         this.velocityX = velocityX;
@@ -33,6 +35,14 @@ public class BulletInfo implements NetworkedMessage {
         return this.owner;
     }
 
+    /**
+     * Gets the entity id of the player who fired the bullet, or 0 if the owner is not sent.
+     * @return
+     */
+    public long getOwnerId() {
+        return this.ownerId;
+    }
+
     public int getState() {
         return this.state;
     }
@@ -59,10 +69,27 @@ public class BulletInfo implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return BulletInfo.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return BulletInfoSerializer.serialize(this);
     }
 
     public static String jsonSerialize(final List<BulletInfo> infos) {
-        return BulletInfo.class.getSimpleName() + "[]:" + new JSONArray(infos).toString();
+        return BulletInfoSerializer.serializeAll(infos);
+    }
+
+    /**
+     * Serializes this BulletInfo on its own, to be joined into an array by {@link #jsonSerializeElements(List)}.
+     * @return
+     */
+    public String jsonSerializeElement() {
+        return BulletInfoSerializer.serializeElement(this);
+    }
+
+    /**
+     * Builds the same message as serializing a whole list, from elements which were already serialized one by one.
+     * @param elements
+     * @return
+     */
+    public static String jsonSerializeElements(final List<String> elements) {
+        return BulletInfo.class.getSimpleName() + "[]:[" + String.join(",", elements) + "]";
     }
 }
@@ -1,74 +1,78 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
+import com.becky.networking.json.JsonReader;
 
 /**
  * Represents an input state change message from the client to the server.
+ * It carries no credentials, the connection it arrives on identifies the player.
  */
+@JsonMessage
 public class ClientInputStateUpdate implements NetworkedMessage {
-    private final String username;
-    private final String authString;
-    private final boolean movingUp;
-    private final boolean movingLeft;
-    private final boolean movingRight;
-    private final boolean movingDown;
-    private final boolean shooting;
-    private final float angle;
+    private boolean movingUp;
+    private boolean movingLeft;
+    private boolean movingRight;
+    private boolean movingDown;
+    private boolean shooting;
+    private float angle;
+
+    public ClientInputStateUpdate() {}
 
     public ClientInputStateUpdate(final String json) {
-        final int jsonStartIndex = json.indexOf('{');
-        if(jsonStartIndex == -1) {
-            throw new IllegalArgumentException("Invalid JSON Object");
-        }
-        if(!json.startsWith(ClientInputStateUpdate.class.getSimpleName())) {
-            throw new IllegalArgumentException("The given JSON object is not a valid ClientInputStateUpdate object.");
-        }
-
-        final JSONObject obj = new JSONObject(json.substring(jsonStartIndex));
-        movingUp = obj.optBoolean("movingUp", false);
-        movingDown = obj.optBoolean("movingDown", false);
-        movingLeft = obj.optBoolean("movingLeft", false);
-        movingRight = obj.optBoolean("movingRight", false);
-        shooting = obj.optBoolean("shooting", false);
-        angle = (float)obj.optDouble("angle", 0.0);
-        username = obj.getString("username");
-        authString = obj.getString("authString");
+        final JsonReader reader = JsonReader.forMessage(json, ClientInputStateUpdate.class.getSimpleName());
+        ClientInputStateUpdateSerializer.read(reader, this);
     }
 
     public boolean isMovingUp() {
         return movingUp;
     }
 
+    public void setMovingUp(final boolean movingUp) {
+        this.movingUp = movingUp;
+    }
+
     public boolean isMovingLeft() {
         return movingLeft;
     }
 
+    public void setMovingLeft(final boolean movingLeft) {
+        this.movingLeft = movingLeft;
+    }
+
     public boolean isMovingRight() {
         return movingRight;
     }
 
+    public void setMovingRight(final boolean movingRight) {
+        this.movingRight = movingRight;
+    }
+
     public boolean isMovingDown() {
         return movingDown;
     }
 
+    public void setMovingDown(final boolean movingDown) {
+        this.movingDown = movingDown;
+    }
+
     public boolean isShooting() {
         return shooting;
     }
 
-    public float getAngle() {
-        return angle;
+    public void setShooting(final boolean shooting) {
+        this.shooting = shooting;
     }
 
-    public String getUsername() {
-        return this.username;
+    public float getAngle() {
+        return angle;
     }
 
-    public String getAuthString() {
-        return this.authString;
+    public void setAngle(final float angle) {
+        this.angle = angle;
     }
 
     @Override
     public String jsonSerialize() {
-        return ClientInputStateUpdate.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return ClientInputStateUpdateSerializer.serialize(this);
     }
 }
@@ -1,7 +1,8 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
+@JsonMessage
 public class HighscoreInfo implements NetworkedMessage {
     private String[] players;
     private int[] scores;
@@ -24,6 +25,6 @@ public class HighscoreInfo implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return HighscoreInfo.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return HighscoreInfoSerializer.serialize(this);
     }
 }
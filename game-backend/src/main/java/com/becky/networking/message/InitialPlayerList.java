@@ -1,9 +1,10 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 import java.util.List;
 
+@JsonMessage
 public class InitialPlayerList implements NetworkedMessage{
     private List<ServerPlayerUpdate> players;
 
@@ -17,6 +18,6 @@ public class InitialPlayerList implements NetworkedMessage{
 
     @Override
     public String jsonSerialize() {
-        return InitialPlayerList.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return InitialPlayerListSerializer.serialize(this);
     }
 }
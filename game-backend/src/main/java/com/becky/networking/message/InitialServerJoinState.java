@@ -1,7 +1,9 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
+import com.becky.networking.json.JsonReader;
 
+@JsonMessage
 public class InitialServerJoinState implements NetworkedMessage {
     private String initialUsername;
     private String authenticationString;
@@ -9,19 +11,8 @@ public class InitialServerJoinState implements NetworkedMessage {
     private float initialLocationY;
 
     public InitialServerJoinState(final String json) {
-        final int jsonStartIndex = json.indexOf('{');
-        if(jsonStartIndex == -1) {
-            throw new IllegalArgumentException("Invalid JSON Object");
-        }
-        if(!json.startsWith(InitialServerJoinState.class.getSimpleName())) {
-            throw new IllegalArgumentException("The given JSON object is not a valid InitialServerJoinState object.");
-        }
-
-        final JSONObject obj = new JSONObject(json.substring(jsonStartIndex));
-        this.initialUsername = obj.getString("initialUsername");
-        this.authenticationString = obj.getString("authenticationString");
-        this.initialLocationX = obj.getInt("initialLocationX");
-        this.initialLocationY = obj.getInt("initialLocationY");
+        final JsonReader reader = JsonReader.forMessage(json, InitialServerJoinState.class.getSimpleName());
+        InitialServerJoinStateSerializer.read(reader, this);
     }
 
     public InitialServerJoinState() {}
@@ -60,6 +51,6 @@ public class InitialServerJoinState implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return InitialServerJoinState.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return InitialServerJoinStateSerializer.serialize(this);
     }
 }
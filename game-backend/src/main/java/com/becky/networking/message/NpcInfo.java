@@ -1,10 +1,10 @@
 package com.becky.networking.message;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 import java.util.List;
 
+@JsonMessage
 public class NpcInfo implements NetworkedMessage {
     private String type; //the classname of the npc type. Doesn't need to be set if state != NPC_STATE_NEW
     private long npcId;
@@ -108,10 +108,27 @@ public class NpcInfo implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return NpcInfo.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return NpcInfoSerializer.serialize(this);
     }
 
     public static String jsonSerializeAll(final List<NpcInfo> npcInfoList) {
-        return NpcInfo.class.getSimpleName() + "[]:" + new JSONArray(npcInfoList).toString();
+        return NpcInfoSerializer.serializeAll(npcInfoList);
+    }
+
+    /**
+     * Serializes this NpcInfo on its own, to be joined into an array by {@link #jsonSerializeElements(List)}.
+     * @return
+     */
+    public String jsonSerializeElement() {
+        return NpcInfoSerializer.serializeElement(this);
+    }
+
+    /**
+     * Builds the same message as serializing a whole list, from elements which were already serialized one by one.
+     * @param elements
+     * @return
+     */
+    public static String jsonSerializeElements(final List<String> elements) {
+        return NpcInfo.class.getSimpleName() + "[]:[" + String.join(",", elements) + "]";
     }
 }
@@ -1,11 +1,12 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 /**
  * The message sent to clients regarding changes in player health
  * Created by Clayton on 10/3/2017.
  */
+@JsonMessage
 public class PlayerHealthMessage implements NetworkedMessage {
     private String username;
     private String affectedBy;
@@ -37,6 +38,6 @@ public class PlayerHealthMessage implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return PlayerHealthMessage.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return PlayerHealthMessageSerializer.serialize(this);
     }
 }
@@ -1,7 +1,9 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
+import com.becky.networking.json.JsonReader;
 
+@JsonMessage
 public class PlayerListChange implements NetworkedMessage{
     private String username;
     private boolean joined;
@@ -9,17 +11,8 @@ public class PlayerListChange implements NetworkedMessage{
     public PlayerListChange() {}
 
     public PlayerListChange(final String json) {
-        final int jsonStartIndex = json.indexOf('{');
-        if(jsonStartIndex == -1) {
-            throw new IllegalArgumentException("Invalid JSON Object");
-        }
-        if(!json.startsWith(PlayerListChange.class.getSimpleName())) {
-            throw new IllegalArgumentException("Json object does not define a PlayerListChange object.");
-        }
-
-        final JSONObject obj = new JSONObject(json.substring(jsonStartIndex));
-        this.username = obj.getString("username");
-        this.joined = obj.getBoolean("joined");
+        final JsonReader reader = JsonReader.forMessage(json, PlayerListChange.class.getSimpleName());
+        PlayerListChangeSerializer.read(reader, this);
     }
 
     public String getUsername() {
@@ -40,6 +33,6 @@ public class PlayerListChange implements NetworkedMessage{
 
     @Override
     public String jsonSerialize() {
-        return PlayerListChange.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return PlayerListChangeSerializer.serialize(this);
     }
 }
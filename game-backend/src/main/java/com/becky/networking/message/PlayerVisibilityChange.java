@@ -0,0 +1,37 @@
+package com.becky.networking.message;
+
+import com.becky.codegen.JsonMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tells a client which players came into and went out of its area of interest this tick.
+ * Players out of view are still in the game, the client just stops getting updates about them.
+ */
+@JsonMessage
+public class PlayerVisibilityChange implements NetworkedMessage {
+    private List<String> entered = new ArrayList<>();
+    private List<String> left = new ArrayList<>();
+
+    public List<String> getEntered() {
+        return this.entered;
+    }
+
+    public void setEntered(final List<String> entered) {
+        this.entered = entered;
+    }
+
+    public List<String> getLeft() {
+        return this.left;
+    }
+
+    public void setLeft(final List<String> left) {
+        this.left = left;
+    }
+
+    @Override
+    public String jsonSerialize() {
+        return PlayerVisibilityChangeSerializer.serialize(this);
+    }
+}
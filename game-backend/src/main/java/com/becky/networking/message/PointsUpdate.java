@@ -1,11 +1,12 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 /**
  * A message indicating a points update.
  * Created by Clayton on 10/4/2017.
  */
+@JsonMessage
 public class PointsUpdate implements NetworkedMessage {
     private String username;
     private int numPoints;
@@ -28,6 +29,6 @@ public class PointsUpdate implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return PointsUpdate.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return PointsUpdateSerializer.serialize(this);
     }
 }
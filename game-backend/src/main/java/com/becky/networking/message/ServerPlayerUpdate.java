@@ -1,10 +1,10 @@
 package com.becky.networking.message;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
 
 import java.util.List;
 
+@JsonMessage
 public class ServerPlayerUpdate implements NetworkedMessage {
     private float posX;
     private float posY;
@@ -14,6 +14,7 @@ public class ServerPlayerUpdate implements NetworkedMessage {
     private float accelY;
     private float angle;
     private String playerName;
+    private long playerId;
 
     public ServerPlayerUpdate() {}
 
@@ -73,6 +74,14 @@ public class ServerPlayerUpdate implements NetworkedMessage {
         this.playerName = playerName;
     }
 
+    public long getPlayerId() {
+        return this.playerId;
+    }
+
+    public void setPlayerId(final long playerId) {
+        this.playerId = playerId;
+    }
+
     public float getAngle() {
         return this.angle;
     }
@@ -83,10 +92,27 @@ public class ServerPlayerUpdate implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return ServerPlayerUpdate.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return ServerPlayerUpdateSerializer.serialize(this);
     }
 
     public static String jsonSerializeAll(final List<ServerPlayerUpdate> updates) {
-        return ServerPlayerUpdate.class.getSimpleName() + "[]:" + new JSONArray(updates).toString();
+        return ServerPlayerUpdateSerializer.serializeAll(updates);
+    }
+
+    /**
+     * Serializes this ServerPlayerUpdate on its own, to be joined into an array by {@link #jsonSerializeElements(List)}.
+     * @return
+     */
+    public String jsonSerializeElement() {
+        return ServerPlayerUpdateSerializer.serializeElement(this);
+    }
+
+    /**
+     * Builds the same message as serializing a whole list, from elements which were already serialized one by one.
+     * @param elements
+     * @return
+     */
+    public static String jsonSerializeElements(final List<String> elements) {
+        return ServerPlayerUpdate.class.getSimpleName() + "[]:[" + String.join(",", elements) + "]";
     }
 }
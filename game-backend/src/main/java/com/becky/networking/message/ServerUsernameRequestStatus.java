@@ -1,7 +1,9 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
+import com.becky.networking.json.JsonReader;
 
+@JsonMessage
 public class ServerUsernameRequestStatus implements NetworkedMessage {
     private String status;
     private String message;
@@ -9,17 +11,8 @@ public class ServerUsernameRequestStatus implements NetworkedMessage {
     public ServerUsernameRequestStatus() {}
 
     public ServerUsernameRequestStatus(final String json) {
-        final int jsonStartIndex = json.indexOf('{');
-        if(jsonStartIndex == -1) {
-            throw new IllegalArgumentException("Invalid JSON Object");
-        }
-        if(!json.startsWith(ServerUsernameRequestStatus.class.getSimpleName())) {
-            throw new IllegalArgumentException("Json string does not define a valid ServerUsernameRequestStatus object!");
-        }
-
-        final JSONObject obj = new JSONObject(json.substring(jsonStartIndex));
-        this.status = obj.getString("status");
-        this.message = obj.getString("message");
+        final JsonReader reader = JsonReader.forMessage(json, ServerUsernameRequestStatus.class.getSimpleName());
+        ServerUsernameRequestStatusSerializer.read(reader, this);
     }
 
     public void setStatus(final String status) {
@@ -40,6 +33,6 @@ public class ServerUsernameRequestStatus implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return ServerUsernameRequestStatus.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return ServerUsernameRequestStatusSerializer.serialize(this);
     }
 }
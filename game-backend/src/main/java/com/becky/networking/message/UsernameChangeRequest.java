@@ -1,7 +1,9 @@
 package com.becky.networking.message;
 
-import org.json.JSONObject;
+import com.becky.codegen.JsonMessage;
+import com.becky.networking.json.JsonReader;
 
+@JsonMessage
 public class UsernameChangeRequest implements NetworkedMessage {
     private String oldUsername;
     private String newUsername;
@@ -10,18 +12,8 @@ public class UsernameChangeRequest implements NetworkedMessage {
     public UsernameChangeRequest() {}
 
     public UsernameChangeRequest(final String json) {
-        final int jsonStartIndex = json.indexOf('{');
-        if(jsonStartIndex == -1) {
-            throw new IllegalArgumentException("Invalid JSON Object");
-        }
-        if(!json.startsWith(UsernameChangeRequest.class.getSimpleName())) {
-            throw new IllegalArgumentException("Json object does not define a valid UsernameChangeRequest object.");
-        }
-
-        final JSONObject obj = new JSONObject(json.substring(jsonStartIndex));
-        this.oldUsername = obj.getString("oldUsername");
-        this.newUsername = obj.getString("newUsername");
-        this.authenticationString = obj.getString("authenticationString");
+        final JsonReader reader = JsonReader.forMessage(json, UsernameChangeRequest.class.getSimpleName());
+        UsernameChangeRequestSerializer.read(reader, this);
     }
 
     public String getOldUsername() {
@@ -50,6 +42,6 @@ public class UsernameChangeRequest implements NetworkedMessage {
 
     @Override
     public String jsonSerialize() {
-        return UsernameChangeRequest.class.getSimpleName() + ":" + new JSONObject(this).toString();
+        return UsernameChangeRequestSerializer.serialize(this);
     }
 }
@@ -0,0 +1,413 @@
+package com.becky.networking.protocol;
+
+import com.becky.networking.message.BulletInfo;
+import com.becky.networking.message.NpcInfo;
+import com.becky.networking.message.ServerPlayerUpdate;
+import com.becky.world.entity.Bullet;
+import com.becky.world.entity.PlayerInput;
+import com.becky.world.entity.npc.Npc;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of the messages sent every tick. Must be kept in sync with networked/BinaryProtocol.ts.
+ *
+ * Every message starts with a one byte message type. Entity ids and counts are variable length numbers, positions,
+ * velocities and accelerations are quantized to 16 bit fixed point and angles to 1/65536 of a turn:
+ *
+ * PLAYER_UPDATES  count, then per player: id, name, x, y, vx, vy, ax, ay, angle
+ * BULLET_INFOS    count, then per bullet: state, id, and
+ *                 for new bullets: owner id, vx, vy, x, y / for updated bullets: x, y / for dead bullets: nothing
+ * NPC_INFOS       count, then per npc: state, id, and unless dead: type, health, x, y, vx, vy, ax, ay, angle
+ *                 The type is an index into NPC_TYPES, or 0 followed by the type name for types not in the table.
+ * SNAPSHOT        sequence, baseline sequence (0 for a full snapshot), then a section for players and one for npcs:
+ *                 count of removed ids, removed ids, count of added or changed records, then per record: id, field mask,
+ *                 the fields whose bit is set and the label if the bit after the last field is set.
+ *                 Player fields are x, y, vx, vy, ax, ay, angle and the label is the name. Npc fields are type, health,
+ *                 x, y, vx, vy, ax, ay, angle and the label is the type name when the type is 0.
+ * TICK_BUNDLE     every message sent to a client in one tick, each as its length followed by the message. A part is either
+ *                 a binary message or a TEXT_MESSAGE: the type followed by the UTF-8 bytes of a json message.
+ * CLIENT_INPUT    movement and shooting flags, angle
+ * SNAPSHOT_ACK    sequence of the latest snapshot the client has applied
+ */
+public class BinaryCodec {
+    public static final int PLAYER_UPDATES = 1;
+    public static final int BULLET_INFOS = 2;
+    public static final int NPC_INFOS = 3;
+    public static final int SNAPSHOT = 4;
+    public static final int TICK_BUNDLE = 5;
+    public static final int TEXT_MESSAGE = 6;
+    public static final int CLIENT_INPUT = 16;
+    public static final int SNAPSHOT_ACK = 17;
+
+    //positions cover +-8192 units in quarter units, velocities +-2048 units per second, accelerations +-4096
+    public static final float POSITION_SCALE = 4.0f;
+    public static final float VELOCITY_SCALE = 16.0f;
+    public static final float ACCELERATION_SCALE = 8.0f;
+    private static final double ANGLE_SCALE = 65536.0 / (2.0 * Math.PI);
+
+    //npc type ids are the index into this table plus one
+    private static final String[] NPC_TYPES = {"InfectedNpc", "VirusNpc"};
+
+    private static final int INPUT_UP = 1;
+    private static final int INPUT_DOWN = 1 << 1;
+    private static final int INPUT_LEFT = 1 << 2;
+    private static final int INPUT_RIGHT = 1 << 3;
+    private static final int INPUT_SHOOTING = 1 << 4;
+
+    public static ByteBuffer encodePlayerUpdates(final List<ServerPlayerUpdate> updates) {
+        final BinaryWriter writer = new BinaryWriter(8 + updates.size() * 32);
+        writer.writeByte(PLAYER_UPDATES);
+        writer.writeVarLong(updates.size());
+        for(final ServerPlayerUpdate update: updates) {
+            writer.writeVarLong(update.getPlayerId());
+            writer.writeString(update.getPlayerName());
+            writer.writeShort(quantize(update.getPosX(), POSITION_SCALE));
+            writer.writeShort(quantize(update.getPosY(), POSITION_SCALE));
+            writer.writeShort(quantize(update.getVelX(), VELOCITY_SCALE));
+            writer.writeShort(quantize(update.getVelY(), VELOCITY_SCALE));
+            writer.writeShort(quantize(update.getAccelX(), ACCELERATION_SCALE));
+            writer.writeShort(quantize(update.getAccelY(), ACCELERATION_SCALE));
+            writer.writeShort(quantizeAngle(update.getAngle()));
+        }
+        return writer.toByteBuffer();
+    }
+
+    public static ByteBuffer encodeBulletInfos(final List<BulletInfo> infos) {
+        final BinaryWriter writer = new BinaryWriter(8 + infos.size() * 8);
+        writer.writeByte(BULLET_INFOS);
+        writer.writeVarLong(infos.size());
+        for(final BulletInfo info: infos) {
+            writer.writeByte(info.getState());
+            writer.writeVarLong(info.getBulletId());
+            if(info.getState() == Bullet.STATE_NEW_BULLET) {
+                writer.writeVarLong(info.getOwnerId());
+                writer.writeShort(quantize(info.getVelocityX(), VELOCITY_SCALE));
+                writer.writeShort(quantize(info.getVelocityY(), VELOCITY_SCALE));
+                writer.writeShort(quantize(info.getPositionX(), POSITION_SCALE));
+                writer.writeShort(quantize(info.getPositionY(), POSITION_SCALE));
+            }
+            else if(info.getState() == Bullet.STATE_UPDATED_BULLET) {
+                writer.writeShort(quantize(info.getPositionX(), POSITION_SCALE));
+                writer.writeShort(quantize(info.getPositionY(), POSITION_SCALE));
+            }
+        }
+        return writer.toByteBuffer();
+    }
+
+    public static ByteBuffer encodeNpcInfos(final List<NpcInfo> infos) {
+        final BinaryWriter writer = new BinaryWriter(8 + infos.size() * 20);
+        writer.writeByte(NPC_INFOS);
+        writer.writeVarLong(infos.size());
+        for(final NpcInfo info: infos) {
+            writer.writeByte(info.getState());
+            writer.writeVarLong(info.getNpcId());
+            if(info.getState() == Npc.NPC_STATE_DEAD) {
+                continue;
+            }
+
+            final int typeId = npcTypeId(info.getType());
+            writer.writeByte(typeId);
+            if(typeId == 0) {
+                writer.writeString(info.getType());
+            }
+            writer.writeVarLong(Math.max(0, info.getHealth()));
+            writer.writeShort(quantize(info.getPositionX(), POSITION_SCALE));
+            writer.writeShort(quantize(info.getPositionY(), POSITION_SCALE));
+            writer.writeShort(quantize(info.getVelocityX(), VELOCITY_SCALE));
+            writer.writeShort(quantize(info.getVelocityY(), VELOCITY_SCALE));
+            writer.writeShort(quantize(info.getAccelerationX(), ACCELERATION_SCALE));
+            writer.writeShort(quantize(info.getAccelerationY(), ACCELERATION_SCALE));
+            writer.writeShort(quantizeAngle(info.getAngle()));
+        }
+        return writer.toByteBuffer();
+    }
+
+    /**
+     * Encodes the records of a snapshot which differ from the baseline, plus the ids of records which are gone.
+     * @param current
+     * @param baseline The snapshot the client acknowledged last, or null to send everything.
+     * @return
+     */
+    public static ByteBuffer encodeSnapshot(final Snapshot current, final Snapshot baseline) {
+        final Snapshot base = baseline == null ? Snapshot.empty() : baseline;
+        final BinaryWriter writer = new BinaryWriter(64);
+        writer.writeByte(SNAPSHOT);
+        writer.writeVarLong(current.getSequence());
+        writer.writeVarLong(base.getSequence());
+        encodeSectionDelta(writer, current.getPlayers(), base.getPlayers());
+        encodeSectionDelta(writer, current.getNpcs(), base.getNpcs());
+        return writer.toByteBuffer();
+    }
+
+    private static void encodeSectionDelta(final BinaryWriter writer, final SnapshotSection current,
+                                           final SnapshotSection base) {
+        //both sections are sorted by id, so one walk finds the removed, added and common records
+        final int currentSize = current.size();
+        final int baseSize = base.size();
+        int removed = 0;
+        for(int i = 0, j = 0; j < baseSize; j++) {
+            while(i < currentSize && current.getId(i) < base.getId(j)) {
+                i++;
+            }
+            if(i == currentSize || current.getId(i) != base.getId(j)) {
+                removed++;
+            }
+        }
+        writer.writeVarLong(removed);
+        for(int i = 0, j = 0; j < baseSize; j++) {
+            while(i < currentSize && current.getId(i) < base.getId(j)) {
+                i++;
+            }
+            if(i == currentSize || current.getId(i) != base.getId(j)) {
+                writer.writeVarLong(base.getId(j));
+            }
+        }
+
+        final int fieldCount = current.getFieldCount();
+        final long labelBit = 1L << fieldCount;
+        final long[] masks = new long[currentSize];
+        int changed = 0;
+        for(int i = 0, j = 0; i < currentSize; i++) {
+            final long id = current.getId(i);
+            while(j < baseSize && base.getId(j) < id) {
+                j++;
+            }
+            long mask = 0;
+            if(j < baseSize && base.getId(j) == id) {
+                for(int field = 0; field < fieldCount; field++) {
+                    if(current.getField(i, field) != base.getField(j, field)) {
+                        mask |= 1L << field;
+                    }
+                }
+                if(!Objects.equals(current.getLabel(i), base.getLabel(j))) {
+                    mask |= labelBit;
+                }
+            }
+            else {
+                mask = labelBit - 1;
+                if(current.getLabel(i) != null) {
+                    mask |= labelBit;
+                }
+            }
+            masks[i] = mask;
+            if(mask != 0) {
+                changed++;
+            }
+        }
+
+        writer.writeVarLong(changed);
+        final int varintFields = current.getVarintFields();
+        for(int i = 0; i < currentSize; i++) {
+            final long mask = masks[i];
+            if(mask == 0) {
+                continue;
+            }
+            writer.writeVarLong(current.getId(i));
+            writer.writeVarLong(mask);
+            for(int field = 0; field < fieldCount; field++) {
+                if((mask & (1L << field)) == 0) {
+                    continue;
+                }
+                if(field < varintFields) {
+                    writer.writeVarLong(current.getField(i, field));
+                }
+                else {
+                    writer.writeShort(current.getField(i, field));
+                }
+            }
+            if((mask & labelBit) != 0) {
+                writer.writeString(current.getLabel(i));
+            }
+        }
+    }
+
+    public static ByteBuffer encodeClientInput(final PlayerInput input) {
+        final BinaryWriter writer = new BinaryWriter(4);
+        writer.writeByte(CLIENT_INPUT);
+        int flags = 0;
+        if(input.isMovingUp()) {
+            flags |= INPUT_UP;
+        }
+        if(input.isMovingDown()) {
+            flags |= INPUT_DOWN;
+        }
+        if(input.isMovingLeft()) {
+            flags |= INPUT_LEFT;
+        }
+        if(input.isMovingRight()) {
+            flags |= INPUT_RIGHT;
+        }
+        if(input.isShooting()) {
+            flags |= INPUT_SHOOTING;
+        }
+        writer.writeByte(flags);
+        writer.writeShort(quantizeAngle(input.getAngle()));
+        return writer.toByteBuffer();
+    }
+
+    /**
+     * Decodes a CLIENT_INPUT message.
+     * @param message
+     * @return
+     * @throws IllegalArgumentException If the message is not a valid CLIENT_INPUT message.
+     */
+    public static PlayerInput decodeClientInput(final ByteBuffer message) {
+        final BinaryReader reader = new BinaryReader(message);
+        final int type = reader.readUnsignedByte();
+        if(type != CLIENT_INPUT) {
+            throw new IllegalArgumentException("Expected a client input message but got message type " + type + ".");
+        }
+        final int flags = reader.readUnsignedByte();
+        final float angle = dequantizeAngle(reader.readUnsignedShort());
+        return new PlayerInput(
+            (flags & INPUT_UP) != 0, (flags & INPUT_DOWN) != 0,
+            (flags & INPUT_LEFT) != 0, (flags & INPUT_RIGHT) != 0,
+            (flags & INPUT_SHOOTING) != 0, angle);
+    }
+
+    public static ByteBuffer encodeSnapshotAck(final long sequence) {
+        final BinaryWriter writer = new BinaryWriter(8);
+        writer.writeByte(SNAPSHOT_ACK);
+        writer.writeVarLong(sequence);
+        return writer.toByteBuffer();
+    }
+
+    /**
+     * Decodes a SNAPSHOT_ACK message.
+     * @param message
+     * @return The acknowledged sequence number.
+     * @throws IllegalArgumentException If the message is not a valid SNAPSHOT_ACK message.
+     */
+    public static long decodeSnapshotAck(final ByteBuffer message) {
+        final BinaryReader reader = new BinaryReader(message);
+        final int type = reader.readUnsignedByte();
+        if(type != SNAPSHOT_ACK) {
+            throw new IllegalArgumentException("Expected a snapshot ack message but got message type " + type + ".");
+        }
+        return reader.readVarLong();
+    }
+
+    /**
+     * Reads the sequence number of a SNAPSHOT message without decoding the rest of it.
+     * @param message
+     * @return
+     * @throws IllegalArgumentException If the message is not a valid SNAPSHOT message.
+     */
+    public static long readSnapshotSequence(final ByteBuffer message) {
+        final BinaryReader reader = new BinaryReader(message);
+        final int type = reader.readUnsignedByte();
+        if(type != SNAPSHOT) {
+            throw new IllegalArgumentException("Expected a snapshot message but got message type " + type + ".");
+        }
+        return reader.readVarLong();
+    }
+
+    /**
+     * Bundles several messages into one TICK_BUNDLE message.
+     * @param messages The binary messages, and the UTF-8 bytes of the json messages.
+     * @param textMessages The indices of the json messages.
+     * @return
+     */
+    public static ByteBuffer encodeTickBundle(final List<ByteBuffer> messages, final BitSet textMessages) {
+        int length = 1;
+        for(final ByteBuffer message: messages) {
+            length += message.remaining() + 6;
+        }
+        final BinaryWriter writer = new BinaryWriter(length);
+        writer.writeByte(TICK_BUNDLE);
+        for(int i = 0; i < messages.size(); i++) {
+            final ByteBuffer message = messages.get(i);
+            writeTickBundlePrefix(writer, message.remaining(), textMessages.get(i));
+            writer.writeBytes(message);
+        }
+        return writer.toByteBuffer();
+    }
+
+    /**
+     * Writes what goes in front of a message in a TICK_BUNDLE message, for bundles put together from buffers which
+     * aren't copied. The bundle itself starts with the TICK_BUNDLE type.
+     * @param writer
+     * @param length The length of the binary message, or of the UTF-8 bytes of the json message.
+     * @param text Whether the message is a json message.
+     */
+    public static void writeTickBundlePrefix(final BinaryWriter writer, final int length, final boolean text) {
+        if(text) {
+            writer.writeVarLong(length + 1);
+            writer.writeByte(TEXT_MESSAGE);
+        }
+        else {
+            writer.writeVarLong(length);
+        }
+    }
+
+    /**
+     * Hands each message of a TICK_BUNDLE message to the matching handler, in the order they were bundled.
+     * @param bundle
+     * @param textHandler Receives the json messages.
+     * @param binaryHandler Receives the binary messages, each as its own buffer.
+     * @throws IllegalArgumentException If the message is not a valid TICK_BUNDLE message.
+     */
+    public static void splitTickBundle(final ByteBuffer bundle, final Consumer<String> textHandler,
+                                       final Consumer<ByteBuffer> binaryHandler) {
+        final BinaryReader reader = new BinaryReader(bundle);
+        final int type = reader.readUnsignedByte();
+        if(type != TICK_BUNDLE) {
+            throw new IllegalArgumentException("Expected a tick bundle but got message type " + type + ".");
+        }
+        while(reader.hasRemaining()) {
+            final ByteBuffer message = reader.readBytes(reader.readVarLong());
+            if(peekMessageType(message) == TEXT_MESSAGE) {
+                message.get();
+                textHandler.accept(StandardCharsets.UTF_8.decode(message).toString());
+            }
+            else {
+                binaryHandler.accept(message);
+            }
+        }
+    }
+
+    /**
+     * Gets the message type of a binary message without consuming it.
+     * @param message
+     * @return The message type, or -1 if the message is empty.
+     */
+    public static int peekMessageType(final ByteBuffer message) {
+        return message.hasRemaining() ? message.get(message.position()) & 0xFF : -1;
+    }
+
+    static int npcTypeId(final String type) {
+        for(int i = 0; i < NPC_TYPES.length; i++) {
+            if(NPC_TYPES[i].equals(type)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    static int quantize(final Float value, final float scale) {
+        return quantize(value == null ? 0.0f : value.floatValue(), scale);
+    }
+
+    static int quantize(final float value, final float scale) {
+        final long quantized = Math.round((double)value * scale);
+        return (int)Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, quantized));
+    }
+
+    static int quantizeAngle(final float angle) {
+        double turns = angle % (2.0 * Math.PI);
+        if(turns < 0.0) {
+            turns += 2.0 * Math.PI;
+        }
+        return (int)Math.round(turns * ANGLE_SCALE) & 0xFFFF;
+    }
+
+    private static float dequantizeAngle(final int quantized) {
+        return (float)(quantized / ANGLE_SCALE);
+    }
+}
@@ -0,0 +1,74 @@
+package com.becky.networking.protocol;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the values written by {@link BinaryWriter}. Throws an IllegalArgumentException on truncated or malformed input.
+ */
+public class BinaryReader {
+    private final ByteBuffer buffer;
+
+    public BinaryReader(final ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    public int readUnsignedByte() {
+        try {
+            return buffer.get() & 0xFF;
+        }
+        catch(final BufferUnderflowException ex) {
+            throw new IllegalArgumentException("Binary message ended early.");
+        }
+    }
+
+    public int readUnsignedShort() {
+        return (readUnsignedByte() << 8) | readUnsignedByte();
+    }
+
+    public short readShort() {
+        return (short)readUnsignedShort();
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7) {
+            final int b = readUnsignedByte();
+            value |= (long)(b & 0x7F) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed variable length number.");
+    }
+
+    public String readString() {
+        final long length = readVarLong();
+        if(length > buffer.remaining()) {
+            throw new IllegalArgumentException("Binary message ended early.");
+        }
+        final byte[] utf8 = new byte[(int)length];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the next bytes as a buffer of their own, sharing the content of the message.
+     * @param length
+     * @return
+     */
+    public ByteBuffer readBytes(final long length) {
+        if(length > buffer.remaining()) {
+            throw new IllegalArgumentException("Binary message ended early.");
+        }
+        final ByteBuffer bytes = buffer.slice();
+        bytes.limit((int)length);
+        buffer.position(buffer.position() + (int)length);
+        return bytes;
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+}
@@ -0,0 +1,90 @@
+package com.becky.networking.protocol;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Appends big endian values to a growable byte array.
+ */
+public class BinaryWriter {
+    private byte[] bytes;
+    private int size;
+
+    public BinaryWriter(final int initialCapacity) {
+        this.bytes = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void writeByte(final int value) {
+        ensureCapacity(1);
+        bytes[size++] = (byte)value;
+    }
+
+    public void writeShort(final int value) {
+        ensureCapacity(2);
+        bytes[size++] = (byte)(value >>> 8);
+        bytes[size++] = (byte)value;
+    }
+
+    /**
+     * Writes a non negative number in as few bytes as possible, seven bits per byte with the high bit set on every
+     * byte but the last.
+     * @param value
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while((value & ~0x7FL) != 0) {
+            bytes[size++] = (byte)((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[size++] = (byte)value;
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its UTF-8 bytes. Null is written as an empty string.
+     * @param value
+     */
+    public void writeString(final String value) {
+        final byte[] utf8 = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(utf8.length);
+        ensureCapacity(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+    }
+
+    /**
+     * Writes the remaining bytes of a buffer as they are, without moving its position.
+     * @param value
+     */
+    public void writeBytes(final ByteBuffer value) {
+        final int length = value.remaining();
+        ensureCapacity(length);
+        value.duplicate().get(bytes, size, length);
+        size += length;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Forgets everything written so far, keeping the capacity.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Gets a read only buffer holding everything written so far.
+     * @return
+     */
+    public ByteBuffer toByteBuffer() {
+        return ByteBuffer.wrap(Arrays.copyOf(bytes, size)).asReadOnlyBuffer();
+    }
+
+    private void ensureCapacity(final int extra) {
+        if(size + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+        }
+    }
+}
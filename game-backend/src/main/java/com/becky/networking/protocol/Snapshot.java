@@ -0,0 +1,94 @@
+package com.becky.networking.protocol;
+
+import com.becky.networking.message.NpcInfo;
+import com.becky.networking.message.ServerPlayerUpdate;
+import com.becky.world.entity.npc.Npc;
+
+import java.util.List;
+
+/**
+ * The quantized state of every player and npc at the end of one tick, numbered so clients can acknowledge it.
+ * Snapshots are sent as deltas against the last snapshot a client acknowledged, see {@link BinaryCodec#encodeSnapshot}.
+ */
+public class Snapshot {
+    //player fields: x, y, vx, vy, ax, ay, angle. The label is the player name.
+    public static final int PLAYER_FIELDS = 7;
+    //npc fields: type, health, x, y, vx, vy, ax, ay, angle. The label is the type name if the type has no id.
+    public static final int NPC_FIELDS = 9;
+    public static final int NPC_VARINT_FIELDS = 2;
+
+    private final long sequence;
+    private final SnapshotSection players;
+    private final SnapshotSection npcs;
+
+    private Snapshot(final long sequence, final SnapshotSection players, final SnapshotSection npcs) {
+        this.sequence = sequence;
+        this.players = players;
+        this.npcs = npcs;
+    }
+
+    /**
+     * Gets a snapshot holding no entities, which is what full snapshots are encoded against.
+     * @return
+     */
+    public static Snapshot empty() {
+        return new Snapshot(0, new SnapshotSection(PLAYER_FIELDS, 0, 0),
+            new SnapshotSection(NPC_FIELDS, NPC_VARINT_FIELDS, 0));
+    }
+
+    /**
+     * Captures the updates built for this tick. Dead npcs are left out, their removal is what tells clients they died.
+     * @param sequence
+     * @param playerUpdates
+     * @param npcInfos
+     * @return
+     */
+    public static Snapshot capture(final long sequence, final List<ServerPlayerUpdate> playerUpdates,
+                                   final List<NpcInfo> npcInfos) {
+        final SnapshotSection players = new SnapshotSection(PLAYER_FIELDS, 0, playerUpdates.size());
+        for(final ServerPlayerUpdate update: playerUpdates) {
+            final int record = players.add(update.getPlayerId(), update.getPlayerName());
+            players.setField(record, 0, BinaryCodec.quantize(update.getPosX(), BinaryCodec.POSITION_SCALE));
+            players.setField(record, 1, BinaryCodec.quantize(update.getPosY(), BinaryCodec.POSITION_SCALE));
+            players.setField(record, 2, BinaryCodec.quantize(update.getVelX(), BinaryCodec.VELOCITY_SCALE));
+            players.setField(record, 3, BinaryCodec.quantize(update.getVelY(), BinaryCodec.VELOCITY_SCALE));
+            players.setField(record, 4, BinaryCodec.quantize(update.getAccelX(), BinaryCodec.ACCELERATION_SCALE));
+            players.setField(record, 5, BinaryCodec.quantize(update.getAccelY(), BinaryCodec.ACCELERATION_SCALE));
+            players.setField(record, 6, BinaryCodec.quantizeAngle(update.getAngle()));
+        }
+        players.sortById();
+
+        final SnapshotSection npcs = new SnapshotSection(NPC_FIELDS, NPC_VARINT_FIELDS, npcInfos.size());
+        for(final NpcInfo info: npcInfos) {
+            if(info.getState() == Npc.NPC_STATE_DEAD) {
+                continue;
+            }
+            final int typeId = BinaryCodec.npcTypeId(info.getType());
+            final int record = npcs.add(info.getNpcId(), typeId == 0 ? info.getType() : null);
+            npcs.setField(record, 0, typeId);
+            npcs.setField(record, 1, Math.max(0, info.getHealth()));
+            npcs.setField(record, 2, BinaryCodec.quantize(info.getPositionX(), BinaryCodec.POSITION_SCALE));
+            npcs.setField(record, 3, BinaryCodec.quantize(info.getPositionY(), BinaryCodec.POSITION_SCALE));
+            npcs.setField(record, 4, BinaryCodec.quantize(info.getVelocityX(), BinaryCodec.VELOCITY_SCALE));
+            npcs.setField(record, 5, BinaryCodec.quantize(info.getVelocityY(), BinaryCodec.VELOCITY_SCALE));
+            npcs.setField(record, 6, BinaryCodec.quantize(info.getAccelerationX(), BinaryCodec.ACCELERATION_SCALE));
+            npcs.setField(record, 7, BinaryCodec.quantize(info.getAccelerationY(), BinaryCodec.ACCELERATION_SCALE));
+            npcs.setField(record, 8, BinaryCodec.quantizeAngle(info.getAngle()));
+        }
+        npcs.sortById();
+
+        return new Snapshot(sequence, players, npcs);
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public SnapshotSection getPlayers() {
+        return this.players;
+    }
+
+    public SnapshotSection getNpcs() {
+        return this.npcs;
+    }
+}
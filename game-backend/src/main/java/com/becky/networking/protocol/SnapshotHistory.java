@@ -0,0 +1,34 @@
+package com.becky.networking.protocol;
+
+/**
+ * The most recent snapshots, kept so deltas can be encoded against whichever one a client acknowledged last.
+ * A client whose acknowledged snapshot has dropped out of the history gets a full snapshot instead.
+ * Only used by the game loop.
+ */
+public class SnapshotHistory {
+    //how many ticks back a client's acknowledged snapshot can be and still be used as a delta baseline
+    public static final int DEFAULT_CAPACITY = 32;
+
+    private final Snapshot[] snapshots;
+
+    public SnapshotHistory(final int capacity) {
+        this.snapshots = new Snapshot[capacity];
+    }
+
+    public void add(final Snapshot snapshot) {
+        snapshots[(int)(snapshot.getSequence() % snapshots.length)] = snapshot;
+    }
+
+    /**
+     * Gets a snapshot by its sequence number.
+     * @param sequence
+     * @return The snapshot, or null if it is no longer (or was never) in the history.
+     */
+    public Snapshot get(final long sequence) {
+        if(sequence <= 0) {
+            return null;
+        }
+        final Snapshot snapshot = snapshots[(int)(sequence % snapshots.length)];
+        return snapshot != null && snapshot.getSequence() == sequence ? snapshot : null;
+    }
+}
@@ -0,0 +1,109 @@
+package com.becky.networking.protocol;
+
+import java.util.Arrays;
+
+/**
+ * The quantized state of one kind of entity (players or npcs) in a {@link Snapshot}.
+ *
+ * Every record has an entity id, a fixed number of int fields and an optional label (the player name, or the type name
+ * of an npc whose type has no id). Records are kept sorted by id once the section is complete, so two sections can be
+ * compared with a single merge walk. Fields are compared after quantization, so values which only moved by less than
+ * the wire precision do not count as changes.
+ *
+ * The first varintFields fields of a record are written as variable length numbers, the rest as 16 bit values.
+ */
+public class SnapshotSection {
+    private final int fieldCount;
+    private final int varintFields;
+    private long[] ids;
+    private int[] fields;
+    private String[] labels;
+    private int size;
+
+    SnapshotSection(final int fieldCount, final int varintFields, final int expectedSize) {
+        final int capacity = Math.max(4, expectedSize);
+        this.fieldCount = fieldCount;
+        this.varintFields = varintFields;
+        this.ids = new long[capacity];
+        this.fields = new int[capacity * fieldCount];
+        this.labels = new String[capacity];
+    }
+
+    /**
+     * Appends a record and returns its index, whose fields are then filled in with {@link #setField(int, int, int)}.
+     * @param id
+     * @param label
+     * @return
+     */
+    int add(final long id, final String label) {
+        if(size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            fields = Arrays.copyOf(fields, size * 2 * fieldCount);
+            labels = Arrays.copyOf(labels, size * 2);
+        }
+        ids[size] = id;
+        labels[size] = label;
+        return size++;
+    }
+
+    void setField(final int record, final int field, final int value) {
+        fields[record * fieldCount + field] = value;
+    }
+
+    /**
+     * Sorts the records by id. Called once after the last record was added.
+     */
+    void sortById() {
+        for(int i = 1; i < size; i++) {
+            if(ids[i - 1] > ids[i]) {
+                sortRecords();
+                return;
+            }
+        }
+    }
+
+    private void sortRecords() {
+        final Integer[] order = new Integer[size];
+        for(int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+
+        final long[] sortedIds = new long[ids.length];
+        final int[] sortedFields = new int[fields.length];
+        final String[] sortedLabels = new String[labels.length];
+        for(int i = 0; i < size; i++) {
+            final int from = order[i];
+            sortedIds[i] = ids[from];
+            sortedLabels[i] = labels[from];
+            System.arraycopy(fields, from * fieldCount, sortedFields, i * fieldCount, fieldCount);
+        }
+        ids = sortedIds;
+        fields = sortedFields;
+        labels = sortedLabels;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int getFieldCount() {
+        return this.fieldCount;
+    }
+
+    public int getVarintFields() {
+        return this.varintFields;
+    }
+
+    public long getId(final int record) {
+        return ids[record];
+    }
+
+    public int getField(final int record, final int field) {
+        return fields[record * fieldCount + field];
+    }
+
+    public String getLabel(final int record) {
+        return labels[record];
+    }
+}
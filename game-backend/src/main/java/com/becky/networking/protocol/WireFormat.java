@@ -0,0 +1,39 @@
+package com.becky.networking.protocol;
+
+/**
+ * The encoding a client asked for when it connected.
+ *
+ * Clients choose the format through the query string of the address they connect to, e.g. ws://host:3000/?protocol=binary.
+ * Handshake and other infrequent messages are always JSON text. Clients using the binary format receive snapshots as
+ * binary frames encoded by {@link BinaryCodec} and send their input the same way.
+ */
+public enum WireFormat {
+    JSON,
+    BINARY;
+
+    private static final String PROTOCOL_PARAMETER = "protocol=";
+
+    /**
+     * Works out the format from the resource descriptor of the client handshake, e.g. "/?protocol=binary".
+     * Anything other than an explicit request for the binary format means JSON.
+     * @param resourceDescriptor
+     * @return
+     */
+    public static WireFormat fromResourceDescriptor(final String resourceDescriptor) {
+        if(resourceDescriptor == null) {
+            return JSON;
+        }
+        final int queryStart = resourceDescriptor.indexOf('?');
+        if(queryStart == -1) {
+            return JSON;
+        }
+
+        for(final String parameter: resourceDescriptor.substring(queryStart + 1).split("&")) {
+            if(parameter.startsWith(PROTOCOL_PARAMETER)
+                && parameter.substring(PROTOCOL_PARAMETER.length()).equalsIgnoreCase("binary")) {
+                return BINARY;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,97 @@
+package com.becky.util;
+
+import java.util.Arrays;
+
+/**
+ * Fixed size histogram of durations in nanoseconds with a relative error of under 1.6% at any magnitude, in the
+ * spirit of HdrHistogram.
+ *
+ * Values below 128 get a bucket each. Above that every power of two is split into 64 equally wide buckets, so the
+ * bucket width grows with the value and the whole range of a long fits into a few thousand counters. Recording is
+ * constant time and never allocates.
+ *
+ * Not thread safe.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT * 2;
+    private static final int BUCKET_COUNT = LINEAR_LIMIT + (Long.SIZE - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long totalCount;
+    private long totalValue;
+    private long maxValue;
+
+    /**
+     * Records a single duration.
+     * @param nanos The duration in nanoseconds, negative values are recorded as zero.
+     */
+    public void record(final long nanos) {
+        final long value = Math.max(0L, nanos);
+        counts[bucketIndex(value)]++;
+        totalCount++;
+        totalValue += value;
+        if(value > maxValue) {
+            maxValue = value;
+        }
+    }
+
+    public long getCount() {
+        return this.totalCount;
+    }
+
+    public long getMax() {
+        return this.maxValue;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0.0 : (double)totalValue / totalCount;
+    }
+
+    /**
+     * Gets the value which the given percentage of all recorded values are less than or equal to.
+     * The result is the upper bound of the bucket the value fell into, but never more than the largest recorded value.
+     * @param percentile Between 0 and 100.
+     * @return
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if(totalCount == 0) {
+            return 0L;
+        }
+        final long target = Math.max(1L, (long)Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for(int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if(seen >= target) {
+                return Math.min(highestValueInBucket(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0L);
+        totalCount = 0;
+        totalValue = 0;
+        maxValue = 0;
+    }
+
+    private static int bucketIndex(final long value) {
+        if(value < LINEAR_LIMIT) {
+            return (int)value;
+        }
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int)(value >>> shift) - SUB_BUCKET_COUNT;
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    private static long highestValueInBucket(final int index) {
+        if(index < LINEAR_LIMIT) {
+            return index;
+        }
+        final int shift = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + 1;
+        final long subBucket = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
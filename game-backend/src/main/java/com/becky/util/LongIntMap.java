@@ -0,0 +1,191 @@
+package com.becky.util;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from long keys to int values which stores both in plain arrays, so adding, removing and looking up an
+ * entry never allocates. Meant for entity ids, which are looked up on every tick.
+ *
+ * Keys are placed by open addressing with linear probing, and removing an entry moves the entries probed after it
+ * back instead of leaving a tombstone. Not thread safe.
+ */
+public class LongIntMap {
+    /**
+     * Returned when a key has no value. Can't be stored as a value.
+     */
+    public static final int NO_VALUE = -1;
+    //a slot whose key is this is empty, the entry of an actual 0 key is kept apart
+    private static final long EMPTY_KEY = 0L;
+    private static final float MAX_LOAD = 0.5f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    //how far a hash is shifted to leave as many bits as the arrays have slots
+    private int shift;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue = NO_VALUE;
+
+    public LongIntMap() {
+        this(64);
+    }
+
+    /**
+     * @param expectedSize How many entries the map holds before it has to grow.
+     */
+    public LongIntMap(final int expectedSize) {
+        int capacity = 16;
+        while(capacity * MAX_LOAD < expectedSize) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Gets the value of a key.
+     * @param key
+     * @return The value, or {@link #NO_VALUE} if the key isn't in the map.
+     */
+    public int get(final long key) {
+        if(key == EMPTY_KEY) {
+            return zeroValue;
+        }
+        for(int slot = slotOf(key); ; slot = (slot + 1) & mask) {
+            final long slotKey = keys[slot];
+            if(slotKey == key) {
+                return values[slot];
+            }
+            if(slotKey == EMPTY_KEY) {
+                return NO_VALUE;
+            }
+        }
+    }
+
+    public boolean containsKey(final long key) {
+        return get(key) != NO_VALUE;
+    }
+
+    /**
+     * Sets the value of a key.
+     * @param key
+     * @param value Any value but {@link #NO_VALUE}.
+     * @return The previous value, or {@link #NO_VALUE} if the key wasn't in the map.
+     */
+    public int put(final long key, final int value) {
+        if(value == NO_VALUE) {
+            throw new IllegalArgumentException("NO_VALUE can't be stored.");
+        }
+        if(key == EMPTY_KEY) {
+            final int previous = zeroValue;
+            if(!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+
+        int slot = slotOf(key);
+        while(keys[slot] != EMPTY_KEY) {
+            if(keys[slot] == key) {
+                final int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if(size > keys.length * MAX_LOAD) {
+            grow();
+        }
+        return NO_VALUE;
+    }
+
+    /**
+     * Removes a key.
+     * @param key
+     * @return The value the key had, or {@link #NO_VALUE} if it wasn't in the map.
+     */
+    public int remove(final long key) {
+        if(key == EMPTY_KEY) {
+            final int previous = zeroValue;
+            if(hasZeroKey) {
+                hasZeroKey = false;
+                zeroValue = NO_VALUE;
+                size--;
+            }
+            return previous;
+        }
+
+        int slot = slotOf(key);
+        while(keys[slot] != key) {
+            if(keys[slot] == EMPTY_KEY) {
+                return NO_VALUE;
+            }
+            slot = (slot + 1) & mask;
+        }
+        final int previous = values[slot];
+        size--;
+
+        //move back every following entry of the run which would no longer be found past the gap
+        int gap = slot;
+        for(int next = (gap + 1) & mask; keys[next] != EMPTY_KEY; next = (next + 1) & mask) {
+            final int home = slotOf(keys[next]);
+            //the entry can fill the gap when the gap lies between its home slot and its current slot
+            if(((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        keys[gap] = EMPTY_KEY;
+        return previous;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        hasZeroKey = false;
+        zeroValue = NO_VALUE;
+        size = 0;
+    }
+
+    private int slotOf(final long key) {
+        //fibonacci hashing, the top bits of the product depend on every bit of the key
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = Long.numberOfLeadingZeros(mask);
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for(int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if(key != EMPTY_KEY) {
+                int slot = slotOf(key);
+                while(keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
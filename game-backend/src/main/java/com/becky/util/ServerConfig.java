@@ -0,0 +1,218 @@
+package com.becky.util;
+
+/**
+ * Server settings which can be changed at launch without recompiling.
+ * Every value is read from a JVM system property (e.g. -Dbecky.tickRate=30) and falls back to
+ * a sensible default when the property is missing or malformed.
+ */
+public class ServerConfig {
+    private final int tickRate;
+    private final int maxCatchUpTicks;
+    private final boolean structureOfArraysKinematics;
+    private final boolean profilerEnabled;
+    private final int traceTicks;
+    private final boolean deltaSnapshots;
+    private final int viewRadius;
+    private final int viewHysteresis;
+    private final int mailboxLimitBytes;
+    private final int minSnapshotRate;
+    private final int spawnBudgetEntities;
+    private final int spawnBudgetMicros;
+    private final int warmupTicks;
+
+    private ServerConfig(final int tickRate, final int maxCatchUpTicks, final boolean structureOfArraysKinematics,
+                         final boolean profilerEnabled, final int traceTicks, final boolean deltaSnapshots,
+                         final int viewRadius, final int viewHysteresis, final int mailboxLimitBytes,
+                         final int minSnapshotRate, final int spawnBudgetEntities, final int spawnBudgetMicros,
+                         final int warmupTicks) {
+        this.tickRate = tickRate;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+        this.structureOfArraysKinematics = structureOfArraysKinematics;
+        this.profilerEnabled = profilerEnabled;
+        this.traceTicks = traceTicks;
+        this.deltaSnapshots = deltaSnapshots;
+        this.viewRadius = viewRadius;
+        this.viewHysteresis = viewHysteresis;
+        this.mailboxLimitBytes = mailboxLimitBytes;
+        this.minSnapshotRate = minSnapshotRate;
+        this.spawnBudgetEntities = spawnBudgetEntities;
+        this.spawnBudgetMicros = spawnBudgetMicros;
+        this.warmupTicks = warmupTicks;
+    }
+
+    /**
+     * Builds a configuration from the current JVM system properties.
+     * @return
+     */
+    public static ServerConfig fromSystemProperties() {
+        return new ServerConfig(
+            readInt("becky.tickRate", 20, 1, 1000),
+            readInt("becky.maxCatchUpTicks", 5, 0, 1000),
+            readBoolean("becky.soaKinematics", false),
+            readBoolean("becky.profiler", true),
+            readInt("becky.traceTicks", 200, 1, 100000),
+            readBoolean("becky.deltaSnapshots", true),
+            readInt("becky.viewRadius", 1500, 0, 100000),
+            readInt("becky.viewHysteresis", 250, 0, 100000),
+            readInt("becky.mailboxLimitBytes", 1 << 20, 1 << 12, 1 << 30),
+            readInt("becky.minSnapshotRate", 4, 1, 1000),
+            readInt("becky.spawnBudgetEntities", 25, 1, 100000),
+            readInt("becky.spawnBudgetMicros", 500, 1, 1000000),
+            readInt("becky.warmupTicks", 0, 0, 100000));
+    }
+
+    /**
+     * Gets a configuration with every setting at its default value.
+     * @return
+     */
+    public static ServerConfig defaults() {
+        return new ServerConfig(20, 5, false, true, 200, true, 1500, 250, 1 << 20, 4, 25, 500, 0);
+    }
+
+    /**
+     * Gets the number of game ticks simulated per second.
+     * @return
+     */
+    public int getTickRate() {
+        return this.tickRate;
+    }
+
+    /**
+     * Gets the maximum number of ticks the game loop will run back to back to catch up after falling behind.
+     * If the loop falls further behind than this, the missed ticks are dropped instead.
+     * @return
+     */
+    public int getMaxCatchUpTicks() {
+        return this.maxCatchUpTicks;
+    }
+
+    /**
+     * Whether entity positions, velocities and accelerations are kept in shared structure-of-arrays buffers
+     * instead of the fields of each entity.
+     * @return
+     */
+    public boolean isStructureOfArraysKinematics() {
+        return this.structureOfArraysKinematics;
+    }
+
+    /**
+     * Whether the game loop times its phases and reports them every reporting window.
+     * @return
+     */
+    public boolean isProfilerEnabled() {
+        return this.profilerEnabled;
+    }
+
+    /**
+     * Gets the number of most recent ticks written out by a trace capture.
+     * @return
+     */
+    public int getTraceTicks() {
+        return this.traceTicks;
+    }
+
+    /**
+     * Whether clients using the binary protocol receive players and npcs as deltas against the last snapshot they
+     * acknowledged, rather than as full lists every tick.
+     * @return
+     */
+    public boolean isDeltaSnapshots() {
+        return this.deltaSnapshots;
+    }
+
+    /**
+     * Gets how close an entity has to come to a player before the player's client is told about it.
+     * 0 turns interest management off and every client is told about the whole world.
+     * @return
+     */
+    public int getViewRadius() {
+        return this.viewRadius;
+    }
+
+    /**
+     * Gets how far beyond the view radius an entity has to move before the client stops being told about it.
+     * @return
+     */
+    public int getViewHysteresis() {
+        return this.viewHysteresis;
+    }
+
+    /**
+     * Gets how many bytes may wait to be sent to a client before it is disconnected for falling behind.
+     * @return
+     */
+    public int getMailboxLimitBytes() {
+        return this.mailboxLimitBytes;
+    }
+
+    /**
+     * Gets the fewest snapshots per second a client with a poor link is slowed down to. Clients whose link keeps up
+     * get one every tick. A rate at or above the tick rate sends every client a snapshot every tick.
+     * @return
+     */
+    public int getMinSnapshotRate() {
+        return this.minSnapshotRate;
+    }
+
+    /**
+     * Gets the most ticks between two snapshots sent to a client, from the minimum snapshot rate.
+     * @return
+     */
+    public int getMaxSnapshotInterval() {
+        return Math.max(1, this.tickRate / this.minSnapshotRate);
+    }
+
+    /**
+     * Gets the most npcs spawned in one tick. Larger waves join the world over the following ticks.
+     * @return
+     */
+    public int getSpawnBudgetEntities() {
+        return this.spawnBudgetEntities;
+    }
+
+    /**
+     * Gets how many microseconds a tick may spend creating npcs before the rest wait for the next tick.
+     * @return
+     */
+    public int getSpawnBudgetMicros() {
+        return this.spawnBudgetMicros;
+    }
+
+    /**
+     * Gets how many ticks a throwaway world is run for before the server accepts connections, so the first players
+     * don't play on a cold JVM. 0 turns the warm-up off.
+     * @return
+     */
+    public int getWarmupTicks() {
+        return this.warmupTicks;
+    }
+
+    private static boolean readBoolean(final String property, final boolean defaultValue) {
+        final String value = System.getProperty(property);
+        if(value == null) {
+            return defaultValue;
+        }
+        return Boolean.parseBoolean(value.trim());
+    }
+
+    private static int readInt(final String property, final int defaultValue, final int min, final int max) {
+        final String value = System.getProperty(property);
+        if(value == null) {
+            return defaultValue;
+        }
+
+        try {
+            final int parsed = Integer.parseInt(value.trim());
+            if(parsed < min || parsed > max) {
+                System.out.println("Ignoring " + property + "=" + value + ", expected a value between "
+                    + min + " and " + max + ".");
+                return defaultValue;
+            }
+            return parsed;
+        }
+        catch(final NumberFormatException ex) {
+            System.out.println("Ignoring " + property + "=" + value + ", it is not a number.");
+            return defaultValue;
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.becky.util;
 
-import java.util.ArrayList;
-import java.util.List;
-
 public class StringUtils {
-    private static final List<String> USED_TOKENS = new ArrayList<>();
-
     private static final String CHARACTERS = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
-    private static String generateRandomAuthString() {
+
+    /**
+     * Generates a random authentication string. The player registry makes sure no two players have the same one.
+     * @return
+     */
+    public static String generateAuthenticationString() {
         final StringBuilder builder = new StringBuilder();
         for(int i = 0; i < 19; i++) {
             if(i % 5 == 4) {
@@ -21,14 +21,6 @@ public class StringUtils {
         return builder.toString();
     }
 
-    public static String generateUniqueAuthenticationString() {
-        String token = generateRandomAuthString();
-        while(USED_TOKENS.contains(token)) {
-            token = generateRandomAuthString();
-        }
-        return token;
-    }
-
     private static final String[] GENERIC_NAMES = { "unnamed", "Bob", "Tank", "WarFighter", "GenericSuperhero",
         "SomeGuyOnAHorse", "KimJongUn", "NickelbackFan", "Bryan", "John", "LeeroyJenkins"};
     public static String generateRandomUsername() {
@@ -0,0 +1,231 @@
+package com.becky.world;
+
+import com.becky.util.LongIntMap;
+import com.becky.world.entity.Bullet;
+import com.becky.world.entity.GameEntity;
+import com.becky.world.entity.Player;
+import com.becky.world.entity.npc.Npc;
+import com.becky.world.physics.SpatialGrid;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The players, bullets and npcs one client is told about.
+ *
+ * An entity comes into view once it is within the enter radius of the viewing player and stays in view until it is
+ * further away than the leave radius, so entities near the edge do not flicker in and out. Dead bullets and npcs drop
+ * out of view, which is when the client is told to remove them. Only used by the game loop.
+ */
+public class AreaOfInterest {
+    private Set<Player> players = new HashSet<>();
+    private IdSet bulletIds = new IdSet();
+    private IdSet npcIds = new IdSet();
+    private Set<Player> previousPlayers = new HashSet<>();
+    private IdSet previousBulletIds = new IdSet();
+    private IdSet previousNpcIds = new IdSet();
+    //the bullets and npcs in view this tick, in the order the grid returned them
+    private final List<Bullet> bullets = new ArrayList<>();
+    private final List<Npc> npcs = new ArrayList<>();
+
+    /**
+     * Works out what is in view this tick. The grid must hold every entity of the world.
+     * @param viewer The player whose view this is. A player can always see itself.
+     * @param grid
+     * @param enterRadius
+     * @param leaveRadius
+     * @param candidates Scratch list for the grid query.
+     */
+    public void update(final Player viewer, final SpatialGrid grid, final float enterRadius, final float leaveRadius,
+                       final List<GameEntity> candidates) {
+        final Set<Player> lastPlayers = previousPlayers;
+        final IdSet lastBulletIds = previousBulletIds;
+        final IdSet lastNpcIds = previousNpcIds;
+        previousPlayers = players;
+        previousBulletIds = bulletIds;
+        previousNpcIds = npcIds;
+        players = lastPlayers;
+        bulletIds = lastBulletIds;
+        npcIds = lastNpcIds;
+        players.clear();
+        bulletIds.clear();
+        npcIds.clear();
+        bullets.clear();
+        npcs.clear();
+
+        final float x = viewer.getXPosition();
+        final float y = viewer.getYPosition();
+        final float enterRadiusSquared = enterRadius * enterRadius;
+        final float leaveRadiusSquared = leaveRadius * leaveRadius;
+        players.add(viewer);
+
+        candidates.clear();
+        grid.query(x, y, leaveRadius, candidates);
+        for(int i = 0; i < candidates.size(); i++) {
+            final GameEntity entity = candidates.get(i);
+            final float dx = entity.getXPosition() - x;
+            final float dy = entity.getYPosition() - y;
+            final float distanceSquared = dx * dx + dy * dy;
+            if(distanceSquared > leaveRadiusSquared) {
+                continue;
+            }
+            final boolean inside = distanceSquared <= enterRadiusSquared;
+
+            if(entity instanceof Bullet) {
+                final Bullet bullet = (Bullet)entity;
+                final long id = entity.getEntityId();
+                if(!bullet.isDead() && (inside || previousBulletIds.contains(id)) && bulletIds.add(id)) {
+                    bullets.add(bullet);
+                }
+            }
+            else if(entity instanceof Npc) {
+                final Npc npc = (Npc)entity;
+                final long id = entity.getEntityId();
+                if(!npc.isDead() && (inside || previousNpcIds.contains(id)) && npcIds.add(id)) {
+                    npcs.add(npc);
+                }
+            }
+            else if(entity instanceof Player) {
+                final Player player = (Player)entity;
+                if(inside || previousPlayers.contains(player)) {
+                    players.add(player);
+                }
+            }
+        }
+        candidates.clear();
+    }
+
+    public boolean isVisible(final Player player) {
+        return players.contains(player);
+    }
+
+    /**
+     * Gets the bullets in view this tick.
+     * @return
+     */
+    public List<Bullet> getVisibleBullets() {
+        return this.bullets;
+    }
+
+    /**
+     * Gets the npcs in view this tick.
+     * @return
+     */
+    public List<Npc> getVisibleNpcs() {
+        return this.npcs;
+    }
+
+    /**
+     * Gets whether the bullet came into view this tick.
+     * @param bullet
+     * @return
+     */
+    public boolean hasEntered(final Bullet bullet) {
+        final long id = bullet.getEntityId();
+        return bulletIds.contains(id) && !previousBulletIds.contains(id);
+    }
+
+    /**
+     * Gets whether the npc came into view this tick.
+     * @param npc
+     * @return
+     */
+    public boolean hasEntered(final Npc npc) {
+        final long id = npc.getEntityId();
+        return npcIds.contains(id) && !previousNpcIds.contains(id);
+    }
+
+    public List<Player> getEnteredPlayers() {
+        return difference(players, previousPlayers);
+    }
+
+    /**
+     * Gets the players which were in view last tick but are not anymore, including players who left the game.
+     * @return
+     */
+    public List<Player> getLeftPlayers() {
+        return difference(previousPlayers, players);
+    }
+
+    /**
+     * Gets the ids of the bullets which were in view last tick but are not anymore, including bullets which died.
+     * @return
+     */
+    public long[] getLeftBullets() {
+        return previousBulletIds.difference(bulletIds);
+    }
+
+    /**
+     * Gets the ids of the npcs which were in view last tick but are not anymore, including npcs which died.
+     * @return
+     */
+    public long[] getLeftNpcs() {
+        return previousNpcIds.difference(npcIds);
+    }
+
+    private static <T> List<T> difference(final Set<T> from, final Set<T> without) {
+        final List<T> result = new ArrayList<>();
+        for(final T element: from) {
+            if(!without.contains(element)) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A set of entity ids which doesn't box them, and which can be walked in the order the ids were added.
+     */
+    private static class IdSet {
+        private final LongIntMap indices = new LongIntMap();
+        private long[] ids = new long[64];
+        private int size;
+
+        /**
+         * @param id
+         * @return Whether the id wasn't in the set yet.
+         */
+        boolean add(final long id) {
+            if(indices.containsKey(id)) {
+                return false;
+            }
+            if(size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            indices.put(id, size);
+            ids[size++] = id;
+            return true;
+        }
+
+        boolean contains(final long id) {
+            return indices.containsKey(id);
+        }
+
+        void clear() {
+            if(size > 0) {
+                indices.clear();
+                size = 0;
+            }
+        }
+
+        long[] difference(final IdSet without) {
+            int count = 0;
+            for(int i = 0; i < size; i++) {
+                if(!without.contains(ids[i])) {
+                    count++;
+                }
+            }
+            final long[] result = new long[count];
+            int next = 0;
+            for(int i = 0; i < size && next < count; i++) {
+                if(!without.contains(ids[i])) {
+                    result[next++] = ids[i];
+                }
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.becky.world;
+
+import com.becky.world.entity.GameEntity;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the entities to add to and remove from a game world until the game loop applies them all at once.
+ * Any thread may record commands without blocking. Commands are applied in the order they were recorded.
+ */
+public class EntityCommandBuffer {
+    private final ConcurrentLinkedQueue<Command> commands = new ConcurrentLinkedQueue<>();
+
+    public void add(final GameEntity entity) {
+        commands.offer(new Command(true, Collections.singletonList(entity)));
+    }
+
+    /**
+     * Records many entities to add as a single command. The collection is kept as is, so it must not be modified
+     * afterwards.
+     * @param entities
+     */
+    public void addAll(final Collection<? extends GameEntity> entities) {
+        if(!entities.isEmpty()) {
+            commands.offer(new Command(true, entities));
+        }
+    }
+
+    public void remove(final GameEntity entity) {
+        commands.offer(new Command(false, Collections.singletonList(entity)));
+    }
+
+    public boolean isEmpty() {
+        return commands.isEmpty();
+    }
+
+    /**
+     * Applies every recorded command to the given store.
+     * Entities which were removed and added back within the same batch are left out of the result lists, they are
+     * still in the store as if nothing happened to them. Entities which were added and removed again never joined the
+     * world, they are not reported as added or removed but as discarded.
+     * @param store The store to apply the commands to.
+     * @param added Receives the entities which were actually added to the store.
+     * @param removed Receives the entities which were actually removed from the store.
+     * @param discarded Receives the entities which were added and removed again, and are not in the store.
+     */
+    void applyTo(final EntityStore store, final List<GameEntity> added, final List<GameEntity> removed,
+                 final List<GameEntity> discarded) {
+        Command command;
+        while((command = commands.poll()) != null) {
+            for(final GameEntity entity: command.entities) {
+                if(command.add) {
+                    if(store.add(entity)) {
+                        added.add(entity);
+                    }
+                }
+                else if(store.remove(entity)) {
+                    removed.add(entity);
+                }
+            }
+        }
+
+        if(!added.isEmpty() && !removed.isEmpty()) {
+            final Set<GameEntity> both = new HashSet<>(added);
+            both.retainAll(removed);
+            if(!both.isEmpty()) {
+                added.removeAll(both);
+                removed.removeAll(both);
+                for(final GameEntity entity: both) {
+                    if(store.getById(entity.getEntityId()) != entity) {
+                        discarded.add(entity);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Command {
+        private final boolean add;
+        private final Collection<? extends GameEntity> entities;
+
+        private Command(final boolean add, final Collection<? extends GameEntity> entities) {
+            this.add = add;
+            this.entities = entities;
+        }
+    }
+}
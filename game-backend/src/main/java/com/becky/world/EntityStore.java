@@ -0,0 +1,107 @@
+package com.becky.world;
+
+import com.becky.world.entity.Bullet;
+import com.becky.world.entity.GameEntity;
+import com.becky.world.entity.Player;
+import com.becky.world.entity.npc.Npc;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Holds every entity in a game world along with views of the players, bullets and NPCs (in total and per NPC class).
+ * All views are kept up to date on every add and remove, so code which only cares about one kind of entity can
+ * iterate exactly that population without copying or instanceof checks.
+ *
+ * The store is not thread safe. The game world guards it with its own monitor.
+ */
+public class EntityStore {
+    private static final EntityView<Npc> EMPTY_VIEW = new EntityView<>();
+
+    private final EntityView<GameEntity> entities = new EntityView<>();
+    private final EntityView<Player> players = new EntityView<>();
+    private final EntityView<Bullet> bullets = new EntityView<>();
+    private final EntityView<Npc> npcs = new EntityView<>();
+    private final Map<Class<? extends Npc>, EntityView<Npc>> npcsByClass = new HashMap<>();
+
+    /**
+     * Adds an entity to the store and every view it belongs to.
+     * @param entity
+     * @return False if the entity was already in the store.
+     */
+    public boolean add(final GameEntity entity) {
+        if(!entities.add(entity)) {
+            return false;
+        }
+
+        if(entity instanceof Player) {
+            players.add((Player)entity);
+        }
+        else if(entity instanceof Bullet) {
+            bullets.add((Bullet)entity);
+        }
+        else if(entity instanceof Npc) {
+            final Npc npc = (Npc)entity;
+            npcs.add(npc);
+            npcsByClass.computeIfAbsent(npc.getClass(), type -> new EntityView<>()).add(npc);
+        }
+        return true;
+    }
+
+    /**
+     * Removes an entity from the store and every view it belongs to.
+     * @param entity
+     * @return False if the entity was not in the store.
+     */
+    public boolean remove(final GameEntity entity) {
+        if(!entities.remove(entity)) {
+            return false;
+        }
+
+        if(entity instanceof Player) {
+            players.remove(entity);
+        }
+        else if(entity instanceof Bullet) {
+            bullets.remove(entity);
+        }
+        else if(entity instanceof Npc) {
+            npcs.remove(entity);
+            npcsByClass.get(entity.getClass()).remove(entity);
+        }
+        return true;
+    }
+
+    public GameEntity getById(final long entityId) {
+        return entities.getById(entityId);
+    }
+
+    public EntityView<GameEntity> getEntities() {
+        return this.entities;
+    }
+
+    public EntityView<Player> getPlayers() {
+        return this.players;
+    }
+
+    public EntityView<Bullet> getBullets() {
+        return this.bullets;
+    }
+
+    public EntityView<Npc> getNpcs() {
+        return this.npcs;
+    }
+
+    /**
+     * Gets the NPCs of exactly the given class. Subclasses of the given class are not included.
+     * @param npcClass
+     * @return
+     */
+    public EntityView<Npc> getNpcs(final Class<? extends Npc> npcClass) {
+        final EntityView<Npc> view = npcsByClass.get(npcClass);
+        return view == null ? EMPTY_VIEW : view;
+    }
+
+    public int size() {
+        return entities.size();
+    }
+}
@@ -0,0 +1,106 @@
+package com.becky.world;
+
+import com.becky.util.LongIntMap;
+import com.becky.world.entity.GameEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A densely packed, unordered list of game entities with constant time add, remove and lookup by entity id.
+ * Removing an entity moves the last entity into the freed slot, so the order of entities changes over time.
+ *
+ * Entities can be removed while iterating as long as the iteration runs from the last index to the first:
+ * the entity moved into a freed slot has then already been visited.
+ * Slots are looked up by id in a primitive map, so adding, removing and looking up entities doesn't allocate.
+ * Not thread safe, see {@link EntityStore}.
+ * @param <T> The type of entity held by this view.
+ */
+public class EntityView<T extends GameEntity> {
+    private GameEntity[] entities = new GameEntity[64];
+    private final LongIntMap slotsById = new LongIntMap();
+    private int size;
+
+    /**
+     * Adds an entity to the end of this view.
+     * @param entity
+     * @return False if the entity was already in this view.
+     */
+    boolean add(final T entity) {
+        final long id = entity.getEntityId();
+        if(slotsById.containsKey(id)) {
+            return false;
+        }
+        if(size == entities.length) {
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+        entities[size] = entity;
+        slotsById.put(id, size);
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes an entity by moving the last entity of this view into its slot.
+     * @param entity
+     * @return False if the entity was not in this view.
+     */
+    boolean remove(final GameEntity entity) {
+        final int slot = slotsById.remove(entity.getEntityId());
+        if(slot == LongIntMap.NO_VALUE) {
+            return false;
+        }
+
+        final int last = size - 1;
+        if(slot != last) {
+            final GameEntity moved = entities[last];
+            entities[slot] = moved;
+            slotsById.put(moved.getEntityId(), slot);
+        }
+        entities[last] = null;
+        size--;
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(final int index) {
+        return (T)entities[index];
+    }
+
+    /**
+     * Gets an entity by its id.
+     * @param entityId
+     * @return The entity or null if no entity in this view has the given id.
+     */
+    @SuppressWarnings("unchecked")
+    public T getById(final long entityId) {
+        final int slot = slotsById.get(entityId);
+        return slot == LongIntMap.NO_VALUE ? null : (T)entities[slot];
+    }
+
+    public boolean contains(final GameEntity entity) {
+        return slotsById.containsKey(entity.getEntityId());
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Copies the entities of this view into a new list.
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> copy() {
+        final List<T> copy = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            copy.add((T)entities[i]);
+        }
+        return copy;
+    }
+}
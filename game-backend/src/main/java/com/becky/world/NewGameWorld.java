@@ -1,15 +1,26 @@
 package com.becky.world;
 
 import com.becky.networking.PlayerMessageTransmitter;
+import com.becky.networking.SharedFrame;
 import com.becky.networking.message.BulletInfo;
 import com.becky.networking.message.HighscoreInfo;
 import com.becky.networking.message.NpcInfo;
 import com.becky.networking.message.PlayerHealthMessage;
+import com.becky.networking.message.PlayerVisibilityChange;
 import com.becky.networking.message.PointsUpdate;
 import com.becky.networking.message.ServerPlayerUpdate;
+import com.becky.networking.protocol.BinaryCodec;
+import com.becky.networking.protocol.Snapshot;
+import com.becky.networking.protocol.SnapshotHistory;
+import com.becky.networking.protocol.WireFormat;
+import com.becky.util.LongIntMap;
+import com.becky.util.ServerConfig;
 import com.becky.world.entity.Bullet;
+import com.becky.world.entity.EntityPool;
 import com.becky.world.entity.GameEntity;
+import com.becky.world.entity.KinematicsStorage;
 import com.becky.world.entity.Player;
+import com.becky.world.entity.npc.FlowFields;
 import com.becky.world.entity.npc.Npc;
 import com.becky.world.entity.npc.NpcSpawner;
 import com.becky.world.entity.npc.SpawnRules;
@@ -17,28 +28,58 @@ import com.becky.world.physics.BulletCollisionDetector;
 import com.becky.world.physics.NpcCollisionDetector;
 import com.becky.world.physics.PhysicsFilter;
 import com.becky.world.physics.PlayerCollisionDetector;
+import com.becky.world.physics.SpatialGrid;
 import com.becky.world.physics.WorldBorderCollisionDetector;
-import org.java_websocket.WebSocket;
-import org.reflections.Reflections;
 
 import java.awt.geom.Point2D;
-import java.lang.reflect.Constructor;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
 
 public class NewGameWorld implements Runnable {
-    private static final int MAX_TPS = 20;
-    private static final long TIME_PER_TICK = (long) (1000.0f / MAX_TPS);
-
-    private final HashMap<String, Player> players = new HashMap<>();
-    private final HashMap<String, Player> deadPlayers = new HashMap<>();
-    private final List<GameEntity> gameEntities = new ArrayList<>();
+    //how often highscores are broadcast and tick loop statistics are reported
+    private static final int REPORT_INTERVAL_SECONDS = 15;
+    //the most removed entities of one type kept around for reuse
+    private static final int ENTITY_POOL_MAX_IDLE = 4096;
+    //players are few and npcs look for them from far away, so their grid has much larger cells than the broadphase
+    private static final float PLAYER_GRID_CELL_SIZE = 512.0f;
+
+    private final ServerConfig config;
+    private final TickScheduler scheduler;
+    private final TickProfiler profiler;
+    private final SteadyStateTracker steadyState;
+    private final PlayerRegistry playerRegistry = new PlayerRegistry();
+    private final EntityStore entityStore = new EntityStore();
+    private final EntityCommandBuffer entityCommands = new EntityCommandBuffer();
+    private final KinematicsStorage kinematics;
+    private final Map<Class<?>, EntityPool<?>> entityPools = new LinkedHashMap<>();
     private final List<PhysicsFilter> physicsFilters = new ArrayList<>();
-    private final PlayerMessageTransmitter messageTransmitter = new PlayerMessageTransmitter();
-    private final List<WorldEventListener> worldEventListeners = new ArrayList<>();
-    private final NpcSpawner spawner = new NpcSpawner(this);
+    private final PlayerMessageTransmitter messageTransmitter;
+    private final SnapshotHistory snapshotHistory = new SnapshotHistory(SnapshotHistory.DEFAULT_CAPACITY);
+    private final List<GameEntity> interestCandidates = new ArrayList<>();
+    //players waiting to be sent the bullets in flight, answered by the game loop since bullets are pooled
+    private final ConcurrentLinkedQueue<Player> initialBulletsRequests = new ConcurrentLinkedQueue<>();
+    private long snapshotSequence = 0;
+    private final WorldEventBus eventBus = new WorldEventBus();
+    private final NpcSpawner spawner;
     private final Point2D.Float worldDimension = new Point2D.Float(8000.0f, 8000.0f);
+    private final SpatialGrid spatialGrid = new SpatialGrid(worldDimension.x, worldDimension.y);
+    private final SpatialGrid playerGrid = new SpatialGrid(worldDimension.x, worldDimension.y, PLAYER_GRID_CELL_SIZE);
+    private final FlowFields flowFields = new FlowFields();
 
     public NewGameWorld() {
+        this(ServerConfig.defaults());
+    }
+
+    public NewGameWorld(final ServerConfig config) {
+        this.config = config;
+        this.scheduler = new TickScheduler(config.getTickRate(), config.getMaxCatchUpTicks());
+        this.messageTransmitter = new PlayerMessageTransmitter(
+            config.getMailboxLimitBytes(), scheduler.getTickNanos(), config.getMaxSnapshotInterval());
+        this.profiler = new TickProfiler(config.isProfilerEnabled(), config.getTraceTicks());
+        this.steadyState = new SteadyStateTracker(config.getTickRate());
+        this.kinematics = new KinematicsStorage(config.isStructureOfArraysKinematics());
+        this.spawner = new NpcSpawner(this, config.getSpawnBudgetEntities(), config.getSpawnBudgetMicros());
         physicsFilters.add(new BulletCollisionDetector(this));
         physicsFilters.add(new WorldBorderCollisionDetector(worldDimension.x, worldDimension.y));
         physicsFilters.add(new PlayerCollisionDetector(this));
@@ -51,167 +92,581 @@ public class NewGameWorld implements Runnable {
         thread.start();
     }
 
+    //the phases of a tick are package-private so the benchmarks in game-benchmarks can run them one at a time
     @Override
     public void run() {
-        long frameStart = System.currentTimeMillis();
-        long frameEnd = frameStart;
-        long elapsedTime;
+        final long reportInterval = (long)config.getTickRate() * REPORT_INTERVAL_SECONDS;
         long frameNumber = 0;
 
+        scheduler.start();
         while(true) {
+            scheduler.awaitNextTick();
             frameNumber++;
-            elapsedTime = frameEnd - frameStart;
-            frameStart = System.currentTimeMillis();
+            //every tick simulates the same amount of time regardless of how long the previous tick took
+            runTick(frameNumber, scheduler.advanceSimulatedTime(), frameNumber % reportInterval == 0);
+            final long tickDuration = scheduler.endTick();
+            if(steadyState.record(tickDuration)) {
+                System.out.println(steadyState.report());
+            }
+
+            if(frameNumber % reportInterval == 0) {
+                //only report the tick loop when it could not hold its rate
+                final boolean behindSchedule = scheduler.isWindowBehindSchedule();
+                final String report = scheduler.reportAndResetWindow();
+                if(behindSchedule) {
+                    System.out.println(report);
+                }
+                if(profiler.isEnabled()) {
+                    System.out.println(profiler.reportAndResetWindow());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs every phase of one tick.
+     * @param frameNumber
+     * @param elapsedTime The simulated time which passes during the tick, in milliseconds.
+     * @param highscores Whether the highscores are broadcast this tick.
+     */
+    void runTick(final long frameNumber, final long elapsedTime, final boolean highscores) {
+        profiler.beginTick(frameNumber);
+
+        //add and remove the entities spawned or killed since the last tick
+        applyEntityCommands();
+        profiler.endPhase(TickProfiler.PHASE_ENTITY_COMMANDS);
+        //apply the input clients sent since the last tick
+        applyPlayerInput();
+        profiler.endPhase(TickProfiler.PHASE_PLAYER_INPUT);
+        //update game entities
+        tick(elapsedTime);
+        profiler.endPhase(TickProfiler.PHASE_TICK);
+        //apply relevant physics to entities
+        applyPhysics();
+        profiler.endPhase(TickProfiler.PHASE_PHYSICS);
+        //transmit entity details
+        transmit();
+        profiler.endPhase(TickProfiler.PHASE_TRANSMIT);
+        //spawn npcs as necessary
+        spawner.executeSpawnRules();
+        profiler.endPhase(TickProfiler.PHASE_SPAWN);
+
+        if(highscores) {
+            this.transmitHighscores();
+            profiler.endPhase(TickProfiler.PHASE_HIGHSCORES);
+        }
+        profiler.endTick();
+    }
 
-            //for thread safety get a copy of the game entities list
-            final List<GameEntity> entities = this.getAllGameEntities();
+    void applyEntityCommands() {
+        if(entityCommands.isEmpty()) {
+            return;
+        }
 
-            //update game entities
-            tick(entities, elapsedTime);
-            //apply relevant physics to entities
-            applyPhysics(entities);
-            //transmit entity details
-            transmit(entities);
-            //spawn npcs as necessary
-            spawner.executeSpawnRules();
+        final List<GameEntity> added = new ArrayList<>();
+        final List<GameEntity> removed = new ArrayList<>();
+        final List<GameEntity> discarded = new ArrayList<>();
+        synchronized (this.entityStore) {
+            entityCommands.applyTo(entityStore, added, removed, discarded);
+        }
+        for(int i = 0; i < removed.size(); i++) {
+            kinematics.detach(removed.get(i));
+        }
+        for(int i = 0; i < added.size(); i++) {
+            kinematics.attach(added.get(i));
+        }
 
-            if(frameNumber % 300 == 0) {//every 300 frames (15 seconds)
-                this.transmitHighscores();
-            }
-            //see if we need to sleep
-            //sleep if necessary
-            frameEnd = System.currentTimeMillis();
-            elapsedTime = frameEnd - frameStart;
-            if(elapsedTime < TIME_PER_TICK - 2) {
-                try {
-                    Thread.sleep(TIME_PER_TICK - elapsedTime - 2);
-                } catch(final InterruptedException ignored) {}
-            }
-            frameEnd = System.currentTimeMillis();
+        //listeners hear about everything they subscribed to that changed this tick in one call each
+        eventBus.publish(this, added, removed);
+        //entities added and removed again before a tick saw them never joined the world, listeners aren't told about
+        //them but subscriptions to them end as they would for a removed entity
+        eventBus.forget(discarded);
+
+        //nobody refers to the removed entities anymore, so pooled ones can be handed out again
+        for(int i = 0; i < removed.size(); i++) {
+            EntityPool.recycle(removed.get(i));
+        }
+        //neither are the ones which never made it into the store
+        for(int i = 0; i < discarded.size(); i++) {
+            EntityPool.recycle(discarded.get(i));
         }
     }
 
-    private void tick(final List<GameEntity> entities, final long elapsedTime) {
-        for(final GameEntity entity: entities) {
-            entity.tick(elapsedTime);
+    void applyPlayerInput() {
+        final EntityView<Player> players = entityStore.getPlayers();
+        for(int i = 0; i < players.size(); i++) {
+            players.get(i).applyPendingInput();
         }
     }
 
-    private void applyPhysics(final List<GameEntity> entities) {
+    void indexPlayers() {
+        playerGrid.rebuild(entityStore.getPlayers());
+    }
+
+    void tick(final long elapsedTime) {
+        //npcs look for players where they were at the start of the tick, and steer towards them from there
+        indexPlayers();
+        flowFields.beginTick();
+        //entities spawned during this phase are first ticked on the next tick
+        final EntityView<GameEntity> entities = entityStore.getEntities();
+        final int count = entities.size();
+        for(int i = 0; i < count; i++) {
+            entities.get(i).tick(elapsedTime);
+        }
+        //then move everything according to its velocity and acceleration. Every entity decides before any entity
+        //moves, so npcs steer by where the players were at the start of the tick whatever order they are stored in
+        kinematics.integrate(entities, elapsedTime / 1000.0f);
+        //players shoot from where they moved to, as they did when they moved before firing in their own tick
+        final EntityView<Player> players = entityStore.getPlayers();
+        for(int i = 0; i < players.size(); i++) {
+            players.get(i).tickShooting();
+        }
+    }
+
+    void applyPhysics() {
+        final EntityView<GameEntity> entities = entityStore.getEntities();
+        //the broadphase is rebuilt once per tick and shared by every physics filter
+        spatialGrid.rebuild(entities);
+        final int count = entities.size();
         for(final PhysicsFilter filter: physicsFilters) {
             filter.prepare();
-            for(final GameEntity entity: entities) {
-                if(entity.doesPhysicsApply(filter.getClass())) {
+            final Class<? extends PhysicsFilter> filterClass = filter.getClass();
+            for(int i = 0; i < count; i++) {
+                final GameEntity entity = entities.get(i);
+                if(entity.doesPhysicsApply(filterClass)) {
                     filter.apply(entity);
                 }
             }
         }
     }
 
-    private void transmit(final List<GameEntity> entities) {
-        final List<ServerPlayerUpdate> playerUpdates = new ArrayList<>();
-        final List<BulletInfo> bulletUpdates = new ArrayList<>();
-        final List<NpcInfo> npcInfos = new ArrayList<>();
+    void transmit() {
+        final EntityView<Player> players = entityStore.getPlayers();
+        final EntityView<Bullet> bullets = entityStore.getBullets();
+        final EntityView<Npc> npcs = entityStore.getNpcs();
+        final TickUpdates updates = new TickUpdates(players.size(), bullets.size(), npcs.size());
+
+        //dead entities are only removed at the start of the next tick, so the views don't change while walking them
+        for(int i = players.size() - 1; i >= 0; i--) {
+            final Player player = players.get(i);
+            final ServerPlayerUpdate update = new ServerPlayerUpdate();
+            update.setPlayerId(player.getEntityId());
+            update.setPlayerName(player.getPlayerUsername());
+            update.setPosX(player.getXPosition());
+            update.setPosY(player.getYPosition());
+            update.setVelX(player.getXVelocity());
+            update.setVelY(player.getYVelocity());
+            update.setAccelX(player.getXAcceleration());
+            update.setAccelY(player.getYAcceleration());
+            update.setAngle(player.getAngles());
+            updates.addPlayer(player, update);
+
+            if(player.isPlayerHealthUpdated()) {
+                if(player.getHealth() <= 0 && playerRegistry.markDead(player)) {
+                    //the player stays registered until it disconnects, it just leaves the world
+                    this.removeGameEntity(player);
+                    this.transmitHighscores();
+                }
+                final PlayerHealthMessage healthUpdate = new PlayerHealthMessage();
+                healthUpdate.setAffectedBy(player.getHealthAffectedBy());
+                healthUpdate.setHealth(player.getHealth());
+                healthUpdate.setUsername(player.getPlayerUsername());
+                messageTransmitter.transmitMessage(player, healthUpdate.jsonSerialize());
+            }
+            if(player.isPlayerScoreUpdated()) {
+                final PointsUpdate pointsUpdate = new PointsUpdate();
+                pointsUpdate.setNumPoints(player.getScore());
+                pointsUpdate.setUsername(player.getPlayerUsername());
+                messageTransmitter.transmitMessage(player, pointsUpdate.jsonSerialize());
+            }
+            player.resetStatusUpdateFlags();
+        }
+
+        for(int i = bullets.size() - 1; i >= 0; i--) {
+            final Bullet bullet = bullets.get(i);
+            final int bulletState = bullet.getState();
+
+            if(bulletState == Bullet.STATE_DEAD_BULLET) {
+                final BulletInfo info = new BulletInfo(
+                    null, 0, Bullet.STATE_DEAD_BULLET, bullet.getEntityId(), null, null, null, null);
+                updates.addBullet(bullet, info);
+                this.removeGameEntity(bullet);
+            }
+            else if(bulletState == Bullet.STATE_NEW_BULLET) {
+                final BulletInfo info = new BulletInfo(
+                    bullet.getOwner().getPlayerUsername(),
+                    bullet.getOwner().getEntityId(),
+                    Bullet.STATE_NEW_BULLET,
+                    bullet.getEntityId(),
+                    bullet.getXVelocity(), bullet.getYVelocity(),
+                    bullet.getXPosition(), bullet.getYPosition());
+                updates.addBullet(bullet, info);
+            }
+            else if(bulletState == Bullet.STATE_UPDATED_BULLET) {
+                final BulletInfo info = new BulletInfo(null, 0, Bullet.STATE_UPDATED_BULLET, bullet.getEntityId(),
+                    null, null, bullet.getXPosition(), bullet.getYPosition());
+                updates.addBullet(bullet, info);
+            }
+        }
+
+        for(int i = npcs.size() - 1; i >= 0; i--) {
+            final Npc npc = npcs.get(i);
+            final NpcInfo npcInfo = new NpcInfo();
+            npcInfo.setState(npc.getNpcState());
+            npcInfo.setHealth(npc.getNpcHealth());
+            npcInfo.setNpcId(npc.getEntityId());
+            npcInfo.setAngle(npc.getAngles());
+            npcInfo.setPositionX(npc.getXPosition());
+            npcInfo.setPositionY(npc.getYPosition());
+            npcInfo.setVelocityX(npc.getXVelocity());
+            npcInfo.setVelocityY(npc.getYVelocity());
+            npcInfo.setAccelerationX(npc.getXAcceleration());
+            npcInfo.setAccelerationY(npc.getYAcceleration());
+            npcInfo.setType(npc.getClass().getSimpleName());
+            updates.addNpc(npc, npcInfo);
+
+            if(npcInfo.getState() == Npc.NPC_STATE_DEAD) {
+                this.removeGameEntity(npc);
+            }
+        }
+
+        snapshotSequence++;
+        final long now = System.nanoTime();
+        if(config.getViewRadius() > 0) {
+            final float enterRadius = config.getViewRadius();
+            final float leaveRadius = enterRadius + config.getViewHysteresis();
+            final Set<Player> joiningPlayers = pollInitialBulletsRequests();
+            for(final Player player: getAllPlayers()) {
+                final boolean snapshotDue = player.getSendRateController().isSnapshotDue(now);
+                transmitAreaOfInterest(player, updates, enterRadius, leaveRadius, snapshotDue,
+                    !joiningPlayers.isEmpty() && joiningPlayers.remove(player));
+            }
+            //players who weren't updated this tick are sent their bullets with their first update
+            for(final Player player: joiningPlayers) {
+                if(playerRegistry.getByEntityId(player.getEntityId()) == player) {
+                    initialBulletsRequests.offer(player);
+                }
+            }
+        }
+        else {
+            transmitWholeWorld(updates, now);
+            transmitInitialBullets();
+        }
+        //everything a client was sent this tick, including the events of the earlier phases, goes out as one frame
+        messageTransmitter.flush();
+    }
+
+    private Set<Player> pollInitialBulletsRequests() {
+        if(initialBulletsRequests.isEmpty()) {
+            return Collections.emptySet();
+        }
+        final Set<Player> players = new HashSet<>();
+        Player player;
+        while((player = initialBulletsRequests.poll()) != null) {
+            players.add(player);
+        }
+        return players;
+    }
 
-        for(final GameEntity entity: entities) {
-            if(entity instanceof Player) {
-                final Player player = (Player)entity;
-                final ServerPlayerUpdate update = new ServerPlayerUpdate();
-                update.setPlayerName(player.getPlayerUsername());
-                update.setPosX(player.getXPosition());
-                update.setPosY(player.getYPosition());
-                update.setVelX(player.getXVelocity());
-                update.setVelY(player.getYVelocity());
-                update.setAccelX(player.getXAcceleration());
-                update.setAccelY(player.getYAcceleration());
-                update.setAngle(player.getAngles());
-                playerUpdates.add(update);
-
-                if(player.isPlayerHealthUpdated()) {
-                    if(player.getHealth() <= 0) {
-                        removePlayerByUsername(player.getPlayerUsername());
-                        synchronized (this.deadPlayers) {
-                            deadPlayers.put(player.getPlayerUsername(), player);
-                        }
+    /**
+     * Sends the players who asked for it every bullet in flight. Only used when every client is told about the whole
+     * world, with interest management a joining player is sent the bullets in its view by its first update instead.
+     */
+    private void transmitInitialBullets() {
+        if(initialBulletsRequests.isEmpty()) {
+            return;
+        }
+
+        final EntityView<Bullet> bullets = entityStore.getBullets();
+        final List<BulletInfo> bulletInfos = new ArrayList<>(bullets.size());
+        for(int i = 0; i < bullets.size(); i++) {
+            final Bullet bullet = bullets.get(i);
+            //dead bullets are being reported removed this tick
+            if(bullet.isDead()) {
+                continue;
+            }
+            final Player owner = bullet.getOwner();
+            bulletInfos.add(new BulletInfo(owner.getPlayerUsername(), owner.getEntityId(), Bullet.STATE_NEW_BULLET,
+                bullet.getEntityId(), bullet.getXVelocity(), bullet.getYVelocity(), bullet.getXPosition(),
+                bullet.getYPosition()));
+        }
+        final String message = BulletInfo.jsonSerialize(bulletInfos);
+
+        Player player;
+        while((player = initialBulletsRequests.poll()) != null) {
+            //the player may have left since asking
+            if(playerRegistry.getByEntityId(player.getEntityId()) == player) {
+                messageTransmitter.transmitMessage(player, message);
+            }
+        }
+    }
+
+    /**
+     * Sends every client the same updates about every entity. Clients whose link can't keep up are only sent the
+     * player states, snapshots and the movement of bullets and npcs every few ticks, in between they are only told
+     * about spawns and deaths, see {@link com.becky.networking.SendRateController}.
+     * @param updates
+     * @param now
+     */
+    private void transmitWholeWorld(final TickUpdates updates, final long now) {
+        final List<ServerPlayerUpdate> playerUpdates = updates.getPlayerUpdates();
+        final List<BulletInfo> bulletUpdates = updates.getBulletInfos();
+        final List<NpcInfo> npcInfos = updates.getNpcInfos();
+
+        //each format is only encoded and framed if at least one player asked for it, then the same frame is written to
+        //every connection which uses that format. The player states and snapshots replace the previous ones, bullets
+        //and npcs carry spawns and deaths so every one of them has to arrive
+        SharedFrame playerUpdatesMessage = null;
+        SharedFrame bulletUpdatesMessage = null;
+        SharedFrame npcUpdatesMessage = null;
+        SharedFrame playerUpdatesBinary = null;
+        SharedFrame bulletUpdatesBinary = null;
+        SharedFrame npcUpdatesBinary = null;
+        //the spawns and deaths alone, for clients which aren't due an update this tick
+        SharedFrame bulletEventsMessage = null;
+        SharedFrame npcEventsMessage = null;
+        SharedFrame bulletEventsBinary = null;
+        SharedFrame npcEventsBinary = null;
+        Snapshot snapshot = null;
+        //players who acknowledged the same snapshot get the same delta, so each baseline is only encoded once
+        final Map<Long, SharedFrame> snapshotsByBaseline = new HashMap<>();
+        final Collection<Player> allPlayers = getAllPlayers();
+        for(final Player player: allPlayers) {
+            final boolean snapshotDue = player.getSendRateController().isSnapshotDue(now);
+            if(player.getWireFormat() == WireFormat.BINARY && config.isDeltaSnapshots()) {
+                if(snapshotDue) {
+                    if(snapshot == null) {
+                        snapshot = Snapshot.capture(snapshotSequence, playerUpdates, npcInfos);
+                    }
+                    //a client which joined, or whose baseline is too old to still be in the history, gets a full
+                    //snapshot
+                    final Snapshot baseline = snapshotHistory.get(player.getAcknowledgedSnapshot());
+                    final long baselineSequence = baseline == null ? 0 : baseline.getSequence();
+                    SharedFrame snapshotMessage = snapshotsByBaseline.get(baselineSequence);
+                    if(snapshotMessage == null) {
+                        snapshotMessage = SharedFrame.binary(BinaryCodec.encodeSnapshot(snapshot, baseline));
+                        snapshotsByBaseline.put(baselineSequence, snapshotMessage);
+                    }
+                    messageTransmitter.transmitSnapshot(player, snapshotMessage);
+                    player.snapshotSent(snapshotSequence);
+                    if(bulletUpdatesBinary == null) {
+                        bulletUpdatesBinary = SharedFrame.binary(BinaryCodec.encodeBulletInfos(bulletUpdates));
                     }
-                    final PlayerHealthMessage healthUpdate = new PlayerHealthMessage();
-                    healthUpdate.setAffectedBy(player.getHealthAffectedBy());
-                    healthUpdate.setHealth(player.getHealth());
-                    healthUpdate.setUsername(player.getPlayerUsername());
-                    messageTransmitter.transmitMessage(player, healthUpdate.jsonSerialize());
+                    messageTransmitter.transmitMessage(player, bulletUpdatesBinary);
                 }
-                if(player.isPlayerScoreUpdated()) {
-                    final PointsUpdate pointsUpdate = new PointsUpdate();
-                    pointsUpdate.setNumPoints(player.getScore());
-                    pointsUpdate.setUsername(player.getPlayerUsername());
-                    messageTransmitter.transmitMessage(player, pointsUpdate.jsonSerialize());
+                else if(!updates.getBulletEvents().isEmpty()) {
+                    if(bulletEventsBinary == null) {
+                        bulletEventsBinary =
+                            SharedFrame.binary(BinaryCodec.encodeBulletInfos(updates.getBulletEvents()));
+                    }
+                    messageTransmitter.transmitMessage(player, bulletEventsBinary);
                 }
-                player.resetStatusUpdateFlags();
             }
-            else if(entity instanceof Bullet) {
-                final Bullet bullet = (Bullet)entity;
-                final int bulletState = bullet.getState();
-
-                if(bulletState == Bullet.STATE_DEAD_BULLET) {
-                    final BulletInfo info = new BulletInfo(
-                        null, Bullet.STATE_DEAD_BULLET, bullet.getEntityId(), null, null, null, null);
-                    bulletUpdates.add(info);
-                    this.removeGameEntity(entity);
+            else if(player.getWireFormat() == WireFormat.BINARY) {
+                if(snapshotDue) {
+                    if(playerUpdatesBinary == null) {
+                        playerUpdatesBinary = SharedFrame.binary(BinaryCodec.encodePlayerUpdates(playerUpdates));
+                        npcUpdatesBinary = SharedFrame.binary(BinaryCodec.encodeNpcInfos(npcInfos));
+                    }
+                    if(bulletUpdatesBinary == null) {
+                        bulletUpdatesBinary = SharedFrame.binary(BinaryCodec.encodeBulletInfos(bulletUpdates));
+                    }
+                    messageTransmitter.transmitSnapshot(player, playerUpdatesBinary);
+                    messageTransmitter.transmitMessage(player, bulletUpdatesBinary);
+                    messageTransmitter.transmitMessage(player, npcUpdatesBinary);
                 }
-                else if(bulletState == Bullet.STATE_NEW_BULLET) {
-                    final BulletInfo info = new BulletInfo(
-                        bullet.getOwner().getPlayerUsername(),
-                        Bullet.STATE_NEW_BULLET,
-                        bullet.getEntityId(),
-                        bullet.getXVelocity(), bullet.getYVelocity(),
-                        bullet.getXPosition(), bullet.getYPosition());
-                    bulletUpdates.add(info);
+                else {
+                    if(bulletEventsBinary == null) {
+                        bulletEventsBinary =
+                            SharedFrame.binary(BinaryCodec.encodeBulletInfos(updates.getBulletEvents()));
+                    }
+                    if(npcEventsBinary == null) {
+                        npcEventsBinary = SharedFrame.binary(BinaryCodec.encodeNpcInfos(updates.getNpcEvents()));
+                    }
+                    transmitEvents(player, updates, bulletEventsBinary, npcEventsBinary);
                 }
-                else if(bulletState == Bullet.STATE_UPDATED_BULLET) {
-                    final BulletInfo info = new BulletInfo(null, Bullet.STATE_UPDATED_BULLET, bullet.getEntityId(),
-                        null, null, bullet.getXPosition(), bullet.getYPosition());
-                    bulletUpdates.add(info);
+            }
+            else {
+                if(snapshotDue) {
+                    if(playerUpdatesMessage == null) {
+                        playerUpdatesMessage = SharedFrame.text(ServerPlayerUpdate.jsonSerializeAll(playerUpdates));
+                        bulletUpdatesMessage = SharedFrame.text(BulletInfo.jsonSerialize(bulletUpdates));
+                        npcUpdatesMessage = SharedFrame.text(NpcInfo.jsonSerializeAll(npcInfos));
+                    }
+                    messageTransmitter.transmitSnapshot(player, playerUpdatesMessage);
+                    messageTransmitter.transmitMessage(player, bulletUpdatesMessage);
+                    messageTransmitter.transmitMessage(player, npcUpdatesMessage);
+                }
+                else {
+                    if(bulletEventsMessage == null) {
+                        bulletEventsMessage = SharedFrame.text(BulletInfo.jsonSerialize(updates.getBulletEvents()));
+                        npcEventsMessage = SharedFrame.text(NpcInfo.jsonSerializeAll(updates.getNpcEvents()));
+                    }
+                    transmitEvents(player, updates, bulletEventsMessage, npcEventsMessage);
                 }
             }
-            else if(entity instanceof Npc) {
-                final Npc npc = (Npc)entity;
-                final NpcInfo npcInfo = new NpcInfo();
-                npcInfo.setState(npc.getNpcState());
-                npcInfo.setHealth(npc.getNpcHealth());
-                npcInfo.setNpcId(npc.getEntityId());
-                npcInfo.setAngle(npc.getAngles());
-                npcInfo.setPositionX(npc.getXPosition());
-                npcInfo.setPositionY(npc.getYPosition());
-                npcInfo.setVelocityX(npc.getXVelocity());
-                npcInfo.setVelocityY(npc.getYVelocity());
-                npcInfo.setAccelerationX(npc.getXAcceleration());
-                npcInfo.setAccelerationY(npc.getYAcceleration());
-                npcInfo.setType(npc.getClass().getSimpleName());
-                npcInfos.add(npcInfo);
-
-                if(npcInfo.getState() == Npc.NPC_STATE_DEAD) {
-                    this.removeGameEntity(npc);
+        }
+        if(snapshot != null) {
+            snapshotHistory.add(snapshot);
+        }
+    }
+
+    private void transmitEvents(final Player player, final TickUpdates updates, final SharedFrame bulletFrame,
+                                final SharedFrame npcFrame) {
+        if(!updates.getBulletEvents().isEmpty()) {
+            messageTransmitter.transmitMessage(player, bulletFrame);
+        }
+        if(!updates.getNpcEvents().isEmpty()) {
+            messageTransmitter.transmitMessage(player, npcFrame);
+        }
+    }
+
+    /**
+     * Sends a client the updates about the entities in its area of interest. Bullets and npcs coming into view are
+     * sent as new and the ones going out of view as dead, players coming into or going out of view are listed in a
+     * PlayerVisibilityChange.
+     * @param viewer
+     * @param updates
+     * @param enterRadius
+     * @param leaveRadius
+     * @param snapshotDue Whether the client's link keeps up well enough to be sent the player states and the movement
+     *                    of bullets and npcs this tick.
+     * @param joining Whether the client just joined and is sent every bullet in view as new, since it dropped the ones
+     *                it was sent before it knew their owners. They count as in view from then on like any other.
+     */
+    private void transmitAreaOfInterest(final Player viewer, final TickUpdates updates, final float enterRadius,
+                                        final float leaveRadius, final boolean snapshotDue, final boolean joining) {
+        final AreaOfInterest areaOfInterest = viewer.getAreaOfInterest();
+        areaOfInterest.update(viewer, spatialGrid, enterRadius, leaveRadius, interestCandidates);
+        final boolean json = viewer.getWireFormat() == WireFormat.JSON;
+
+        final List<ServerPlayerUpdate> playerUpdates = new ArrayList<>();
+        final List<String> playerJson = new ArrayList<>();
+        final List<Player> players = updates.getPlayers();
+        for(int i = 0; i < players.size(); i++) {
+            if(areaOfInterest.isVisible(players.get(i))) {
+                playerUpdates.add(updates.getPlayerUpdate(i));
+                if(json) {
+                    playerJson.add(updates.getPlayerJson(i));
                 }
             }
         }
 
-        final String playerUpdatesMessage = ServerPlayerUpdate.jsonSerializeAll(playerUpdates);
-        final String bulletUpdatesMessage = BulletInfo.jsonSerialize(bulletUpdates);
-        final String npcUpdatesMessage = NpcInfo.jsonSerializeAll(npcInfos);
-        final Collection<Player> allPlayers = getAllPlayers();
-        for(final Player player: allPlayers) {
-            messageTransmitter.transmitMessage(player, playerUpdatesMessage);
-            messageTransmitter.transmitMessage(player, bulletUpdatesMessage);
-            messageTransmitter.transmitMessage(player, npcUpdatesMessage);
+        //dead bullets and npcs are not visible anymore, they are sent as dead along with everything else which left
+        final List<BulletInfo> bulletInfos = new ArrayList<>();
+        final List<String> bulletJson = new ArrayList<>();
+        //only the entities the area of interest found in the grid are walked, not every entity of the world
+        final List<Bullet> bullets = areaOfInterest.getVisibleBullets();
+        for(int i = 0; i < bullets.size(); i++) {
+            final Bullet bullet = bullets.get(i);
+            final int index = updates.indexOf(bullet);
+            if(index == LongIntMap.NO_VALUE) {
+                continue;
+            }
+            final boolean entered = joining || areaOfInterest.hasEntered(bullet);
+            final BulletInfo info = updates.getBulletInfo(index, entered);
+            //between snapshots a client is only told about new bullets, not where the others moved
+            if(snapshotDue || info.getState() != Bullet.STATE_UPDATED_BULLET) {
+                bulletInfos.add(info);
+                if(json) {
+                    bulletJson.add(updates.getBulletJson(index, entered));
+                }
+            }
+        }
+        for(final long bulletId: areaOfInterest.getLeftBullets()) {
+            final BulletInfo info = new BulletInfo(null, 0, Bullet.STATE_DEAD_BULLET, bulletId, null, null, null, null);
+            bulletInfos.add(info);
+            if(json) {
+                bulletJson.add(info.jsonSerializeElement());
+            }
+        }
+
+        final List<NpcInfo> npcInfos = new ArrayList<>();
+        final List<String> npcJson = new ArrayList<>();
+        final List<Npc> npcs = areaOfInterest.getVisibleNpcs();
+        for(int i = 0; i < npcs.size(); i++) {
+            final Npc npc = npcs.get(i);
+            final int index = updates.indexOf(npc);
+            if(index == LongIntMap.NO_VALUE) {
+                continue;
+            }
+            final boolean entered = areaOfInterest.hasEntered(npc);
+            final NpcInfo info = updates.getNpcInfo(index, entered);
+            if(snapshotDue || info.getState() != Npc.NPC_STATE_UPDATE) {
+                npcInfos.add(info);
+                if(json) {
+                    npcJson.add(updates.getNpcJson(index, entered));
+                }
+            }
+        }
+        for(final long npcId: areaOfInterest.getLeftNpcs()) {
+            final NpcInfo info = new NpcInfo();
+            info.setNpcId(npcId);
+            info.setState(Npc.NPC_STATE_DEAD);
+            npcInfos.add(info);
+            if(json) {
+                npcJson.add(info.jsonSerializeElement());
+            }
+        }
+
+        final PlayerVisibilityChange visibilityChange = new PlayerVisibilityChange();
+        for(final Player player: areaOfInterest.getEnteredPlayers()) {
+            if(player != viewer) {
+                visibilityChange.getEntered().add(player.getPlayerUsername());
+            }
+        }
+        for(final Player player: areaOfInterest.getLeftPlayers()) {
+            visibilityChange.getLeft().add(player.getPlayerUsername());
+        }
+        if(!visibilityChange.getEntered().isEmpty() || !visibilityChange.getLeft().isEmpty()) {
+            messageTransmitter.transmitMessage(viewer, visibilityChange.jsonSerialize());
+        }
+
+        if(json) {
+            if(snapshotDue) {
+                messageTransmitter.transmitSnapshot(viewer, ServerPlayerUpdate.jsonSerializeElements(playerJson));
+            }
+            //nothing is sent about bullets or npcs when there is nothing to tell
+            if(!bulletJson.isEmpty()) {
+                messageTransmitter.transmitMessage(viewer, BulletInfo.jsonSerializeElements(bulletJson));
+            }
+            if(!npcJson.isEmpty()) {
+                messageTransmitter.transmitMessage(viewer, NpcInfo.jsonSerializeElements(npcJson));
+            }
+        }
+        else if(config.isDeltaSnapshots()) {
+            //npcs leaving view are dropped from the next snapshot which is sent, the delta tells the client
+            if(snapshotDue) {
+                final Snapshot snapshot = Snapshot.capture(snapshotSequence, playerUpdates, npcInfos);
+                final SnapshotHistory history = viewer.getSnapshotHistory();
+                messageTransmitter.transmitSnapshot(viewer,
+                    BinaryCodec.encodeSnapshot(snapshot, history.get(viewer.getAcknowledgedSnapshot())));
+                history.add(snapshot);
+                viewer.snapshotSent(snapshotSequence);
+            }
+            if(!bulletInfos.isEmpty()) {
+                messageTransmitter.transmitMessage(viewer, BinaryCodec.encodeBulletInfos(bulletInfos));
+            }
+        }
+        else {
+            if(snapshotDue) {
+                messageTransmitter.transmitSnapshot(viewer, BinaryCodec.encodePlayerUpdates(playerUpdates));
+            }
+            if(!bulletInfos.isEmpty()) {
+                messageTransmitter.transmitMessage(viewer, BinaryCodec.encodeBulletInfos(bulletInfos));
+            }
+            if(!npcInfos.isEmpty()) {
+                messageTransmitter.transmitMessage(viewer, BinaryCodec.encodeNpcInfos(npcInfos));
+            }
         }
     }
 
-    private void transmitHighscores() {
+    void transmitHighscores() {
         final List<Player> allPlayers = this.getAllPlayers();
         final HighscoreInfo highscoreInfo = this.buildHighscoreList(allPlayers);
-        final String json = highscoreInfo.jsonSerialize();
+        final SharedFrame message = SharedFrame.text(highscoreInfo.jsonSerialize());
         for(final Player p: allPlayers) {
-            this.messageTransmitter.transmitMessage(p, json);
+            this.messageTransmitter.transmitMessage(p, message);
         }
     }
 
@@ -246,125 +701,227 @@ public class NewGameWorld implements Runnable {
     }
 
     private void initNpcTypes() {
-        final Reflections reflections = new Reflections(this.getClass().getPackage().getName());
-        final Set<Class<? extends SpawnRules>> npcSpawnRulesClasses = reflections.getSubTypesOf(SpawnRules.class);
-        for(final Class<? extends SpawnRules> npcSpawnRulesClass: npcSpawnRulesClasses) {
+        //the spawn rules classes are listed in META-INF/services when the backend is compiled, see
+        //SpawnRulesIndexProcessor in game-codegen, so nothing has to scan the classpath for them
+        final Iterator<SpawnRules> npcSpawnRules =
+            ServiceLoader.load(SpawnRules.class, NewGameWorld.class.getClassLoader()).iterator();
+        while(true) {
             try {
-                final Constructor<? extends SpawnRules> constructor = npcSpawnRulesClass.getConstructor();
-                this.spawner.addNpcSpawnRules(constructor.newInstance());
-            } catch (final NoSuchMethodException e) {
-                System.out.println("The NPC spawn rules class \"" + npcSpawnRulesClass.getSimpleName()
-                    + "\" does not have a valid constructor. Did you make " +
-                    "sure to include a parameter-less constructor?");
-            } catch (final Exception ex) {
-                System.out.println("Failed to instantiate NPC spawn rules class \"" +
-                    npcSpawnRulesClass.getSimpleName() + "\" due to the following exception:");
+                if(!npcSpawnRules.hasNext()) {
+                    break;
+                }
+                this.spawner.addNpcSpawnRules(npcSpawnRules.next());
+            } catch (final ServiceConfigurationError ex) {
+                //the loader moves on to the next class after one it can't create
+                System.out.println("Failed to instantiate NPC spawn rules due to the following error:");
                 ex.printStackTrace();
             }
         }
     }
 
-    public void addPlayer(final Player player) {
-        synchronized (this.players) {
-            players.put(player.getPlayerUsername(), player);
+    /**
+     * Adds a player to the world, unless its username or authentication string is already taken.
+     * @param player
+     * @return Whether the player was added.
+     */
+    public boolean addPlayer(final Player player) {
+        if(!playerRegistry.register(player)) {
+            return false;
         }
 
         this.addGameEntity(player);
         this.transmitHighscores();
+        return true;
     }
 
-    public void addGameEntity(final GameEntity entity) {
-        synchronized (this.gameEntities) {
-            gameEntities.add(entity);
+    /**
+     * Renames a player in place, unless another player has the name.
+     * @param player
+     * @param username
+     * @return Whether the player was renamed.
+     */
+    public boolean renamePlayer(final Player player, final String username) {
+        if(!playerRegistry.rename(player, username)) {
+            return false;
         }
+        this.transmitHighscores();
+        return true;
+    }
 
-        synchronized (this.worldEventListeners) {
-            for(final WorldEventListener listener: worldEventListeners) {
-                listener.onGameEntityAdded(this, entity);
-            }
-        }
+    /**
+     * Adds an entity to the world. The entity joins the world at the start of the next tick.
+     * Safe to call from any thread.
+     * @param entity
+     */
+    public void addGameEntity(final GameEntity entity) {
+        entityCommands.add(entity);
     }
 
-    public void removeGameEntity(final GameEntity entity) {
-        synchronized (this.gameEntities) {
-            gameEntities.remove(entity);
-        }
+    /**
+     * Adds many entities to the world at once. The entities join the world at the start of the next tick.
+     * Safe to call from any thread. The collection must not be modified afterwards.
+     * @param entities
+     */
+    public void addGameEntities(final Collection<? extends GameEntity> entities) {
+        entityCommands.addAll(entities);
+    }
 
-        synchronized (this.worldEventListeners) {
-            for(final WorldEventListener listener: worldEventListeners) {
-                listener.onGameEntityRemoved(this, entity);
-            }
-        }
+    /**
+     * Removes an entity from the world. The entity leaves the world at the start of the next tick.
+     * Safe to call from any thread.
+     * @param entity
+     */
+    public void removeGameEntity(final GameEntity entity) {
+        entityCommands.remove(entity);
     }
 
     public List<GameEntity> getAllGameEntities() {
-        synchronized (this.gameEntities) {
-            return new ArrayList<>(gameEntities);
+        synchronized (this.entityStore) {
+            return entityStore.getEntities().copy();
         }
     }
 
+    /**
+     * Sends a player every bullet in flight, or every bullet in its view with interest management, as new bullets. Any
+     * thread may ask, the list is built by the game loop at the end of its next tick, since it reuses bullets and
+     * changes their ids and owners.
+     * @param player
+     */
+    public void sendInitialBullets(final Player player) {
+        initialBulletsRequests.offer(player);
+    }
+
+    /**
+     * Gets the entity store of this world. Only the game loop changes the store. Other threads may only read it
+     * while holding its monitor.
+     * @return
+     */
+    public EntityStore getEntityStore() {
+        return this.entityStore;
+    }
+
+    /**
+     * Gets a copy of the living players, which the caller may change.
+     * @return
+     */
     public List<Player> getAllPlayers() {
-        synchronized (this.players) {
-            return new ArrayList<>(players.values());
-        }
+        return new ArrayList<>(playerRegistry.getAlivePlayers());
     }
 
     public Player getPlayerByUsername(final String username) {
-        return players.get(username.intern());
+        return playerRegistry.getByUsername(username);
     }
 
-    public Player getPlayerByConnection(final WebSocket connection) {
-        synchronized (this.players) {
-            for(final Player player: players.values()) {
-                if(player.getConnection().equals(connection)) {
-                    return player;
-                }
-            }
-        }
+    public PlayerRegistry getPlayerRegistry() {
+        return this.playerRegistry;
+    }
 
-        synchronized (this.deadPlayers) {
-            for(final Player player: deadPlayers.values()) {
-                if(player.getConnection().equals(connection)) {
-                    return player;
-                }
-            }
+    /**
+     * Removes a player, living or dead, from the world.
+     * @param player
+     */
+    public void removePlayer(final Player player) {
+        if(playerRegistry.unregister(player)) {
+            this.removeGameEntity(player);
+            this.transmitHighscores();
         }
+    }
 
-        return null;
+    public PlayerMessageTransmitter getMessageTransmitter() {
+        return this.messageTransmitter;
     }
 
-    public void removePlayerByUsername(final String username) {
-        final String internUsername = username.intern();
-        Player player;
+    /**
+     * Gets the bus telling listeners about the entities added to and removed from this world. Must only be used by the
+     * game loop.
+     * @return
+     */
+    public WorldEventBus getEventBus() {
+        return this.eventBus;
+    }
 
-        synchronized (this.players) {
-            player = players.remove(internUsername);
-        }
+    NpcSpawner getSpawner() {
+        return this.spawner;
+    }
 
-        if(player == null) {
-            synchronized (this.deadPlayers) {
-                player = deadPlayers.remove(internUsername);
-            }
-        }
+    /**
+     * Gets the sequence number of the latest snapshot sent to clients.
+     * @return
+     */
+    long getSnapshotSequence() {
+        return this.snapshotSequence;
+    }
 
-        this.removeGameEntity(player);
-        this.transmitHighscores();
+    /**
+     * Finds the closest living, connected player to a point, as of the start of the tick. Must only be called by the
+     * game loop.
+     * @param x
+     * @param y
+     * @param maxDistance Players further away than this are not found.
+     * @return The player, or null if there is none within the distance.
+     */
+    public Player findClosestPlayer(final float x, final float y, final float maxDistance) {
+        return (Player)playerGrid.findNearest(x, y, maxDistance, NewGameWorld::isTargetablePlayer);
     }
 
-    public PlayerMessageTransmitter getMessageTransmitter() {
-        return this.messageTransmitter;
+    private static boolean isTargetablePlayer(final GameEntity entity) {
+        final Player player = (Player)entity;
+        return player.getHealth() > 0 && player.getConnection().isOpen();
     }
 
-    public void addWorldEventListener(final WorldEventListener listener) {
-        synchronized (this.worldEventListeners) {
-            worldEventListeners.add(listener);
-        }
+    /**
+     * Gets the directions npcs steer along towards the players they chase. They point at the players as of the start
+     * of the tick phase.
+     * @return
+     */
+    public FlowFields getFlowFields() {
+        return this.flowFields;
+    }
+
+    /**
+     * Gets the collision broadphase grid. It holds the entity positions as of the start of the physics phase.
+     * @return
+     */
+    public SpatialGrid getSpatialGrid() {
+        return this.spatialGrid;
     }
 
-    public void removeWorldEventListener(final WorldEventListener listener) {
-        synchronized (this.worldEventListeners) {
-            worldEventListeners.remove(listener);
+    /**
+     * Gets the pool for the given type of entity, creating it the first time it is asked for.
+     * Pooled entities are returned to their pool automatically once they have been removed from this world.
+     * Must only be called by the game loop.
+     * @param type The type of entity held by the pool.
+     * @param factory Creates a new entity when the pool is empty.
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends GameEntity> EntityPool<T> getEntityPool(final Class<T> type, final Function<NewGameWorld, T> factory) {
+        EntityPool<T> pool = (EntityPool<T>)entityPools.get(type);
+        if(pool == null) {
+            pool = new EntityPool<>(type.getSimpleName(), () -> factory.apply(this), ENTITY_POOL_MAX_IDLE);
+            entityPools.put(type, pool);
         }
+        return pool;
+    }
+
+    public Collection<EntityPool<?>> getEntityPools() {
+        return Collections.unmodifiableCollection(this.entityPools.values());
+    }
+
+    public TickProfiler getProfiler() {
+        return this.profiler;
+    }
+
+    public KinematicsStorage getKinematicsStorage() {
+        return this.kinematics;
+    }
+
+    public ServerConfig getConfig() {
+        return this.config;
+    }
+
+    public TickScheduler getTickScheduler() {
+        return this.scheduler;
     }
 
     public float getWorldWidth() {
@@ -0,0 +1,138 @@
+package com.becky.world;
+
+import com.becky.networking.PlayerConnection;
+import com.becky.world.entity.Player;
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The players of a world, indexed by username, connection, authentication token and entity id.
+ *
+ * Lookups never lock. The indices are concurrent maps and the list of living players is a snapshot which is replaced
+ * whenever a player joins, dies or leaves. Changes are made one at a time, so a player is either in every index or in
+ * none of them and a username or token belongs to one player at most.
+ *
+ * A player who dies stays registered, keeping its name, until it is unregistered. It is only left out of the living
+ * players. The connection index is the player attached to a {@link PlayerConnection}, connections of any other kind
+ * don't find their player.
+ */
+public class PlayerRegistry {
+    private final ConcurrentHashMap<String, Player> byUsername = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Player> byToken = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Player> byEntityId = new ConcurrentHashMap<>();
+    //guarded by this, readers only see the snapshot
+    private final List<Player> alive = new ArrayList<>();
+    private volatile List<Player> aliveSnapshot = Collections.emptyList();
+
+    /**
+     * Registers a living player, unless its username or token is already taken.
+     * @param player
+     * @return Whether the player was registered.
+     */
+    public synchronized boolean register(final Player player) {
+        final String username = Objects.requireNonNull(player.getPlayerUsername());
+        final String token = Objects.requireNonNull(player.getAuthenticationString());
+        if(byUsername.containsKey(username) || byToken.containsKey(token) || byEntityId.containsKey(player.getEntityId())) {
+            return false;
+        }
+
+        byUsername.put(username, player);
+        byToken.put(token, player);
+        byEntityId.put(player.getEntityId(), player);
+        PlayerConnection.setPlayer(player.getConnection(), player);
+        alive.add(player);
+        publishAlive();
+        return true;
+    }
+
+    /**
+     * Removes a player from every index.
+     * @param player
+     * @return Whether the player was registered.
+     */
+    public synchronized boolean unregister(final Player player) {
+        if(byEntityId.get(player.getEntityId()) != player) {
+            return false;
+        }
+
+        byUsername.remove(player.getPlayerUsername(), player);
+        byToken.remove(player.getAuthenticationString(), player);
+        byEntityId.remove(player.getEntityId(), player);
+        if(PlayerConnection.getPlayer(player.getConnection()) == player) {
+            PlayerConnection.setPlayer(player.getConnection(), null);
+        }
+        if(alive.remove(player)) {
+            publishAlive();
+        }
+        return true;
+    }
+
+    /**
+     * Gives a registered player a new username, unless another player has it.
+     * @param player
+     * @param username
+     * @return Whether the player was renamed.
+     */
+    public synchronized boolean rename(final Player player, final String username) {
+        Objects.requireNonNull(username);
+        if(byEntityId.get(player.getEntityId()) != player) {
+            return false;
+        }
+        if(username.equals(player.getPlayerUsername())) {
+            return true;
+        }
+        if(byUsername.putIfAbsent(username, player) != null) {
+            return false;
+        }
+
+        byUsername.remove(player.getPlayerUsername(), player);
+        player.setPlayerUsername(username);
+        return true;
+    }
+
+    /**
+     * Moves a player from the living players to the dead ones. It stays registered.
+     * @param player
+     * @return Whether the player was alive.
+     */
+    public synchronized boolean markDead(final Player player) {
+        if(!alive.remove(player)) {
+            return false;
+        }
+        publishAlive();
+        return true;
+    }
+
+    public Player getByUsername(final String username) {
+        return byUsername.get(username);
+    }
+
+    public Player getByToken(final String token) {
+        return byToken.get(token);
+    }
+
+    public Player getByEntityId(final long entityId) {
+        return byEntityId.get(entityId);
+    }
+
+    public Player getByConnection(final WebSocket connection) {
+        return PlayerConnection.getPlayer(connection);
+    }
+
+    /**
+     * Gets the living players. The list can't be changed and stays the same when players join, die or leave later.
+     * @return
+     */
+    public List<Player> getAlivePlayers() {
+        return this.aliveSnapshot;
+    }
+
+    private void publishAlive() {
+        this.aliveSnapshot = Collections.unmodifiableList(new ArrayList<>(alive));
+    }
+}
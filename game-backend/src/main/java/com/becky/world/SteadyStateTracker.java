@@ -0,0 +1,77 @@
+package com.becky.world;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Watches how long the game loop takes to settle after the server starts.
+ *
+ * The first ticks of a fresh JVM are slow, classes are still being loaded and the hot methods have not been compiled
+ * yet. Tick durations are averaged over windows of a fixed number of ticks, and the loop counts as settled with the
+ * first window which is not clearly faster than the one before it. That is only worked out once, afterwards the
+ * tracker does nothing. Only used by the game loop.
+ */
+public class SteadyStateTracker {
+    //how much faster than the previous window a window has to be for the loop to still be warming up
+    private static final double MIN_IMPROVEMENT = 0.1;
+
+    private final int windowTicks;
+    private long ticks;
+    private long firstTickNanos;
+    private long firstTickStartTime;
+    private long windowNanos;
+    private double previousWindowMeanNanos = -1.0;
+    private boolean settled;
+    private double settledMeanNanos;
+    private long settledTime;
+
+    /**
+     * @param windowTicks How many ticks are averaged together.
+     */
+    public SteadyStateTracker(final int windowTicks) {
+        this.windowTicks = Math.max(1, windowTicks);
+    }
+
+    /**
+     * Records how long a tick took.
+     * @param durationNanos
+     * @return Whether the loop settled with this tick. True at most once.
+     */
+    public boolean record(final long durationNanos) {
+        if(settled) {
+            return false;
+        }
+
+        final long now = System.nanoTime();
+        if(ticks == 0) {
+            firstTickNanos = durationNanos;
+            firstTickStartTime = now - durationNanos;
+        }
+        ticks++;
+        windowNanos += durationNanos;
+        if(ticks % windowTicks != 0) {
+            return false;
+        }
+
+        final double meanNanos = (double)windowNanos / windowTicks;
+        windowNanos = 0;
+        if(previousWindowMeanNanos >= 0.0 && meanNanos > previousWindowMeanNanos * (1.0 - MIN_IMPROVEMENT)) {
+            settled = true;
+            settledMeanNanos = meanNanos;
+            settledTime = now;
+            return true;
+        }
+        previousWindowMeanNanos = meanNanos;
+        return false;
+    }
+
+    /**
+     * Describes how long the loop took to settle. Only meaningful once it has.
+     * @return
+     */
+    public String report() {
+        return String.format("Tick loop settled after %d ticks, %d ms after the first tick and %d ms after the JVM "
+                + "started. The first tick took %.3f ms, ticks now take %.3f ms on average.",
+            ticks, (settledTime - firstTickStartTime) / 1_000_000L, ManagementFactory.getRuntimeMXBean().getUptime(),
+            firstTickNanos / 1e6, settledMeanNanos / 1e6);
+    }
+}
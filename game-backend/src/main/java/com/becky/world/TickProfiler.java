@@ -0,0 +1,228 @@
+package com.becky.world;
+
+import com.becky.util.LatencyHistogram;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Times every phase of the game loop.
+ *
+ * Phase durations go into one latency histogram per phase, which is reported and cleared once per reporting window.
+ * The timings of the last few ticks are also kept in a ring buffer. On request the ring buffer is written to disk as
+ * a Chrome trace-event file (open it in chrome://tracing or https://ui.perfetto.dev) so slow ticks can be inspected
+ * on a timeline.
+ *
+ * Only the game loop may call beginTick, endPhase and endTick. A trace capture may be requested from any thread.
+ */
+public class TickProfiler {
+    public static final int PHASE_ENTITY_COMMANDS = 0;
+    public static final int PHASE_PLAYER_INPUT = 1;
+    public static final int PHASE_TICK = 2;
+    public static final int PHASE_PHYSICS = 3;
+    public static final int PHASE_TRANSMIT = 4;
+    public static final int PHASE_SPAWN = 5;
+    public static final int PHASE_HIGHSCORES = 6;
+    private static final String[] PHASE_NAMES = {
+        "entityCommands", "playerInput", "tick", "physics", "transmit", "spawn", "highscores"
+    };
+    private static final int PHASE_COUNT = PHASE_NAMES.length;
+
+    private final boolean enabled;
+    private final LatencyHistogram[] phaseHistograms = new LatencyHistogram[PHASE_COUNT];
+    private final LatencyHistogram tickHistogram = new LatencyHistogram();
+
+    //ring buffer of the last traceCapacity ticks, phases which did not run have a duration of -1
+    private final int traceCapacity;
+    private final long[] traceTickNumbers;
+    private final long[] traceTickStarts;
+    private final long[] traceTickDurations;
+    private final long[] tracePhaseStarts;
+    private final long[] tracePhaseDurations;
+    private long tracedTicks;
+
+    private final AtomicReference<File> pendingCapture = new AtomicReference<>();
+    private long tickStart;
+    private long phaseStart;
+    private int traceSlot;
+
+    /**
+     * @param enabled Whether to time anything at all. A disabled profiler does nothing on every call.
+     * @param traceCapacity The number of most recent ticks written by a trace capture.
+     */
+    public TickProfiler(final boolean enabled, final int traceCapacity) {
+        this.enabled = enabled;
+        this.traceCapacity = traceCapacity;
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            phaseHistograms[i] = new LatencyHistogram();
+        }
+        traceTickNumbers = new long[traceCapacity];
+        traceTickStarts = new long[traceCapacity];
+        traceTickDurations = new long[traceCapacity];
+        tracePhaseStarts = new long[traceCapacity * PHASE_COUNT];
+        tracePhaseDurations = new long[traceCapacity * PHASE_COUNT];
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * Marks the start of a tick and of its first phase.
+     * @param tickNumber
+     */
+    public void beginTick(final long tickNumber) {
+        if(!enabled) {
+            return;
+        }
+        tickStart = System.nanoTime();
+        phaseStart = tickStart;
+        traceSlot = (int)(tracedTicks % traceCapacity);
+        traceTickNumbers[traceSlot] = tickNumber;
+        traceTickStarts[traceSlot] = tickStart;
+        Arrays.fill(tracePhaseDurations, traceSlot * PHASE_COUNT, (traceSlot + 1) * PHASE_COUNT, -1L);
+    }
+
+    /**
+     * Marks the end of a phase. The phase is considered to have started when the previous phase ended.
+     * @param phase One of the PHASE_ constants.
+     */
+    public void endPhase(final int phase) {
+        if(!enabled) {
+            return;
+        }
+        final long now = System.nanoTime();
+        final long duration = now - phaseStart;
+        phaseHistograms[phase].record(duration);
+        tracePhaseStarts[traceSlot * PHASE_COUNT + phase] = phaseStart;
+        tracePhaseDurations[traceSlot * PHASE_COUNT + phase] = duration;
+        phaseStart = now;
+    }
+
+    /**
+     * Marks the end of a tick. Starts writing a trace file if one was requested.
+     */
+    public void endTick() {
+        if(!enabled) {
+            return;
+        }
+        final long duration = System.nanoTime() - tickStart;
+        tickHistogram.record(duration);
+        traceTickDurations[traceSlot] = duration;
+        tracedTicks++;
+
+        final File captureFile = pendingCapture.getAndSet(null);
+        if(captureFile != null) {
+            startCapture(captureFile);
+        }
+    }
+
+    /**
+     * Requests the last ticks to be written to the given file as a Chrome trace. The file is written in the background
+     * after the current tick ends.
+     * @param file
+     * @return False if the profiler is disabled.
+     */
+    public boolean requestTraceCapture(final File file) {
+        if(!enabled) {
+            return false;
+        }
+        pendingCapture.set(file);
+        return true;
+    }
+
+    /**
+     * Describes the phase timings of the current reporting window and starts a new one.
+     * @return
+     */
+    public String reportAndResetWindow() {
+        final StringBuilder report = new StringBuilder("Tick phases (p50/p99/max ms):");
+        appendHistogram(report, "total", tickHistogram);
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            appendHistogram(report, PHASE_NAMES[i], phaseHistograms[i]);
+            phaseHistograms[i].reset();
+        }
+        tickHistogram.reset();
+        return report.toString();
+    }
+
+    private static void appendHistogram(final StringBuilder report, final String name, final LatencyHistogram histogram) {
+        if(histogram.getCount() == 0) {
+            return;
+        }
+        report.append(String.format(" %s %.2f/%.2f/%.2f", name,
+            histogram.getValueAtPercentile(50.0) / 1e6,
+            histogram.getValueAtPercentile(99.0) / 1e6,
+            histogram.getMax() / 1e6));
+    }
+
+    private void startCapture(final File file) {
+        //copy the ring buffer so the game loop can carry on while the file is written
+        final int count = (int)Math.min(tracedTicks, traceCapacity);
+        final int first = (int)((tracedTicks - count) % traceCapacity);
+        final long[] tickNumbers = new long[count];
+        final long[] tickStarts = new long[count];
+        final long[] tickDurations = new long[count];
+        final long[] phaseStarts = new long[count * PHASE_COUNT];
+        final long[] phaseDurations = new long[count * PHASE_COUNT];
+        for(int i = 0; i < count; i++) {
+            final int slot = (first + i) % traceCapacity;
+            tickNumbers[i] = traceTickNumbers[slot];
+            tickStarts[i] = traceTickStarts[slot];
+            tickDurations[i] = traceTickDurations[slot];
+            System.arraycopy(tracePhaseStarts, slot * PHASE_COUNT, phaseStarts, i * PHASE_COUNT, PHASE_COUNT);
+            System.arraycopy(tracePhaseDurations, slot * PHASE_COUNT, phaseDurations, i * PHASE_COUNT, PHASE_COUNT);
+        }
+
+        final Thread writer = new Thread(() ->
+            writeTrace(file, tickNumbers, tickStarts, tickDurations, phaseStarts, phaseDurations), "tick-trace-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static void writeTrace(final File file, final long[] tickNumbers, final long[] tickStarts,
+                                   final long[] tickDurations, final long[] phaseStarts, final long[] phaseDurations) {
+        final long origin = tickStarts.length == 0 ? 0L : tickStarts[0];
+        final JSONArray events = new JSONArray();
+        for(int i = 0; i < tickNumbers.length; i++) {
+            events.put(traceEvent("tick " + tickNumbers[i], tickStarts[i] - origin, tickDurations[i], tickNumbers[i]));
+            for(int phase = 0; phase < PHASE_COUNT; phase++) {
+                final long duration = phaseDurations[i * PHASE_COUNT + phase];
+                if(duration >= 0) {
+                    events.put(traceEvent(PHASE_NAMES[phase], phaseStarts[i * PHASE_COUNT + phase] - origin,
+                        duration, tickNumbers[i]));
+                }
+            }
+        }
+
+        final JSONObject trace = new JSONObject();
+        trace.put("traceEvents", events);
+        trace.put("displayTimeUnit", "ms");
+        try(final Writer out = new FileWriter(file)) {
+            trace.write(out);
+            System.out.println("Wrote " + tickNumbers.length + " ticks to " + file.getAbsolutePath());
+        }
+        catch(final IOException ex) {
+            System.out.println("Could not write tick trace to " + file.getAbsolutePath() + ": " + ex.getMessage());
+        }
+    }
+
+    private static JSONObject traceEvent(final String name, final long startNanos, final long durationNanos, final long tickNumber) {
+        final JSONObject event = new JSONObject();
+        event.put("name", name);
+        event.put("cat", "tick");
+        event.put("ph", "X");
+        event.put("ts", startNanos / 1000.0);
+        event.put("dur", durationNanos / 1000.0);
+        event.put("pid", 1);
+        event.put("tid", 1);
+        event.put("args", new JSONObject().put("tick", tickNumber));
+        return event;
+    }
+}
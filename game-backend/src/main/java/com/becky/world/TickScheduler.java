@@ -0,0 +1,187 @@
+package com.becky.world;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Paces the game loop at a fixed tick rate using System.nanoTime.
+ *
+ * Every tick is scheduled at an exact multiple of the tick length from the moment the scheduler was started, so
+ * small sleep inaccuracies never accumulate into drift. Deadlines and simulated time are both worked out from the
+ * number of ticks in nanoseconds, so tick rates which don't divide a second evenly don't drift from the wall clock
+ * either. Waiting is done by parking the thread until shortly before
+ * the deadline and spinning for the remainder, which keeps wake-up jitter well below a millisecond.
+ *
+ * When a tick takes too long the following ticks run back to back until the loop has caught up. If the loop falls
+ * more than maxCatchUpTicks behind, the backlog is dropped and the schedule restarts from the current time so the
+ * world does not fast-forward through seconds of simulation at once.
+ */
+public class TickScheduler {
+    //park until this long before the deadline, then spin
+    private static final long SPIN_THRESHOLD_NANOS = 1_000_000L;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final int tickRate;
+    private final long tickNanos;
+    private final int maxCatchUpTicks;
+    //the schedule restarts from here when the backlog is dropped
+    private long scheduleStartTime;
+    private long scheduledTicks;
+    private long nextTickTime;
+    private long tickStartTime;
+    //simulated time, only advanced by the ticks which are actually run
+    private long simulatedTicks;
+    private long simulatedMillis;
+
+    //lifetime statistics
+    private long totalTicks;
+    private long totalOverruns;
+    private long totalDroppedTicks;
+
+    //statistics for the current reporting window
+    private long windowTicks;
+    private long windowOverruns;
+    private long windowLateTicks;
+    private long windowDroppedTicks;
+    private long windowLatenessNanos;
+    private long windowMaxLatenessNanos;
+    private long windowMaxTickNanos;
+
+    public TickScheduler(final int tickRate, final int maxCatchUpTicks) {
+        this.tickRate = tickRate;
+        this.tickNanos = NANOS_PER_SECOND / tickRate;
+        this.maxCatchUpTicks = maxCatchUpTicks;
+    }
+
+    /**
+     * Starts the schedule. The first tick is due immediately.
+     */
+    public void start() {
+        restartSchedule(System.nanoTime());
+    }
+
+    /**
+     * Blocks until the next tick is due. If the loop is behind schedule this returns immediately, unless it is so
+     * far behind that the backlog is dropped.
+     */
+    public void awaitNextTick() {
+        long now = System.nanoTime();
+        long remaining = nextTickTime - now;
+        if(remaining > 0) {
+            if(remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            }
+            while((now = System.nanoTime()) < nextTickTime) {
+                Thread.yield();
+            }
+        }
+        else {
+            final long lateness = -remaining;
+            if(lateness > maxCatchUpTicks * tickNanos) {
+                //too far behind to catch up, skip the missed ticks and restart the schedule from now
+                final long dropped = lateness / tickNanos;
+                totalDroppedTicks += dropped;
+                windowDroppedTicks += dropped;
+                restartSchedule(now);
+            }
+            else if(lateness > 0) {
+                windowLateTicks++;
+                windowLatenessNanos += lateness;
+                if(lateness > windowMaxLatenessNanos) {
+                    windowMaxLatenessNanos = lateness;
+                }
+            }
+        }
+        tickStartTime = now;
+    }
+
+    /**
+     * Records the end of the current tick and schedules the next one.
+     * @return How long the tick took, in nanoseconds.
+     */
+    public long endTick() {
+        final long duration = System.nanoTime() - tickStartTime;
+        totalTicks++;
+        windowTicks++;
+        if(duration > tickNanos) {
+            totalOverruns++;
+            windowOverruns++;
+        }
+        if(duration > windowMaxTickNanos) {
+            windowMaxTickNanos = duration;
+        }
+        scheduledTicks++;
+        nextTickTime = scheduleStartTime + ticksToNanos(scheduledTicks);
+        return duration;
+    }
+
+    /**
+     * Advances simulated time by one tick. Entities work in whole milliseconds, so when a tick isn't a whole number
+     * of milliseconds long the ticks take turns rounding up and down, e.g. 16 and 17 ms at 60 ticks per second, and
+     * simulated time stays within a millisecond of the number of ticks run.
+     * @return How many milliseconds of simulated time pass during the tick.
+     */
+    public long advanceSimulatedTime() {
+        simulatedTicks++;
+        final long millis = ticksToNanos(simulatedTicks) / 1_000_000L;
+        final long elapsed = millis - simulatedMillis;
+        simulatedMillis = millis;
+        return elapsed;
+    }
+
+    private void restartSchedule(final long now) {
+        scheduleStartTime = now;
+        scheduledTicks = 0;
+        nextTickTime = now;
+    }
+
+    //exact for any tick rate, and split so the multiplication can't overflow
+    private long ticksToNanos(final long ticks) {
+        return (ticks / tickRate) * NANOS_PER_SECOND + (ticks % tickRate) * NANOS_PER_SECOND / tickRate;
+    }
+
+    public long getTickNanos() {
+        return this.tickNanos;
+    }
+
+    public long getTotalTicks() {
+        return this.totalTicks;
+    }
+
+    public long getTotalOverruns() {
+        return this.totalOverruns;
+    }
+
+    public long getTotalDroppedTicks() {
+        return this.totalDroppedTicks;
+    }
+
+    /**
+     * Whether any tick in the current reporting window overran its time slot, started late or was dropped.
+     * @return
+     */
+    public boolean isWindowBehindSchedule() {
+        return windowOverruns > 0 || windowLateTicks > 0 || windowDroppedTicks > 0;
+    }
+
+    /**
+     * Describes the current reporting window and starts a new one.
+     * @return
+     */
+    public String reportAndResetWindow() {
+        final double averageLatenessMs = windowLateTicks == 0 ? 0.0 : windowLatenessNanos / (windowLateTicks * 1e6);
+        final String report = String.format(
+            "Tick loop: %d ticks, %d overruns, %d late (avg %.2f ms, max %.2f ms), %d dropped, longest tick %.2f ms",
+            windowTicks, windowOverruns, windowLateTicks, averageLatenessMs, windowMaxLatenessNanos / 1e6,
+            windowDroppedTicks, windowMaxTickNanos / 1e6);
+
+        windowTicks = 0;
+        windowOverruns = 0;
+        windowLateTicks = 0;
+        windowDroppedTicks = 0;
+        windowLatenessNanos = 0;
+        windowMaxLatenessNanos = 0;
+        windowMaxTickNanos = 0;
+        return report;
+    }
+}
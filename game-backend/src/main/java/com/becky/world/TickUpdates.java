@@ -0,0 +1,258 @@
+package com.becky.world;
+
+import com.becky.networking.message.BulletInfo;
+import com.becky.networking.message.NpcInfo;
+import com.becky.networking.message.ServerPlayerUpdate;
+import com.becky.util.LongIntMap;
+import com.becky.world.entity.Bullet;
+import com.becky.world.entity.Player;
+import com.becky.world.entity.npc.Npc;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The updates built for every player, bullet and npc in one tick, kept next to the entities they describe so each
+ * client can be sent the ones in its {@link AreaOfInterest}.
+ *
+ * Clients which see a bullet or npc for the first time need it as a new entity even if it has been in the world for
+ * a while. Those copies and the json of every update are only made the first time a client asks for them, and then
+ * shared by every other client which needs the same one.
+ */
+class TickUpdates {
+    private final List<Player> players;
+    private final List<ServerPlayerUpdate> playerUpdates;
+    private final List<Bullet> bullets;
+    private final List<BulletInfo> bulletInfos;
+    private final List<Npc> npcs;
+    private final List<NpcInfo> npcInfos;
+    //where each bullet and npc is in the lists, by entity id
+    private final LongIntMap bulletIndices;
+    private final LongIntMap npcIndices;
+    private List<BulletInfo> bulletEvents;
+    private List<NpcInfo> npcEvents;
+
+    private String[] playerJson;
+    private BulletInfo[] enteredBulletInfos;
+    private String[] bulletJson;
+    private String[] enteredBulletJson;
+    private NpcInfo[] enteredNpcInfos;
+    private String[] npcJson;
+    private String[] enteredNpcJson;
+
+    TickUpdates(final int numPlayers, final int numBullets, final int numNpcs) {
+        this.players = new ArrayList<>(numPlayers);
+        this.playerUpdates = new ArrayList<>(numPlayers);
+        this.bullets = new ArrayList<>(numBullets);
+        this.bulletInfos = new ArrayList<>(numBullets);
+        this.npcs = new ArrayList<>(numNpcs);
+        this.npcInfos = new ArrayList<>(numNpcs);
+        this.bulletIndices = new LongIntMap(numBullets);
+        this.npcIndices = new LongIntMap(numNpcs);
+    }
+
+    void addPlayer(final Player player, final ServerPlayerUpdate update) {
+        players.add(player);
+        playerUpdates.add(update);
+    }
+
+    void addBullet(final Bullet bullet, final BulletInfo info) {
+        bulletIndices.put(bullet.getEntityId(), bullets.size());
+        bullets.add(bullet);
+        bulletInfos.add(info);
+    }
+
+    void addNpc(final Npc npc, final NpcInfo info) {
+        npcIndices.put(npc.getEntityId(), npcs.size());
+        npcs.add(npc);
+        npcInfos.add(info);
+    }
+
+    List<Player> getPlayers() {
+        return this.players;
+    }
+
+    /**
+     * Gets the update of every player, for clients which see the whole world.
+     * @return
+     */
+    List<ServerPlayerUpdate> getPlayerUpdates() {
+        return this.playerUpdates;
+    }
+
+    List<Bullet> getBullets() {
+        return this.bullets;
+    }
+
+    /**
+     * Gets the info of every bullet, for clients which see the whole world.
+     * @return
+     */
+    List<BulletInfo> getBulletInfos() {
+        return this.bulletInfos;
+    }
+
+    /**
+     * Gets the info of every bullet which was fired or died this tick, for clients which aren't sent where the bullets
+     * moved this tick.
+     * @return
+     */
+    List<BulletInfo> getBulletEvents() {
+        if(bulletEvents == null) {
+            bulletEvents = new ArrayList<>();
+            for(int i = 0; i < bulletInfos.size(); i++) {
+                if(bulletInfos.get(i).getState() != Bullet.STATE_UPDATED_BULLET) {
+                    bulletEvents.add(bulletInfos.get(i));
+                }
+            }
+        }
+        return this.bulletEvents;
+    }
+
+    List<Npc> getNpcs() {
+        return this.npcs;
+    }
+
+    /**
+     * Gets the info of every npc, for clients which see the whole world.
+     * @return
+     */
+    List<NpcInfo> getNpcInfos() {
+        return this.npcInfos;
+    }
+
+    /**
+     * Gets where a bullet is in the list of bullets.
+     * @param bullet
+     * @return The index, or {@link LongIntMap#NO_VALUE} if the bullet has no update this tick.
+     */
+    int indexOf(final Bullet bullet) {
+        return bulletIndices.get(bullet.getEntityId());
+    }
+
+    /**
+     * Gets where an npc is in the list of npcs.
+     * @param npc
+     * @return The index, or {@link LongIntMap#NO_VALUE} if the npc has no update this tick.
+     */
+    int indexOf(final Npc npc) {
+        return npcIndices.get(npc.getEntityId());
+    }
+
+    /**
+     * Gets the info of every npc which spawned or died this tick, for clients which aren't sent where the npcs moved
+     * this tick.
+     * @return
+     */
+    List<NpcInfo> getNpcEvents() {
+        if(npcEvents == null) {
+            npcEvents = new ArrayList<>();
+            for(int i = 0; i < npcInfos.size(); i++) {
+                if(npcInfos.get(i).getState() != Npc.NPC_STATE_UPDATE) {
+                    npcEvents.add(npcInfos.get(i));
+                }
+            }
+        }
+        return this.npcEvents;
+    }
+
+    ServerPlayerUpdate getPlayerUpdate(final int index) {
+        return playerUpdates.get(index);
+    }
+
+    String getPlayerJson(final int index) {
+        if(playerJson == null) {
+            playerJson = new String[players.size()];
+        }
+        if(playerJson[index] == null) {
+            playerJson[index] = playerUpdates.get(index).jsonSerializeElement();
+        }
+        return playerJson[index];
+    }
+
+    /**
+     * Gets the info of a bullet.
+     * @param index
+     * @param entered Whether the client is seeing the bullet for the first time.
+     * @return
+     */
+    BulletInfo getBulletInfo(final int index, final boolean entered) {
+        final BulletInfo info = bulletInfos.get(index);
+        if(!entered || info.getState() != Bullet.STATE_UPDATED_BULLET) {
+            return info;
+        }
+
+        if(enteredBulletInfos == null) {
+            enteredBulletInfos = new BulletInfo[bullets.size()];
+        }
+        if(enteredBulletInfos[index] == null) {
+            final Bullet bullet = bullets.get(index);
+            final Player owner = bullet.getOwner();
+            enteredBulletInfos[index] = new BulletInfo(owner.getPlayerUsername(), owner.getEntityId(),
+                Bullet.STATE_NEW_BULLET, bullet.getEntityId(), bullet.getXVelocity(), bullet.getYVelocity(),
+                bullet.getXPosition(), bullet.getYPosition());
+        }
+        return enteredBulletInfos[index];
+    }
+
+    String getBulletJson(final int index, final boolean entered) {
+        final BulletInfo info = getBulletInfo(index, entered);
+        final boolean enteredCopy = info != bulletInfos.get(index);
+        if(bulletJson == null) {
+            bulletJson = new String[bullets.size()];
+            enteredBulletJson = new String[bullets.size()];
+        }
+        final String[] cache = enteredCopy ? enteredBulletJson : bulletJson;
+        if(cache[index] == null) {
+            cache[index] = info.jsonSerializeElement();
+        }
+        return cache[index];
+    }
+
+    /**
+     * Gets the info of an npc.
+     * @param index
+     * @param entered Whether the client is seeing the npc for the first time.
+     * @return
+     */
+    NpcInfo getNpcInfo(final int index, final boolean entered) {
+        final NpcInfo info = npcInfos.get(index);
+        if(!entered || info.getState() != Npc.NPC_STATE_UPDATE) {
+            return info;
+        }
+
+        if(enteredNpcInfos == null) {
+            enteredNpcInfos = new NpcInfo[npcs.size()];
+        }
+        if(enteredNpcInfos[index] == null) {
+            final NpcInfo copy = new NpcInfo();
+            copy.setState(Npc.NPC_STATE_NEW);
+            copy.setType(info.getType());
+            copy.setNpcId(info.getNpcId());
+            copy.setHealth(info.getHealth());
+            copy.setAngle(info.getAngle());
+            copy.setPositionX(info.getPositionX());
+            copy.setPositionY(info.getPositionY());
+            copy.setVelocityX(info.getVelocityX());
+            copy.setVelocityY(info.getVelocityY());
+            copy.setAccelerationX(info.getAccelerationX());
+            copy.setAccelerationY(info.getAccelerationY());
+            enteredNpcInfos[index] = copy;
+        }
+        return enteredNpcInfos[index];
+    }
+
+    String getNpcJson(final int index, final boolean entered) {
+        final NpcInfo info = getNpcInfo(index, entered);
+        final boolean enteredCopy = info != npcInfos.get(index);
+        if(npcJson == null) {
+            npcJson = new String[npcs.size()];
+            enteredNpcJson = new String[npcs.size()];
+        }
+        final String[] cache = enteredCopy ? enteredNpcJson : npcJson;
+        if(cache[index] == null) {
+            cache[index] = info.jsonSerializeElement();
+        }
+        return cache[index];
+    }
+}
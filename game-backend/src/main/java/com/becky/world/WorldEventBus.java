@@ -0,0 +1,138 @@
+package com.becky.world;
+
+import com.becky.world.entity.GameEntity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells listeners about the entities added to and removed from a world, once per tick.
+ *
+ * A listener subscribes either to a type of entity, which includes its subclasses, or to one entity. Each listener is
+ * only called with the entities it subscribed to, so handing out a tick's changes costs one lookup per entity plus a
+ * call per interested listener, however many listeners there are. A subscription to one entity ends when the entity
+ * is removed. Only used by the game loop.
+ */
+public class WorldEventBus {
+    private final Map<Class<?>, Set<WorldEventListener>> byType = new HashMap<>();
+    private final Map<Long, Set<WorldEventListener>> byEntity = new HashMap<>();
+    //the listeners of every entity class seen since the type subscriptions last changed, supertypes included
+    private final Map<Class<?>, List<WorldEventListener>> resolved = new HashMap<>();
+
+    /**
+     * Subscribes a listener to every entity of a type.
+     * @param type
+     * @param listener
+     */
+    public void subscribe(final Class<? extends GameEntity> type, final WorldEventListener listener) {
+        if(byType.computeIfAbsent(type, key -> new LinkedHashSet<>()).add(listener)) {
+            resolved.clear();
+        }
+    }
+
+    public void unsubscribe(final Class<? extends GameEntity> type, final WorldEventListener listener) {
+        final Set<WorldEventListener> listeners = byType.get(type);
+        if(listeners != null && listeners.remove(listener)) {
+            if(listeners.isEmpty()) {
+                byType.remove(type);
+            }
+            resolved.clear();
+        }
+    }
+
+    /**
+     * Subscribes a listener to one entity, until the entity is removed or the listener unsubscribes.
+     * @param entity
+     * @param listener
+     */
+    public void subscribe(final GameEntity entity, final WorldEventListener listener) {
+        byEntity.computeIfAbsent(entity.getEntityId(), key -> new LinkedHashSet<>()).add(listener);
+    }
+
+    public void unsubscribe(final GameEntity entity, final WorldEventListener listener) {
+        final Set<WorldEventListener> listeners = byEntity.get(entity.getEntityId());
+        if(listeners != null && listeners.remove(listener) && listeners.isEmpty()) {
+            byEntity.remove(entity.getEntityId());
+        }
+    }
+
+    /**
+     * Tells the listeners about the entities removed and added during a tick, the removals first.
+     * @param world
+     * @param added
+     * @param removed
+     */
+    void publish(final NewGameWorld world, final List<GameEntity> added, final List<GameEntity> removed) {
+        if(!removed.isEmpty()) {
+            final Map<WorldEventListener, List<GameEntity>> batches = collect(removed, true);
+            for(final Map.Entry<WorldEventListener, List<GameEntity>> batch: batches.entrySet()) {
+                batch.getKey().onGameEntitiesRemoved(world, batch.getValue());
+            }
+        }
+        if(!added.isEmpty()) {
+            final Map<WorldEventListener, List<GameEntity>> batches = collect(added, false);
+            for(final Map.Entry<WorldEventListener, List<GameEntity>> batch: batches.entrySet()) {
+                batch.getKey().onGameEntitiesAdded(world, batch.getValue());
+            }
+        }
+    }
+
+    /**
+     * Ends the subscriptions to entities which are gone without having been published as removed.
+     * @param entities
+     */
+    void forget(final List<GameEntity> entities) {
+        if(byEntity.isEmpty()) {
+            return;
+        }
+        for(int i = 0; i < entities.size(); i++) {
+            byEntity.remove(entities.get(i).getEntityId());
+        }
+    }
+
+    private Map<WorldEventListener, List<GameEntity>> collect(final List<GameEntity> entities, final boolean removed) {
+        final Map<WorldEventListener, List<GameEntity>> batches = new IdentityHashMap<>();
+        for(int i = 0; i < entities.size(); i++) {
+            final GameEntity entity = entities.get(i);
+            final List<WorldEventListener> typeListeners = listenersOf(entity.getClass());
+            for(int j = 0; j < typeListeners.size(); j++) {
+                batches.computeIfAbsent(typeListeners.get(j), key -> new ArrayList<>()).add(entity);
+            }
+            if(!byEntity.isEmpty()) {
+                final Set<WorldEventListener> entityListeners = removed
+                    ? byEntity.remove(entity.getEntityId())
+                    : byEntity.get(entity.getEntityId());
+                if(entityListeners != null) {
+                    for(final WorldEventListener listener: entityListeners) {
+                        batches.computeIfAbsent(listener, key -> new ArrayList<>()).add(entity);
+                    }
+                }
+            }
+        }
+        return batches;
+    }
+
+    private List<WorldEventListener> listenersOf(final Class<?> entityClass) {
+        List<WorldEventListener> listeners = resolved.get(entityClass);
+        if(listeners == null) {
+            if(byType.isEmpty()) {
+                return Collections.emptyList();
+            }
+            final Set<WorldEventListener> matching = new LinkedHashSet<>();
+            for(final Map.Entry<Class<?>, Set<WorldEventListener>> subscription: byType.entrySet()) {
+                if(subscription.getKey().isAssignableFrom(entityClass)) {
+                    matching.addAll(subscription.getValue());
+                }
+            }
+            listeners = new ArrayList<>(matching);
+            resolved.put(entityClass, listeners);
+        }
+        return listeners;
+    }
+}
@@ -2,9 +2,12 @@ package com.becky.world;
 
 import com.becky.world.entity.GameEntity;
 
+import java.util.List;
+
 /**
  * Abstract class representing the events which can happen in a game world.
- * An abstract class is used so the developer can override only the methods they want to override.
+ * Every method has a default so the developer can override only the methods they want to override. A listener is
+ * only told about the entities it subscribed to on the world's {@link WorldEventBus}.
  * Created by Clayton on 10/11/2017.
  */
 public interface WorldEventListener {
@@ -14,12 +17,36 @@ public interface WorldEventListener {
      * @param gameWorld The game world an entity is being removed from.
      * @param entity The entity instance that is being removed.
      */
-    void onGameEntityRemoved(final NewGameWorld gameWorld, final GameEntity entity);
+    default void onGameEntityRemoved(final NewGameWorld gameWorld, final GameEntity entity) {}
 
     /**
      * Called by the game world AFTER an entity is added to the world.
      * @param gameWorld The world the entity was added to.
      * @param entity The entity that was added to the game world.
      */
-    void onGameEntityAdded(final NewGameWorld gameWorld, final GameEntity entity);
+    default void onGameEntityAdded(final NewGameWorld gameWorld, final GameEntity entity) {}
+
+    /**
+     * Called by the game world once per tick with every entity removed from the world during that tick.
+     * By default this calls onGameEntityRemoved for each entity.
+     * @param gameWorld The game world the entities were removed from.
+     * @param entities The removed entities. The list is only valid for the duration of the call.
+     */
+    default void onGameEntitiesRemoved(final NewGameWorld gameWorld, final List<GameEntity> entities) {
+        for(int i = 0; i < entities.size(); i++) {
+            onGameEntityRemoved(gameWorld, entities.get(i));
+        }
+    }
+
+    /**
+     * Called by the game world once per tick with every entity added to the world during that tick.
+     * By default this calls onGameEntityAdded for each entity.
+     * @param gameWorld The game world the entities were added to.
+     * @param entities The added entities. The list is only valid for the duration of the call.
+     */
+    default void onGameEntitiesAdded(final NewGameWorld gameWorld, final List<GameEntity> entities) {
+        for(int i = 0; i < entities.size(); i++) {
+            onGameEntityAdded(gameWorld, entities.get(i));
+        }
+    }
 }
@@ -0,0 +1,120 @@
+package com.becky.world;
+
+import com.becky.networking.message.ClientInputStateUpdate;
+import com.becky.networking.protocol.BinaryCodec;
+import com.becky.networking.protocol.WireFormat;
+import com.becky.util.ServerConfig;
+import com.becky.world.entity.Player;
+import com.becky.world.entity.PlayerInput;
+import org.java_websocket.WebSocket;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Runs a throwaway world through the game loop before the server accepts connections, so the first players don't
+ * play on a cold JVM.
+ *
+ * The world is joined by players on both wire formats who keep moving and shooting, and the npcs spawn the way they
+ * do on a real server. Its ticks run back to back without pacing. Every phase of the loop runs, the input of the
+ * players is parsed from the messages their clients would send and their snapshots are encoded, so by the time the
+ * real world starts the classes are loaded and the hot methods compiled. Nothing of the throwaway world is kept.
+ */
+public class WorldWarmup {
+    private static final long SEED = 20171010L;
+    private static final int PLAYERS = 32;
+    //how often a player changes what it is doing, in ticks
+    private static final int INPUT_INTERVAL_TICKS = 10;
+
+    /**
+     * Runs the warm-up.
+     * @param config The configuration of the real world, so the warm-up takes the same paths through the game loop.
+     * @param ticks
+     * @return How long the warm-up took, in nanoseconds.
+     */
+    public static long run(final ServerConfig config, final int ticks) {
+        final long start = System.nanoTime();
+        final NewGameWorld world = new NewGameWorld(config);
+        final Random random = new Random(SEED);
+
+        final List<Player> players = new ArrayList<>(PLAYERS);
+        for(int i = 0; i < PLAYERS; i++) {
+            final Player player = new Player(world, "warmup" + i, "warmup" + i, discardingSocket());
+            player.setWireFormat(i % 2 == 0 ? WireFormat.JSON : WireFormat.BINARY);
+            player.setUsernameFinal();
+            world.addPlayer(player);
+            players.add(player);
+        }
+
+        for(int tick = 1; tick <= ticks; tick++) {
+            for(int i = 0; i < players.size(); i++) {
+                if((tick + i) % INPUT_INTERVAL_TICKS == 0) {
+                    sendInput(players.get(i), random);
+                }
+                if(players.get(i).getWireFormat() == WireFormat.BINARY) {
+                    //acknowledge the snapshot of the previous tick, so the deltas are encoded as well
+                    final ByteBuffer ack = BinaryCodec.encodeSnapshotAck(world.getSnapshotSequence());
+                    players.get(i).acknowledgeSnapshot(BinaryCodec.decodeSnapshotAck(ack));
+                }
+            }
+            world.runTick(tick, world.getTickScheduler().advanceSimulatedTime(), tick == ticks);
+        }
+
+        world.getMessageTransmitter().shutdown();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates a socket which claims to be open and drops everything sent through it.
+     * @return
+     */
+    public static WebSocket discardingSocket() {
+        return (WebSocket)Proxy.newProxyInstance(WebSocket.class.getClassLoader(), new Class<?>[] {WebSocket.class},
+            (proxy, method, args) -> {
+                switch(method.getName()) {
+                    case "isOpen":
+                        return true;
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    case "toString":
+                        return "DiscardingSocket";
+                }
+                final Class<?> returnType = method.getReturnType();
+                if(returnType == boolean.class) {
+                    return false;
+                }
+                else if(returnType == int.class) {
+                    return 0;
+                }
+                else if(returnType == long.class) {
+                    return 0L;
+                }
+                return null;
+            });
+    }
+
+    private static void sendInput(final Player player, final Random random) {
+        final PlayerInput input = new PlayerInput(random.nextBoolean(), random.nextBoolean(),
+            random.nextBoolean(), random.nextBoolean(), random.nextBoolean(), random.nextFloat() * (float)Math.PI * 2.0f);
+        if(player.getWireFormat() == WireFormat.BINARY) {
+            player.publishInput(BinaryCodec.decodeClientInput(BinaryCodec.encodeClientInput(input)));
+            return;
+        }
+
+        final ClientInputStateUpdate message = new ClientInputStateUpdate();
+        message.setMovingUp(input.isMovingUp());
+        message.setMovingDown(input.isMovingDown());
+        message.setMovingLeft(input.isMovingLeft());
+        message.setMovingRight(input.isMovingRight());
+        message.setShooting(input.isShooting());
+        message.setAngle(input.getAngle());
+        final ClientInputStateUpdate received = new ClientInputStateUpdate(message.jsonSerialize());
+        player.publishInput(new PlayerInput(received.isMovingUp(), received.isMovingDown(),
+            received.isMovingLeft(), received.isMovingRight(), received.isShooting(), received.getAngle()));
+    }
+}
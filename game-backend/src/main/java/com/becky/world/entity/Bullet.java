@@ -1,9 +1,8 @@
 package com.becky.world.entity;
 
+import com.becky.world.NewGameWorld;
 import com.becky.world.physics.WorldBorderCollisionDetector;
 
-import java.awt.geom.Point2D;
-
 /**
  * Defines a type of bullet shot by a player
  */
@@ -12,8 +11,31 @@ public abstract class Bullet extends GameEntity {
     public static final int STATE_UPDATED_BULLET = 1;
     public static final int STATE_DEAD_BULLET = 2;
 
-    protected final Player owner;
-    protected final int damageAmount;
+    /**
+     * Bullets fly in a straight line at constant velocity.
+     */
+    public static final KinematicsIntegrator LINEAR_INTEGRATOR = new KinematicsIntegrator() {
+        @Override
+        public void integrate(final KinematicsBuffer buffer, final int start, final int end, final float fraction) {
+            final float[] xPosition = buffer.xPosition;
+            final float[] yPosition = buffer.yPosition;
+            final float[] xVelocity = buffer.xVelocity;
+            final float[] yVelocity = buffer.yVelocity;
+            for(int i = start; i < end; i++) {
+                xPosition[i] += xVelocity[i] * fraction;
+                yPosition[i] += yVelocity[i] * fraction;
+            }
+        }
+
+        @Override
+        public void integrate(final GameEntity entity, final float fraction) {
+            entity.setXPosition(entity.getXPosition() + entity.getXVelocity() * fraction);
+            entity.setYPosition(entity.getYPosition() + entity.getYVelocity() * fraction);
+        }
+    };
+
+    protected Player owner;
+    protected int damageAmount;
     protected int state = Bullet.STATE_NEW_BULLET;
 
     protected Bullet(final Player owner,
@@ -22,15 +44,36 @@ public abstract class Bullet extends GameEntity {
                      final float xVelocity,
                      final float yVelocity,
                      final int damageAmount) {
-        super(owner.getGameWorld());
+        this(owner.getGameWorld());
+        launch(owner, xPosition, yPosition, xVelocity, yVelocity, damageAmount);
+    }
+
+    /**
+     * Creates a bullet which has not been fired yet, for use by an {@link EntityPool}.
+     * @param gameWorld
+     */
+    protected Bullet(final NewGameWorld gameWorld) {
+        super(gameWorld);
         super.addPhysicsFilter(WorldBorderCollisionDetector.class);
+        super.collisionRadius = 24;
+    }
+
+    /**
+     * Sets up this bullet as fired by the given player.
+     */
+    protected void launch(final Player owner,
+                          final float xPosition,
+                          final float yPosition,
+                          final float xVelocity,
+                          final float yVelocity,
+                          final int damageAmount) {
         this.owner = owner;
-        position.x = xPosition;
-        position.y = yPosition;
-        velocity.x = xVelocity;
-        velocity.y = yVelocity;
+        super.setXPosition(xPosition);
+        super.setYPosition(yPosition);
+        super.setXVelocity(xVelocity);
+        super.setYVelocity(yVelocity);
         this.damageAmount = damageAmount;
-        super.collisionRadius = 24;
+        this.state = Bullet.STATE_NEW_BULLET;
     }
 
     /**
@@ -61,6 +104,14 @@ public abstract class Bullet extends GameEntity {
         return this.state;
     }
 
+    /**
+     * Gets whether or not this bullet is dead. Unlike getState() this never changes the state of the bullet.
+     * @return
+     */
+    public boolean isDead() {
+        return this.state == Bullet.STATE_DEAD_BULLET;
+    }
+
     public void setState(final int state) {
         this.state = state;
     }
@@ -73,7 +124,7 @@ public abstract class Bullet extends GameEntity {
 
     @Override
     public void setXVelocity(final float xVelocity) {
-        velocity.x = xVelocity;
+        super.setXVelocity(xVelocity);
         if(Math.abs(xVelocity) < 0.1f) {
             this.state = STATE_DEAD_BULLET;
         }
@@ -81,7 +132,7 @@ public abstract class Bullet extends GameEntity {
 
     @Override
     public void setYVelocity(final float yVelocity) {
-        velocity.y = yVelocity;
+        super.setYVelocity(yVelocity);
         if(Math.abs(yVelocity) < 0.1f) {
             this.state = STATE_DEAD_BULLET;
         }
@@ -111,9 +162,23 @@ public abstract class Bullet extends GameEntity {
         this.collisionRadius = radius;
     }
 
+    @Override
+    protected KinematicsIntegrator getKinematicsIntegrator() {
+        return LINEAR_INTEGRATOR;
+    }
+
+    @Override
+    protected void resetForReuse() {
+        super.resetForReuse();
+        this.owner = null;
+        this.damageAmount = 0;
+        this.state = Bullet.STATE_NEW_BULLET;
+        super.collisionRadius = 24;
+    }
+
     @Override
     public void tick(final long elapsedTime) {
-        if(Math.abs(this.velocity.x) < 0.1f && Math.abs(this.velocity.y) < 0.1f) {
+        if(Math.abs(super.getXVelocity()) < 0.1f && Math.abs(super.getYVelocity()) < 0.1f) {
             this.state = STATE_DEAD_BULLET;
         }
     }
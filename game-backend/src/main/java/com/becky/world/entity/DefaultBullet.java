@@ -1,5 +1,7 @@
 package com.becky.world.entity;
 
+import com.becky.world.NewGameWorld;
+
 public class DefaultBullet extends Bullet {
     private static final float TRAVEL_DISTANCE = 2000.0f;
     private static final int DAMAGE_FACTOR = 5;
@@ -14,18 +16,45 @@ public class DefaultBullet extends Bullet {
         super(owner, xPosition, yPosition, xVelocity, yVelocity, DAMAGE_FACTOR);
     }
 
+    /**
+     * Creates a bullet which has not been fired yet, for use by an {@link EntityPool}.
+     * Call {@link #launch(Player, float, float, float, float)} before adding it to the world.
+     * @param gameWorld
+     */
+    public DefaultBullet(final NewGameWorld gameWorld) {
+        super(gameWorld);
+    }
+
+    /**
+     * Sets up this bullet as fired by the given player.
+     * @return This bullet.
+     */
+    public DefaultBullet launch(final Player owner,
+                                final float xPosition,
+                                final float yPosition,
+                                final float xVelocity,
+                                final float yVelocity) {
+        super.launch(owner, xPosition, yPosition, xVelocity, yVelocity, DAMAGE_FACTOR);
+        return this;
+    }
+
     @Override
     public float getRemainingHealth() {
         return this.remainingHealth;
     }
 
+    @Override
+    protected void resetForReuse() {
+        super.resetForReuse();
+        this.remainingHealth = TRAVEL_DISTANCE;
+    }
+
     @Override
     public void tick(final long elapsedTime) {
+        //the bullet itself is moved by the linear integrator after every entity has ticked
         final float multiplier = elapsedTime / 1000.0f;
-        final float deltaX = this.velocity.x * multiplier;
-        final float deltaY = this.velocity.y * multiplier;
-        this.position.x += deltaX;
-        this.position.y += deltaY;
+        final float deltaX = super.getXVelocity() * multiplier;
+        final float deltaY = super.getYVelocity() * multiplier;
         this.remainingHealth -= (deltaX + deltaY);
 
         if(this.remainingHealth <= 0.0f) {
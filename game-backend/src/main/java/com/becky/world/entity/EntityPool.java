@@ -0,0 +1,148 @@
+package com.becky.world.entity;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Keeps removed entities of one kind around so they can be handed out again instead of allocating new ones.
+ *
+ * The reset contract: an entity is returned to its pool by the game world once it has been removed and every
+ * listener has been told about the removal. The pool then calls {@link GameEntity#resetForReuse()}, which must put
+ * the entity back into the state a freshly constructed instance would be in and drop every reference to other
+ * entities. Entities handed out by {@link #acquire()} therefore only need the per-spawn values set before they are
+ * added to the world.
+ *
+ * Not thread safe, pools must only be used by the game loop.
+ * @param <T> The type of entity held by this pool.
+ */
+public class EntityPool<T extends GameEntity> {
+    private final String name;
+    private final Supplier<T> factory;
+    private final int maxIdle;
+    private final ArrayDeque<T> idle = new ArrayDeque<>();
+
+    private long hits;
+    private long misses;
+    private long discarded;
+    private int inUse;
+    private int highWater;
+
+    /**
+     * @param name Name of the pool, used when reporting.
+     * @param factory Creates a new entity when the pool is empty.
+     * @param maxIdle The most entities the pool keeps around, anything released beyond this is left to the GC.
+     */
+    public EntityPool(final String name, final Supplier<T> factory, final int maxIdle) {
+        this.name = name;
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+    }
+
+    /**
+     * Gets an entity from the pool, or creates one if the pool is empty.
+     * @return
+     */
+    public T acquire() {
+        T entity = idle.pollLast();
+        if(entity != null) {
+            hits++;
+        }
+        else {
+            misses++;
+            entity = factory.get();
+        }
+
+        entity.pool = this;
+        entity.pooled = false;
+        inUse++;
+        if(inUse > highWater) {
+            highWater = inUse;
+        }
+        return entity;
+    }
+
+    /**
+     * Resets an entity and puts it back into the pool.
+     * @param entity
+     */
+    public void release(final T entity) {
+        if(entity.pooled) {
+            throw new IllegalStateException("Entity " + entity.getEntityId() + " was released to the " + name + " pool twice.");
+        }
+        entity.pooled = true;
+        inUse--;
+        entity.resetForReuse();
+        if(idle.size() < maxIdle) {
+            idle.addLast(entity);
+        }
+        else {
+            discarded++;
+        }
+    }
+
+    /**
+     * Returns an entity to the pool it was acquired from. Does nothing for entities which did not come from a pool.
+     * @param entity
+     */
+    @SuppressWarnings("unchecked")
+    public static void recycle(final GameEntity entity) {
+        final EntityPool<GameEntity> pool = (EntityPool<GameEntity>)entity.pool;
+        if(pool != null) {
+            pool.release(entity);
+        }
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the number of acquires served by an idle entity.
+     * @return
+     */
+    public long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Gets the number of acquires which had to create a new entity.
+     * @return
+     */
+    public long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Gets the number of released entities which were dropped because the pool was full.
+     * @return
+     */
+    public long getDiscarded() {
+        return this.discarded;
+    }
+
+    /**
+     * Gets the number of entities acquired and not yet released.
+     * @return
+     */
+    public int getInUse() {
+        return this.inUse;
+    }
+
+    /**
+     * Gets the largest number of entities which were ever in use at the same time.
+     * @return
+     */
+    public int getHighWater() {
+        return this.highWater;
+    }
+
+    public int getIdle() {
+        return this.idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return name + " pool: " + hits + " hits, " + misses + " misses, " + discarded + " discarded, "
+            + inUse + " in use, " + idle.size() + " idle, high water " + highWater;
+    }
+}
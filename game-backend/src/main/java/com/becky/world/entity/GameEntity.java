@@ -3,33 +3,54 @@ package com.becky.world.entity;
 import com.becky.world.NewGameWorld;
 import com.becky.world.physics.PhysicsFilter;
 
-import java.awt.geom.Point2D;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class GameEntity {
-    private static long entityCount = 1;
-    private final long entityId;
+    private static final AtomicLong entityCount = new AtomicLong(1);
+    private long entityId;
+
+    //pooling, see EntityPool
+    EntityPool<?> pool;
+    boolean pooled;
 
     //parent and children
     protected NewGameWorld container;
     protected GameEntity parentEntity;
     protected List<GameEntity> childrenEntities;
 
-    //position
-    protected Point2D.Float position = new Point2D.Float();
-    protected Point2D.Float velocity = new Point2D.Float();
-    protected Point2D.Float acceleration = new Point2D.Float();
+    //position, velocity and acceleration are kept in these fields, unless the entity is in a world which keeps them in
+    //shared kinematics buffers
+    private float xPosition;
+    private float yPosition;
+    private float xVelocity;
+    private float yVelocity;
+    private float xAcceleration;
+    private float yAcceleration;
+    KinematicsBuffer kinematics;
+    int kinematicsSlot;
     protected float angles = 0.0f;
 
     //collisions
     protected int collisionRadius;
 
-    //used for physics filters
-    private final List<Class<? extends PhysicsFilter>> filterApplies = new ArrayList<>();
+    //used for physics filters, one bit per filter class
+    private static final AtomicInteger NEXT_FILTER_BIT = new AtomicInteger();
+    private static final ClassValue<Integer> FILTER_BITS = new ClassValue<Integer>() {
+        @Override
+        protected Integer computeValue(final Class<?> filterClass) {
+            final int index = NEXT_FILTER_BIT.getAndIncrement();
+            if(index >= Integer.SIZE) {
+                throw new IllegalStateException("Too many physics filter classes.");
+            }
+            return 1 << index;
+        }
+    };
+    private int filterMask;
 
     protected GameEntity(final NewGameWorld container) {
-        entityId = entityCount;
-        entityCount++;
+        entityId = entityCount.getAndIncrement();
         this.container = container;
     }
 
@@ -42,51 +63,81 @@ public abstract class GameEntity {
     }
 
     public float getXPosition() {
-        return this.position.x;
+        return kinematics == null ? this.xPosition : kinematics.xPosition[kinematicsSlot];
     }
 
     public float getYPosition() {
-        return this.position.y;
+        return kinematics == null ? this.yPosition : kinematics.yPosition[kinematicsSlot];
     }
 
     public void setXPosition(final float xPosition) {
-        this.position.x = xPosition;
+        if(kinematics == null) {
+            this.xPosition = xPosition;
+        }
+        else {
+            kinematics.xPosition[kinematicsSlot] = xPosition;
+        }
     }
 
     public void setYPosition(final float yPosition) {
-        this.position.y = yPosition;
+        if(kinematics == null) {
+            this.yPosition = yPosition;
+        }
+        else {
+            kinematics.yPosition[kinematicsSlot] = yPosition;
+        }
     }
 
     public float getXVelocity() {
-        return this.velocity.x;
+        return kinematics == null ? this.xVelocity : kinematics.xVelocity[kinematicsSlot];
     }
 
     public float getYVelocity() {
-        return this.velocity.y;
+        return kinematics == null ? this.yVelocity : kinematics.yVelocity[kinematicsSlot];
     }
 
     public void setXVelocity(final float xVelocity) {
-        this.velocity.x = xVelocity;
+        if(kinematics == null) {
+            this.xVelocity = xVelocity;
+        }
+        else {
+            kinematics.xVelocity[kinematicsSlot] = xVelocity;
+        }
     }
 
     public void setYVelocity(final float yVelocity) {
-        this.velocity.y = yVelocity;
+        if(kinematics == null) {
+            this.yVelocity = yVelocity;
+        }
+        else {
+            kinematics.yVelocity[kinematicsSlot] = yVelocity;
+        }
     }
 
     public float getXAcceleration() {
-        return this.acceleration.x;
+        return kinematics == null ? this.xAcceleration : kinematics.xAcceleration[kinematicsSlot];
     }
 
     public float getYAcceleration() {
-        return this.acceleration.y;
+        return kinematics == null ? this.yAcceleration : kinematics.yAcceleration[kinematicsSlot];
     }
 
     public void setXAcceleration(final float xAcceleration) {
-        this.acceleration.x = xAcceleration;
+        if(kinematics == null) {
+            this.xAcceleration = xAcceleration;
+        }
+        else {
+            kinematics.xAcceleration[kinematicsSlot] = xAcceleration;
+        }
     }
 
     public void setYAcceleration(final float yAcceleration) {
-        this.acceleration.y = yAcceleration;
+        if(kinematics == null) {
+            this.yAcceleration = yAcceleration;
+        }
+        else {
+            kinematics.yAcceleration[kinematicsSlot] = yAcceleration;
+        }
     }
 
     public void setAngles(final float angles) {
@@ -112,10 +163,107 @@ public abstract class GameEntity {
     }
 
     public boolean doesPhysicsApply(final Class<? extends PhysicsFilter> physics) {
-        return this.filterApplies.contains(physics);
+        return (this.filterMask & FILTER_BITS.get(physics)) != 0;
     }
 
     protected void addPhysicsFilter(final Class<? extends PhysicsFilter> filter) {
-        filterApplies.add(filter);
+        this.filterMask |= FILTER_BITS.get(filter);
+    }
+
+    /**
+     * Gets the integrator which moves this entity while it is in a world.
+     * Entities which return null move themselves in their tick method.
+     * @return
+     */
+    protected KinematicsIntegrator getKinematicsIntegrator() {
+        return null;
+    }
+
+    /**
+     * Gets the maximum velocity along either axis which the integrator of this entity enforces.
+     * Only read when the entity is added to a world.
+     * @return
+     */
+    protected float getSpeedLimit() {
+        return Float.MAX_VALUE;
+    }
+
+    /**
+     * Puts this entity back into the state of a freshly constructed instance so an {@link EntityPool} can hand it
+     * out again. The entity gets a new id, since clients may still know the old one.
+     * Subclasses must call through to this method and reset every field they set in their constructor, and must
+     * clear any reference to another entity. Only called after the entity has been removed from its world.
+     */
+    protected void resetForReuse() {
+        if(this.kinematics != null) {
+            throw new IllegalStateException("Entity " + entityId + " can not be reset while it is in a world.");
+        }
+        entityId = entityCount.getAndIncrement();
+        parentEntity = null;
+        childrenEntities = null;
+        xPosition = 0.0f;
+        yPosition = 0.0f;
+        xVelocity = 0.0f;
+        yVelocity = 0.0f;
+        xAcceleration = 0.0f;
+        yAcceleration = 0.0f;
+        angles = 0.0f;
+    }
+
+    /**
+     * Moves this entity's kinematic state into a slot of the given buffer.
+     * @param buffer
+     */
+    void attachKinematics(final KinematicsBuffer buffer) {
+        if(this.kinematics != null) {
+            detachKinematics();
+        }
+        final int slot = buffer.allocate(this);
+        copyKinematicsTo(buffer, slot);
+        this.kinematics = buffer;
+        this.kinematicsSlot = slot;
+    }
+
+    /**
+     * Moves this entity's kinematic state out of its buffer and back into the entity.
+     */
+    void detachKinematics() {
+        if(this.kinematics == null) {
+            return;
+        }
+        final KinematicsBuffer buffer = this.kinematics;
+        final int slot = this.kinematicsSlot;
+        copyKinematicsFrom(buffer, slot);
+        this.kinematics = null;
+        buffer.free(slot);
+    }
+
+    /**
+     * Copies the kinematic state kept in the fields of this entity into a slot of a buffer.
+     * @param buffer
+     * @param slot
+     */
+    void copyKinematicsTo(final KinematicsBuffer buffer, final int slot) {
+        buffer.xPosition[slot] = xPosition;
+        buffer.yPosition[slot] = yPosition;
+        buffer.xVelocity[slot] = xVelocity;
+        buffer.yVelocity[slot] = yVelocity;
+        buffer.xAcceleration[slot] = xAcceleration;
+        buffer.yAcceleration[slot] = yAcceleration;
+        buffer.speedLimit[slot] = getSpeedLimit();
+    }
+
+    /**
+     * Copies the kinematic state in a slot of a buffer into the fields of this entity.
+     * @param buffer
+     * @param slot
+     */
+    void copyKinematicsFrom(final KinematicsBuffer buffer, final int slot) {
+        xPosition = buffer.xPosition[slot];
+        yPosition = buffer.yPosition[slot];
+        xVelocity = buffer.xVelocity[slot];
+        yVelocity = buffer.yVelocity[slot];
+        xAcceleration = buffer.xAcceleration[slot];
+        yAcceleration = buffer.yAcceleration[slot];
     }
 }
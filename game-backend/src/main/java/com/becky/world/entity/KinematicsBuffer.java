@@ -0,0 +1,116 @@
+package com.becky.world.entity;
+
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for the position, velocity and acceleration of game entities.
+ * Each entity attached to a buffer owns one slot, and the same index into every array describes that entity.
+ * Integrators walk the arrays front to back, which keeps the motion update of a whole population cache friendly.
+ *
+ * Removing an entity moves the entity in the last slot into the freed slot and updates that entity's slot number,
+ * so slot numbers must not be cached outside of the entity itself.
+ */
+public class KinematicsBuffer {
+    //the floats per slot plus the reference to the owning entity, assuming compressed references
+    public static final int BYTES_PER_SLOT = 7 * 4 + 4;
+
+    public float[] xPosition;
+    public float[] yPosition;
+    public float[] xVelocity;
+    public float[] yVelocity;
+    public float[] xAcceleration;
+    public float[] yAcceleration;
+    public float[] speedLimit;
+
+    private final KinematicsIntegrator integrator;
+    private GameEntity[] owners;
+    private int size;
+
+    /**
+     * @param integrator The integrator which moves every entity in this buffer, or null if the entities move
+     *                   themselves in their tick method.
+     * @param initialCapacity
+     */
+    public KinematicsBuffer(final KinematicsIntegrator integrator, final int initialCapacity) {
+        this.integrator = integrator;
+        final int capacity = Math.max(1, initialCapacity);
+        xPosition = new float[capacity];
+        yPosition = new float[capacity];
+        xVelocity = new float[capacity];
+        yVelocity = new float[capacity];
+        xAcceleration = new float[capacity];
+        yAcceleration = new float[capacity];
+        speedLimit = new float[capacity];
+        owners = new GameEntity[capacity];
+    }
+
+    /**
+     * Moves every entity in this buffer forward in time.
+     * @param fraction The number of seconds to move the entities forward by.
+     */
+    public void integrate(final float fraction) {
+        if(integrator != null && size > 0) {
+            integrator.integrate(this, 0, size, fraction);
+        }
+    }
+
+    public KinematicsIntegrator getIntegrator() {
+        return this.integrator;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public int capacity() {
+        return this.owners.length;
+    }
+
+    /**
+     * Gets the approximate number of bytes this buffer occupies on the heap.
+     * @return
+     */
+    public long getFootprintBytes() {
+        return (long)capacity() * BYTES_PER_SLOT;
+    }
+
+    int allocate(final GameEntity owner) {
+        if(size == owners.length) {
+            grow(size * 2);
+        }
+        owners[size] = owner;
+        return size++;
+    }
+
+    /**
+     * Frees a slot by moving the last slot into it.
+     * @param slot
+     */
+    void free(final int slot) {
+        final int last = size - 1;
+        if(slot != last) {
+            xPosition[slot] = xPosition[last];
+            yPosition[slot] = yPosition[last];
+            xVelocity[slot] = xVelocity[last];
+            yVelocity[slot] = yVelocity[last];
+            xAcceleration[slot] = xAcceleration[last];
+            yAcceleration[slot] = yAcceleration[last];
+            speedLimit[slot] = speedLimit[last];
+            owners[slot] = owners[last];
+            owners[slot].kinematicsSlot = slot;
+        }
+        owners[last] = null;
+        size--;
+    }
+
+    private void grow(final int capacity) {
+        xPosition = Arrays.copyOf(xPosition, capacity);
+        yPosition = Arrays.copyOf(yPosition, capacity);
+        xVelocity = Arrays.copyOf(xVelocity, capacity);
+        yVelocity = Arrays.copyOf(yVelocity, capacity);
+        xAcceleration = Arrays.copyOf(xAcceleration, capacity);
+        yAcceleration = Arrays.copyOf(yAcceleration, capacity);
+        speedLimit = Arrays.copyOf(speedLimit, capacity);
+        owners = Arrays.copyOf(owners, capacity);
+    }
+}
@@ -0,0 +1,24 @@
+package com.becky.world.entity;
+
+/**
+ * Moves a range of entities in a kinematics buffer forward in time.
+ * There is one integrator per kind of motion (bullets, players, NPCs) and every entity in a shared buffer uses the
+ * same integrator, so the loop over the slots stays free of virtual calls and type checks.
+ * Entities which keep their state in their own fields are moved one at a time, in place.
+ */
+public interface KinematicsIntegrator {
+    /**
+     * @param buffer The buffer holding the entities.
+     * @param start The first slot to integrate.
+     * @param end One past the last slot to integrate.
+     * @param fraction The number of seconds to move the entities forward by.
+     */
+    void integrate(final KinematicsBuffer buffer, final int start, final int end, final float fraction);
+
+    /**
+     * Moves one entity which keeps its state in its own fields forward in time, the same way as a slot of a buffer.
+     * @param entity
+     * @param fraction The number of seconds to move the entity forward by.
+     */
+    void integrate(final GameEntity entity, final float fraction);
+}
@@ -0,0 +1,103 @@
+package com.becky.world.entity;
+
+import com.becky.world.EntityView;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides where the kinematic state of the entities in a world lives and moves it forward every tick.
+ *
+ * In structure-of-arrays mode all entities sharing an integrator share one buffer, and each buffer is integrated
+ * in a single loop. Otherwise the state stays in the fields of every entity, the object-per-entity layout from
+ * before the buffers, and the entities are integrated one at a time, in place. Both modes use the same integrators,
+ * which keeps the motion of both exactly the same.
+ */
+public class KinematicsStorage {
+    //position, velocity and acceleration, six floats in the fields of every entity
+    private static final int FIELD_BYTES = 6 * 4;
+
+    private final boolean structureOfArrays;
+    private final Map<KinematicsIntegrator, KinematicsBuffer> sharedBuffers = new HashMap<>();
+    private final List<KinematicsBuffer> bufferList = new ArrayList<>();
+
+    public KinematicsStorage(final boolean structureOfArrays) {
+        this.structureOfArrays = structureOfArrays;
+    }
+
+    /**
+     * Moves an entity's kinematic state into this storage. Called when the entity is added to the world.
+     * Without structure-of-arrays the state stays where it is.
+     * @param entity
+     */
+    public void attach(final GameEntity entity) {
+        if(!structureOfArrays) {
+            return;
+        }
+
+        final KinematicsIntegrator integrator = entity.getKinematicsIntegrator();
+
+        KinematicsBuffer buffer = sharedBuffers.get(integrator);
+        if(buffer == null) {
+            buffer = new KinematicsBuffer(integrator, 256);
+            sharedBuffers.put(integrator, buffer);
+            bufferList.add(buffer);
+        }
+        entity.attachKinematics(buffer);
+    }
+
+    /**
+     * Moves an entity's kinematic state back into the entity. Called when the entity is removed from the world.
+     * @param entity
+     */
+    public void detach(final GameEntity entity) {
+        entity.detachKinematics();
+    }
+
+    /**
+     * Moves every entity in the world forward in time.
+     * @param entities Every entity in the world.
+     * @param fraction The number of seconds to move the entities forward by.
+     */
+    public void integrate(final EntityView<GameEntity> entities, final float fraction) {
+        if(structureOfArrays) {
+            for(int i = 0; i < bufferList.size(); i++) {
+                bufferList.get(i).integrate(fraction);
+            }
+            return;
+        }
+
+        final int count = entities.size();
+        for(int i = 0; i < count; i++) {
+            final GameEntity entity = entities.get(i);
+            final KinematicsIntegrator integrator = entity.getKinematicsIntegrator();
+            if(integrator != null) {
+                integrator.integrate(entity, fraction);
+            }
+        }
+    }
+
+    public boolean isStructureOfArrays() {
+        return this.structureOfArrays;
+    }
+
+    /**
+     * Gets the approximate number of heap bytes used by the kinematic state of the given entities.
+     * In structure-of-arrays mode this includes the unused capacity of the shared buffers.
+     * @param entities Every entity in the world.
+     * @return
+     */
+    public long getFootprintBytes(final EntityView<GameEntity> entities) {
+        if(structureOfArrays) {
+            long bytes = 0;
+            for(final KinematicsBuffer buffer: bufferList) {
+                bytes += buffer.getFootprintBytes();
+            }
+            return bytes;
+        }
+
+        return (long)entities.size() * FIELD_BYTES;
+    }
+}
@@ -1,5 +1,10 @@
 package com.becky.world.entity;
 
+import com.becky.networking.OutboundMailbox;
+import com.becky.networking.SendRateController;
+import com.becky.networking.protocol.SnapshotHistory;
+import com.becky.networking.protocol.WireFormat;
+import com.becky.world.AreaOfInterest;
 import com.becky.world.NewGameWorld;
 import com.becky.world.physics.BulletCollisionDetector;
 import com.becky.world.physics.PhysicsFilter;
@@ -10,24 +15,39 @@ import com.becky.world.weapon.Gun;
 import org.java_websocket.WebSocket;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class Player extends GameEntity {
     public static final float MAX_VELOCITY = 450.0f;
     public static final float ACCELERATION = 1800.0f;
+    public static final int MAX_HEALTH = 100;
 
     //player metadata
-    private String playerUsername;
+    //renamed by the network threads while the game loop reads it
+    private volatile String playerUsername;
     private final WebSocket connection;
+    private final OutboundMailbox mailbox;
+    private final SendRateController sendRateController;
     private final String authenticationString;
     private boolean usernameFinal = false;
+    private volatile WireFormat wireFormat = WireFormat.JSON;
+    //sequence of the latest snapshot the client has applied, 0 until it acknowledges one
+    private volatile long acknowledgedSnapshot = 0;
+    //sequence of the latest snapshot sent to the client, nothing newer can be acknowledged
+    private volatile long sentSnapshot = 0;
+    //what this client is told about, and the snapshots it was sent, both only used by the game loop
+    private final AreaOfInterest areaOfInterest = new AreaOfInterest();
+    private final SnapshotHistory snapshotHistory = new SnapshotHistory(SnapshotHistory.DEFAULT_CAPACITY);
 
     //player descriptors
-    private int health = 100;
+    private int health = MAX_HEALTH;
     private int score = 0;
 
     //player state information
     private Gun playerGun = new DefaultGun(this);
     private boolean firingWeapon = false;
+    //latest input published by the network threads, applied by the game loop at the start of a tick
+    private final AtomicReference<PlayerInput> pendingInput = new AtomicReference<>();
 
     //player update information
     private boolean playerHealthUpdated = false;
@@ -41,6 +61,8 @@ public class Player extends GameEntity {
         super.addPhysicsFilter(PlayerCollisionDetector.class);
         this.playerUsername = playerUsername;
         this.connection = connection;
+        this.mailbox = gameWorld.getMessageTransmitter().createMailbox(connection);
+        this.sendRateController = gameWorld.getMessageTransmitter().createSendRateController(mailbox);
         this.authenticationString = authenticationString;
         this.collisionRadius = 32;
     }
@@ -57,6 +79,74 @@ public class Player extends GameEntity {
         return this.connection;
     }
 
+    /**
+     * Gets the messages waiting to be sent to the client.
+     * @return
+     */
+    public OutboundMailbox getMailbox() {
+        return this.mailbox;
+    }
+
+    public SendRateController getSendRateController() {
+        return this.sendRateController;
+    }
+
+    /**
+     * Gets the encoding the client asked for when it connected.
+     * @return
+     */
+    public WireFormat getWireFormat() {
+        return this.wireFormat;
+    }
+
+    public void setWireFormat(final WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+    }
+
+    /**
+     * Gets the sequence number of the latest snapshot the client acknowledged.
+     * @return
+     */
+    public long getAcknowledgedSnapshot() {
+        return this.acknowledgedSnapshot;
+    }
+
+    /**
+     * Records a snapshot acknowledgement from the client. Acknowledgements older than the current one are ignored, and
+     * so are those of snapshots the client was never sent.
+     * @param sequence
+     * @return Whether the acknowledgement was accepted.
+     */
+    public boolean acknowledgeSnapshot(final long sequence) {
+        if(sequence > this.sentSnapshot) {
+            return false;
+        }
+        if(sequence > this.acknowledgedSnapshot) {
+            this.acknowledgedSnapshot = sequence;
+        }
+        return true;
+    }
+
+    /**
+     * Records that a snapshot was sent to the client, so the client may acknowledge it. Only used by the game loop.
+     * @param sequence
+     */
+    public void snapshotSent(final long sequence) {
+        this.sentSnapshot = sequence;
+    }
+
+    public AreaOfInterest getAreaOfInterest() {
+        return this.areaOfInterest;
+    }
+
+    /**
+     * Gets the snapshots sent to this client, used when the client only sees part of the world.
+     * @return
+     */
+    public SnapshotHistory getSnapshotHistory() {
+        return this.snapshotHistory;
+    }
+
     public void setPlayerUsername(final String playerUsername) {
         this.playerUsername = playerUsername;
     }
@@ -95,6 +185,45 @@ public class Player extends GameEntity {
         this.firingWeapon = firing;
     }
 
+    /**
+     * Publishes a new input state for this player. Safe to call from any thread.
+     * Only the latest input published before a tick is applied, earlier ones are discarded.
+     * @param input
+     */
+    public void publishInput(final PlayerInput input) {
+        this.pendingInput.set(input);
+    }
+
+    /**
+     * Applies the most recently published input, if any. Must only be called by the game loop.
+     */
+    public void applyPendingInput() {
+        final PlayerInput input = this.pendingInput.getAndSet(null);
+        if(input == null) {
+            return;
+        }
+
+        float xAcceleration = 0.0f;
+        float yAcceleration = 0.0f;
+        if(input.isMovingUp()) {
+            yAcceleration = -Player.ACCELERATION;
+        }
+        if(input.isMovingDown()) {
+            yAcceleration += Player.ACCELERATION;
+        }
+        if(input.isMovingLeft()) {
+            xAcceleration = -Player.ACCELERATION;
+        }
+        if(input.isMovingRight()) {
+            xAcceleration += Player.ACCELERATION;
+        }
+
+        this.setXAcceleration(xAcceleration);
+        this.setYAcceleration(yAcceleration);
+        this.setFiringWeapon(input.isShooting());
+        this.setAngles(input.getAngle());
+    }
+
     public int getScore() {
         return this.score;
     }
@@ -122,81 +251,94 @@ public class Player extends GameEntity {
         return this.playerScoreUpdated;
     }
 
+    @Override
+    protected KinematicsIntegrator getKinematicsIntegrator() {
+        return INTEGRATOR;
+    }
+
+    @Override
+    protected float getSpeedLimit() {
+        return MAX_VELOCITY;
+    }
+
     @Override
     public void tick(final long elapsedTime) {
-        tickVelocity(elapsedTime);
-        tickShooting();
+        //movement is handled by the player integrator after every entity has ticked, then the player shoots
     }
 
-    private void tickShooting() {
+    /**
+     * Fires the player's gun if the player is shooting. Called by the world once every entity has moved, so bullets
+     * leave from where the player moved to this tick, as they did when each player moved within its own tick.
+     */
+    public void tickShooting() {
         if(firingWeapon) {
             playerGun.fire();
         }
     }
 
-    private void tickVelocity(final long elapsedTime) {
-        final float fraction = elapsedTime/1000.0f;
-
-        //floats don't do well with ==
-        //x component
-        if(Math.abs(super.acceleration.x) < 0.05f) {
-            //decelerating
-            if(super.velocity.x > 0.0f) {
-                super.velocity.x -= Player.ACCELERATION * fraction;
-                if(super.velocity.x < 0.0f) {
-                    super.velocity.x = 0.0f;
-                }
-            }
-            else {
-                super.velocity.x += Player.ACCELERATION * fraction;
-                if(super.velocity.x > 0.0f) {
-                    super.velocity.x = 0.0f;
-                }
+    /**
+     * Players accelerate while a movement key is held, brake at the same rate while none is held
+     * and can not exceed MAX_VELOCITY along either axis.
+     */
+    public static final KinematicsIntegrator INTEGRATOR = new KinematicsIntegrator() {
+        @Override
+        public void integrate(final KinematicsBuffer buffer, final int start, final int end, final float fraction) {
+            final float[] xPosition = buffer.xPosition;
+            final float[] yPosition = buffer.yPosition;
+            final float[] xVelocity = buffer.xVelocity;
+            final float[] yVelocity = buffer.yVelocity;
+            final float[] xAcceleration = buffer.xAcceleration;
+            final float[] yAcceleration = buffer.yAcceleration;
+            for(int i = start; i < end; i++) {
+                //floats don't do well with ==
+                final float vX = integrateAxis(xVelocity[i], xAcceleration[i], 0.05f, fraction);
+                final float vY = integrateAxis(yVelocity[i], yAcceleration[i], 0.5f, fraction);
+                xVelocity[i] = vX;
+                yVelocity[i] = vY;
+                xPosition[i] += vX * fraction;
+                yPosition[i] += vY * fraction;
             }
         }
-        else {
-            //accelerating
-            super.velocity.x += super.acceleration.x * fraction;
+
+        @Override
+        public void integrate(final GameEntity entity, final float fraction) {
+            final float vX = integrateAxis(entity.getXVelocity(), entity.getXAcceleration(), 0.05f, fraction);
+            final float vY = integrateAxis(entity.getYVelocity(), entity.getYAcceleration(), 0.5f, fraction);
+            entity.setXVelocity(vX);
+            entity.setYVelocity(vY);
+            entity.setXPosition(entity.getXPosition() + vX * fraction);
+            entity.setYPosition(entity.getYPosition() + vY * fraction);
         }
+    };
 
-        //y component
-        if(Math.abs(super.acceleration.y) < 0.5f) {
+    private static float integrateAxis(float velocity, final float acceleration,
+                                       final float threshold, final float fraction) {
+        if(Math.abs(acceleration) < threshold) {
             //decelerating
-            if(super.velocity.y > 0) {
-                super.velocity.y -= Player.ACCELERATION * fraction;
-                if(super.velocity.y < 0.0f) {
-                    super.velocity.y = 0.0f;
+            if(velocity > 0.0f) {
+                velocity -= Player.ACCELERATION * fraction;
+                if(velocity < 0.0f) {
+                    velocity = 0.0f;
                 }
             }
             else {
-                super.velocity.y += Player.ACCELERATION * fraction;
-                if(super.velocity.y > 0.0f) {
-                    super.velocity.y = 0.0f;
+                velocity += Player.ACCELERATION * fraction;
+                if(velocity > 0.0f) {
+                    velocity = 0.0f;
                 }
             }
         }
         else {
             //accelerating
-            super.velocity.y += super.acceleration.y * fraction;
+            velocity += acceleration * fraction;
         }
 
-        capVelocity();
-        super.position.x += super.velocity.x * fraction;
-        super.position.y += super.velocity.y * fraction;
-    }
-
-    private void capVelocity() {
-        if(this.velocity.x > MAX_VELOCITY) {
-            super.velocity.x = MAX_VELOCITY;
-        }
-        else if(this.velocity.x < -MAX_VELOCITY) {
-            super.velocity.x = -MAX_VELOCITY;
-        }
-        if(this.velocity.y > MAX_VELOCITY) {
-            super.velocity.y = MAX_VELOCITY;
+        if(velocity > MAX_VELOCITY) {
+            return MAX_VELOCITY;
         }
-        else if(this.velocity.y < -MAX_VELOCITY) {
-            super.velocity.y = -MAX_VELOCITY;
+        else if(velocity < -MAX_VELOCITY) {
+            return -MAX_VELOCITY;
         }
+        return velocity;
     }
 }
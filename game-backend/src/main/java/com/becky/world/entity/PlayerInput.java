@@ -0,0 +1,49 @@
+package com.becky.world.entity;
+
+/**
+ * An immutable snapshot of the controls a client is holding down.
+ * Network threads publish these to a player and the game loop applies the latest one at the start of a tick.
+ */
+public class PlayerInput {
+    private final boolean movingUp;
+    private final boolean movingDown;
+    private final boolean movingLeft;
+    private final boolean movingRight;
+    private final boolean shooting;
+    private final float angle;
+
+    public PlayerInput(final boolean movingUp, final boolean movingDown,
+                       final boolean movingLeft, final boolean movingRight,
+                       final boolean shooting, final float angle) {
+        this.movingUp = movingUp;
+        this.movingDown = movingDown;
+        this.movingLeft = movingLeft;
+        this.movingRight = movingRight;
+        this.shooting = shooting;
+        this.angle = angle;
+    }
+
+    public boolean isMovingUp() {
+        return this.movingUp;
+    }
+
+    public boolean isMovingDown() {
+        return this.movingDown;
+    }
+
+    public boolean isMovingLeft() {
+        return this.movingLeft;
+    }
+
+    public boolean isMovingRight() {
+        return this.movingRight;
+    }
+
+    public boolean isShooting() {
+        return this.shooting;
+    }
+
+    public float getAngle() {
+        return this.angle;
+    }
+}
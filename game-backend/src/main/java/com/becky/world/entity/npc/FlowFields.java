@@ -0,0 +1,122 @@
+package com.becky.world.entity.npc;
+
+import com.becky.world.entity.Player;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The directions towards each chased player from the cells of a coarse grid around them, shared by every npc chasing
+ * the same player. Owned by the world and only used by the game loop.
+ *
+ * A player's field follows them: its cells are counted from the cell the player is in at the start of the tick and
+ * point at where the player is. A cell's direction is worked out the first time an npc in it asks during a tick and
+ * every other npc in the cell reads it back, so a horde costs a square root per occupied cell of each chased player
+ * rather than one per npc. Close to the player a cell is too coarse to aim with and beyond the grid there are no
+ * cells, those npcs are given their own direction.
+ */
+public class FlowFields {
+    public static final float CELL_SIZE = 64.0f;
+    //how many cells a field reaches out from the cell of its player in each direction
+    private static final int REACH = 16;
+    private static final int WIDTH = REACH * 2 + 1;
+    //npcs this many cells or fewer from their player aim straight at it
+    private static final int NEAR_CELLS = 2;
+
+    private final Map<Player, Field> fields = new IdentityHashMap<>();
+    private final ArrayDeque<Field> spareFields = new ArrayDeque<>();
+    private long tick;
+
+    /**
+     * Starts a new tick, after which the fields point at where the players are now. Fields which nobody asked for
+     * during the last tick are put aside for reuse, which also lets go of players who left the world.
+     */
+    public void beginTick() {
+        tick++;
+        final Iterator<Field> iterator = fields.values().iterator();
+        while(iterator.hasNext()) {
+            final Field field = iterator.next();
+            if(field.tick < tick - 1) {
+                iterator.remove();
+                spareFields.add(field);
+            }
+        }
+    }
+
+    /**
+     * Gets the direction from a point towards a player.
+     * @param target
+     * @param x
+     * @param y
+     * @param direction Receives the x and y components of the direction, a vector of length 1.
+     */
+    public void sample(final Player target, final float x, final float y, final float[] direction) {
+        Field field = fields.get(target);
+        if(field == null) {
+            field = spareFields.isEmpty() ? new Field() : spareFields.poll();
+            fields.put(target, field);
+            field.tick = Long.MIN_VALUE;
+        }
+        if(field.tick != tick) {
+            field.tick = tick;
+            field.targetX = target.getXPosition();
+            field.targetY = target.getYPosition();
+            field.column = (int)Math.floor(field.targetX / CELL_SIZE);
+            field.row = (int)Math.floor(field.targetY / CELL_SIZE);
+        }
+
+        //the point's cell, counted from the player's
+        final int column = (int)Math.floor(x / CELL_SIZE) - field.column;
+        final int row = (int)Math.floor(y / CELL_SIZE) - field.row;
+        final int columnDistance = Math.abs(column);
+        final int rowDistance = Math.abs(row);
+        if((columnDistance <= NEAR_CELLS && rowDistance <= NEAR_CELLS) || columnDistance > REACH || rowDistance > REACH) {
+            pointTowards(field.targetX - x, field.targetY - y, direction, 0);
+            return;
+        }
+
+        final int cell = (row + REACH) * WIDTH + column + REACH;
+        if(field.cellTicks[cell] != tick) {
+            field.cellTicks[cell] = tick;
+            final float centerX = (field.column + column + 0.5f) * CELL_SIZE;
+            final float centerY = (field.row + row + 0.5f) * CELL_SIZE;
+            pointTowards(field.targetX - centerX, field.targetY - centerY, field.directions, cell * 2);
+        }
+        direction[0] = field.directions[cell * 2];
+        direction[1] = field.directions[cell * 2 + 1];
+    }
+
+    private static void pointTowards(final float deltaX, final float deltaY, final float[] direction, final int offset) {
+        final float length = (float)Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if(length == 0.0f) {
+            //on top of the target, the same way atan2 points
+            direction[offset] = 1.0f;
+            direction[offset + 1] = 0.0f;
+            return;
+        }
+        direction[offset] = deltaX / length;
+        direction[offset + 1] = deltaY / length;
+    }
+
+    /**
+     * The field around one player.
+     */
+    private static class Field {
+        //x and y of the direction out of each cell, row by row
+        private final float[] directions = new float[WIDTH * WIDTH * 2];
+        //the tick each cell's direction was worked out in
+        private final long[] cellTicks = new long[WIDTH * WIDTH];
+        private long tick;
+        private float targetX;
+        private float targetY;
+        private int column;
+        private int row;
+
+        private Field() {
+            Arrays.fill(cellTicks, Long.MIN_VALUE);
+        }
+    }
+}
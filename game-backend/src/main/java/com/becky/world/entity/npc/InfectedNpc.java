@@ -1,61 +1,108 @@
 package com.becky.world.entity.npc;
 
-import com.becky.util.MathUtils;
 import com.becky.world.NewGameWorld;
+import com.becky.world.WorldEventBus;
 import com.becky.world.WorldEventListener;
 import com.becky.world.entity.GameEntity;
 import com.becky.world.entity.Player;
 
-import java.util.Collection;
 import java.util.List;
 
 public class InfectedNpc extends Npc implements WorldEventListener {
     private static final float MAX_VIEW_DISTANCE = 2048.0f;
     private static final float ACCELERATION = Player.ACCELERATION;
+    //an npc without a target only looks for one every few ticks, spread over the ticks by entity id
+    private static final int RETARGET_INTERVAL_TICKS = 5;
 
+    private final float[] direction = new float[2];
     private Player trackedPlayer;
+    private int ticksUntilRetarget;
 
     public InfectedNpc(final NewGameWorld world, final Player trackedPlayer) {
         super(world);
-        this.trackedPlayer = trackedPlayer;
+        setDefaults();
+        track(trackedPlayer);
+    }
+
+    private InfectedNpc(final NewGameWorld world) {
+        this(world, null);
+    }
+
+    /**
+     * Gets an infected NPC from the world's pool.
+     * @param world
+     * @param trackedPlayer The player to chase, or null to chase the closest player.
+     * @return
+     */
+    static InfectedNpc acquire(final NewGameWorld world, final Player trackedPlayer) {
+        final InfectedNpc npc = world.getEntityPool(InfectedNpc.class, InfectedNpc::new).acquire();
+        npc.track(trackedPlayer);
+        return npc;
+    }
+
+    private void setDefaults() {
+        this.ticksUntilRetarget = (int)(super.getEntityId() % RETARGET_INTERVAL_TICKS);
         super.maxVelocity = Player.MAX_VELOCITY / 3.0f;
         super.collisionRadius = 16;
         super.npcHealth = 15;
         super.pointsValue = 25;
-        world.addWorldEventListener(this);
+    }
+
+    @Override
+    protected void resetForReuse() {
+        track(null);
+        super.resetForReuse();
+        setDefaults();
     }
 
     @Override
     public void tick(final long elapsedTime) {
-        if(trackedPlayer == null) {
-            trackedPlayer = findClosestPlayer();
+        if(trackedPlayer == null && --ticksUntilRetarget < 0) {
+            ticksUntilRetarget = RETARGET_INTERVAL_TICKS - 1;
+            track(super.getGameWorld().findClosestPlayer(super.getXPosition(), super.getYPosition(), MAX_VIEW_DISTANCE));
         }
 
         if(trackedPlayer != null) {
-            final float deltaX = this.trackedPlayer.getXPosition() - super.position.x;
-            final float deltaY = this.trackedPlayer.getYPosition() - super.position.y;
-            final float angle = (float)StrictMath.atan2(deltaY, deltaX);
-
-            super.acceleration.x = ACCELERATION * (float)StrictMath.cos(angle);
-            super.acceleration.y = ACCELERATION * (float)StrictMath.sin(angle);
+            //the npcs chasing the same player share the directions out of each cell around it
+            super.getGameWorld().getFlowFields().sample(this.trackedPlayer, super.getXPosition(), super.getYPosition(),
+                this.direction);
+            super.setXAcceleration(ACCELERATION * this.direction[0]);
+            super.setYAcceleration(ACCELERATION * this.direction[1]);
         }
         else {
-            super.acceleration.x = 0.0f;
-            super.acceleration.y = 0.0f;
+            super.setXAcceleration(0.0f);
+            super.setYAcceleration(0.0f);
         }
 
         super.tick(elapsedTime);
     }
 
+    /**
+     * Stops chasing the tracked player once it left the world. The npc is only subscribed to that player's removal.
+     * @param gameWorld
+     * @param entity
+     */
     @Override
     public void onGameEntityRemoved(final NewGameWorld gameWorld, final GameEntity entity) {
-        if(this.trackedPlayer != null && trackedPlayer.equals(entity)) {
+        if(entity == this.trackedPlayer) {
+            //the subscription ended with the removal
             this.trackedPlayer = null;
         }
     }
 
-    @Override
-    public void onGameEntityAdded(final NewGameWorld gameWorld, final GameEntity entity) {}
+    private void track(final Player player) {
+        if(player == this.trackedPlayer) {
+            return;
+        }
+        final WorldEventBus eventBus = super.getGameWorld().getEventBus();
+        if(this.trackedPlayer != null) {
+            eventBus.unsubscribe(this.trackedPlayer, this);
+        }
+        this.trackedPlayer = player;
+        if(player != null) {
+            eventBus.subscribe(player, this);
+        }
+    }
 
     @Override
     public void setNpcHealth(final int health) {
@@ -65,31 +112,12 @@ public class InfectedNpc extends Npc implements WorldEventListener {
         super.setNpcHealth(health);
     }
 
-    private Player findClosestPlayer() {
-        final Collection<Player> players = super.getGameWorld().getAllPlayers();
-        float distance = Float.MAX_VALUE;
-        Player closestPlayer = null;
-        for(final Player player: players) {
-            final float currentDistance = MathUtils.distance(player.getXPosition(), player.getYPosition(), super.getXPosition(), super.getYPosition());
-            if(currentDistance < distance && currentDistance < InfectedNpc.MAX_VIEW_DISTANCE) {
-                distance = currentDistance;
-                if(player.getConnection().isOpen() && player.getHealth() > 0) {
-                    closestPlayer = player;
-                }
-            }
-        }
-        return closestPlayer;
-    }
-
     private void onHealthZero() {
-        //remove self from world listeners
-        super.getGameWorld().removeWorldEventListener(this);
-
         //spawn two VirusNpc instances
         final NewGameWorld gameWorld = super.getGameWorld();
-        final VirusNpc virus1 = new VirusNpc(gameWorld);
-        virus1.setXPosition(super.position.x);
-        virus1.setYPosition(super.position.y);
+        final VirusNpc virus1 = VirusNpc.acquire(gameWorld);
+        virus1.setXPosition(super.getXPosition());
+        virus1.setYPosition(super.getYPosition());
         gameWorld.addGameEntity(virus1);
 
         //the game world itself will recognize the new NPCs on the next call to transmit network messages
@@ -132,15 +160,29 @@ public class InfectedNpc extends Npc implements WorldEventListener {
                 //spawn 10 InfectedNpc entities around
                 for(int j = 0; j < NUM_AMBUSH_NPCS; j++) {
                     final float angle = j * (float)Math.PI/5.0f;
-                    final float x = 512 * (float)StrictMath.cos(angle) + chosenPlayer.getXPosition();
-                    final float y = 512 * (float)StrictMath.sin(angle) + chosenPlayer.getYPosition();
-                    final InfectedNpc npc = new InfectedNpc(gameWorld, chosenPlayer);
-                    npc.setXPosition(x);
-                    npc.setYPosition(y);
-                    gameWorld.addGameEntity(npc);
+                    super.queueSpawn(world -> ambush(world, chosenPlayer, angle));
                 }
             }
         }
+
+        /**
+         * Creates an npc on the circle around the player, where the player is by the time the npc is created.
+         * @param world
+         * @param chosenPlayer
+         * @param angle Where on the circle the npc is placed.
+         * @return The npc, or null if the player left the world while the npc was queued.
+         */
+        private static InfectedNpc ambush(final NewGameWorld world, final Player chosenPlayer, final float angle) {
+            if(!world.getEntityStore().getPlayers().contains(chosenPlayer)) {
+                return null;
+            }
+            final float x = 512 * (float)StrictMath.cos(angle) + chosenPlayer.getXPosition();
+            final float y = 512 * (float)StrictMath.sin(angle) + chosenPlayer.getYPosition();
+            final InfectedNpc npc = InfectedNpc.acquire(world, chosenPlayer);
+            npc.setXPosition(x);
+            npc.setYPosition(y);
+            return npc;
+        }
     }
 
     /**
@@ -163,14 +205,12 @@ public class InfectedNpc extends Npc implements WorldEventListener {
                 return;
             }
 
-            final float width = world.getWorldWidth();
-            final float height = world.getWorldHeight();
-
             for(int i = 0; i < numSpawns; i++) {
-                final InfectedNpc npc = new InfectedNpc(world, null);
-                npc.setXPosition((float)(Math.random() * width));
-                npc.setYPosition((float)(Math.random() * height));
-                world.addGameEntity(npc);
+                super.queueSpawn(gameWorld -> {
+                    final InfectedNpc npc = InfectedNpc.acquire(gameWorld, null);
+                    super.placeInFreeSpace(npc);
+                    return npc;
+                });
             }
         }
     }
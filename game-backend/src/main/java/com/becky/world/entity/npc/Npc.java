@@ -2,6 +2,8 @@ package com.becky.world.entity.npc;
 
 import com.becky.world.NewGameWorld;
 import com.becky.world.entity.GameEntity;
+import com.becky.world.entity.KinematicsBuffer;
+import com.becky.world.entity.KinematicsIntegrator;
 import com.becky.world.physics.BulletCollisionDetector;
 import com.becky.world.physics.NpcCollisionDetector;
 import com.becky.world.physics.WorldBorderCollisionDetector;
@@ -32,6 +34,14 @@ public abstract class Npc extends GameEntity {
         return npcState;
     }
 
+    /**
+     * Gets whether or not this npc is dead. Unlike getNpcState() this never changes the state of the npc.
+     * @return
+     */
+    public boolean isDead() {
+        return this.npcState == NPC_STATE_DEAD;
+    }
+
     public void setNpcState(final int npcState) {
         this.npcState = npcState;
     }
@@ -56,59 +66,91 @@ public abstract class Npc extends GameEntity {
         return this.pointsValue;
     }
 
-    @Override
-    public void tick(final long elapsedTime) {
-        final float multiplier = elapsedTime / 1000.0f;
-        super.velocity.x += super.acceleration.x * multiplier;
-        super.velocity.y += super.acceleration.y * multiplier;
-
-        if(Math.abs(super.acceleration.x) < 0.1f) {
-            if(super.velocity.x < 0.0f) {
-                super.velocity.x += super.velocity.x * multiplier;
-                if(super.velocity.x > 0.0f) {
-                    super.velocity.x = 0.0f;
-                }
-            }
-            else {
-                super.velocity.x -= super.velocity.x * multiplier;
-                if(super.velocity.x < 0.0f) {
-                    super.velocity.x = 0.0f;
-                }
+    /**
+     * NPCs accelerate as they are told to, slow down on any axis they are not accelerating along
+     * and can not exceed their maximum velocity along either axis.
+     */
+    public static final KinematicsIntegrator DAMPED_INTEGRATOR = new KinematicsIntegrator() {
+        @Override
+        public void integrate(final KinematicsBuffer buffer, final int start, final int end, final float multiplier) {
+            final float[] xPosition = buffer.xPosition;
+            final float[] yPosition = buffer.yPosition;
+            final float[] xVelocity = buffer.xVelocity;
+            final float[] yVelocity = buffer.yVelocity;
+            final float[] xAcceleration = buffer.xAcceleration;
+            final float[] yAcceleration = buffer.yAcceleration;
+            final float[] speedLimit = buffer.speedLimit;
+            for(int i = start; i < end; i++) {
+                final float vX = integrateAxis(xVelocity[i], xAcceleration[i], speedLimit[i], multiplier);
+                final float vY = integrateAxis(yVelocity[i], yAcceleration[i], speedLimit[i], multiplier);
+                xVelocity[i] = vX;
+                yVelocity[i] = vY;
+                xPosition[i] += vX * multiplier;
+                yPosition[i] += vY * multiplier;
             }
         }
-        if(Math.abs(super.acceleration.y) < 0.1f) {
-            if(super.velocity.y < 0.0f) {
-                super.velocity.y += super.velocity.y * multiplier;
-                if(super.velocity.y > 0.0f) {
-                    super.velocity.y = 0.0f;
+
+        @Override
+        public void integrate(final GameEntity entity, final float multiplier) {
+            final float maxVelocity = ((Npc)entity).maxVelocity;
+            final float vX = integrateAxis(entity.getXVelocity(), entity.getXAcceleration(), maxVelocity, multiplier);
+            final float vY = integrateAxis(entity.getYVelocity(), entity.getYAcceleration(), maxVelocity, multiplier);
+            entity.setXVelocity(vX);
+            entity.setYVelocity(vY);
+            entity.setXPosition(entity.getXPosition() + vX * multiplier);
+            entity.setYPosition(entity.getYPosition() + vY * multiplier);
+        }
+    };
+
+    private static float integrateAxis(float velocity, final float acceleration,
+                                       final float maxVelocity, final float multiplier) {
+        velocity += acceleration * multiplier;
+
+        if(Math.abs(acceleration) < 0.1f) {
+            if(velocity < 0.0f) {
+                velocity += velocity * multiplier;
+                if(velocity > 0.0f) {
+                    velocity = 0.0f;
                 }
             }
             else {
-                super.velocity.y -= super.velocity.y * multiplier;
-                if(super.velocity.y < 0.0f) {
-                    super.velocity.y = 0.0f;
+                velocity -= velocity * multiplier;
+                if(velocity < 0.0f) {
+                    velocity = 0.0f;
                 }
             }
         }
 
-        this.capVelocity();
-        super.position.x += super.velocity.x * multiplier;
-        super.position.y += super.velocity.y * multiplier;
-    }
-
-    private void capVelocity() {
-        if(super.velocity.x > maxVelocity) {
-            super.velocity.x = maxVelocity;
+        if(velocity > maxVelocity) {
+            return maxVelocity;
         }
-        else if(super.velocity.x < -maxVelocity) {
-            super.velocity.x = -maxVelocity;
+        else if(velocity < -maxVelocity) {
+            return -maxVelocity;
         }
+        return velocity;
+    }
 
-        if(super.velocity.y > maxVelocity) {
-            super.velocity.y = maxVelocity;
-        }
-        else if(super.velocity.y < -maxVelocity) {
-            super.velocity.y = -maxVelocity;
-        }
+    @Override
+    protected KinematicsIntegrator getKinematicsIntegrator() {
+        return DAMPED_INTEGRATOR;
+    }
+
+    @Override
+    protected float getSpeedLimit() {
+        return this.maxVelocity;
+    }
+
+    @Override
+    protected void resetForReuse() {
+        super.resetForReuse();
+        this.npcState = NPC_STATE_NEW;
     }
+
+    /**
+     * NPCs are moved by their integrator after every entity has ticked. Subclasses decide here how the NPC wants
+     * to accelerate.
+     * @param elapsedTime
+     */
+    @Override
+    public void tick(final long elapsedTime) {}
 }
@@ -1,21 +1,40 @@
 package com.becky.world.entity.npc;
 
 import com.becky.world.NewGameWorld;
+import com.becky.world.entity.GameEntity;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.function.Function;
 
 /**
  * The NPC spawner is responsible for literally spawning NPCs. It follows the rules provided to it.
+ *
+ * Rules queue the npcs they want to spawn, and every tick the spawner creates as many of the queued npcs as its budget
+ * allows, in entities and in time, then adds them to the world in one go. A large wave joins the world over several
+ * ticks instead of stalling one of them. Rules with npcs still queued are not run again until their wave is in.
  * Created by Clayton on 10/11/2017.
  */
 public class NpcSpawner {
     private final NewGameWorld gameWorld;
     private final List<SpawnRules> npcSpawners = new ArrayList<>();
+    private final ArrayDeque<QueuedSpawn> queue = new ArrayDeque<>();
+    private final SpawnMap spawnMap;
+    private final int budgetEntities;
+    private final long budgetNanos;
 
-    public NpcSpawner(final NewGameWorld gameWorld) {
+    /**
+     * @param gameWorld
+     * @param budgetEntities The most npcs created in one tick.
+     * @param budgetMicros How long one tick may spend creating npcs. At least one npc is created per tick regardless.
+     */
+    public NpcSpawner(final NewGameWorld gameWorld, final int budgetEntities, final int budgetMicros) {
         this.gameWorld = gameWorld;
+        this.spawnMap = new SpawnMap(gameWorld.getWorldWidth(), gameWorld.getWorldHeight());
+        this.budgetEntities = budgetEntities;
+        this.budgetNanos = budgetMicros * 1000L;
     }
 
     /**
@@ -28,20 +47,82 @@ public class NpcSpawner {
         //Get a list of SpawnRules instances which are eligible.
         //They are eligible if enough time has passed and NPC population for those rules are under the limit.
         for(final SpawnRules rule: npcSpawners) {
-            if(rule.getNextIntervalTime() < time && rule.getCurrentPopulation() < rule.getMaxPopulation()) {
+            if(rule.getPendingSpawns() == 0 && rule.getNextIntervalTime() < time
+                && rule.getCurrentPopulation() < rule.getMaxPopulation()) {
                 rule.spawn(gameWorld);
                 rule.resetNextIntervalTime();
             }
         }
+
+        if(!queue.isEmpty()) {
+            spawnQueued();
+        }
     }
 
     public void addNpcSpawnRules(final SpawnRules rules) {
         this.npcSpawners.add(rules);
-        this.gameWorld.addWorldEventListener(rules);
+        rules.setSpawner(this);
+        this.gameWorld.getEventBus().subscribe(rules.getNpcClassType(), rules);
     }
 
     public void removeNpcSpawnRules(final SpawnRules rules) {
         this.npcSpawners.remove(rules);
-        this.gameWorld.removeWorldEventListener(rules);
+        rules.setSpawner(null);
+        this.gameWorld.getEventBus().unsubscribe(rules.getNpcClassType(), rules);
+        final Iterator<QueuedSpawn> queued = queue.iterator();
+        while(queued.hasNext()) {
+            if(queued.next().rules == rules) {
+                queued.remove();
+                rules.spawnDequeued();
+            }
+        }
+    }
+
+    /**
+     * Gets the number of npcs waiting for a tick with room in the budget.
+     * @return
+     */
+    public int getQueuedSpawns() {
+        return this.queue.size();
+    }
+
+    void queue(final SpawnRules rules, final Function<NewGameWorld, ? extends GameEntity> factory) {
+        queue.addLast(new QueuedSpawn(rules, factory));
+        rules.spawnQueued();
+    }
+
+    SpawnMap getSpawnMap() {
+        return this.spawnMap;
+    }
+
+    private void spawnQueued() {
+        final long start = System.nanoTime();
+        final int count = Math.min(budgetEntities, queue.size());
+        spawnMap.rebuild(gameWorld.getEntityStore().getPlayers(), gameWorld.getEntityStore().getNpcs());
+
+        final List<GameEntity> spawned = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            if(i > 0 && System.nanoTime() - start >= budgetNanos) {
+                break;
+            }
+            final QueuedSpawn next = queue.pollFirst();
+            next.rules.spawnDequeued();
+            final GameEntity entity = next.factory.apply(gameWorld);
+            if(entity != null) {
+                spawned.add(entity);
+            }
+        }
+        //the whole tick's spawns join the world together at the start of the next tick
+        gameWorld.addGameEntities(spawned);
+    }
+
+    private static class QueuedSpawn {
+        private final SpawnRules rules;
+        private final Function<NewGameWorld, ? extends GameEntity> factory;
+
+        QueuedSpawn(final SpawnRules rules, final Function<NewGameWorld, ? extends GameEntity> factory) {
+            this.rules = rules;
+            this.factory = factory;
+        }
     }
 }
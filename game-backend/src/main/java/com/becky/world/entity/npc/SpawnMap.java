@@ -0,0 +1,91 @@
+package com.becky.world.entity.npc;
+
+import com.becky.world.EntityView;
+import com.becky.world.entity.GameEntity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * How crowded each part of the world is, used to pick where npcs spawn.
+ *
+ * The world is split into coarse cells which count the players and npcs in them. A spawn position is taken from the
+ * least crowded of a few cells picked at random, and the npc is counted in its cell straight away, so a wave spreads
+ * out over the emptier parts of the world instead of landing in piles. The counts are only rebuilt on ticks which
+ * have something to place. Only used by the game loop.
+ */
+public class SpawnMap {
+    public static final float CELL_SIZE = 256.0f;
+    //how many random cells are compared for each spawn
+    private static final int CANDIDATES = 8;
+    //how far from the edge of its cell an npc is placed, so it does not touch the npcs of the neighbouring cell
+    private static final float MARGIN = 32.0f;
+
+    private final float worldWidth;
+    private final float worldHeight;
+    private final int columns;
+    private final int rows;
+    private final int[] density;
+    private final Random random = new Random();
+
+    public SpawnMap(final float worldWidth, final float worldHeight) {
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / CELL_SIZE));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / CELL_SIZE));
+        this.density = new int[columns * rows];
+    }
+
+    /**
+     * Counts the given entities again.
+     * @param players
+     * @param npcs
+     */
+    public void rebuild(final EntityView<? extends GameEntity> players, final EntityView<? extends GameEntity> npcs) {
+        Arrays.fill(density, 0);
+        count(players);
+        count(npcs);
+    }
+
+    /**
+     * Moves an entity to a free part of the world and counts it there.
+     * @param entity
+     */
+    public void place(final GameEntity entity) {
+        int cell = random.nextInt(density.length);
+        for(int i = 1; i < CANDIDATES && density[cell] > 0; i++) {
+            final int candidate = random.nextInt(density.length);
+            if(density[candidate] < density[cell]) {
+                cell = candidate;
+            }
+        }
+        density[cell]++;
+
+        final float cellX = (cell % columns) * CELL_SIZE;
+        final float cellY = (cell / columns) * CELL_SIZE;
+        final float width = Math.min(CELL_SIZE, worldWidth - cellX);
+        final float height = Math.min(CELL_SIZE, worldHeight - cellY);
+        entity.setXPosition(cellX + spread(width));
+        entity.setYPosition(cellY + spread(height));
+    }
+
+    private float spread(final float length) {
+        if(length <= MARGIN * 2) {
+            return length / 2.0f;
+        }
+        return MARGIN + random.nextFloat() * (length - MARGIN * 2);
+    }
+
+    private void count(final EntityView<? extends GameEntity> entities) {
+        for(int i = 0; i < entities.size(); i++) {
+            final GameEntity entity = entities.get(i);
+            density[cellIndex(entity.getXPosition(), entity.getYPosition())]++;
+        }
+    }
+
+    private int cellIndex(final float x, final float y) {
+        final int column = Math.min(columns - 1, Math.max(0, (int)(x / CELL_SIZE)));
+        final int row = Math.min(rows - 1, Math.max(0, (int)(y / CELL_SIZE)));
+        return row * columns + column;
+    }
+}
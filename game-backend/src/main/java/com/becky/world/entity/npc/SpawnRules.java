@@ -4,6 +4,9 @@ import com.becky.world.NewGameWorld;
 import com.becky.world.WorldEventListener;
 import com.becky.world.entity.GameEntity;
 
+import java.util.List;
+import java.util.function.Function;
+
 /**
  * Represents NPC Spawn rules to be followed by an NPC Spawner
  * Created by Clayton on 10/11/2017.
@@ -17,6 +20,8 @@ public abstract class SpawnRules implements WorldEventListener {
     private long spawnInterval;
     private long nextIntervalTime;
     private final Class<? extends GameEntity> npcClassType;
+    private NpcSpawner spawner;
+    private int pendingSpawns;
 
     protected SpawnRules(final Class<? extends GameEntity> npcClassType) {
         maxPopulation = INFINITE_POPULATION;
@@ -35,6 +40,14 @@ public abstract class SpawnRules implements WorldEventListener {
         return maxPopulation;
     }
 
+    /**
+     * Gets the type of NPC these rules spawn. Only adds and removes of this type are counted in the population.
+     * @return
+     */
+    public Class<? extends GameEntity> getNpcClassType() {
+        return this.npcClassType;
+    }
+
     /**
      * Gets the current population of NPCs that this spawn rules instance represents.
      * @return
@@ -103,12 +116,77 @@ public abstract class SpawnRules implements WorldEventListener {
         }
     }
 
+    @Override
+    public void onGameEntitiesAdded(final NewGameWorld gameWorld, final List<GameEntity> entities) {
+        int added = 0;
+        for(int i = 0; i < entities.size(); i++) {
+            if(this.npcClassType.isInstance(entities.get(i))) {
+                added++;
+            }
+        }
+        this.currentPopulation += added;
+    }
+
+    @Override
+    public void onGameEntitiesRemoved(final NewGameWorld gameWorld, final List<GameEntity> entities) {
+        int removed = 0;
+        for(int i = 0; i < entities.size(); i++) {
+            if(this.npcClassType.isInstance(entities.get(i))) {
+                removed++;
+            }
+        }
+        this.currentPopulation -= removed;
+    }
+
+    /**
+     * Gets the number of NPCs these rules queued which have not been created yet. The spawner does not run the rules
+     * again until the whole wave has been created.
+     * @return
+     */
+    public int getPendingSpawns() {
+        return this.pendingSpawns;
+    }
+
+    /**
+     * Queues an NPC with the spawner. The factory is called on a later tick, once the spawner's budget has room, and
+     * may return null when the NPC is no longer wanted by then. The NPC joins the world at the start of the tick after.
+     * @param factory Creates the NPC and sets its position.
+     */
+    protected void queueSpawn(final Function<NewGameWorld, ? extends GameEntity> factory) {
+        if(this.spawner == null) {
+            throw new IllegalStateException(getClass().getSimpleName() + " has not been added to a spawner.");
+        }
+        this.spawner.queue(this, factory);
+    }
+
+    /**
+     * Moves an NPC to one of the less crowded parts of the world. Only call this from a spawn factory, the map of
+     * the world is brought up to date right before the factories run.
+     * @param npc
+     */
+    protected void placeInFreeSpace(final GameEntity npc) {
+        this.spawner.getSpawnMap().place(npc);
+    }
+
+    void setSpawner(final NpcSpawner spawner) {
+        this.spawner = spawner;
+    }
+
+    void spawnQueued() {
+        this.pendingSpawns++;
+    }
+
+    void spawnDequeued() {
+        this.pendingSpawns--;
+    }
+
     /**
      * Spawns NPCs. This method must be implemented and is called by the NPC spawner utility.
-     * This method calls when the npc population is below the max population (if there is a max population)
-     * and System.currentTimeMillis() > this.nextIntervalTime.
+     * This method calls when the npc population is below the max population (if there is a max population),
+     * System.currentTimeMillis() > this.nextIntervalTime and no NPC these rules queued is still waiting.
      *
-     * Any spawning logic is valid here. Any whatsoever.
+     * Any spawning logic is valid here. Any whatsoever. NPCs are handed to {@link #queueSpawn(Function)}, the spawner
+     * creates them over the next ticks within its budget.
      *
      * @param gameWorld The game world that the NPCs will be spawning in to.
      */
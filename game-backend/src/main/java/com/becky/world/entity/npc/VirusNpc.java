@@ -2,6 +2,7 @@ package com.becky.world.entity.npc;
 
 import com.becky.util.MathUtils;
 import com.becky.world.NewGameWorld;
+import com.becky.world.entity.KinematicsIntegrator;
 
 import java.awt.geom.Point2D;
 
@@ -24,39 +25,77 @@ public class VirusNpc extends Npc {
 
     protected VirusNpc(final NewGameWorld gameWorld) {
         super(gameWorld);
+        setDefaults();
+    }
+
+    /**
+     * Gets a virus NPC from the world's pool.
+     * @param world
+     * @return
+     */
+    static VirusNpc acquire(final NewGameWorld world) {
+        return world.getEntityPool(VirusNpc.class, VirusNpc::new).acquire();
+    }
+
+    private void setDefaults() {
         super.collisionRadius = 18;
         super.maxVelocity = 250.0f;
         super.npcHealth = 5;
         super.pointsValue = 2;
-        super.acceleration.x = 0.0f;
-        super.acceleration.y = 0.0f;
-        super.velocity.x = 0.0f;
-        super.velocity.y = 0.0f;
+    }
+
+    @Override
+    protected void resetForReuse() {
+        super.resetForReuse();
+        positiveX = false;
+        positiveY = false;
+        xStopped = false;
+        yStopped = false;
+        readyForNextDirection = true;
+        readyForNextTurn = false;
+        makingTurn = false;
+        nextVelocity.setLocation(0.0f, 0.0f);
+        nextAngle = 0.0f;
+        turnDirection = 1.0f;
+        timeTilNextMove = 0L;
+        setDefaults();
+    }
+
+    /**
+     * Virus NPCs move themselves in tick, their setters are disabled so physics can't push them around.
+     * @return
+     */
+    @Override
+    protected KinematicsIntegrator getKinematicsIntegrator() {
+        return null;
     }
 
     @Override
     public void tick(final long elapsedTime) {
+        //the setters of this class are disabled, the npc moves itself through the ones of GameEntity
         if(readyForNextDirection) {
             if(timeTilNextMove <= 0) {
-                super.velocity.x = nextVelocity.x;
-                super.velocity.y = nextVelocity.y;
-                positiveX = super.velocity.x >= 0.0f;
-                positiveY = super.velocity.y >= 0.0f;
-
-                if (super.velocity.x > 0.0f) {
-                    super.acceleration.x = -100.0f;
-                    super.velocity.x += 50.0f;
+                float xVelocity = nextVelocity.x;
+                float yVelocity = nextVelocity.y;
+                positiveX = xVelocity >= 0.0f;
+                positiveY = yVelocity >= 0.0f;
+
+                if (xVelocity > 0.0f) {
+                    super.setXAcceleration(-100.0f);
+                    xVelocity += 50.0f;
                 } else {
-                    super.acceleration.x = 100.0f;
-                    super.velocity.x -= 50.0f;
+                    super.setXAcceleration(100.0f);
+                    xVelocity -= 50.0f;
                 }
-                if (super.velocity.y > 0.0f) {
-                    super.acceleration.y = -100.0f;
-                    super.velocity.y += 50.0f;
+                if (yVelocity > 0.0f) {
+                    super.setYAcceleration(-100.0f);
+                    yVelocity += 50.0f;
                 } else {
-                    super.acceleration.y = 100.0f;
-                    super.velocity.y -= 50.0f;
+                    super.setYAcceleration(100.0f);
+                    yVelocity -= 50.0f;
                 }
+                super.setXVelocity(xVelocity);
+                super.setYVelocity(yVelocity);
 
                 xStopped = false;
                 yStopped = false;
@@ -107,15 +146,15 @@ public class VirusNpc extends Npc {
         }
 
         final float multiplier = elapsedTime / 1000.0f;
-        super.velocity.x += super.acceleration.x * multiplier;
-        super.velocity.y += super.acceleration.y * multiplier;
+        float xVelocity = super.getXVelocity() + super.getXAcceleration() * multiplier;
+        float yVelocity = super.getYVelocity() + super.getYAcceleration() * multiplier;
 
-        if(xStopped || positiveX != super.velocity.x >= 0.0f) {
-            super.velocity.x = 0.0f;
+        if(xStopped || positiveX != xVelocity >= 0.0f) {
+            xVelocity = 0.0f;
             xStopped = true;
         }
-        if(yStopped || positiveY != super.velocity.y >= 0.0f) {
-            super.velocity.y = 0.0f;
+        if(yStopped || positiveY != yVelocity >= 0.0f) {
+            yVelocity = 0.0f;
             yStopped = true;
         }
         if(xStopped && yStopped) {
@@ -123,8 +162,10 @@ public class VirusNpc extends Npc {
             timeTilNextMove = 50L;
         }
 
-        super.position.x += super.velocity.x * multiplier;
-        super.position.y += super.velocity.y * multiplier;
+        super.setXVelocity(xVelocity);
+        super.setYVelocity(yVelocity);
+        super.setXPosition(super.getXPosition() + xVelocity * multiplier);
+        super.setYPosition(super.getYPosition() + yVelocity * multiplier);
     }
 
     @Override
@@ -167,17 +208,18 @@ public class VirusNpc extends Npc {
                 return;
             }
 
-            final float xSpawn = (float)(Math.random() * world.getWorldWidth());
-            final float ySpawn = (float)(Math.random() * world.getWorldHeight());
-            final VirusNpc npc = new VirusNpc(world);
-            npc.setXPosition(xSpawn);
-            npc.setYPosition(ySpawn);
-            world.addGameEntity(npc);
-
-            if(super.getCurrentPopulation() >= POPULATION_CAP) {
-                super.setSpawnInterval(30000);
-                dormant = true;
+            //fill the population back up, the spawner spreads the wave over as many ticks as its budget needs
+            final int numSpawns = POPULATION_CAP - super.getCurrentPopulation();
+            for(int i = 0; i < numSpawns; i++) {
+                super.queueSpawn(gameWorld -> {
+                    final VirusNpc npc = VirusNpc.acquire(gameWorld);
+                    super.placeInFreeSpace(npc);
+                    return npc;
+                });
             }
+
+            super.setSpawnInterval(30000);
+            dormant = true;
         }
     }
 }
@@ -16,7 +16,7 @@ import java.util.List;
  */
 public class BulletCollisionDetector implements PhysicsFilter {
     private final NewGameWorld gameWorld;
-    private final List<Bullet> worldBullets = new ArrayList<>();
+    private final List<GameEntity> candidates = new ArrayList<>();
 
     public BulletCollisionDetector(final NewGameWorld gameWorld) {
         this.gameWorld = gameWorld;
@@ -28,29 +28,37 @@ public class BulletCollisionDetector implements PhysicsFilter {
             return;
         }
 
+        //only bullets in the neighbouring grid cells can possibly be hitting the entity
+        candidates.clear();
+        gameWorld.getSpatialGrid().queryCollisionCandidates(gameEntity, candidates);
+
         //If the game entity is a player, check if player collided with a bullet
         if(gameEntity instanceof Player) {
             final Player player = (Player)gameEntity;
-            for(int i = 0; i < worldBullets.size(); i++) {
-                final Bullet bullet = worldBullets.get(i);
-                if(!player.equals(bullet.getOwner()) && isBulletColliding(player, bullet)) {
+            for(int i = 0; i < candidates.size(); i++) {
+                final GameEntity candidate = candidates.get(i);
+                if(!(candidate instanceof Bullet)) {
+                    continue;
+                }
+                final Bullet bullet = (Bullet)candidate;
+                if(!bullet.isDead() && !player.equals(bullet.getOwner()) && isBulletColliding(player, bullet)) {
                     player.setHealth(player.getHealth() - bullet.getDamage(), bullet.getOwner().getPlayerUsername());
                     bullet.setState(Bullet.STATE_DEAD_BULLET);
-                    worldBullets.remove(bullet);
-                    i--;
                 }
             }
         }
         //If the game entity is a Npc, check if Npc collided with a bullet
         else if(gameEntity instanceof Npc) {
             final Npc npc = (Npc)gameEntity;
-            for(int i = 0; i < worldBullets.size(); i++) {
-                final Bullet bullet = worldBullets.get(i);
-                if(isBulletColliding(npc, bullet)) {
+            for(int i = 0; i < candidates.size(); i++) {
+                final GameEntity candidate = candidates.get(i);
+                if(!(candidate instanceof Bullet)) {
+                    continue;
+                }
+                final Bullet bullet = (Bullet)candidate;
+                if(!bullet.isDead() && isBulletColliding(npc, bullet)) {
                     npc.setNpcHealth(npc.getNpcHealth() - bullet.getDamage());
                     bullet.setState(Bullet.STATE_DEAD_BULLET);
-                    worldBullets.remove(bullet);
-                    i--;
                     if(npc.getNpcHealth() == 0) {
                         final Player attacker = bullet.getOwner();
                         attacker.addScore(npc.getNpcPointsValue());
@@ -66,24 +74,12 @@ public class BulletCollisionDetector implements PhysicsFilter {
     }
 
     @Override
-    public void prepare() {
-        worldBullets.clear();
-        final List<GameEntity> entities = gameWorld.getAllGameEntities();
-        for(final GameEntity entity: entities) {
-            if(entity instanceof Bullet) {
-                worldBullets.add((Bullet)entity);
-            }
-
-        }
-    }
+    public void prepare() {}
 
     private boolean isBulletColliding(final GameEntity entity, final Bullet bullet) {
-        final float delta = distance(entity.getXPosition(), entity.getYPosition(), bullet.getXPosition(), bullet.getYPosition());
+        final float deltaX = bullet.getXPosition() - entity.getXPosition();
+        final float deltaY = bullet.getYPosition() - entity.getYPosition();
         final float collisionDistance = entity.getCollisionRadius() + bullet.getCollisionRadius();
-        return delta <= collisionDistance;
-    }
-
-    private float distance(final float x1, final float y1, final float x2, final float y2) {
-        return (float)StrictMath.sqrt((x2-x1)*(x2-x1) + (y2-y1)*(y2-y1));
+        return deltaX * deltaX + deltaY * deltaY <= collisionDistance * collisionDistance;
     }
 }
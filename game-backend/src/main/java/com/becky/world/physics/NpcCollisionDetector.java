@@ -2,7 +2,6 @@ package com.becky.world.physics;
 
 import com.becky.util.MathUtils;
 import com.becky.world.NewGameWorld;
-import com.becky.world.WorldEventListener;
 import com.becky.world.entity.GameEntity;
 import com.becky.world.entity.Player;
 import com.becky.world.entity.npc.Npc;
@@ -10,13 +9,12 @@ import com.becky.world.entity.npc.Npc;
 import java.util.ArrayList;
 import java.util.List;
 
-public class NpcCollisionDetector implements PhysicsFilter, WorldEventListener {
-    private final List<Npc> npcs = new ArrayList<>();
-    private final List<Npc> processedNpcs = new ArrayList<>();
-    private final List<Player> players = new ArrayList<>();
+public class NpcCollisionDetector implements PhysicsFilter {
+    private final NewGameWorld gameWorld;
+    private final List<GameEntity> candidates = new ArrayList<>();
 
     public NpcCollisionDetector(final NewGameWorld gameWorld) {
-        gameWorld.addWorldEventListener(this);
+        this.gameWorld = gameWorld;
     }
 
     @Override
@@ -25,31 +23,41 @@ public class NpcCollisionDetector implements PhysicsFilter, WorldEventListener {
             return;
         }
         final Npc npc = (Npc)gameEntity;
+        candidates.clear();
+        gameWorld.getSpatialGrid().queryCollisionCandidates(npc, candidates);
         applyNpcCollisionWithNpc(npc);
         applyNpcCollisionWithPlayer(npc);
     }
 
     private void applyNpcCollisionWithNpc(final Npc npc) {
-        for(final Npc entity: npcs) {
-            if(processedNpcs.contains(npc)) {
+        for(int i = 0; i < candidates.size(); i++) {
+            final GameEntity candidate = candidates.get(i);
+            if(!(candidate instanceof Npc) || candidate == npc) {
                 continue;
             }
-            if(MathUtils.distance(npc, entity) > npc.getCollisionRadius() + entity.getCollisionRadius()) {
+            final Npc entity = (Npc)candidate;
+            if(!isColliding(npc, entity)) {
                 continue;
             }
-            processedNpcs.add(npc);
             final float collisionAngle = MathUtils.getAngleBetweenEntities(npc, entity);
             final float collisionAngle1 = MathUtils.getAngleBetweenEntities(entity, npc);
             npc.setXVelocity(npc.getXVelocity() + 20.0f * (float)StrictMath.cos(collisionAngle));
             npc.setYVelocity(npc.getYVelocity() + 20.0f * (float)StrictMath.sin(collisionAngle));
             entity.setXVelocity(entity.getXVelocity() + 20.0f * (float)StrictMath.cos(collisionAngle1));
             entity.setYVelocity(entity.getYVelocity() + 20.0f * (float)StrictMath.sin(collisionAngle1));
+            //an npc only bounces off of one other npc per tick
+            break;
         }
     }
 
     private void applyNpcCollisionWithPlayer(final Npc npc) {
-        for(final Player player: players) {
-            if(MathUtils.distance(npc, player) > npc.getCollisionRadius() + player.getCollisionRadius()) {
+        for(int i = 0; i < candidates.size(); i++) {
+            final GameEntity candidate = candidates.get(i);
+            if(!(candidate instanceof Player)) {
+                continue;
+            }
+            final Player player = (Player)candidate;
+            if(!isColliding(npc, player)) {
                 continue;
             }
             final float collisionAngle = MathUtils.getAngleBetweenEntities(player, npc);
@@ -62,27 +70,12 @@ public class NpcCollisionDetector implements PhysicsFilter, WorldEventListener {
     }
 
     @Override
-    public void prepare() {
-        processedNpcs.clear();
-    }
+    public void prepare() {}
 
-    @Override
-    public void onGameEntityRemoved(final NewGameWorld world, final GameEntity entity) {
-        if(entity instanceof Npc) {
-            this.npcs.remove(entity);
-        }
-        else if(entity instanceof Player) {
-            this.players.remove(entity);
-        }
-    }
-
-    @Override
-    public void onGameEntityAdded(final NewGameWorld world, final GameEntity entity) {
-        if(entity instanceof Npc) {
-            this.npcs.add((Npc)entity);
-        }
-        else if(entity instanceof Player) {
-            this.players.add((Player)entity);
-        }
+    private boolean isColliding(final GameEntity first, final GameEntity second) {
+        final float deltaX = second.getXPosition() - first.getXPosition();
+        final float deltaY = second.getYPosition() - first.getYPosition();
+        final float collisionDistance = first.getCollisionRadius() + second.getCollisionRadius();
+        return deltaX * deltaX + deltaY * deltaY <= collisionDistance * collisionDistance;
     }
 }
@@ -2,20 +2,22 @@ package com.becky.world.physics;
 
 import com.becky.util.MathUtils;
 import com.becky.world.NewGameWorld;
-import com.becky.world.WorldEventListener;
 import com.becky.world.entity.GameEntity;
 import com.becky.world.entity.Player;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-public class PlayerCollisionDetector implements PhysicsFilter, WorldEventListener {
+public class PlayerCollisionDetector implements PhysicsFilter {
     private final NewGameWorld gameWorld;
-    private final List<Player> worldPlayer = new ArrayList<>();
+    private final List<GameEntity> candidates = new ArrayList<>();
+    //players which already collided this tick are not pushed around again until the next tick
+    private final Set<Player> collidedPlayers = new HashSet<>();
 
     public PlayerCollisionDetector(final NewGameWorld gameWorld) {
         this.gameWorld = gameWorld;
-        this.gameWorld.addWorldEventListener(this);
     }
 
     @Override
@@ -24,12 +26,20 @@ public class PlayerCollisionDetector implements PhysicsFilter, WorldEventListene
         //the main game loop will handle transmitting status changes
         if(gameEntity instanceof Player) {
             final Player player = (Player)gameEntity;
+            if(collidedPlayers.contains(player)) {
+                return;
+            }
+
+            candidates.clear();
+            gameWorld.getSpatialGrid().queryCollisionCandidates(player, candidates);
+
             boolean colliding = false;
-            for(int i = 0; i < worldPlayer.size(); i++) {
-                final Player player1 = worldPlayer.get(i);
-                if(player1.equals(player)) {
+            for(int i = 0; i < candidates.size(); i++) {
+                final GameEntity candidate = candidates.get(i);
+                if(!(candidate instanceof Player) || candidate == player || collidedPlayers.contains(candidate)) {
                     continue;
                 }
+                final Player player1 = (Player)candidate;
                 if(isPlayerColliding(player, player1)) {
                     colliding = true;
 
@@ -54,31 +64,20 @@ public class PlayerCollisionDetector implements PhysicsFilter, WorldEventListene
             }
 
             if(colliding) {
-                worldPlayer.remove(player);
+                collidedPlayers.add(player);
             }
         }
     }
 
     @Override
-    public void prepare() {}
-
-    @Override
-    public void onGameEntityAdded(final NewGameWorld world, final GameEntity entity) {
-        if(entity instanceof Player) {
-            worldPlayer.add((Player)entity);
-        }
-    }
-
-    @Override
-    public void onGameEntityRemoved(final NewGameWorld world, final GameEntity entity) {
-        if(entity instanceof Player) {
-            worldPlayer.remove(entity);
-        }
+    public void prepare() {
+        collidedPlayers.clear();
     }
 
     private boolean isPlayerColliding(final Player player, final Player player2) {
-        final float delta = MathUtils.distance(player.getXPosition(), player.getYPosition(), player2.getXPosition(), player2.getYPosition());
+        final float deltaX = player2.getXPosition() - player.getXPosition();
+        final float deltaY = player2.getYPosition() - player.getYPosition();
         final float collisionDistance = player.getCollisionRadius() + player2.getCollisionRadius();
-        return delta <= collisionDistance;
+        return deltaX * deltaX + deltaY * deltaY <= collisionDistance * collisionDistance;
     }
 }
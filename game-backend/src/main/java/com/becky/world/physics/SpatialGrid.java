@@ -0,0 +1,202 @@
+package com.becky.world.physics;
+
+import com.becky.world.EntityView;
+import com.becky.world.entity.GameEntity;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * A uniform grid over the game world used as the collision broadphase.
+ * The grid is rebuilt once per tick and physics filters query it for the entities near a point instead of testing
+ * every pair of entities. Entities outside of the world bounds are placed in the nearest edge cell.
+ *
+ * Cells are stored as singly linked lists threaded through flat int arrays, so a rebuild does not allocate once the
+ * arrays have grown to fit the population.
+ */
+public class SpatialGrid {
+    public static final float DEFAULT_CELL_SIZE = 128.0f;
+
+    private final float cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellHeads;
+    private int[] nextEntry = new int[256];
+    private GameEntity[] entries = new GameEntity[256];
+    private int size;
+    private int maxCollisionRadius;
+
+    public SpatialGrid(final float worldWidth, final float worldHeight) {
+        this(worldWidth, worldHeight, DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialGrid(final float worldWidth, final float worldHeight, final float cellSize) {
+        this.cellSize = cellSize;
+        this.columns = Math.max(1, (int)Math.ceil(worldWidth / cellSize));
+        this.rows = Math.max(1, (int)Math.ceil(worldHeight / cellSize));
+        this.cellHeads = new int[columns * rows];
+        Arrays.fill(cellHeads, -1);
+    }
+
+    /**
+     * Clears the grid and inserts every given entity at its current position.
+     * @param entities
+     */
+    public void rebuild(final EntityView<? extends GameEntity> entities) {
+        clear();
+        final int count = entities.size();
+        for(int i = 0; i < count; i++) {
+            insert(entities.get(i));
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(cellHeads, -1);
+        Arrays.fill(entries, 0, size, null);
+        size = 0;
+        maxCollisionRadius = 0;
+    }
+
+    public void insert(final GameEntity entity) {
+        if(size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+            nextEntry = Arrays.copyOf(nextEntry, size * 2);
+        }
+
+        final int cell = cellIndex(column(entity.getXPosition()), row(entity.getYPosition()));
+        entries[size] = entity;
+        nextEntry[size] = cellHeads[cell];
+        cellHeads[cell] = size;
+        size++;
+
+        if(entity.getCollisionRadius() > maxCollisionRadius) {
+            maxCollisionRadius = entity.getCollisionRadius();
+        }
+    }
+
+    /**
+     * Collects every entity whose cell overlaps the square around the given point. The results are candidates only,
+     * callers still have to do their own exact distance test.
+     * @param x The x coordinate of the query point.
+     * @param y The y coordinate of the query point.
+     * @param radius How far from the point to look.
+     * @param results The list to add the candidates to. It is not cleared first.
+     * @return The number of candidates added.
+     */
+    public int query(final float x, final float y, final float radius, final List<GameEntity> results) {
+        final int minColumn = column(x - radius);
+        final int maxColumn = column(x + radius);
+        final int minRow = row(y - radius);
+        final int maxRow = row(y + radius);
+
+        int found = 0;
+        for(int r = minRow; r <= maxRow; r++) {
+            for(int c = minColumn; c <= maxColumn; c++) {
+                for(int i = cellHeads[cellIndex(c, r)]; i != -1; i = nextEntry[i]) {
+                    results.add(entries[i]);
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the entity closest to a point, looking at the cells around the point one ring at a time and stopping as
+     * soon as no closer entity can be left. The cost depends on how many entities are near the point, not on how many
+     * there are in total.
+     * @param x The x coordinate of the query point.
+     * @param y The y coordinate of the query point.
+     * @param maxDistance Entities further away than this are not found.
+     * @param filter Which entities may be found.
+     * @return The closest entity accepted by the filter, or null if there is none within the distance.
+     */
+    public GameEntity findNearest(final float x, final float y, final float maxDistance,
+                                  final Predicate<? super GameEntity> filter) {
+        final int centerColumn = column(x);
+        final int centerRow = row(y);
+        final int maxRing = Math.max(columns, rows);
+        final float maxDistanceSquared = maxDistance * maxDistance;
+
+        GameEntity nearest = null;
+        float nearestDistanceSquared = maxDistanceSquared;
+        for(int ring = 0; ring <= maxRing; ring++) {
+            //every cell of this ring is at least this far from the point
+            final float ringDistance = Math.max(0, ring - 1) * cellSize;
+            if(ringDistance * ringDistance > nearestDistanceSquared) {
+                break;
+            }
+            final int minRow = Math.max(0, centerRow - ring);
+            final int maxRow = Math.min(rows - 1, centerRow + ring);
+            for(int r = minRow; r <= maxRow; r++) {
+                final boolean edgeRow = r == centerRow - ring || r == centerRow + ring;
+                //rows between the top and bottom of the ring only have their two end cells in it
+                final int step = edgeRow ? 1 : Math.max(1, ring * 2);
+                for(int c = centerColumn - ring; c <= centerColumn + ring; c += step) {
+                    if(c < 0 || c >= columns) {
+                        continue;
+                    }
+                    for(int i = cellHeads[cellIndex(c, r)]; i != -1; i = nextEntry[i]) {
+                        final GameEntity entity = entries[i];
+                        final float deltaX = entity.getXPosition() - x;
+                        final float deltaY = entity.getYPosition() - y;
+                        final float distanceSquared = deltaX * deltaX + deltaY * deltaY;
+                        if(distanceSquared <= nearestDistanceSquared && filter.test(entity)) {
+                            nearest = entity;
+                            nearestDistanceSquared = distanceSquared;
+                        }
+                    }
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Collects the candidates that could be colliding with the given entity, which includes the entity itself.
+     * @param entity
+     * @param results
+     * @return
+     */
+    public int queryCollisionCandidates(final GameEntity entity, final List<GameEntity> results) {
+        return query(entity.getXPosition(), entity.getYPosition(),
+            entity.getCollisionRadius() + maxCollisionRadius, results);
+    }
+
+    /**
+     * Gets the largest collision radius of all entities inserted since the last rebuild.
+     * @return
+     */
+    public int getMaxCollisionRadius() {
+        return this.maxCollisionRadius;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public float getCellSize() {
+        return this.cellSize;
+    }
+
+    private int column(final float x) {
+        final int column = (int)(x / cellSize);
+        if(column < 0) {
+            return 0;
+        }
+        return column >= columns ? columns - 1 : column;
+    }
+
+    private int row(final float y) {
+        final int row = (int)(y / cellSize);
+        if(row < 0) {
+            return 0;
+        }
+        return row >= rows ? rows - 1 : row;
+    }
+
+    private int cellIndex(final int column, final int row) {
+        return row * columns + column;
+    }
+}
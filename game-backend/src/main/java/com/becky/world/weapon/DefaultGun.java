@@ -1,5 +1,6 @@
 package com.becky.world.weapon;
 
+import com.becky.world.NewGameWorld;
 import com.becky.world.entity.Bullet;
 import com.becky.world.entity.DefaultBullet;
 import com.becky.world.entity.Player;
@@ -36,9 +37,11 @@ public class DefaultGun implements Gun {
         final float vY = sin * VELOCITY;
         final float pX = cos * 32 + weilder.getXPosition();
         final float pY = sin * 32 + weilder.getYPosition();
-        final Bullet bullet = new DefaultBullet(weilder, pX, pY, vX, vY);
-        bullet.setState(Bullet.STATE_NEW_BULLET);
-        weilder.getGameWorld().addGameEntity(bullet);
+        final NewGameWorld gameWorld = weilder.getGameWorld();
+        final Bullet bullet = gameWorld.getEntityPool(DefaultBullet.class, DefaultBullet::new)
+            .acquire()
+            .launch(weilder, pX, pY, vX, vY);
+        gameWorld.addGameEntity(bullet);
         lastFireTime = currentTime;
     }
 }
@@ -0,0 +1,190 @@
+package com.becky.world;
+
+import com.becky.util.ServerConfig;
+import com.becky.world.entity.Bullet;
+import com.becky.world.entity.DefaultBullet;
+import com.becky.world.entity.GameEntity;
+import com.becky.world.entity.Player;
+import com.becky.world.entity.npc.InfectedNpc;
+import org.java_websocket.WebSocket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds populated game worlds for the benchmarks and runs single phases of their game loop.
+ *
+ * Every world is laid out from a fixed seed, so the same parameters always give the same starting positions and the
+ * results of two commits can be compared. Players are connected through sockets which accept and drop every message.
+ */
+public class BenchmarkWorlds {
+    public static final long SEED = 20171010L;
+    public static final long TICK_MILLIS = 50L;
+
+    //each player keeps roughly this many bullets in flight while firing non stop
+    private static final int BULLETS_PER_PLAYER = 20;
+
+    /**
+     * Creates a world holding the given number of players, InfectedNpc instances and bullets fired by those players.
+     * All entities have already joined the world when this returns.
+     * @param numPlayers
+     * @param numNpcs
+     * @return
+     */
+    public static NewGameWorld create(final int numPlayers, final int numNpcs) {
+        final NewGameWorld world = new NewGameWorld(ServerConfig.defaults());
+        final Random random = new Random(SEED);
+        final float width = world.getWorldWidth();
+        final float height = world.getWorldHeight();
+
+        final List<Player> players = new ArrayList<>(numPlayers);
+        for(int i = 0; i < numPlayers; i++) {
+            final Player player = new Player(world, "player" + i, "auth" + i, nullWebSocket());
+            player.setXPosition(random.nextFloat() * width);
+            player.setYPosition(random.nextFloat() * height);
+            player.setUsernameFinal();
+            world.addPlayer(player);
+            players.add(player);
+        }
+
+        final List<GameEntity> entities = new ArrayList<>();
+        addNpcs(world, numNpcs, random, entities);
+        for(final Player player: players) {
+            fireBullets(player, BULLETS_PER_PLAYER, random, entities);
+        }
+        world.addGameEntities(entities);
+        flush(world);
+        return world;
+    }
+
+    /**
+     * Brings a world back to the population it was created with, after phases of the game loop ran on it without the
+     * rest of the tick. The pending adds and removes are applied and the queued messages sent, the players are healed
+     * and the npcs and bullets which died are replaced by new ones.
+     * @param world
+     * @param numNpcs How many npcs the world was created with.
+     * @param random
+     */
+    public static void restore(final NewGameWorld world, final int numNpcs, final Random random) {
+        final EntityStore store = world.getEntityStore();
+        //bullets which hit something are only removed by the transmit phase
+        final EntityView<Bullet> liveBullets = store.getBullets();
+        for(int i = 0; i < liveBullets.size(); i++) {
+            if(liveBullets.get(i).isDead()) {
+                world.removeGameEntity(liveBullets.get(i));
+            }
+        }
+        flush(world);
+        world.getMessageTransmitter().flush();
+
+        final EntityView<Player> players = store.getPlayers();
+        final List<GameEntity> entities = new ArrayList<>();
+        addNpcs(world, numNpcs - store.getNpcs().size(), random, entities);
+        int missingBullets = players.size() * BULLETS_PER_PLAYER - store.getBullets().size();
+        for(int i = 0; i < players.size(); i++) {
+            final Player player = players.get(i);
+            if(player.getHealth() < Player.MAX_HEALTH) {
+                player.setHealth(Player.MAX_HEALTH, null);
+            }
+            if(missingBullets <= 0) {
+                continue;
+            }
+            final int bullets = Math.min(missingBullets, BULLETS_PER_PLAYER);
+            fireBullets(player, bullets, random, entities);
+            missingBullets -= bullets;
+        }
+        if(!entities.isEmpty()) {
+            world.addGameEntities(entities);
+            flush(world);
+        }
+    }
+
+    /**
+     * Applies every pending add and remove to the world, as the game loop does at the start of a tick.
+     * @param world
+     */
+    public static void flush(final NewGameWorld world) {
+        world.applyEntityCommands();
+    }
+
+    public static void applyPlayerInput(final NewGameWorld world) {
+        world.applyPlayerInput();
+    }
+
+    /**
+     * Indexes the players by position, as the tick phase does before ticking any entity.
+     * @param world
+     */
+    public static void indexPlayers(final NewGameWorld world) {
+        world.indexPlayers();
+    }
+
+    /**
+     * Starts a new tick for the flow fields, as the tick phase does before ticking any entity.
+     * @param world
+     */
+    public static void beginFlowFields(final NewGameWorld world) {
+        world.getFlowFields().beginTick();
+    }
+
+    public static void tick(final NewGameWorld world) {
+        world.tick(TICK_MILLIS);
+    }
+
+    public static void applyPhysics(final NewGameWorld world) {
+        world.applyPhysics();
+    }
+
+    public static void transmit(final NewGameWorld world) {
+        world.transmit();
+    }
+
+    public static void executeSpawnRules(final NewGameWorld world) {
+        world.getSpawner().executeSpawnRules();
+    }
+
+    /**
+     * Runs one whole tick without any pacing.
+     * @param world
+     */
+    public static void fullTick(final NewGameWorld world) {
+        world.applyEntityCommands();
+        world.applyPlayerInput();
+        world.tick(TICK_MILLIS);
+        world.applyPhysics();
+        world.transmit();
+        world.getSpawner().executeSpawnRules();
+    }
+
+    private static void addNpcs(final NewGameWorld world, final int count, final Random random,
+                                final List<GameEntity> entities) {
+        for(int i = 0; i < count; i++) {
+            final InfectedNpc npc = new InfectedNpc(world, null);
+            npc.setXPosition(random.nextFloat() * world.getWorldWidth());
+            npc.setYPosition(random.nextFloat() * world.getWorldHeight());
+            entities.add(npc);
+        }
+    }
+
+    private static void fireBullets(final Player player, final int count, final Random random,
+                                    final List<GameEntity> entities) {
+        for(int i = 0; i < count; i++) {
+            final float angle = random.nextFloat() * (float)Math.PI * 2.0f;
+            final float distance = 32.0f + random.nextFloat() * 1000.0f;
+            final float cos = (float)Math.cos(angle);
+            final float sin = (float)Math.sin(angle);
+            entities.add(new DefaultBullet(player,
+                player.getXPosition() + cos * distance, player.getYPosition() + sin * distance,
+                cos * 500.0f, sin * 500.0f));
+        }
+    }
+
+    /**
+     * Creates a socket which claims to be open and drops everything sent through it.
+     * @return
+     */
+    public static WebSocket nullWebSocket() {
+        return WorldWarmup.discardingSocket();
+    }
+}
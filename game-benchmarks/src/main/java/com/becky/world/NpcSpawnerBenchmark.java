@@ -0,0 +1,71 @@
+package com.becky.world;
+
+import com.becky.world.entity.npc.Npc;
+import com.becky.world.entity.npc.VirusNpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the NPC spawner: the check every tick makes against the spawn rules, and a full wave of virus NPCs
+ * being spawned and joining the world.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class NpcSpawnerBenchmark {
+    @Param({"250", "1000", "4000"})
+    public int npcs;
+
+    private NewGameWorld world;
+    private VirusNpc.VirusNpcSpawnRules waveRules;
+
+    @Setup(Level.Iteration)
+    public void createWorld() {
+        world = BenchmarkWorlds.create(16, npcs);
+        //let every rule spawn once so the rules are waiting for their next interval like in a running server
+        BenchmarkWorlds.executeSpawnRules(world);
+        BenchmarkWorlds.flush(world);
+    }
+
+    @Setup(Level.Invocation)
+    public void createWaveRules() {
+        waveRules = new VirusNpc.VirusNpcSpawnRules();
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeWave() {
+        //remove the wave again so every invocation spawns into the same population
+        final EntityView<Npc> viruses = world.getEntityStore().getNpcs(VirusNpc.class);
+        for(int i = 0; i < viruses.size(); i++) {
+            world.removeGameEntity(viruses.get(i));
+        }
+        BenchmarkWorlds.flush(world);
+    }
+
+    @Benchmark
+    public void executeSpawnRules() {
+        BenchmarkWorlds.executeSpawnRules(world);
+    }
+
+    @Benchmark
+    public void spawnVirusWave() {
+        waveRules.spawn(world);
+        BenchmarkWorlds.flush(world);
+    }
+}
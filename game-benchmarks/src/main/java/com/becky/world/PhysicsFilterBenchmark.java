@@ -0,0 +1,99 @@
+package com.becky.world;
+
+import com.becky.world.entity.GameEntity;
+import com.becky.world.physics.BulletCollisionDetector;
+import com.becky.world.physics.NpcCollisionDetector;
+import com.becky.world.physics.PhysicsFilter;
+import com.becky.world.physics.PlayerCollisionDetector;
+import com.becky.world.physics.WorldBorderCollisionDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times a single physics filter over every entity in the world, the way the physics phase runs it.
+ * The broadphase grid is built outside the timed code and timed separately by {@link #broadphase()}. Bullets the
+ * filters kill and damage they deal are undone after every invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class PhysicsFilterBenchmark {
+    @Param({"BulletCollisionDetector", "NpcCollisionDetector", "PlayerCollisionDetector", "WorldBorderCollisionDetector"})
+    public String filter;
+
+    @Param({"32"})
+    public int players;
+
+    @Param({"250", "1000", "4000"})
+    public int npcs;
+
+    private NewGameWorld world;
+    private PhysicsFilter physicsFilter;
+    private Class<? extends PhysicsFilter> filterClass;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void createWorld() {
+        world = BenchmarkWorlds.create(players, npcs);
+        world.getSpatialGrid().rebuild(world.getEntityStore().getEntities());
+        physicsFilter = createFilter(filter, world);
+        filterClass = physicsFilter.getClass();
+        random = new Random(BenchmarkWorlds.SEED);
+    }
+
+    @TearDown(Level.Invocation)
+    public void restoreWorld() {
+        BenchmarkWorlds.restore(world, npcs, random);
+        world.getSpatialGrid().rebuild(world.getEntityStore().getEntities());
+    }
+
+    @Benchmark
+    public void filter() {
+        final EntityView<GameEntity> entities = world.getEntityStore().getEntities();
+        physicsFilter.prepare();
+        final int count = entities.size();
+        for(int i = 0; i < count; i++) {
+            final GameEntity entity = entities.get(i);
+            if(entity.doesPhysicsApply(filterClass)) {
+                physicsFilter.apply(entity);
+            }
+        }
+    }
+
+    @Benchmark
+    public void broadphase() {
+        world.getSpatialGrid().rebuild(world.getEntityStore().getEntities());
+    }
+
+    private static PhysicsFilter createFilter(final String name, final NewGameWorld world) {
+        switch(name) {
+            case "BulletCollisionDetector":
+                return new BulletCollisionDetector(world);
+            case "NpcCollisionDetector":
+                return new NpcCollisionDetector(world);
+            case "PlayerCollisionDetector":
+                return new PlayerCollisionDetector(world);
+            case "WorldBorderCollisionDetector":
+                return new WorldBorderCollisionDetector(world.getWorldWidth(), world.getWorldHeight());
+            default:
+                throw new IllegalArgumentException("Unknown physics filter " + name);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.becky.world;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the phases of a game loop tick on their own and together.
+ * The world is rebuilt before every iteration, and after every invocation the pending adds, removes and messages are
+ * applied and whatever died is replaced, so every invocation runs on the same population.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class TickPhaseBenchmark {
+    @Param({"16", "64"})
+    public int players;
+
+    @Param({"250", "1000", "4000"})
+    public int npcs;
+
+    private NewGameWorld world;
+    private Random random;
+
+    @Setup(Level.Iteration)
+    public void createWorld() {
+        world = BenchmarkWorlds.create(players, npcs);
+        random = new Random(BenchmarkWorlds.SEED);
+    }
+
+    @TearDown(Level.Invocation)
+    public void restoreWorld() {
+        BenchmarkWorlds.restore(world, npcs, random);
+    }
+
+    @Benchmark
+    public void entityTick() {
+        BenchmarkWorlds.tick(world);
+    }
+
+    @Benchmark
+    public void physics() {
+        BenchmarkWorlds.applyPhysics(world);
+    }
+
+    @Benchmark
+    public void transmit() {
+        BenchmarkWorlds.transmit(world);
+    }
+
+    @Benchmark
+    public void fullTick() {
+        BenchmarkWorlds.fullTick(world);
+    }
+}
@@ -0,0 +1,74 @@
+package com.becky.world.entity.npc;
+
+import com.becky.world.BenchmarkWorlds;
+import com.becky.world.EntityView;
+import com.becky.world.NewGameWorld;
+import com.becky.world.entity.GameEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the AI tick of every NPC of one type, without moving them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class NpcTickBenchmark {
+    @Param({"InfectedNpc", "VirusNpc"})
+    public String type;
+
+    @Param({"250", "1000", "4000"})
+    public int npcs;
+
+    private NewGameWorld world;
+    private EntityView<Npc> population;
+
+    @Setup(Level.Iteration)
+    public void createWorld() {
+        final boolean infected = type.equals("InfectedNpc");
+        world = BenchmarkWorlds.create(32, infected ? npcs : 0);
+        if(!infected) {
+            final Random random = new Random(BenchmarkWorlds.SEED);
+            final List<GameEntity> viruses = new ArrayList<>(npcs);
+            for(int i = 0; i < npcs; i++) {
+                final VirusNpc npc = new VirusNpc(world);
+                npc.setXPosition(random.nextFloat() * world.getWorldWidth());
+                npc.setYPosition(random.nextFloat() * world.getWorldHeight());
+                viruses.add(npc);
+            }
+            world.addGameEntities(viruses);
+            BenchmarkWorlds.flush(world);
+        }
+        //the players don't move, so they are indexed once like at the start of the tick phase
+        BenchmarkWorlds.indexPlayers(world);
+        population = world.getEntityStore().getNpcs(infected ? InfectedNpc.class : VirusNpc.class);
+    }
+
+    @Benchmark
+    public void tickNpcs() {
+        //each invocation is a new tick, so the flow fields are worked out again rather than read from the last one
+        BenchmarkWorlds.beginFlowFields(world);
+        final int count = population.size();
+        for(int i = 0; i < count; i++) {
+            population.get(i).tick(BenchmarkWorlds.TICK_MILLIS);
+        }
+    }
+}
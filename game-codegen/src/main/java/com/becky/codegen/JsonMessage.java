@@ -0,0 +1,18 @@
+package com.becky.codegen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a class whose json serializer is generated at compile time by {@link MessageSerializerProcessor}.
+ *
+ * The serializer is written to the same package as the class, named after it with a "Serializer" suffix. It writes the
+ * same json as org.json's JSONObject would for the class, and reads it back through the setters of the class.
+ * Every networked message must be annotated, the build fails otherwise.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface JsonMessage {
+}
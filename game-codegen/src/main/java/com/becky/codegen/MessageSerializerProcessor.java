@@ -0,0 +1,538 @@
+package com.becky.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generates a json serializer for every class annotated with {@link JsonMessage}, and fails the build for any
+ * networked message which isn't annotated.
+ *
+ * The properties of a message are found the way org.json's JSONObject finds them on a bean: every public getter named
+ * get* or is*, with its name turned into the key. Null values are left out and the keys are written in the order a
+ * HashMap of them iterates in, which is the order JSONObject writes them in. That keeps the generated json identical to
+ * what the messages sent before it, so clients don't notice the difference.
+ *
+ * A property is read back when the class has a setter for it. Names the class doesn't know are skipped and a null or
+ * missing value leaves the property as it is.
+ */
+@SupportedAnnotationTypes("*")
+public class MessageSerializerProcessor extends AbstractProcessor {
+    /**
+     * Every class implementing this interface must be annotated with {@link JsonMessage}.
+     */
+    static final String MESSAGE_INTERFACE = "com.becky.networking.message.NetworkedMessage";
+    private static final String JSON_PACKAGE = "com.becky.networking.json";
+    private static final String SERIALIZER_SUFFIX = "Serializer";
+
+    private enum Kind {
+        BOOLEAN(null, "Boolean"),
+        INT(null, "Int"),
+        LONG(null, "Long"),
+        FLOAT(null, "Float"),
+        DOUBLE(null, "Double"),
+        STRING(null, "String"),
+        STRING_ARRAY("String", "StringArray"),
+        INT_ARRAY("int", "IntArray"),
+        FLOAT_ARRAY("float", "FloatArray"),
+        STRING_LIST("String", "StringList"),
+        MESSAGE(null, null),
+        MESSAGE_LIST(null, null);
+
+        //the type of the elements of arrays and lists
+        private final String elementType;
+        //the suffix of the JsonReader method reading the whole value
+        private final String readMethod;
+
+        Kind(final String elementType, final String readMethod) {
+            this.elementType = elementType;
+            this.readMethod = readMethod;
+        }
+    }
+
+    private static class Property {
+        private final String key;
+        private final ExecutableElement getter;
+        private final Kind kind;
+        private final boolean nullable;
+        //the message class of MESSAGE and MESSAGE_LIST properties
+        private final TypeElement messageType;
+        private ExecutableElement setter;
+
+        Property(final String key, final ExecutableElement getter, final Kind kind, final boolean nullable,
+                 final TypeElement messageType) {
+            this.key = key;
+            this.getter = getter;
+            this.kind = kind;
+            this.nullable = nullable;
+            this.messageType = messageType;
+        }
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final TypeElement messageInterface = processingEnv.getElementUtils().getTypeElement(MESSAGE_INTERFACE);
+        if(messageInterface != null) {
+            for(final TypeElement type: ElementFilter.typesIn(roundEnv.getRootElements())) {
+                checkCovered(type, messageInterface);
+            }
+        }
+
+        for(final Element element: roundEnv.getElementsAnnotatedWith(JsonMessage.class)) {
+            if(element.getKind() != ElementKind.CLASS) {
+                error(element, "Only classes can be annotated with @JsonMessage.");
+                continue;
+            }
+            final TypeElement type = (TypeElement)element;
+            final List<Property> properties = findProperties(type);
+            if(properties != null) {
+                writeSerializer(type, properties);
+            }
+        }
+        //other processors may want to see the same classes
+        return false;
+    }
+
+    private void checkCovered(final TypeElement type, final TypeElement messageInterface) {
+        final boolean isMessage = type.getKind() == ElementKind.CLASS
+            && !type.getModifiers().contains(Modifier.ABSTRACT)
+            && processingEnv.getTypeUtils().isAssignable(
+                processingEnv.getTypeUtils().erasure(type.asType()),
+                processingEnv.getTypeUtils().erasure(messageInterface.asType()));
+        if(isMessage && type.getAnnotation(JsonMessage.class) == null) {
+            error(type, type.getSimpleName() + " implements " + messageInterface.getSimpleName()
+                + " but is not annotated with @JsonMessage, so it has no serializer.");
+        }
+        for(final TypeElement nested: ElementFilter.typesIn(type.getEnclosedElements())) {
+            checkCovered(nested, messageInterface);
+        }
+    }
+
+    /**
+     * Finds the properties of a message in the order JSONObject writes them in.
+     * @param type
+     * @return The properties, or null if one of them can't be serialized.
+     */
+    private List<Property> findProperties(final TypeElement type) {
+        final List<ExecutableElement> methods = new ArrayList<>();
+        for(final ExecutableElement method: ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+            final TypeElement owner = (TypeElement)method.getEnclosingElement();
+            if(method.getModifiers().contains(Modifier.PUBLIC)
+                && !method.getModifiers().contains(Modifier.STATIC)
+                && !owner.getQualifiedName().contentEquals(Object.class.getName())) {
+                methods.add(method);
+            }
+        }
+
+        boolean valid = true;
+        //JSONObject keeps the properties of a bean in a HashMap, the generated code writes them in its order
+        final Map<String, Property> properties = new HashMap<>();
+        for(final ExecutableElement method: methods) {
+            final String name = method.getSimpleName().toString();
+            final String suffix;
+            if(name.startsWith("get") && !name.equals("getClass") && !name.equals("getDeclaringClass")) {
+                suffix = name.substring(3);
+            }
+            else if(name.startsWith("is")) {
+                suffix = name.substring(2);
+            }
+            else {
+                continue;
+            }
+            if(suffix.isEmpty() || !Character.isUpperCase(suffix.charAt(0)) || !method.getParameters().isEmpty()
+                || method.getReturnType().getKind() == TypeKind.VOID) {
+                continue;
+            }
+
+            final Property property = createProperty(toKey(suffix), method);
+            if(property == null) {
+                valid = false;
+                continue;
+            }
+            property.setter = findSetter(methods, "set" + suffix, method.getReturnType());
+            properties.put(property.key, property);
+        }
+
+        final List<Property> ordered = new ArrayList<>(properties.values());
+        for(final Property property: ordered) {
+            if(property.setter != null && property.messageType != null && !isReadable(property.messageType)) {
+                error(property.setter, property.messageType.getSimpleName() + " can't be read, it needs a public"
+                    + " constructor without parameters and a setter for at least one property.");
+                valid = false;
+            }
+        }
+        return valid ? ordered : null;
+    }
+
+    /**
+     * Turns the name of a getter without its prefix into a key, the same as JSONObject does.
+     * @param suffix
+     * @return
+     */
+    private static String toKey(final String suffix) {
+        if(suffix.length() == 1) {
+            return suffix.toLowerCase();
+        }
+        else if(!Character.isUpperCase(suffix.charAt(1))) {
+            return suffix.substring(0, 1).toLowerCase() + suffix.substring(1);
+        }
+        return suffix;
+    }
+
+    private Property createProperty(final String key, final ExecutableElement getter) {
+        final TypeMirror type = getter.getReturnType();
+        switch(type.getKind()) {
+            case BOOLEAN:
+                return new Property(key, getter, Kind.BOOLEAN, false, null);
+            case INT:
+                return new Property(key, getter, Kind.INT, false, null);
+            case LONG:
+                return new Property(key, getter, Kind.LONG, false, null);
+            case FLOAT:
+                return new Property(key, getter, Kind.FLOAT, false, null);
+            case DOUBLE:
+                return new Property(key, getter, Kind.DOUBLE, false, null);
+            case ARRAY:
+                final TypeMirror component = ((ArrayType)type).getComponentType();
+                if(component.getKind() == TypeKind.INT) {
+                    return new Property(key, getter, Kind.INT_ARRAY, true, null);
+                }
+                else if(component.getKind() == TypeKind.FLOAT) {
+                    return new Property(key, getter, Kind.FLOAT_ARRAY, true, null);
+                }
+                else if(isClass(component, String.class)) {
+                    return new Property(key, getter, Kind.STRING_ARRAY, true, null);
+                }
+                break;
+            case DECLARED:
+                if(isClass(type, String.class)) {
+                    return new Property(key, getter, Kind.STRING, true, null);
+                }
+                else if(isClass(type, Boolean.class)) {
+                    return new Property(key, getter, Kind.BOOLEAN, true, null);
+                }
+                else if(isClass(type, Integer.class)) {
+                    return new Property(key, getter, Kind.INT, true, null);
+                }
+                else if(isClass(type, Long.class)) {
+                    return new Property(key, getter, Kind.LONG, true, null);
+                }
+                else if(isClass(type, Float.class)) {
+                    return new Property(key, getter, Kind.FLOAT, true, null);
+                }
+                else if(isClass(type, Double.class)) {
+                    return new Property(key, getter, Kind.DOUBLE, true, null);
+                }
+                else if(isClass(type, List.class) && ((DeclaredType)type).getTypeArguments().size() == 1) {
+                    final TypeMirror element = ((DeclaredType)type).getTypeArguments().get(0);
+                    if(isClass(element, String.class)) {
+                        return new Property(key, getter, Kind.STRING_LIST, true, null);
+                    }
+                    else if(isMessage(element)) {
+                        return new Property(key, getter, Kind.MESSAGE_LIST, true, asTypeElement(element));
+                    }
+                }
+                else if(isMessage(type)) {
+                    return new Property(key, getter, Kind.MESSAGE, true, asTypeElement(type));
+                }
+                break;
+            default:
+                break;
+        }
+        error(getter, "The type " + type + " of " + getter.getSimpleName() + " can't be serialized by @JsonMessage.");
+        return null;
+    }
+
+    private ExecutableElement findSetter(final List<ExecutableElement> methods, final String name,
+                                         final TypeMirror type) {
+        for(final ExecutableElement method: methods) {
+            if(method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                && processingEnv.getTypeUtils().isSameType(method.getParameters().get(0).asType(), type)) {
+                return method;
+            }
+        }
+        return null;
+    }
+
+    private boolean isReadable(final TypeElement type) {
+        boolean hasConstructor = false;
+        for(final ExecutableElement constructor: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if(constructor.getModifiers().contains(Modifier.PUBLIC) && constructor.getParameters().isEmpty()) {
+                hasConstructor = true;
+            }
+        }
+        if(!hasConstructor) {
+            return false;
+        }
+        final List<Property> properties = findProperties(type);
+        if(properties == null) {
+            return false;
+        }
+        for(final Property property: properties) {
+            if(property.setter != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isClass(final TypeMirror type, final Class<?> cls) {
+        final TypeElement element = asTypeElement(type);
+        return element != null && element.getQualifiedName().contentEquals(cls.getCanonicalName());
+    }
+
+    private boolean isMessage(final TypeMirror type) {
+        final TypeElement element = asTypeElement(type);
+        return element != null && element.getAnnotation(JsonMessage.class) != null;
+    }
+
+    private static TypeElement asTypeElement(final TypeMirror type) {
+        if(type.getKind() != TypeKind.DECLARED) {
+            return null;
+        }
+        return (TypeElement)((DeclaredType)type).asElement();
+    }
+
+    private static String serializerName(final TypeElement type) {
+        return type.getSimpleName() + SERIALIZER_SUFFIX;
+    }
+
+    private static String qualifiedSerializerName(final TypeElement type) {
+        final String packageName = packageOf(type).getQualifiedName().toString();
+        return packageName.isEmpty() ? serializerName(type) : packageName + "." + serializerName(type);
+    }
+
+    private static PackageElement packageOf(Element element) {
+        while(element.getKind() != ElementKind.PACKAGE) {
+            element = element.getEnclosingElement();
+        }
+        return (PackageElement)element;
+    }
+
+    private void writeSerializer(final TypeElement type, final List<Property> properties) {
+        final String packageName = packageOf(type).getQualifiedName().toString();
+        final String className = serializerName(type);
+        final String messageType = type.getQualifiedName().toString();
+        final String messageName = type.getSimpleName().toString();
+
+        boolean readable = false;
+        for(final Property property: properties) {
+            readable |= property.setter != null;
+        }
+
+        try {
+            final JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedSerializerName(type), type);
+            try(final Writer fileWriter = file.openWriter(); final PrintWriter out = new PrintWriter(fileWriter)) {
+                if(!packageName.isEmpty()) {
+                    out.println("package " + packageName + ";");
+                    out.println();
+                }
+                out.println("import " + JSON_PACKAGE + ".JsonReader;");
+                out.println("import " + JSON_PACKAGE + ".JsonWriter;");
+                out.println();
+                out.println("import java.util.ArrayList;");
+                out.println("import java.util.List;");
+                out.println();
+                out.println("/**");
+                out.println(" * Json serializer of {@link " + messageType + "}, generated by "
+                    + MessageSerializerProcessor.class.getSimpleName() + ".");
+                out.println(" */");
+                out.println("public final class " + className + " {");
+                out.println("    private " + className + "() {}");
+                out.println();
+
+                out.println("    /**");
+                out.println("     * Serializes a message, prefixed with its name.");
+                out.println("     */");
+                out.println("    public static String serialize(final " + messageType + " message) {");
+                out.println("        final JsonWriter writer = JsonWriter.reusable().raw(\"" + messageName + ":\");");
+                out.println("        write(writer, message);");
+                out.println("        return writer.toString();");
+                out.println("    }");
+                out.println();
+
+                out.println("    /**");
+                out.println("     * Serializes a message without its name, as an element of an array.");
+                out.println("     */");
+                out.println("    public static String serializeElement(final " + messageType + " message) {");
+                out.println("        final JsonWriter writer = JsonWriter.reusable();");
+                out.println("        write(writer, message);");
+                out.println("        return writer.toString();");
+                out.println("    }");
+                out.println();
+
+                out.println("    /**");
+                out.println("     * Serializes a list of messages as an array, prefixed with the name of an array of them.");
+                out.println("     */");
+                out.println("    public static String serializeAll(final List<" + messageType + "> messages) {");
+                out.println("        final JsonWriter writer = JsonWriter.reusable().raw(\"" + messageName + "[]:\");");
+                out.println("        writer.beginArray();");
+                out.println("        for(final " + messageType + " message: messages) {");
+                out.println("            if(message == null) {");
+                out.println("                writer.nullValue();");
+                out.println("            }");
+                out.println("            else {");
+                out.println("                write(writer, message);");
+                out.println("            }");
+                out.println("        }");
+                out.println("        writer.endArray();");
+                out.println("        return writer.toString();");
+                out.println("    }");
+                out.println();
+
+                out.println("    public static void write(final JsonWriter writer, final " + messageType + " message) {");
+                out.println("        writer.beginObject();");
+                for(final Property property: properties) {
+                    writeProperty(out, property);
+                }
+                out.println("        writer.endObject();");
+                out.println("    }");
+
+                if(readable) {
+                    out.println();
+                    out.println("    /**");
+                    out.println("     * Reads an object into a message through its setters.");
+                    out.println("     */");
+                    out.println("    public static void read(final JsonReader reader, final " + messageType + " message) {");
+                    out.println("        reader.beginObject();");
+                    out.println("        while(reader.hasNext()) {");
+                    out.println("            final String name = reader.nextName();");
+                    out.println("            if(reader.skipNull()) {");
+                    out.println("                continue;");
+                    out.println("            }");
+                    out.println("            switch(name) {");
+                    for(final Property property: properties) {
+                        if(property.setter != null) {
+                            readProperty(out, property);
+                        }
+                    }
+                    out.println("                default:");
+                    out.println("                    reader.skipValue();");
+                    out.println("            }");
+                    out.println("        }");
+                    out.println("        reader.endObject();");
+                    out.println("    }");
+                }
+                out.println("}");
+            }
+        }
+        catch(final IOException ex) {
+            error(type, "Failed to write " + className + ": " + ex.getMessage());
+        }
+    }
+
+    private void writeProperty(final PrintWriter out, final Property property) {
+        final String getter = "message." + property.getter.getSimpleName() + "()";
+        final String name = "writer.name(\"" + property.key + "\")";
+        if(!property.nullable) {
+            out.println("        " + name + ".value(" + getter + ");");
+            return;
+        }
+
+        final String value = property.key + "Value";
+        out.println("        final " + property.getter.getReturnType() + " " + value + " = " + getter + ";");
+        out.println("        if(" + value + " != null) {");
+        switch(property.kind) {
+            case STRING:
+            case BOOLEAN:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                out.println("            " + name + ".value(" + value + ");");
+                break;
+            case STRING_ARRAY:
+            case INT_ARRAY:
+            case FLOAT_ARRAY:
+            case STRING_LIST:
+                out.println("            " + name + ".beginArray();");
+                out.println("            for(final " + property.kind.elementType + " element: " + value + ") {");
+                out.println("                writer.value(element);");
+                out.println("            }");
+                out.println("            writer.endArray();");
+                break;
+            case MESSAGE:
+                out.println("            " + name + ";");
+                out.println("            " + qualifiedSerializerName(property.messageType) + ".write(writer, " + value + ");");
+                break;
+            case MESSAGE_LIST:
+                out.println("            " + name + ".beginArray();");
+                out.println("            for(final " + property.messageType.getQualifiedName() + " element: " + value + ") {");
+                out.println("                if(element == null) {");
+                out.println("                    writer.nullValue();");
+                out.println("                }");
+                out.println("                else {");
+                out.println("                    " + qualifiedSerializerName(property.messageType) + ".write(writer, element);");
+                out.println("                }");
+                out.println("            }");
+                out.println("            writer.endArray();");
+                break;
+        }
+        out.println("        }");
+    }
+
+    private void readProperty(final PrintWriter out, final Property property) {
+        final String setter = "message." + property.setter.getSimpleName();
+        out.println("                case \"" + property.key + "\":");
+        if(property.kind == Kind.MESSAGE) {
+            final String messageType = property.messageType.getQualifiedName().toString();
+            out.println("                    final " + messageType + " " + property.key + "Value = new " + messageType + "();");
+            out.println("                    " + qualifiedSerializerName(property.messageType) + ".read(reader, "
+                + property.key + "Value);");
+            out.println("                    " + setter + "(" + property.key + "Value);");
+        }
+        else if(property.kind == Kind.MESSAGE_LIST) {
+            final String messageType = property.messageType.getQualifiedName().toString();
+            final String values = property.key + "Values";
+            out.println("                    final List<" + messageType + "> " + values + " = new ArrayList<>();");
+            out.println("                    reader.beginArray();");
+            out.println("                    while(reader.hasNext()) {");
+            out.println("                        if(reader.skipNull()) {");
+            out.println("                            " + values + ".add(null);");
+            out.println("                        }");
+            out.println("                        else {");
+            out.println("                            final " + messageType + " element = new " + messageType + "();");
+            out.println("                            " + qualifiedSerializerName(property.messageType) + ".read(reader, element);");
+            out.println("                            " + values + ".add(element);");
+            out.println("                        }");
+            out.println("                    }");
+            out.println("                    reader.endArray();");
+            out.println("                    " + setter + "(" + values + ");");
+        }
+        else {
+            out.println("                    " + setter + "(reader.read" + property.kind.readMethod + "());");
+        }
+        out.println("                    break;");
+    }
+
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,159 @@
+package com.becky.codegen;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Lists every npc spawn rules class of the module in META-INF/services, so the game world finds them with a
+ * {@link java.util.ServiceLoader} instead of scanning the classpath when it starts.
+ *
+ * Every concrete public subclass of the spawn rules is listed, nested ones included as long as they are static. A
+ * class the loader could not create, because it has no public parameter-less constructor, is left out with a warning.
+ *
+ * An incremental build only hands the processor the classes it recompiles, so the index it finds is merged into the
+ * one already in the output. Listed classes which weren't recompiled are kept as long as they still exist.
+ */
+@SupportedAnnotationTypes("*")
+public class SpawnRulesIndexProcessor extends AbstractProcessor {
+    static final String SPAWN_RULES_CLASS = "com.becky.world.entity.npc.SpawnRules";
+    private static final String INDEX_PATH = "META-INF/services/" + SPAWN_RULES_CLASS;
+
+    //binary names of the classes found so far, sorted so the index is the same from one build to the next
+    private final Set<String> spawnRules = new TreeSet<>();
+    //binary names of every class compiled, whether it was listed or not
+    private final Set<String> compiled = new HashSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(final Set<? extends TypeElement> annotations, final RoundEnvironment roundEnv) {
+        final TypeElement spawnRulesType = processingEnv.getElementUtils().getTypeElement(SPAWN_RULES_CLASS);
+        if(spawnRulesType == null) {
+            return false;
+        }
+
+        if(roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+        for(final TypeElement type: ElementFilter.typesIn(roundEnv.getRootElements())) {
+            collect(type, spawnRulesType);
+        }
+        //other processors may want to see the same classes
+        return false;
+    }
+
+    private void collect(final TypeElement type, final TypeElement spawnRulesType) {
+        compiled.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+        final Set<Modifier> modifiers = type.getModifiers();
+        final boolean isSpawnRules = type.getKind() == ElementKind.CLASS
+            && !modifiers.contains(Modifier.ABSTRACT)
+            && processingEnv.getTypeUtils().isSubtype(
+                processingEnv.getTypeUtils().erasure(type.asType()),
+                processingEnv.getTypeUtils().erasure(spawnRulesType.asType()));
+        if(isSpawnRules) {
+            if(!modifiers.contains(Modifier.PUBLIC)
+                || (type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC))) {
+                warning(type, type.getSimpleName() + " is not a public static class, the game world will not load it.");
+            }
+            else if(!hasPublicDefaultConstructor(type)) {
+                warning(type, type.getSimpleName() + " has no public parameter-less constructor, "
+                    + "the game world will not load it.");
+            }
+            else {
+                spawnRules.add(processingEnv.getElementUtils().getBinaryName(type).toString());
+            }
+        }
+        for(final TypeElement nested: ElementFilter.typesIn(type.getEnclosedElements())) {
+            collect(nested, spawnRulesType);
+        }
+    }
+
+    private static boolean hasPublicDefaultConstructor(final TypeElement type) {
+        for(final ExecutableElement constructor: ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if(constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeIndex() {
+        final Set<String> previous = readIndex();
+        final Set<String> index = new TreeSet<>(spawnRules);
+        for(final String name: previous) {
+            //a class compiled this time is only listed if it was found again
+            if(!compiled.contains(name)
+                && processingEnv.getElementUtils().getTypeElement(name.replace('$', '.')) != null) {
+                index.add(name);
+            }
+        }
+        if(index.isEmpty() && previous.isEmpty()) {
+            return;
+        }
+
+        try {
+            final FileObject file = processingEnv.getFiler().createResource(
+                StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+            try(final Writer writer = file.openWriter(); final PrintWriter out = new PrintWriter(writer)) {
+                for(final String name: index) {
+                    out.println(name);
+                }
+            }
+        }
+        catch(final IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Could not write the spawn rules index: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads the index a previous build left in the output.
+     * @return The listed class names, empty if there is no index.
+     */
+    private Set<String> readIndex() {
+        final Set<String> names = new TreeSet<>();
+        try {
+            final FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", INDEX_PATH);
+            try(final BufferedReader reader = new BufferedReader(file.openReader(true))) {
+                String line;
+                while((line = reader.readLine()) != null) {
+                    final int comment = line.indexOf('#');
+                    final String name = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if(!name.isEmpty()) {
+                        names.add(name);
+                    }
+                }
+            }
+        }
+        catch(final IOException ex) {
+            //a clean build, there is nothing to merge with
+        }
+        return names;
+    }
+
+    private void warning(final TypeElement type, final String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, message, type);
+    }
+}
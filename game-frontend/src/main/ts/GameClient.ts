@@ -7,10 +7,13 @@
 ///<reference path="./networked/ServerPlayerUpdate.ts"/>
 ///<reference path="./networked/ClientInputStateUpdate.ts"/>
 ///<reference path="./networked/PlayerListChange.ts"/>
+///<reference path="./networked/PlayerVisibilityChange.ts"/>
 ///<reference path="./networked/InitialPlayerList.ts"/>
 ///<reference path="./networked/PointsUpdate.ts"/>
 ///<reference path="./networked/PlayerHealthMessage.ts"/>
 ///<reference path="./networked/HighscoreInfo.ts"/>
+///<reference path="./networked/BinaryProtocol.ts"/>
+///<reference path="./networked/TickBundle.ts"/>
 ///<reference path="./Bullet.ts"/>
 ///<reference path="./GameUI.ts"/>
 
@@ -31,29 +34,33 @@ class GameClient implements GameEntity {
     private connection: WebSocket;
     private player: ClientPlayer;
     private opponents: Set<OpponentPlayer> = new Set<OpponentPlayer>();
+    //opponents are only drawn while the server is sending updates about them
+    private visibleOpponents: Set<OpponentPlayer> = new Set<OpponentPlayer>();
     private bullets: Set<Bullet> = new Set<Bullet>();
     private npcs: Set<Npc> = new Set<Npc>();
     private renderer: SimpleRenderer;
     private playing: boolean = true;
     private username: string;
-    private authenticationString: string;
     private background: GameBackground;
     private numFrames: number = 0;
     private lagCompensator: LagCompensator = new LagCompensator(30);
+    //null unless the connection was opened with ?protocol=binary
+    private binaryProtocol: BinaryProtocol;
 
     /**
      * Creates a new GameClient instance.
      * @param canvas A reference to the canvas element to render to.
      * @param connection An established connection to the server.
      * @param Username of the player
+     * @param binaryProtocol Decoder for the binary messages, or null if the connection uses json only.
      */
-    constructor(canvas: HTMLCanvasElement, connection: WebSocket, username: string, authenticationString: string) {
+    constructor(canvas: HTMLCanvasElement, connection: WebSocket, username: string, binaryProtocol: BinaryProtocol) {
         canvas.width = window.innerWidth;
         canvas.height = window.innerHeight;
         this.canvas = canvas;
         this.connection = connection;
         this.username = username;
-        this.authenticationString = authenticationString;
+        this.binaryProtocol = binaryProtocol;
         this.background = new GameBackground(this.canvas.width, this.canvas.height, 2000, 2000);
         this.gameUI = new GameUI(this.canvas.width, this.canvas.height);
         this.init();
@@ -82,7 +89,6 @@ class GameClient implements GameEntity {
             let player: ServerPlayerUpdate = players[i];
             let opponent = new OpponentPlayer(this, player.playerName);
             opponent.setPosition(player.posX, player.posY);
-            this.renderer.addRenderable(opponent);
             this.opponents.add(opponent);
         }
     }
@@ -198,10 +204,18 @@ class GameClient implements GameEntity {
         state.movingRight = this.player.getMovingRight();
         state.angle = this.player.getAngle();
         state.shooting = this.player.isShooting();
-        state.username = this.player.getUsername();
-        state.authString = this.authenticationString;
 
-        this.connection.send("ClientInputStateUpdate:" + JSON.stringify(state));
+        if(this.binaryProtocol !== null) {
+            this.connection.send(this.binaryProtocol.encodeInput(state));
+            //acknowledging at the input rate is often enough to keep the server's delta baseline recent
+            let ack: ArrayBuffer = this.binaryProtocol.encodeSnapshotAck();
+            if(ack !== null) {
+                this.connection.send(ack);
+            }
+        }
+        else {
+            this.connection.send("ClientInputStateUpdate:" + JSON.stringify(state));
+        }
     }
 
     /**
@@ -246,7 +260,16 @@ class GameClient implements GameEntity {
         }
 
         this.connection.onmessage = (event: MessageEvent) => {
-            this.handleMessageFromServer(event.data);
+            //everything the server sent this tick arrives in one frame
+            let messages: any[] = TickBundle.split(event.data, this.binaryProtocol);
+            for(let i = 0; i < messages.length; i++) {
+                if(messages[i] instanceof ArrayBuffer) {
+                    this.handleBinaryMessageFromServer(messages[i] as ArrayBuffer);
+                }
+                else {
+                    this.handleMessageFromServer(messages[i] as string);
+                }
+            }
         }
     }
 
@@ -255,110 +278,49 @@ class GameClient implements GameEntity {
         //TODO: Display join screen and a connection error string
     }
 
+    private handleBinaryMessageFromServer(message: ArrayBuffer): void {
+        if(this.binaryProtocol === null) {
+            return;
+        }
+
+        let type: number = this.binaryProtocol.getMessageType(message);
+        if(type === BinaryProtocol.PLAYER_UPDATES) {
+            this.handlePlayerUpdates(this.binaryProtocol.decodePlayerUpdates(message));
+        }
+        else if(type === BinaryProtocol.BULLET_INFOS) {
+            this.handleBulletInfos(this.binaryProtocol.decodeBulletInfos(message));
+        }
+        else if(type === BinaryProtocol.NPC_INFOS) {
+            this.handleNpcInfos(this.binaryProtocol.decodeNpcInfos(message));
+        }
+        else if(type === BinaryProtocol.SNAPSHOT) {
+            let previous: DecodedSnapshot = this.binaryProtocol.getLastSnapshot();
+            if(this.binaryProtocol.applySnapshot(message)) {
+                this.handlePlayerUpdates(this.binaryProtocol.getSnapshotPlayers());
+                this.handleNpcInfos(this.binaryProtocol.getSnapshotNpcs(previous));
+            }
+        }
+    }
+
     private handleMessageFromServer(message: string): void {
         let object = null;
         if((object = ServerPlayerUpdate.getValidArrayFromJson(message)) !== null) {
-            let updates: ServerPlayerUpdate[] = object as ServerPlayerUpdate[];
-
-            // Update current players
-            for(let i = 0; i < updates.length; i++) {
-                let serverUpdate: ServerPlayerUpdate = updates[i];
-
-                //is the player update for me
-                if(this.player.getUsername() === serverUpdate.playerName) {
-                    this.lagCompensator.compensateClientPlayer(this.player, serverUpdate);
-                }
-                else {
-                    //the player update is likely for another joined player
-                    for(let j = 0; j < this.opponents.length; j++) {
-                        let opponent: OpponentPlayer = this.opponents.get(j);
-                        if(opponent.getUsername() === serverUpdate.playerName) {
-                            opponent.setPosition(serverUpdate.posX, serverUpdate.posY);
-                            break;
-                        }
-                    }
-                }
-            }
+            this.handlePlayerUpdates(object as ServerPlayerUpdate[]);
         }
         if((object = BulletInfo.getValidArrayFromJson(message)) !== null) {
-            let bulletInfos: BulletInfo[] = object as BulletInfo[];
-            let length: number = bulletInfos.length;
-
-            for(let i = 0; i < length; i++) {
-                let bulletInfo: BulletInfo = bulletInfos[i];
-                if(bulletInfo.state === 0) {//new bullet
-                    let p: Player = this.getPlayerByUsername(bulletInfo.owner);
-                    if(p === null) {
-                        continue;
-                    }
-                    let position: Point = new Point(bulletInfo.positionX, bulletInfo.positionY);
-                    let velocity: Point = new Point(bulletInfo.velocityX, bulletInfo.velocityY);
-                    let bullet: Bullet = new Bullet(p, bulletInfo.bulletId, position, velocity);
-                    if(p !== this.player) {
-                        bullet.setFillColor("#ff543c");
-                    }
-                    this.bullets.add(bullet);
-                    this.renderer.addRenderable(bullet);
-                    this.lagCompensator.compensateBullet(bullet, bulletInfo);
-                }
-                else if(bulletInfo.state === 1) { //updated bullet
-                    let bullet: Bullet = this.getBulletEntityById(bulletInfo.bulletId);
-                    if(bullet === null) {
-                        return;
-                    }
-                    this.lagCompensator.compensateBullet(bullet, bulletInfo);
-                }
-                else if(bulletInfo.state === 2) { //dead bullet
-                    let bullet: Bullet = this.getBulletEntityById(bulletInfo.bulletId);
-                    if(bullet !== null) {
-                        this.renderer.removeRenderable(bullet);
-                        this.bullets.remove(bullet);
-                    }
-                }
-            }
+            this.handleBulletInfos(object as BulletInfo[]);
         }
         else if((object = NpcInfo.getValidArrayFromJson(message)) !== null) {
-            let npcInfos: NpcInfo[] = object as NpcInfo[];
-            let length: number = npcInfos.length;
-
-            for(let i = 0; i < length; i++) {
-                let npcInfo: NpcInfo = npcInfos[i];
-                if(npcInfo.state === Npc.STATE_NEW_NPC) {
-                    let n: Npc = this.getNpcById(npcInfo.npcId);
-                    if(n !== null) {
-                        this.lagCompensator.compensateNpc(n, npcInfo);
-                    }
-                    else {
-                        this.spawnNpc(npcInfo);
-                    }
-                }
-                else if(npcInfo.state === Npc.STATE_UPDATE_NPC) {
-                    let npc: Npc = this.getNpcById(npcInfo.npcId);
-                    if(npc !== null) {
-                        this.lagCompensator.compensateNpc(npc, npcInfo);
-                    }
-                    else {
-                        this.spawnNpc(npcInfo);
-                    }
-                }
-                else if(npcInfo.state === Npc.STATE_DEAD_NPC) {
-                    let npc: Npc = this.getNpcById(npcInfo.npcId);
-                    if(npc !== null) {
-                        this.renderer.removeRenderable(npc);
-                        this.npcs.remove(npc);
-                    }
-                }
-            }
+            this.handleNpcInfos(object as NpcInfo[]);
         }
         else if((object = PlayerListChange.getValidObjectFromJson(message)) !== null) {
             //It should be noted that the server only sends this message when a client disconnects from the server
             //or when the server force closes a connection
             let change: PlayerListChange = object as PlayerListChange;
             if(change.joined) {
-                //player joined game, so add them to the renderer and opponents list
+                //player joined game, so add them to the opponents list. They are drawn once they come into view
                 let opponent: OpponentPlayer = new OpponentPlayer(this, change.username);
                 this.opponents.add(opponent);
-                this.renderer.addRenderable(opponent);
             }
             else {
                 //player left game, so remove from renderer and opponents list
@@ -370,11 +332,26 @@ class GameClient implements GameEntity {
                 }
                 else {
                     let opponent: OpponentPlayer = player as OpponentPlayer;
-                    this.renderer.removeRenderable(opponent);
+                    this.hideOpponent(opponent);
                     this.opponents.remove(opponent);
                 }
             }
         }
+        else if((object = PlayerVisibilityChange.getValidObjectFromJson(message)) !== null) {
+            let change: PlayerVisibilityChange = object as PlayerVisibilityChange;
+            for(let i = 0; i < change.entered.length; i++) {
+                let player: Player = this.getPlayerByUsername(change.entered[i]);
+                if(player instanceof OpponentPlayer) {
+                    this.showOpponent(player as OpponentPlayer);
+                }
+            }
+            for(let i = 0; i < change.left.length; i++) {
+                let player: Player = this.getPlayerByUsername(change.left[i]);
+                if(player instanceof OpponentPlayer) {
+                    this.hideOpponent(player as OpponentPlayer);
+                }
+            }
+        }
         else if(message.substring(0, 5) === "PING:") {
             let time: number = parseInt(message.substring(5));
             let latency: number = Math.floor((Date.now() - time) / 2);
@@ -419,6 +396,112 @@ class GameClient implements GameEntity {
         }
     }
 
+    private handlePlayerUpdates(updates: ServerPlayerUpdate[]): void {
+        // Update current players
+        for(let i = 0; i < updates.length; i++) {
+            let serverUpdate: ServerPlayerUpdate = updates[i];
+
+            //is the player update for me
+            if(this.player.getUsername() === serverUpdate.playerName) {
+                this.lagCompensator.compensateClientPlayer(this.player, serverUpdate);
+            }
+            else {
+                //the player update is likely for another joined player
+                for(let j = 0; j < this.opponents.length; j++) {
+                    let opponent: OpponentPlayer = this.opponents.get(j);
+                    if(opponent.getUsername() === serverUpdate.playerName) {
+                        this.showOpponent(opponent);
+                        opponent.setPosition(serverUpdate.posX, serverUpdate.posY);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private handleBulletInfos(bulletInfos: BulletInfo[]): void {
+        let length: number = bulletInfos.length;
+
+        for(let i = 0; i < length; i++) {
+            let bulletInfo: BulletInfo = bulletInfos[i];
+            if(bulletInfo.state === 0) {//new bullet
+                let p: Player = this.getPlayerByUsername(bulletInfo.owner);
+                if(p === null) {
+                    continue;
+                }
+                let position: Point = new Point(bulletInfo.positionX, bulletInfo.positionY);
+                let velocity: Point = new Point(bulletInfo.velocityX, bulletInfo.velocityY);
+                let bullet: Bullet = new Bullet(p, bulletInfo.bulletId, position, velocity);
+                if(p !== this.player) {
+                    bullet.setFillColor("#ff543c");
+                }
+                this.bullets.add(bullet);
+                this.renderer.addRenderable(bullet);
+                this.lagCompensator.compensateBullet(bullet, bulletInfo);
+            }
+            else if(bulletInfo.state === 1) { //updated bullet
+                let bullet: Bullet = this.getBulletEntityById(bulletInfo.bulletId);
+                if(bullet === null) {
+                    return;
+                }
+                this.lagCompensator.compensateBullet(bullet, bulletInfo);
+            }
+            else if(bulletInfo.state === 2) { //dead bullet
+                let bullet: Bullet = this.getBulletEntityById(bulletInfo.bulletId);
+                if(bullet !== null) {
+                    this.renderer.removeRenderable(bullet);
+                    this.bullets.remove(bullet);
+                }
+            }
+        }
+    }
+
+    private handleNpcInfos(npcInfos: NpcInfo[]): void {
+        let length: number = npcInfos.length;
+
+        for(let i = 0; i < length; i++) {
+            let npcInfo: NpcInfo = npcInfos[i];
+            if(npcInfo.state === Npc.STATE_NEW_NPC) {
+                let n: Npc = this.getNpcById(npcInfo.npcId);
+                if(n !== null) {
+                    this.lagCompensator.compensateNpc(n, npcInfo);
+                }
+                else {
+                    this.spawnNpc(npcInfo);
+                }
+            }
+            else if(npcInfo.state === Npc.STATE_UPDATE_NPC) {
+                let npc: Npc = this.getNpcById(npcInfo.npcId);
+                if(npc !== null) {
+                    this.lagCompensator.compensateNpc(npc, npcInfo);
+                }
+                else {
+                    this.spawnNpc(npcInfo);
+                }
+            }
+            else if(npcInfo.state === Npc.STATE_DEAD_NPC) {
+                let npc: Npc = this.getNpcById(npcInfo.npcId);
+                if(npc !== null) {
+                    this.renderer.removeRenderable(npc);
+                    this.npcs.remove(npc);
+                }
+            }
+        }
+    }
+
+    private showOpponent(opponent: OpponentPlayer): void {
+        if(!this.visibleOpponents.contains(opponent)) {
+            this.visibleOpponents.add(opponent);
+            this.renderer.addRenderable(opponent);
+        }
+    }
+
+    private hideOpponent(opponent: OpponentPlayer): void {
+        if(this.visibleOpponents.remove(opponent)) {
+            this.renderer.removeRenderable(opponent);
+        }
+    }
+
     private resetGamePage = (message: string) => {
         //TODO: David, reset the game and web page or reload it or something. Hopefully display message to the username input screen
         //in the meantime here is something to refresh the page
@@ -3,6 +3,8 @@
 ///<reference path="./networked/ServerUsernameRequestStatus.ts"/>
 ///<reference path="./GameClient.ts"/>
 ///<reference path="./networked/InitialPlayerList.ts"/>
+///<reference path="./networked/BinaryProtocol.ts"/>
+///<reference path="./networked/TickBundle.ts"/>
 
 /**
  * This class handles the handshake with the server when the client joins the game
@@ -19,10 +21,16 @@ class JoinGame {
     private usernameStatusReceived: boolean = false;
     private initialListReceived: boolean = false;
     private initialBulletsReceived: boolean = false;
+    //snapshots are received as binary frames, the handshake stays json
+    private useBinaryProtocol: boolean = true;
+    private binaryProtocol: BinaryProtocol;
+    //handles the json messages of the current step of the handshake, null once the handshake is over
+    private messageHandler: (message: string) => void = null;
 
     constructor(username: string, canvas: HTMLCanvasElement) {
         this.username = username;
         this.canvas = canvas;
+        this.binaryProtocol = this.useBinaryProtocol ? new BinaryProtocol() : null;
     }
 
     public join(): void {
@@ -46,7 +54,13 @@ class JoinGame {
     }
 
     private initWebSocket(): void {
-        this.connection = new WebSocket('ws://localhost:3000');
+        if(this.useBinaryProtocol) {
+            this.connection = new WebSocket('ws://localhost:3000/?protocol=binary');
+            this.connection.binaryType = "arraybuffer";
+        }
+        else {
+            this.connection = new WebSocket('ws://localhost:3000');
+        }
     }
 
     private initSocketListeners(): void {
@@ -54,8 +68,16 @@ class JoinGame {
             this.handleSuccessfulConnection();
         }
 
+        this.messageHandler = this.handleMessage;
         this.connection.onmessage = (event: MessageEvent) => {
-            this.handleMessage(event.data);
+            //handshake messages may arrive in the same frame as the snapshots of a tick, which are dropped until the
+            //client is ready, the next tick brings new ones
+            let messages: any[] = TickBundle.split(event.data, this.binaryProtocol);
+            for(let i = 0; i < messages.length && this.messageHandler !== null; i++) {
+                if(typeof messages[i] === "string") {
+                    this.messageHandler(messages[i] as string);
+                }
+            }
         }
     }
 
@@ -73,9 +95,7 @@ class JoinGame {
         this.changeUsername(state.initialUsername, this.username, state.authenticationString);
 
         this.initialJoinState = state;
-        this.connection.onmessage = (event: MessageEvent) => {
-            this.handleUsernameMessage(event.data);
-        }
+        this.messageHandler = this.handleUsernameMessage;
     }
 
     private handleUsernameMessage(message: string): void {
@@ -112,8 +132,10 @@ class JoinGame {
         //create the client and kill the current listener
         //this empty listener is so we don't receive more events
         if(this.usernameStatusReceived && this.initialListReceived && this.initialBulletsReceived) {
+            this.messageHandler = null;
             this.connection.onmessage = (event: MessageEvent) => {};
-            let gameClient: GameClient = new GameClient(this.canvas, this.connection, this.usernameStatus.message, this.initialJoinState.authenticationString);
+            let gameClient: GameClient = new GameClient(this.canvas, this.connection, this.usernameStatus.message,
+                this.binaryProtocol);
             gameClient.setInitialPlayers(this.initialList);
             gameClient.setInitialBullets(this.initialBullets);
             gameClient.run();
@@ -121,6 +143,7 @@ class JoinGame {
     }
 
     private resetJoinGame(reason: string): void {
+        this.messageHandler = null;
         this.initialList = null;
         this.usernameStatus = null;
         this.initialBullets = null;
@@ -0,0 +1,458 @@
+///<reference path="./ServerPlayerUpdate.ts"/>
+///<reference path="./BulletInfo.ts"/>
+///<reference path="./NpcInfo.ts"/>
+///<reference path="./ClientInputStateUpdate.ts"/>
+///<reference path="../Npc.ts"/>
+
+/**
+ * One player or npc of a snapshot, with its fields still quantized.
+ */
+class SnapshotRecord {
+    public fields: number[];
+    public label: string;
+
+    constructor(fields: number[], label: string) {
+        this.fields = fields;
+        this.label = label;
+    }
+}
+
+/**
+ * The players and npcs of one snapshot, keyed by entity id.
+ */
+class DecodedSnapshot {
+    public sequence: number;
+    public players: { [id: number]: SnapshotRecord };
+    public npcs: { [id: number]: SnapshotRecord };
+
+    constructor(sequence: number, players: { [id: number]: SnapshotRecord }, npcs: { [id: number]: SnapshotRecord }) {
+        this.sequence = sequence;
+        this.players = players;
+        this.npcs = npcs;
+    }
+}
+
+/**
+ * Decodes the binary messages sent by the server to clients which connected with ?protocol=binary, and encodes the
+ * input sent back. Must be kept in sync with BinaryCodec on the server.
+ * Decoded messages are the same objects the json messages parse to, so the rest of the client handles both alike.
+ */
+class BinaryProtocol {
+    static PLAYER_UPDATES: number = 1;
+    static BULLET_INFOS: number = 2;
+    static NPC_INFOS: number = 3;
+    static SNAPSHOT: number = 4;
+    static TICK_BUNDLE: number = 5;
+    static TEXT_MESSAGE: number = 6;
+    static CLIENT_INPUT: number = 16;
+    static SNAPSHOT_ACK: number = 17;
+
+    //keep at least as many snapshots as the server, or deltas against an old acknowledgement can't be applied
+    static SNAPSHOT_HISTORY: number = 32;
+    static PLAYER_FIELDS: number = 7;
+    static NPC_FIELDS: number = 9;
+    static NPC_VARINT_FIELDS: number = 2;
+
+    static POSITION_SCALE: number = 4;
+    static VELOCITY_SCALE: number = 16;
+    static ACCELERATION_SCALE: number = 8;
+    static ANGLE_SCALE: number = 65536 / (2 * Math.PI);
+
+    //npc type ids are the index into this table plus one
+    static NPC_TYPES: string[] = ["InfectedNpc", "VirusNpc"];
+
+    //bullets only carry the id of their owner, so remember the name that goes with each id
+    private playerNames: { [playerId: number]: string } = {};
+
+    //snapshots applied so far, indexed by sequence modulo SNAPSHOT_HISTORY
+    private snapshots: DecodedSnapshot[] = [];
+    private lastSnapshot: DecodedSnapshot = new DecodedSnapshot(0, {}, {});
+    private lastAcknowledged: number = 0;
+
+    private view: DataView;
+    private offset: number;
+
+    /**
+     * Splits a TICK_BUNDLE message into the messages it carries, in the order they were bundled.
+     * @param {ArrayBuffer} message
+     * @returns {any[]} The json messages as strings and the binary messages as buffers of their own.
+     */
+    public splitTickBundle(message: ArrayBuffer): any[] {
+        let messages: any[] = [];
+        this.begin(message);
+        while(this.offset < message.byteLength) {
+            let length: number = this.readVarInt();
+            let start: number = this.offset;
+            if(this.view.getUint8(start) === BinaryProtocol.TEXT_MESSAGE) {
+                this.offset = start + 1;
+                messages.push(this.readUtf8(start + length));
+            }
+            else {
+                messages.push(message.slice(start, start + length));
+            }
+            this.offset = start + length;
+        }
+        return messages;
+    }
+
+    /**
+     * Gets the type of a binary message.
+     * @param {ArrayBuffer} message
+     * @returns {number}
+     */
+    public getMessageType(message: ArrayBuffer): number {
+        if(message.byteLength === 0) {
+            return -1;
+        }
+        return new DataView(message).getUint8(0);
+    }
+
+    public decodePlayerUpdates(message: ArrayBuffer): ServerPlayerUpdate[] {
+        this.begin(message);
+        let count: number = this.readVarInt();
+        let updates: ServerPlayerUpdate[] = [];
+        for(let i = 0; i < count; i++) {
+            let update: ServerPlayerUpdate = new ServerPlayerUpdate();
+            update.playerId = this.readVarInt();
+            update.playerName = this.readString();
+            update.posX = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+            update.posY = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+            update.velX = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+            update.velY = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+            update.accelX = this.readInt16() / BinaryProtocol.ACCELERATION_SCALE;
+            update.accelY = this.readInt16() / BinaryProtocol.ACCELERATION_SCALE;
+            update.angle = this.readAngle();
+            this.playerNames[update.playerId] = update.playerName;
+            updates.push(update);
+        }
+        return updates;
+    }
+
+    public decodeBulletInfos(message: ArrayBuffer): BulletInfo[] {
+        this.begin(message);
+        let count: number = this.readVarInt();
+        let infos: BulletInfo[] = [];
+        for(let i = 0; i < count; i++) {
+            let info: BulletInfo = new BulletInfo();
+            info.state = this.view.getUint8(this.offset++);
+            info.bulletId = this.readVarInt();
+            if(info.state === 0) { //new bullet
+                info.ownerId = this.readVarInt();
+                info.owner = this.playerNames.hasOwnProperty(String(info.ownerId)) ? this.playerNames[info.ownerId] : null;
+                info.velocityX = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+                info.velocityY = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+                info.positionX = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+                info.positionY = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+            }
+            else if(info.state === 1) { //updated bullet
+                info.positionX = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+                info.positionY = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+            }
+            infos.push(info);
+        }
+        return infos;
+    }
+
+    public decodeNpcInfos(message: ArrayBuffer): NpcInfo[] {
+        this.begin(message);
+        let count: number = this.readVarInt();
+        let infos: NpcInfo[] = [];
+        for(let i = 0; i < count; i++) {
+            let info: NpcInfo = new NpcInfo();
+            info.state = this.view.getUint8(this.offset++);
+            info.npcId = this.readVarInt();
+            if(info.state !== Npc.STATE_DEAD_NPC) {
+                let typeId: number = this.view.getUint8(this.offset++);
+                info.type = typeId === 0 ? this.readString() : BinaryProtocol.NPC_TYPES[typeId - 1];
+                info.health = this.readVarInt();
+                info.positionX = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+                info.positionY = this.readInt16() / BinaryProtocol.POSITION_SCALE;
+                info.velocityX = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+                info.velocityY = this.readInt16() / BinaryProtocol.VELOCITY_SCALE;
+                info.accelerationX = this.readInt16() / BinaryProtocol.ACCELERATION_SCALE;
+                info.accelerationY = this.readInt16() / BinaryProtocol.ACCELERATION_SCALE;
+                info.angle = this.readAngle();
+            }
+            infos.push(info);
+        }
+        return infos;
+    }
+
+    /**
+     * Applies a snapshot delta to the snapshot it was encoded against.
+     * Returns false if that snapshot is no longer known, in which case the server sends a full one once it notices
+     * the acknowledgements have stopped.
+     * @param {ArrayBuffer} message
+     * @returns {boolean}
+     */
+    public applySnapshot(message: ArrayBuffer): boolean {
+        this.begin(message);
+        let sequence: number = this.readVarInt();
+        let baselineSequence: number = this.readVarInt();
+        if(sequence <= this.lastSnapshot.sequence) {
+            return false;
+        }
+
+        let baseline: DecodedSnapshot;
+        if(baselineSequence === 0) {
+            baseline = new DecodedSnapshot(0, {}, {});
+        }
+        else {
+            baseline = this.snapshots[baselineSequence % BinaryProtocol.SNAPSHOT_HISTORY];
+            if(!baseline || baseline.sequence !== baselineSequence) {
+                return false;
+            }
+        }
+
+        let players = this.readSectionDelta(baseline.players, BinaryProtocol.PLAYER_FIELDS, 0);
+        let npcs = this.readSectionDelta(baseline.npcs, BinaryProtocol.NPC_FIELDS, BinaryProtocol.NPC_VARINT_FIELDS);
+        let snapshot: DecodedSnapshot = new DecodedSnapshot(sequence, players, npcs);
+        this.snapshots[sequence % BinaryProtocol.SNAPSHOT_HISTORY] = snapshot;
+        this.lastSnapshot = snapshot;
+        return true;
+    }
+
+    /**
+     * Gets the players of the latest snapshot.
+     * @returns {ServerPlayerUpdate[]}
+     */
+    public getSnapshotPlayers(): ServerPlayerUpdate[] {
+        let updates: ServerPlayerUpdate[] = [];
+        let players = this.lastSnapshot.players;
+        for(let key in players) {
+            let record: SnapshotRecord = players[key];
+            let fields: number[] = record.fields;
+            let update: ServerPlayerUpdate = new ServerPlayerUpdate();
+            update.playerId = Number(key);
+            update.playerName = record.label;
+            update.posX = fields[0] / BinaryProtocol.POSITION_SCALE;
+            update.posY = fields[1] / BinaryProtocol.POSITION_SCALE;
+            update.velX = fields[2] / BinaryProtocol.VELOCITY_SCALE;
+            update.velY = fields[3] / BinaryProtocol.VELOCITY_SCALE;
+            update.accelX = fields[4] / BinaryProtocol.ACCELERATION_SCALE;
+            update.accelY = fields[5] / BinaryProtocol.ACCELERATION_SCALE;
+            update.angle = BinaryProtocol.toAngle(fields[6]);
+            this.playerNames[update.playerId] = update.playerName;
+            updates.push(update);
+        }
+        return updates;
+    }
+
+    /**
+     * Gets the npcs of the latest snapshot, plus a dead npc info for every npc which was in the previous snapshot
+     * but is not in this one.
+     * @param {DecodedSnapshot} previous
+     * @returns {NpcInfo[]}
+     */
+    public getSnapshotNpcs(previous: DecodedSnapshot): NpcInfo[] {
+        let infos: NpcInfo[] = [];
+        let npcs = this.lastSnapshot.npcs;
+        for(let key in npcs) {
+            let record: SnapshotRecord = npcs[key];
+            let fields: number[] = record.fields;
+            let info: NpcInfo = new NpcInfo();
+            info.npcId = Number(key);
+            info.state = previous.npcs.hasOwnProperty(key) ? Npc.STATE_UPDATE_NPC : Npc.STATE_NEW_NPC;
+            info.type = fields[0] === 0 ? record.label : BinaryProtocol.NPC_TYPES[fields[0] - 1];
+            info.health = fields[1];
+            info.positionX = fields[2] / BinaryProtocol.POSITION_SCALE;
+            info.positionY = fields[3] / BinaryProtocol.POSITION_SCALE;
+            info.velocityX = fields[4] / BinaryProtocol.VELOCITY_SCALE;
+            info.velocityY = fields[5] / BinaryProtocol.VELOCITY_SCALE;
+            info.accelerationX = fields[6] / BinaryProtocol.ACCELERATION_SCALE;
+            info.accelerationY = fields[7] / BinaryProtocol.ACCELERATION_SCALE;
+            info.angle = BinaryProtocol.toAngle(fields[8]);
+            infos.push(info);
+        }
+        for(let key in previous.npcs) {
+            if(!npcs.hasOwnProperty(key)) {
+                let info: NpcInfo = new NpcInfo();
+                info.npcId = Number(key);
+                info.state = Npc.STATE_DEAD_NPC;
+                infos.push(info);
+            }
+        }
+        return infos;
+    }
+
+    public getLastSnapshot(): DecodedSnapshot {
+        return this.lastSnapshot;
+    }
+
+    /**
+     * Encodes an acknowledgement of the latest snapshot, or returns null if it was already acknowledged.
+     * @returns {ArrayBuffer}
+     */
+    public encodeSnapshotAck(): ArrayBuffer {
+        let sequence: number = this.lastSnapshot.sequence;
+        if(sequence === 0 || sequence === this.lastAcknowledged) {
+            return null;
+        }
+        this.lastAcknowledged = sequence;
+
+        let bytes: number[] = [BinaryProtocol.SNAPSHOT_ACK];
+        while(sequence >= 128) {
+            bytes.push((sequence % 128) | 0x80);
+            sequence = Math.floor(sequence / 128);
+        }
+        bytes.push(sequence);
+
+        let buffer: ArrayBuffer = new ArrayBuffer(bytes.length);
+        let view: DataView = new DataView(buffer);
+        for(let i = 0; i < bytes.length; i++) {
+            view.setUint8(i, bytes[i]);
+        }
+        return buffer;
+    }
+
+    /**
+     * Encodes the input state. The username and authentication string are not sent, the server knows the player by
+     * its connection.
+     * @param {ClientInputStateUpdate} state
+     * @returns {ArrayBuffer}
+     */
+    public encodeInput(state: ClientInputStateUpdate): ArrayBuffer {
+        let flags: number = 0;
+        if(state.movingUp) {
+            flags |= 1;
+        }
+        if(state.movingDown) {
+            flags |= 2;
+        }
+        if(state.movingLeft) {
+            flags |= 4;
+        }
+        if(state.movingRight) {
+            flags |= 8;
+        }
+        if(state.shooting) {
+            flags |= 16;
+        }
+
+        let turns: number = state.angle % (2 * Math.PI);
+        if(turns < 0) {
+            turns += 2 * Math.PI;
+        }
+
+        let buffer: ArrayBuffer = new ArrayBuffer(4);
+        let view: DataView = new DataView(buffer);
+        view.setUint8(0, BinaryProtocol.CLIENT_INPUT);
+        view.setUint8(1, flags);
+        view.setUint16(2, Math.round(turns * BinaryProtocol.ANGLE_SCALE) & 0xFFFF);
+        return buffer;
+    }
+
+    private readSectionDelta(base: { [id: number]: SnapshotRecord }, fieldCount: number,
+                             varintFields: number): { [id: number]: SnapshotRecord } {
+        //records are never modified once decoded, so unchanged ones are shared with the baseline
+        let records: { [id: number]: SnapshotRecord } = {};
+        for(let key in base) {
+            records[key] = base[key];
+        }
+
+        let removed: number = this.readVarInt();
+        for(let i = 0; i < removed; i++) {
+            delete records[this.readVarInt()];
+        }
+
+        let changed: number = this.readVarInt();
+        for(let i = 0; i < changed; i++) {
+            let id: number = this.readVarInt();
+            let mask: number = this.readVarInt();
+            let previous: SnapshotRecord = records[id];
+            let fields: number[] = previous ? previous.fields.slice() : [];
+            let label: string = previous ? previous.label : null;
+            for(let field = 0; field < fieldCount; field++) {
+                if(Math.floor(mask / Math.pow(2, field)) % 2 === 0) {
+                    if(fields.length <= field) {
+                        fields.push(0);
+                    }
+                    continue;
+                }
+                if(field < varintFields) {
+                    fields[field] = this.readVarInt();
+                }
+                else {
+                    fields[field] = this.readInt16();
+                }
+            }
+            if(Math.floor(mask / Math.pow(2, fieldCount)) % 2 === 1) {
+                label = this.readString();
+            }
+            records[id] = new SnapshotRecord(fields, label);
+        }
+        return records;
+    }
+
+    private static toAngle(quantized: number): number {
+        //the server sends angles as unsigned 16 bit values, written through the same path as signed ones
+        return (quantized & 0xFFFF) / BinaryProtocol.ANGLE_SCALE;
+    }
+
+    private begin(message: ArrayBuffer): void {
+        this.view = new DataView(message);
+        //skip the message type
+        this.offset = 1;
+    }
+
+    private readInt16(): number {
+        let value: number = this.view.getInt16(this.offset);
+        this.offset += 2;
+        return value;
+    }
+
+    private readAngle(): number {
+        let value: number = this.view.getUint16(this.offset);
+        this.offset += 2;
+        return value / BinaryProtocol.ANGLE_SCALE;
+    }
+
+    private readVarInt(): number {
+        //multiplication rather than bit shifts, which would truncate ids above 2^31
+        let value: number = 0;
+        let multiplier: number = 1;
+        let b: number;
+        do {
+            b = this.view.getUint8(this.offset++);
+            value += (b & 0x7F) * multiplier;
+            multiplier *= 128;
+        } while((b & 0x80) !== 0);
+        return value;
+    }
+
+    private readString(): string {
+        let length: number = this.readVarInt();
+        return this.readUtf8(this.offset + length);
+    }
+
+    private readUtf8(end: number): string {
+        let result: string = "";
+        while(this.offset < end) {
+            let b: number = this.view.getUint8(this.offset++);
+            let codePoint: number;
+            if(b < 0x80) {
+                codePoint = b;
+            }
+            else if(b < 0xE0) {
+                codePoint = ((b & 0x1F) << 6) | (this.view.getUint8(this.offset++) & 0x3F);
+            }
+            else if(b < 0xF0) {
+                codePoint = ((b & 0x0F) << 12) | ((this.view.getUint8(this.offset++) & 0x3F) << 6)
+                    | (this.view.getUint8(this.offset++) & 0x3F);
+            }
+            else {
+                codePoint = ((b & 0x07) << 18) | ((this.view.getUint8(this.offset++) & 0x3F) << 12)
+                    | ((this.view.getUint8(this.offset++) & 0x3F) << 6) | (this.view.getUint8(this.offset++) & 0x3F);
+            }
+
+            if(codePoint > 0xFFFF) {
+                codePoint -= 0x10000;
+                result += String.fromCharCode(0xD800 + (codePoint >> 10), 0xDC00 + (codePoint & 0x3FF));
+            }
+            else {
+                result += String.fromCharCode(codePoint);
+            }
+        }
+        return result;
+    }
+}
@@ -3,6 +3,7 @@
  */
 class BulletInfo {
     public owner: string;
+    public ownerId: number;
     public state: number;
     public bulletId: number;
     public velocityX: number;
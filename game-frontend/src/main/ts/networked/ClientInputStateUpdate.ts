@@ -1,9 +1,8 @@
 /**
  * Class representing the input state update message that is sent to the server by the client.
+ * The server knows the player by its connection, so the message carries no credentials.
  */
 class ClientInputStateUpdate {
-    public username: string;
-    public authString: string;
     public movingUp: boolean;
     public movingLeft: boolean;
     public movingRight: boolean;
@@ -0,0 +1,28 @@
+/**
+ * This message is sent from the server when players come into or go out of view of this client.
+ * Players out of view are still in the game, but the server stops sending updates about them.
+ */
+class PlayerVisibilityChange {
+    /**
+     * The usernames of the players that came into view.
+     */
+    public entered: string[];
+
+    /**
+     * The usernames of the players that went out of view.
+     */
+    public left: string[];
+
+    static getValidObjectFromJson(json: string): PlayerVisibilityChange {
+        let length: number = json.length;
+        //"PlayerVisibilityChange:" is 23 characters
+        let beginning: string = json.substr(0, Math.min(length, 23));
+        if(beginning === "PlayerVisibilityChange:") {
+            let jsonStr: string = json.substring(23, json.length);
+            return JSON.parse(jsonStr) as PlayerVisibilityChange;
+        }
+        else {
+            return null;
+        }
+    }
+}
@@ -10,6 +10,7 @@ class ServerPlayerUpdate {
     public accelX: number;
     public accelY: number;
     public playerName: string;
+    public playerId: number;
     public angle: number;
 
     /**
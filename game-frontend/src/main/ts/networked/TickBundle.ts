@@ -0,0 +1,26 @@
+///<reference path="./BinaryProtocol.ts"/>
+
+/**
+ * Splits the frames sent by the server into the messages they carry. Everything the server sends a client in one tick
+ * arrives as a single frame: json messages one per line, or a binary TICK_BUNDLE message.
+ */
+class TickBundle {
+    //json never contains a raw line break
+    static TEXT_SEPARATOR: string = "\n";
+
+    /**
+     * Gets the messages of a frame, in the order they were sent.
+     * @param frame The data of a message event.
+     * @param {BinaryProtocol} binaryProtocol Null if the client uses json only.
+     * @returns {any[]} The json messages as strings and the binary messages as array buffers.
+     */
+    public static split(frame: any, binaryProtocol: BinaryProtocol): any[] {
+        if(typeof frame === "string") {
+            return (frame as string).split(TickBundle.TEXT_SEPARATOR);
+        }
+        if(binaryProtocol !== null && binaryProtocol.getMessageType(frame as ArrayBuffer) === BinaryProtocol.TICK_BUNDLE) {
+            return binaryProtocol.splitTickBundle(frame as ArrayBuffer);
+        }
+        return [frame];
+    }
+}
@@ -0,0 +1,274 @@
+package com.becky.loadgen;
+
+import com.becky.networking.OutboundMailbox;
+import com.becky.networking.message.ClientInputStateUpdate;
+import com.becky.networking.message.InitialServerJoinState;
+import com.becky.networking.message.ServerPlayerUpdate;
+import com.becky.networking.message.ServerUsernameRequestStatus;
+import com.becky.networking.message.UsernameChangeRequest;
+import com.becky.networking.protocol.BinaryCodec;
+import com.becky.world.entity.PlayerInput;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.handshake.ServerHandshake;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * A headless player which joins the game like the browser client does and then plays on its own.
+ *
+ * The bot picks a username once the server has sent its join state, then sends its input state and a ping at the same
+ * rates as the browser client. It holds a movement direction for a while before picking a new one, turns its aim
+ * gradually and fires in bursts. Every frame received from the server is counted, the messages bundled in it
+ * are otherwise ignored. Bots connected with the binary protocol send their input as binary frames.
+ */
+public class BotClient extends WebSocketClient {
+    private static final String JOIN_STATE_PREFIX = InitialServerJoinState.class.getSimpleName() + ":";
+    private static final String USERNAME_STATUS_PREFIX = ServerUsernameRequestStatus.class.getSimpleName() + ":";
+    private static final String SNAPSHOT_PREFIX = ServerPlayerUpdate.class.getSimpleName() + "[]:";
+    private static final String PING_PREFIX = "PING:";
+    private static final long PING_INTERVAL_NANOS = 1_000_000_000L;
+
+    private final int botNumber;
+    private final LoadStats stats;
+    private final long snapshotIntervalNanos;
+    private final Random random;
+    private final boolean binaryProtocol;
+    private long connectStart;
+
+    //written by the socket thread, read by the input thread
+    private volatile String username;
+    private volatile String authenticationString;
+    private volatile boolean joined;
+    private volatile boolean opened;
+
+    //input state, only touched by the input thread
+    private boolean movingUp;
+    private boolean movingDown;
+    private boolean movingLeft;
+    private boolean movingRight;
+    private boolean shooting;
+    private float angle;
+    private float targetAngle;
+    private long nextMovementChange;
+    private long nextShootingChange;
+    private long nextPing;
+
+    //snapshot arrival schedule, only touched by the socket thread
+    private boolean snapshotScheduled;
+    private long snapshotBaseline;
+    private long lastSnapshotArrival;
+    //latest binary snapshot received and the latest one acknowledged
+    private volatile long latestSnapshot;
+    private long acknowledgedSnapshot;
+
+    public BotClient(final URI serverUri, final int botNumber, final LoadStats stats, final int tickRate,
+                     final boolean binaryProtocol) {
+        super(serverUri);
+        this.binaryProtocol = binaryProtocol;
+        this.botNumber = botNumber;
+        this.stats = stats;
+        this.snapshotIntervalNanos = 1_000_000_000L / tickRate;
+        this.random = new Random(botNumber);
+    }
+
+    @Override
+    public void connect() {
+        connectStart = System.nanoTime();
+        super.connect();
+    }
+
+    @Override
+    public void onOpen(final ServerHandshake handshake) {
+        stats.recordConnect(System.nanoTime() - connectStart);
+        opened = true;
+    }
+
+    @Override
+    public void onMessage(final String message) {
+        stats.recordInbound(message.length());
+        //the messages of one tick arrive together, one per line
+        int start = 0;
+        int end;
+        while((end = message.indexOf(OutboundMailbox.TEXT_SEPARATOR, start)) >= 0) {
+            handleTextMessage(message.substring(start, end));
+            start = end + 1;
+        }
+        handleTextMessage(start == 0 ? message : message.substring(start));
+    }
+
+    @Override
+    public void onMessage(final ByteBuffer bytes) {
+        stats.recordInbound(bytes.remaining());
+        if(BinaryCodec.peekMessageType(bytes) == BinaryCodec.TICK_BUNDLE) {
+            BinaryCodec.splitTickBundle(bytes, this::handleTextMessage, this::handleBinaryMessage);
+        }
+        else {
+            handleBinaryMessage(bytes);
+        }
+    }
+
+    private void handleTextMessage(final String message) {
+        if(message.startsWith(SNAPSHOT_PREFIX)) {
+            recordSnapshotArrival(System.nanoTime());
+        }
+        else if(message.startsWith(PING_PREFIX)) {
+            final long sent = Long.parseLong(message.substring(PING_PREFIX.length()));
+            stats.recordRoundTrip(System.nanoTime() - sent);
+        }
+        else if(message.startsWith(JOIN_STATE_PREFIX)) {
+            final InitialServerJoinState joinState = new InitialServerJoinState(message);
+            username = joinState.getInitialUsername();
+            authenticationString = joinState.getAuthenticationString();
+
+            final UsernameChangeRequest request = new UsernameChangeRequest();
+            request.setOldUsername(username);
+            request.setNewUsername("bot" + botNumber);
+            request.setAuthenticationString(authenticationString);
+            send(request.jsonSerialize());
+        }
+        else if(message.startsWith(USERNAME_STATUS_PREFIX)) {
+            final ServerUsernameRequestStatus status = new ServerUsernameRequestStatus(message);
+            if("success".equals(status.getStatus())) {
+                username = status.getMessage();
+            }
+            //a bot whose name was taken keeps playing under the name the server gave it
+            if(!joined) {
+                joined = true;
+                stats.recordJoin();
+            }
+        }
+    }
+
+    private void handleBinaryMessage(final ByteBuffer bytes) {
+        final int type = BinaryCodec.peekMessageType(bytes);
+        if(type == BinaryCodec.PLAYER_UPDATES) {
+            recordSnapshotArrival(System.nanoTime());
+        }
+        else if(type == BinaryCodec.SNAPSHOT) {
+            final long sequence = BinaryCodec.readSnapshotSequence(bytes);
+            recordSnapshotArrival(System.nanoTime(), sequence);
+            //bots don't rebuild the world, but acknowledging keeps the server sending deltas like to a real client
+            latestSnapshot = sequence;
+        }
+    }
+
+    @Override
+    public void onClose(final int code, final String reason, final boolean remote) {
+        if(opened) {
+            stats.recordDisconnect(joined);
+        }
+        else {
+            stats.recordConnectFailure();
+        }
+        opened = false;
+        joined = false;
+    }
+
+    @Override
+    public void onError(final Exception ex) {
+        //the connection is closed right after an error, which is where it gets counted
+    }
+
+    /**
+     * Updates the input of this bot and sends it to the server. Called periodically by the input thread.
+     * @param now The current System.nanoTime().
+     */
+    public void sendInput(final long now) {
+        if(!joined || !isOpen()) {
+            return;
+        }
+
+        if(now >= nextMovementChange) {
+            pickMovement();
+            nextMovementChange = now + millisToNanos(500 + random.nextInt(1500));
+        }
+        if(now >= nextShootingChange) {
+            shooting = random.nextBoolean();
+            targetAngle = random.nextFloat() * (float)Math.PI * 2.0f;
+            nextShootingChange = now + millisToNanos(1000 + random.nextInt(2000));
+        }
+        //turn towards the target by at most 0.4 radians per update
+        final float turn = normalize(targetAngle - angle);
+        angle = normalize(angle + Math.max(-0.4f, Math.min(0.4f, turn)));
+
+        if(binaryProtocol) {
+            send(BinaryCodec.encodeClientInput(
+                new PlayerInput(movingUp, movingDown, movingLeft, movingRight, shooting, angle)));
+            final long snapshot = latestSnapshot;
+            if(snapshot != acknowledgedSnapshot) {
+                send(BinaryCodec.encodeSnapshotAck(snapshot));
+                acknowledgedSnapshot = snapshot;
+            }
+        }
+        else {
+            final ClientInputStateUpdate input = new ClientInputStateUpdate();
+            input.setMovingUp(movingUp);
+            input.setMovingDown(movingDown);
+            input.setMovingLeft(movingLeft);
+            input.setMovingRight(movingRight);
+            input.setShooting(shooting);
+            input.setAngle(angle);
+            send(input.jsonSerialize());
+        }
+
+        if(now >= nextPing) {
+            send(PING_PREFIX + System.nanoTime());
+            nextPing = now + PING_INTERVAL_NANOS;
+        }
+    }
+
+    private void pickMovement() {
+        //stand still about one time in five
+        final boolean idle = random.nextInt(5) == 0;
+        movingUp = !idle && random.nextInt(3) == 0;
+        movingDown = !idle && !movingUp && random.nextInt(2) == 0;
+        movingLeft = !idle && random.nextInt(3) == 0;
+        movingRight = !idle && !movingLeft && random.nextInt(2) == 0;
+    }
+
+    /**
+     * Measures how far behind its schedule a snapshot sent by the server on the given tick arrived. The schedule is
+     * one server tick per tick, anchored at the earliest arrival seen so far, so the lag grows whenever the server or
+     * the network falls behind. Ticks the server skipped for this bot because its link was slow don't count as lag.
+     * @param now
+     * @param tick The sequence of the snapshot, which the server counts up once per tick.
+     */
+    private void recordSnapshotArrival(final long now, final long tick) {
+        final long offset = now - tick * snapshotIntervalNanos;
+        if(!snapshotScheduled || offset < snapshotBaseline) {
+            snapshotBaseline = offset;
+            snapshotScheduled = true;
+        }
+        stats.recordSnapshotLag(offset - snapshotBaseline);
+    }
+
+    /**
+     * Measures how late a snapshot without a sequence arrived, against one tick after the previous snapshot. The lag
+     * doesn't add up over several snapshots like it does for snapshots with a sequence, and a bot which the server only
+     * sends a snapshot every few ticks is measured as late by the ticks in between.
+     * @param now
+     */
+    private void recordSnapshotArrival(final long now) {
+        if(lastSnapshotArrival != 0) {
+            stats.recordSnapshotLag(Math.max(0, now - lastSnapshotArrival - snapshotIntervalNanos));
+        }
+        lastSnapshotArrival = now;
+    }
+
+    private static float normalize(final float angle) {
+        float normalized = angle % ((float)Math.PI * 2.0f);
+        if(normalized > Math.PI) {
+            normalized -= (float)Math.PI * 2.0f;
+        }
+        else if(normalized < -Math.PI) {
+            normalized += (float)Math.PI * 2.0f;
+        }
+        return normalized;
+    }
+
+    private static long millisToNanos(final long millis) {
+        return millis * 1_000_000L;
+    }
+}
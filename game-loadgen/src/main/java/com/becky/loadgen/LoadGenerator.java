@@ -0,0 +1,97 @@
+package com.becky.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Connects a growing number of bots to a running game server and reports how the server copes.
+ *
+ * Bots are added loadgen.rampStep at a time every loadgen.rampIntervalSeconds until loadgen.bots are connected, then
+ * kept connected for loadgen.holdSeconds. Every reporting interval one line is printed with the connect latency,
+ * ping round trip time, inbound traffic per client and snapshot lag measured during that interval.
+ *
+ * Each bot uses the blocking Java-WebSocket client, which needs two threads per connection, so very large runs may
+ * have to be split over several load generator processes.
+ */
+public class LoadGenerator {
+    private static final int INPUT_THREADS = 4;
+
+    public static void main(final String[] args) throws InterruptedException {
+        final LoadGeneratorConfig config = LoadGeneratorConfig.fromSystemProperties();
+        final LoadStats stats = new LoadStats();
+        final List<BotClient> bots = new CopyOnWriteArrayList<>();
+        final ScheduledExecutorService inputThreads = Executors.newScheduledThreadPool(INPUT_THREADS);
+
+        System.out.println("Ramping up to " + config.getMaxBots() + " bots against " + config.getServerUri()
+            + ", " + config.getRampStep() + " every " + config.getRampIntervalSeconds() + " s");
+
+        final long start = System.nanoTime();
+        final long reportIntervalNanos = TimeUnit.SECONDS.toNanos(config.getReportIntervalSeconds());
+        final long rampIntervalNanos = TimeUnit.SECONDS.toNanos(config.getRampIntervalSeconds());
+        long nextReport = start + reportIntervalNanos;
+        long nextRampStep = start;
+        long lastReport = start;
+        long rampCompleted = -1;
+
+        while(true) {
+            final long now = System.nanoTime();
+            if(now >= nextRampStep && bots.size() < config.getMaxBots()) {
+                final int count = Math.min(config.getRampStep(), config.getMaxBots() - bots.size());
+                for(final BotClient bot: startBots(config, stats, bots.size(), count)) {
+                    bots.add(bot);
+                    //spread the bots over the input interval so they don't all send at once
+                    final long delay = (long)(Math.random() * config.getInputIntervalMillis());
+                    inputThreads.scheduleAtFixedRate(() -> sendInput(bot), delay, config.getInputIntervalMillis(),
+                        TimeUnit.MILLISECONDS);
+                }
+                nextRampStep += rampIntervalNanos;
+                if(bots.size() == config.getMaxBots()) {
+                    rampCompleted = now;
+                }
+            }
+
+            if(now >= nextReport) {
+                System.out.println(String.format("[%4d s] ", TimeUnit.NANOSECONDS.toSeconds(now - start))
+                    + stats.reportAndResetWindow(bots.size(), (now - lastReport) / 1e9));
+                lastReport = now;
+                nextReport += reportIntervalNanos;
+            }
+
+            if(rampCompleted >= 0 && now - rampCompleted >= TimeUnit.SECONDS.toNanos(config.getHoldSeconds())) {
+                break;
+            }
+            Thread.sleep(10);
+        }
+
+        System.out.println("Load test finished, disconnecting " + bots.size() + " bots.");
+        inputThreads.shutdownNow();
+        for(final BotClient bot: bots) {
+            bot.close();
+        }
+    }
+
+    private static List<BotClient> startBots(final LoadGeneratorConfig config, final LoadStats stats,
+                                             final int firstNumber, final int count) {
+        final List<BotClient> started = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            final BotClient bot = new BotClient(config.getServerUri(), firstNumber + i, stats, config.getTickRate(),
+                config.isBinaryProtocol());
+            bot.connect();
+            started.add(bot);
+        }
+        return started;
+    }
+
+    private static void sendInput(final BotClient bot) {
+        try {
+            bot.sendInput(System.nanoTime());
+        }
+        catch(final RuntimeException ex) {
+            //the connection closed between the check and the send, the bot just stops sending
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.becky.loadgen;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+
+/**
+ * Settings of a load generator run. Every value is read from a JVM system property (e.g. -Dloadgen.bots=2000) and
+ * falls back to a default when the property is missing or malformed.
+ */
+public class LoadGeneratorConfig {
+    private final URI serverUri;
+    private final int maxBots;
+    private final int rampStep;
+    private final int rampIntervalSeconds;
+    private final int holdSeconds;
+    private final int reportIntervalSeconds;
+    private final int inputIntervalMillis;
+    private final int tickRate;
+    private final boolean binaryProtocol;
+
+    private LoadGeneratorConfig(final URI serverUri, final int maxBots, final int rampStep, final int rampIntervalSeconds,
+                                final int holdSeconds, final int reportIntervalSeconds, final int inputIntervalMillis,
+                                final int tickRate, final boolean binaryProtocol) {
+        this.serverUri = serverUri;
+        this.maxBots = maxBots;
+        this.rampStep = rampStep;
+        this.rampIntervalSeconds = rampIntervalSeconds;
+        this.holdSeconds = holdSeconds;
+        this.reportIntervalSeconds = reportIntervalSeconds;
+        this.inputIntervalMillis = inputIntervalMillis;
+        this.tickRate = tickRate;
+        this.binaryProtocol = binaryProtocol;
+    }
+
+    public static LoadGeneratorConfig fromSystemProperties() {
+        return new LoadGeneratorConfig(
+            readUri("loadgen.url", "ws://localhost:3000"),
+            readInt("loadgen.bots", 500, 1, 100000),
+            readInt("loadgen.rampStep", 50, 1, 100000),
+            readInt("loadgen.rampIntervalSeconds", 5, 1, 3600),
+            readInt("loadgen.holdSeconds", 30, 0, 86400),
+            readInt("loadgen.reportIntervalSeconds", 5, 1, 3600),
+            //the browser client sends its input every 4 frames at 30 frames per second
+            readInt("loadgen.inputIntervalMillis", 133, 10, 10000),
+            readInt("loadgen.tickRate", 20, 1, 1000),
+            Boolean.parseBoolean(System.getProperty("loadgen.binary", "false").trim()));
+    }
+
+    /**
+     * Gets the address of the server to connect the bots to, asking for the binary protocol if it is enabled.
+     * @return
+     */
+    public URI getServerUri() {
+        if(!binaryProtocol || serverUri.getRawQuery() != null) {
+            return this.serverUri;
+        }
+        final String path = serverUri.getRawPath() == null || serverUri.getRawPath().isEmpty() ? "/" : serverUri.getRawPath();
+        return URI.create(serverUri.getScheme() + "://" + serverUri.getRawAuthority() + path + "?protocol=binary");
+    }
+
+    /**
+     * Gets the number of bots connected once the ramp is complete.
+     * @return
+     */
+    public int getMaxBots() {
+        return this.maxBots;
+    }
+
+    /**
+     * Gets the number of bots added at each step of the ramp.
+     * @return
+     */
+    public int getRampStep() {
+        return this.rampStep;
+    }
+
+    public int getRampIntervalSeconds() {
+        return this.rampIntervalSeconds;
+    }
+
+    /**
+     * Gets how long all bots stay connected after the ramp is complete.
+     * @return
+     */
+    public int getHoldSeconds() {
+        return this.holdSeconds;
+    }
+
+    public int getReportIntervalSeconds() {
+        return this.reportIntervalSeconds;
+    }
+
+    public int getInputIntervalMillis() {
+        return this.inputIntervalMillis;
+    }
+
+    /**
+     * Gets the tick rate of the server, which is how often snapshots are expected to arrive.
+     * @return
+     */
+    public int getTickRate() {
+        return this.tickRate;
+    }
+
+    /**
+     * Gets whether the bots receive snapshots and send their input in the binary format instead of JSON.
+     * @return
+     */
+    public boolean isBinaryProtocol() {
+        return this.binaryProtocol;
+    }
+
+    private static URI readUri(final String property, final String defaultValue) {
+        final String value = System.getProperty(property, defaultValue);
+        try {
+            return new URI(value.trim());
+        }
+        catch(final URISyntaxException ex) {
+            System.out.println("Ignoring " + property + "=" + value + ", it is not a valid URI.");
+            return URI.create(defaultValue);
+        }
+    }
+
+    private static int readInt(final String property, final int defaultValue, final int min, final int max) {
+        final String value = System.getProperty(property);
+        if(value == null) {
+            return defaultValue;
+        }
+
+        try {
+            final int parsed = Integer.parseInt(value.trim());
+            if(parsed < min || parsed > max) {
+                System.out.println("Ignoring " + property + "=" + value + ", expected a value between "
+                    + min + " and " + max + ".");
+                return defaultValue;
+            }
+            return parsed;
+        }
+        catch(final NumberFormatException ex) {
+            System.out.println("Ignoring " + property + "=" + value + ", it is not a number.");
+            return defaultValue;
+        }
+    }
+}
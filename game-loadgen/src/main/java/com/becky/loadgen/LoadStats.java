@@ -0,0 +1,92 @@
+package com.becky.loadgen;
+
+import com.becky.util.LatencyHistogram;
+
+/**
+ * Measurements shared by every bot. Histograms and byte counts cover the current reporting window and are cleared by
+ * {@link #reportAndResetWindow(int, double)}, connection counts cover the whole run.
+ * Safe to use from any thread.
+ */
+public class LoadStats {
+    private final LatencyHistogram connectLatency = new LatencyHistogram();
+    private final LatencyHistogram roundTripTime = new LatencyHistogram();
+    private final LatencyHistogram snapshotLag = new LatencyHistogram();
+    private long windowInboundBytes;
+    private long windowInboundMessages;
+
+    private int connected;
+    private int joined;
+    private int failedConnects;
+    private int disconnects;
+
+    public synchronized void recordConnect(final long nanos) {
+        connectLatency.record(nanos);
+        connected++;
+    }
+
+    public synchronized void recordConnectFailure() {
+        failedConnects++;
+    }
+
+    public synchronized void recordJoin() {
+        joined++;
+    }
+
+    public synchronized void recordDisconnect(final boolean wasJoined) {
+        connected--;
+        disconnects++;
+        if(wasJoined) {
+            joined--;
+        }
+    }
+
+    public synchronized void recordRoundTrip(final long nanos) {
+        roundTripTime.record(nanos);
+    }
+
+    public synchronized void recordInbound(final int bytes) {
+        windowInboundBytes += bytes;
+        windowInboundMessages++;
+    }
+
+    public synchronized void recordSnapshotLag(final long nanos) {
+        snapshotLag.record(nanos);
+    }
+
+    public synchronized int getConnected() {
+        return this.connected;
+    }
+
+    /**
+     * Describes the current reporting window and starts a new one.
+     * @param bots The number of bots started so far.
+     * @param windowSeconds The length of the window.
+     * @return
+     */
+    public synchronized String reportAndResetWindow(final int bots, final double windowSeconds) {
+        final double bytesPerClientPerSecond = connected == 0 ? 0.0 : windowInboundBytes / windowSeconds / connected;
+        final String report = String.format(
+            "bots %d, connected %d, joined %d, failed %d, dropped %d | connect p50/p99 %.1f/%.1f ms"
+                + " | rtt p50/p99/max %.1f/%.1f/%.1f ms | in %.1f KB/s and %.1f msg/s per client"
+                + " | snapshot lag p50/p99/max %.1f/%.1f/%.1f ms",
+            bots, connected, joined, failedConnects, disconnects,
+            millis(connectLatency.getValueAtPercentile(50.0)), millis(connectLatency.getValueAtPercentile(99.0)),
+            millis(roundTripTime.getValueAtPercentile(50.0)), millis(roundTripTime.getValueAtPercentile(99.0)),
+            millis(roundTripTime.getMax()),
+            bytesPerClientPerSecond / 1024.0,
+            connected == 0 ? 0.0 : windowInboundMessages / windowSeconds / connected,
+            millis(snapshotLag.getValueAtPercentile(50.0)), millis(snapshotLag.getValueAtPercentile(99.0)),
+            millis(snapshotLag.getMax()));
+
+        connectLatency.reset();
+        roundTripTime.reset();
+        snapshotLag.reset();
+        windowInboundBytes = 0;
+        windowInboundMessages = 0;
+        return report;
+    }
+
+    private static double millis(final long nanos) {
+        return nanos / 1e6;
+    }
+}